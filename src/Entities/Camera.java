@@ -27,18 +27,26 @@ public class Camera {
     }
 	
 	public void move() {
-		if (Keyboard.isKeyDown(Keyboard.KEY_W)) {
+		move(Keyboard.isKeyDown(Keyboard.KEY_W), Keyboard.isKeyDown(Keyboard.KEY_S), Mouse.getDX(), Mouse.getDY());
+	}
+
+	/**
+	 * Moves the camera from input sampled elsewhere, e.g. by the render thread
+	 * on behalf of the {@link Simulation}.
+	 */
+	public void move(boolean forward, boolean backward, float mouseDX, float mouseDY) {
+		if (forward) {
 			moveAt = -speed;
 		}
-		else if (Keyboard.isKeyDown(Keyboard.KEY_S)) {
+		else if (backward) {
 			moveAt = speed;
         }
         else {
             moveAt = 0;
         }
 		
-		rotX += -Mouse.getDY() * sensitivity;
-		rotY += Mouse.getDX() * sensitivity;
+		rotX += -mouseDY * sensitivity;
+		rotY += mouseDX * sensitivity;
 	
 		
 		float dx = (float) -(moveAt * Math.sin(Math.toRadians(rotY)));
@@ -49,4 +57,15 @@ public class Camera {
 		position.y += dy;
 		position.z += dz;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Stores the normalised direction the camera looks in, i.e. the direction
+	 * it moves in when going forward.
+	 */
+	public Vector3f getDirection(Vector3f dest) {
+		double pitch = Math.toRadians(rotX), yaw = Math.toRadians(rotY);
+		double cos = Math.cos(pitch);
+		dest.set((float) (Math.sin(yaw) * cos), (float) -Math.sin(pitch), (float) (-Math.cos(yaw) * cos));
+		return dest;
+	}
+}
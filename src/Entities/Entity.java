@@ -1,15 +1,20 @@
 package Entities;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 
-import lombok.AllArgsConstructor;
+import ToolBox.Maths;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import models.TexturedModel;
 
 @NoArgsConstructor
-@AllArgsConstructor
 @Getter
 @Setter
 public class Entity {
@@ -17,21 +22,187 @@ public class Entity {
 	Vector3f position;
 	float rotX, rotY, rotZ;
 	float scale;
+
+	// Told once when the entity's bounds go stale, e.g. by the frustum culler's BVH,
+	// which refits the proxy during its next pass and clears the flag
+	MoveListener moveListener;
+	int cullingProxy = -1;
+	boolean cullingProxyDirty;
+
+	// Cached world matrix, only rebuilt after this entity or one of its parents changed
+	@Getter(AccessLevel.NONE)
+	final Matrix4f transformationMatrix = new Matrix4f();
+	@Setter(AccessLevel.NONE)
+	boolean transformDirty = true;
+
+	@Setter(AccessLevel.NONE)
+	Entity parent;
+	@Getter(AccessLevel.NONE)
+	final List<Entity> children = new ArrayList<Entity>(0);
+
+	// Matrices rebuilt versus served from the cache since the last reset
+	private static int matricesRecomputed;
+	private static int matricesReused;
+
+	public Entity(TexturedModel model, Vector3f position, float rotX, float rotY, float rotZ, float scale) {
+		this.model = model;
+		this.position = position;
+		this.rotX = rotX;
+		this.rotY = rotY;
+		this.rotZ = rotZ;
+		this.scale = scale;
+	}
 	
 	public void increasePosition(float dx, float dy, float dz) {
 		this.position.x += dx;
 		this.position.y += dy;
 		this.position.z += dz;
+		markTransformDirty();
 	}
 	
 	public void increaseRotation(float dx, float dy, float dz) {
 		this.rotX += dx;
 		this.rotY += dy;
 		this.rotZ += dz;
+		markTransformDirty();
 	}
 	
 	public void increaseScale(float s) {
 		this.scale += s;
+		markTransformDirty();
+	}
+
+	public void setPosition(Vector3f position) {
+		this.position = position;
+		markTransformDirty();
+	}
+
+	public void setRotX(float rotX) {
+		this.rotX = rotX;
+		markTransformDirty();
+	}
+
+	public void setRotY(float rotY) {
+		this.rotY = rotY;
+		markTransformDirty();
+	}
+
+	public void setRotZ(float rotZ) {
+		this.rotZ = rotZ;
+		markTransformDirty();
+	}
+
+	public void setScale(float scale) {
+		this.scale = scale;
+		markTransformDirty();
+	}
+
+	/**
+	 * Flags the cached matrix of this entity and all of its children as stale.
+	 * Call this after mutating the vector returned by {@link #getPosition()}
+	 * directly, since such changes cannot be detected.
+	 */
+	public void markTransformDirty() {
+		if (!transformDirty) {
+			transformDirty = true;
+			for (Entity child : children) {
+				child.markTransformDirty();
+			}
+		}
+		// Children report their own moves when their parent moves them. Only the
+		// first change is reported; the listener must not read the matrix here
+		if (moveListener != null && !cullingProxyDirty) {
+			cullingProxyDirty = true;
+			moveListener.entityMoved(this);
+		}
+	}
+
+	/**
+	 * Returns the world transformation matrix, rebuilding it only if the entity
+	 * or one of its parents changed since it was last computed. The returned
+	 * matrix is owned by the entity and must not be modified.
+	 */
+	public Matrix4f getTransformationMatrix() {
+		if (!transformDirty) {
+			matricesReused++;
+			return transformationMatrix;
+		}
+		Maths.createTransformationMatrix(position, rotX, rotY, rotZ, scale, transformationMatrix);
+		if (parent != null) {
+			Matrix4f.mul(parent.getTransformationMatrix(), transformationMatrix, transformationMatrix);
+		}
+		transformDirty = false;
+		matricesRecomputed++;
+		return transformationMatrix;
+	}
+
+	/**
+	 * Attaches a child whose transform is relative to this entity.
+	 */
+	public void addChild(Entity child) {
+		if (child.parent != null) {
+			child.parent.children.remove(child);
+		}
+		child.parent = this;
+		children.add(child);
+		child.transformDirty = false;
+		child.markTransformDirty();
+	}
+
+	public void removeChild(Entity child) {
+		if (children.remove(child)) {
+			child.parent = null;
+			child.transformDirty = false;
+			child.markTransformDirty();
+		}
+	}
+
+	public List<Entity> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * Writes the world-space position of the entity's origin into dest.
+	 */
+	public Vector3f getWorldPosition(Vector3f dest) {
+		Matrix4f matrix = getTransformationMatrix();
+		dest.set(matrix.m30, matrix.m31, matrix.m32);
+		return dest;
+	}
+
+	/**
+	 * Returns the radius of a sphere around the world position that encloses
+	 * the entity regardless of its rotation, including any parent scaling.
+	 */
+	public float getBoundingRadius() {
+		Matrix4f m = getTransformationMatrix();
+		float sx = m.m00 * m.m00 + m.m01 * m.m01 + m.m02 * m.m02;
+		float sy = m.m10 * m.m10 + m.m11 * m.m11 + m.m12 * m.m12;
+		float sz = m.m20 * m.m20 + m.m21 * m.m21 + m.m22 * m.m22;
+		return model.getModel().getBoundingRadius() * (float) Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+	}
+
+	public static int getMatricesRecomputed() {
+		return matricesRecomputed;
+	}
+
+	public static int getMatricesReused() {
+		return matricesReused;
+	}
+
+	// Call once per frame to make the counters per-frame figures
+	public static void resetTransformCounters() {
+		matricesRecomputed = 0;
+		matricesReused = 0;
+	}
+
+	public interface MoveListener {
+		/**
+		 * Called when the entity's bounds went stale. Implementations should
+		 * only remember the entity; reading its matrix here would defeat the
+		 * lazy cache.
+		 */
+		void entityMoved(Entity entity);
 	}
 	
 }
@@ -0,0 +1,265 @@
+package Entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import models.TexturedModel;
+
+/**
+ * Structure-of-arrays storage for large numbers of simple entities.
+ * 
+ * Instead of one heap object per entity, every component (position, rotation,
+ * scale, velocity, spin, model ID and the resulting transformation matrix) is
+ * kept in its own primitive array, so update systems stream through memory
+ * sequentially and can split the arrays between cores.
+ * 
+ * Entities are referred to by stable IDs. Their data is kept densely packed by
+ * moving the last entity into the hole left by a removed one, so dense indices
+ * change on removal while IDs do not. IDs of destroyed entities are reused by
+ * later ones, and destroying an ID that is not alive throws.
+ * {@link EntityView} offers the familiar {@link Entity} style API on top of an
+ * ID.
+ */
+@Getter
+public class EntityStore {
+
+	// Ranges smaller than this are updated on the calling thread
+	private static final int PARALLEL_THRESHOLD = 4096;
+
+	private int count;
+
+	private float[] posX, posY, posZ;
+	private float[] rotX, rotY, rotZ;
+	private float[] scale;
+	private float[] velX, velY, velZ;
+	private float[] spinX, spinY, spinZ;
+	private int[] modelIDs;
+	// 16 floats per entity, column-major, written by the TransformSystem
+	private float[] matrices;
+
+	@Getter(AccessLevel.NONE)
+	private int[] denseToID;
+	@Getter(AccessLevel.NONE)
+	private int[] idToDense;
+	@Getter(AccessLevel.NONE)
+	private int[] freeIDs;
+	@Getter(AccessLevel.NONE)
+	private int freeCount;
+	@Getter(AccessLevel.NONE)
+	private int nextID;
+
+	@Getter(AccessLevel.NONE)
+	private final List<TexturedModel> models = new ArrayList<TexturedModel>();
+
+	public EntityStore() {
+		this(1024);
+	}
+
+	public EntityStore(int initialCapacity) {
+		allocate(Math.max(16, initialCapacity));
+		idToDense = new int[posX.length];
+		Arrays.fill(idToDense, -1);
+		freeIDs = new int[16];
+	}
+
+	/**
+	 * Registers a model so entities can refer to it by ID.
+	 * 
+	 * @return The model ID.
+	 */
+	public int registerModel(TexturedModel model) {
+		int index = models.indexOf(model);
+		if (index >= 0) {
+			return index;
+		}
+		models.add(model);
+		return models.size() - 1;
+	}
+
+	public TexturedModel getModel(int modelID) {
+		return models.get(modelID);
+	}
+
+	public int getModelCount() {
+		return models.size();
+	}
+
+	/**
+	 * Adds an entity at rest.
+	 * 
+	 * @return The ID of the new entity.
+	 */
+	public int create(int modelID, float x, float y, float z, float rx, float ry, float rz, float s) {
+		if (count == posX.length) {
+			allocate(posX.length * 2);
+		}
+		int id = freeCount > 0 ? freeIDs[--freeCount] : nextID++;
+		if (id >= idToDense.length) {
+			int oldLength = idToDense.length;
+			idToDense = Arrays.copyOf(idToDense, Math.max(id + 1, oldLength * 2));
+			Arrays.fill(idToDense, oldLength, idToDense.length, -1);
+		}
+
+		int i = count++;
+		idToDense[id] = i;
+		denseToID[i] = id;
+		modelIDs[i] = modelID;
+		posX[i] = x;
+		posY[i] = y;
+		posZ[i] = z;
+		rotX[i] = rx;
+		rotY[i] = ry;
+		rotZ[i] = rz;
+		scale[i] = s;
+		velX[i] = velY[i] = velZ[i] = 0;
+		spinX[i] = spinY[i] = spinZ[i] = 0;
+		return id;
+	}
+
+	/**
+	 * Removes an entity, moving the last entity into its slot.
+	 *
+	 * @throws IllegalArgumentException If no entity with the ID exists, e.g.
+	 *                                  because it was already destroyed.
+	 */
+	public void destroy(int id) {
+		if (!contains(id)) {
+			throw new IllegalArgumentException("No entity with ID " + id + " exists; it was never created or was already destroyed");
+		}
+		int i = idToDense[id];
+		int last = --count;
+		if (i != last) {
+			copyEntry(last, i);
+			idToDense[denseToID[i]] = i;
+		}
+		idToDense[id] = -1;
+		if (freeCount == freeIDs.length) {
+			freeIDs = Arrays.copyOf(freeIDs, freeIDs.length * 2);
+		}
+		freeIDs[freeCount++] = id;
+	}
+
+	/**
+	 * Returns whether an entity with the ID currently exists.
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && id < idToDense.length && idToDense[id] >= 0;
+	}
+
+	/**
+	 * Returns the current dense index of an entity, for use with the arrays.
+	 */
+	public int indexOf(int id) {
+		return idToDense[id];
+	}
+
+	public EntityView view(int id) {
+		return new EntityView(this, id);
+	}
+
+	public void setVelocity(int id, float vx, float vy, float vz) {
+		int i = idToDense[id];
+		velX[i] = vx;
+		velY[i] = vy;
+		velZ[i] = vz;
+	}
+
+	/**
+	 * Sets the rotation speed of an entity in degrees per second.
+	 */
+	public void setSpin(int id, float sx, float sy, float sz) {
+		int i = idToDense[id];
+		spinX[i] = sx;
+		spinY[i] = sy;
+		spinZ[i] = sz;
+	}
+
+	/**
+	 * Runs a system over every entity, splitting the work across the common
+	 * fork-join pool when there are enough entities to make it worthwhile.
+	 */
+	public void run(UpdateSystem system, float delta) {
+		run(system, delta, ForkJoinPool.commonPool());
+	}
+
+	public void run(UpdateSystem system, float delta, ForkJoinPool pool) {
+		if (count < PARALLEL_THRESHOLD) {
+			system.update(this, 0, count, delta);
+		} else {
+			pool.invoke(new SystemTask(system, 0, count, delta));
+		}
+	}
+
+	private void copyEntry(int from, int to) {
+		denseToID[to] = denseToID[from];
+		modelIDs[to] = modelIDs[from];
+		posX[to] = posX[from];
+		posY[to] = posY[from];
+		posZ[to] = posZ[from];
+		rotX[to] = rotX[from];
+		rotY[to] = rotY[from];
+		rotZ[to] = rotZ[from];
+		scale[to] = scale[from];
+		velX[to] = velX[from];
+		velY[to] = velY[from];
+		velZ[to] = velZ[from];
+		spinX[to] = spinX[from];
+		spinY[to] = spinY[from];
+		spinZ[to] = spinZ[from];
+		System.arraycopy(matrices, from * 16, matrices, to * 16, 16);
+	}
+
+	private void allocate(int capacity) {
+		posX = grow(posX, capacity);
+		posY = grow(posY, capacity);
+		posZ = grow(posZ, capacity);
+		rotX = grow(rotX, capacity);
+		rotY = grow(rotY, capacity);
+		rotZ = grow(rotZ, capacity);
+		scale = grow(scale, capacity);
+		velX = grow(velX, capacity);
+		velY = grow(velY, capacity);
+		velZ = grow(velZ, capacity);
+		spinX = grow(spinX, capacity);
+		spinY = grow(spinY, capacity);
+		spinZ = grow(spinZ, capacity);
+		matrices = grow(matrices, capacity * 16);
+		modelIDs = modelIDs == null ? new int[capacity] : Arrays.copyOf(modelIDs, capacity);
+		denseToID = denseToID == null ? new int[capacity] : Arrays.copyOf(denseToID, capacity);
+	}
+
+	private static float[] grow(float[] array, int capacity) {
+		return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+	}
+
+	// Splits the entity range in halves until it is small enough to run directly
+	private class SystemTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final UpdateSystem system;
+		private final int start, end;
+		private final float delta;
+
+		SystemTask(UpdateSystem system, int start, int end, float delta) {
+			this.system = system;
+			this.start = start;
+			this.end = end;
+			this.delta = delta;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= PARALLEL_THRESHOLD) {
+				system.update(EntityStore.this, start, end, delta);
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new SystemTask(system, start, middle, delta), new SystemTask(system, middle, end, delta));
+		}
+	}
+}
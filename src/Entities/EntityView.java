@@ -0,0 +1,87 @@
+package Entities;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import lombok.Getter;
+import models.TexturedModel;
+
+/**
+ * {@link Entity} style access to a single entity inside an {@link EntityStore}.
+ * 
+ * The view holds no data of its own; every call reads or writes the store's
+ * arrays, so views are cheap to create and stay valid as long as the entity
+ * exists.
+ */
+public class EntityView {
+
+	private final EntityStore store;
+	@Getter
+	private final int id;
+
+	public EntityView(EntityStore store, int id) {
+		this.store = store;
+		this.id = id;
+	}
+
+	public TexturedModel getModel() {
+		return store.getModel(store.getModelIDs()[index()]);
+	}
+
+	/**
+	 * Returns a copy of the entity's position. Use {@link #setPosition} or
+	 * {@link #increasePosition} to change it.
+	 */
+	public Vector3f getPosition() {
+		int i = index();
+		return new Vector3f(store.getPosX()[i], store.getPosY()[i], store.getPosZ()[i]);
+	}
+
+	public void setPosition(Vector3f position) {
+		int i = index();
+		store.getPosX()[i] = position.x;
+		store.getPosY()[i] = position.y;
+		store.getPosZ()[i] = position.z;
+	}
+
+	public float getRotX() {
+		return store.getRotX()[index()];
+	}
+
+	public float getRotY() {
+		return store.getRotY()[index()];
+	}
+
+	public float getRotZ() {
+		return store.getRotZ()[index()];
+	}
+
+	public float getScale() {
+		return store.getScale()[index()];
+	}
+
+	public void setScale(float scale) {
+		store.getScale()[index()] = scale;
+	}
+
+	public void increasePosition(float dx, float dy, float dz) {
+		int i = index();
+		store.getPosX()[i] += dx;
+		store.getPosY()[i] += dy;
+		store.getPosZ()[i] += dz;
+	}
+
+	public void increaseRotation(float dx, float dy, float dz) {
+		int i = index();
+		store.getRotX()[i] += dx;
+		store.getRotY()[i] += dy;
+		store.getRotZ()[i] += dz;
+	}
+
+	public void increaseScale(float s) {
+		store.getScale()[index()] += s;
+	}
+
+	private int index() {
+		return store.indexOf(id);
+	}
+}
@@ -0,0 +1,73 @@
+package Entities;
+
+import lombok.Getter;
+
+/**
+ * Works out how many fixed-length simulation steps are due as time passes.
+ * 
+ * The timestep keeps the clock time up to which the simulation has been run.
+ * Each call to {@link #advance(long)} returns the number of whole steps that
+ * fit between that time and now, and moves the time on by that many steps;
+ * the remainder carries over to the next call. If the simulation falls so far
+ * behind that more than {@link #getMaxStepsPerUpdate()} steps are due, the
+ * excess steps are dropped rather than run, so a long hitch slows the game
+ * down briefly instead of making it spiral into ever longer catch-ups.
+ * 
+ * Time is passed in explicitly, so this class can be driven by any clock.
+ */
+@Getter
+public class FixedTimestep {
+
+	private final long stepNanos;
+	private final int maxStepsPerUpdate;
+
+	// Clock time the simulation has been advanced to
+	private long time;
+	private boolean started;
+
+	private long steps;
+	private long droppedSteps;
+
+	public FixedTimestep(long stepNanos, int maxStepsPerUpdate) {
+		if (stepNanos <= 0 || maxStepsPerUpdate < 1) {
+			throw new IllegalArgumentException("Invalid timestep " + stepNanos + " / " + maxStepsPerUpdate);
+		}
+		this.stepNanos = stepNanos;
+		this.maxStepsPerUpdate = maxStepsPerUpdate;
+	}
+
+	/**
+	 * Returns the number of steps to run now. The first call only starts the
+	 * timer and returns 0.
+	 */
+	public int advance(long now) {
+		if (!started) {
+			started = true;
+			time = now;
+			return 0;
+		}
+		long due = (now - time) / stepNanos;
+		if (due <= 0) {
+			return 0;
+		}
+		if (due > maxStepsPerUpdate) {
+			droppedSteps += due - maxStepsPerUpdate;
+			time += (due - maxStepsPerUpdate) * stepNanos;
+			due = maxStepsPerUpdate;
+		}
+		time += due * stepNanos;
+		steps += due;
+		return (int) due;
+	}
+
+	/**
+	 * Returns how long to wait from now until the next step is due.
+	 */
+	public long getNanosUntilNextStep(long now) {
+		return started ? Math.max(0, time + stepNanos - now) : 0;
+	}
+
+	public float getStepSeconds() {
+		return stepNanos / 1e9f;
+	}
+}
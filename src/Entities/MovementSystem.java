@@ -0,0 +1,23 @@
+package Entities;
+
+/**
+ * Moves every entity by its velocity and turns it by its spin.
+ */
+public class MovementSystem implements UpdateSystem {
+
+	@Override
+	public void update(EntityStore store, int start, int end, float delta) {
+		float[] posX = store.getPosX(), posY = store.getPosY(), posZ = store.getPosZ();
+		float[] rotX = store.getRotX(), rotY = store.getRotY(), rotZ = store.getRotZ();
+		float[] velX = store.getVelX(), velY = store.getVelY(), velZ = store.getVelZ();
+		float[] spinX = store.getSpinX(), spinY = store.getSpinY(), spinZ = store.getSpinZ();
+		for (int i = start; i < end; i++) {
+			posX[i] += velX[i] * delta;
+			posY[i] += velY[i] * delta;
+			posZ[i] += velZ[i] * delta;
+			rotX[i] += spinX[i] * delta;
+			rotY[i] += spinY[i] * delta;
+			rotZ[i] += spinZ[i] * delta;
+		}
+	}
+}
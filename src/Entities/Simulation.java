@@ -0,0 +1,232 @@
+package Entities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import ToolBox.Clock;
+import lombok.Getter;
+
+/**
+ * Runs the game simulation at a fixed rate on its own thread, independent of
+ * the frame rate.
+ *
+ * The simulation owns its camera and entities; nothing else may touch them
+ * while it runs. After every update that ran at least one tick it publishes a
+ * {@link SimulationSnapshot}, which the render thread picks up with
+ * {@link #getSnapshot()} and applies to its own copies of the camera and
+ * entities, interpolated to the current time.
+ *
+ * Input is sampled by the render thread and handed over with
+ * {@link #setInput}, and other changes to the simulated state are queued with
+ * {@link #submit(Runnable)} to run on the simulation thread before the next
+ * tick. {@link #update()} runs the due ticks without a thread, which is how
+ * the simulation can be driven by a {@link ToolBox.ManualClock}.
+ */
+public class Simulation {
+
+	/**
+	 * Logic run once per tick on the simulation thread.
+	 */
+	public interface TickListener {
+		void tick(long tick, float delta);
+	}
+
+	private static final int MAX_STEPS_PER_UPDATE = 8;
+
+	private final Clock clock;
+	@Getter
+	private final FixedTimestep timestep;
+	@Getter
+	private final Camera camera;
+	private final List<Entity> entities = new ArrayList<Entity>();
+	private final List<TickListener> listeners = new ArrayList<TickListener>();
+	private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<Runnable>();
+
+	// Input handed over by the render thread; mouse movement accumulates until a tick uses it
+	private boolean forward, backward;
+	private float mouseDX, mouseDY;
+
+	private volatile SimulationSnapshot snapshot;
+	private float[] lastState;
+	@Getter
+	private long tick;
+
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * @param camera The camera moved by the simulation, or null.
+	 */
+	public Simulation(Clock clock, float stepSeconds, Camera camera) {
+		this.clock = clock;
+		this.timestep = new FixedTimestep((long) (stepSeconds * TimeUnit.SECONDS.toNanos(1)), MAX_STEPS_PER_UPDATE);
+		this.camera = camera;
+	}
+
+	/**
+	 * Adds an entity to the simulation. Call before {@link #start()} or from a
+	 * submitted command.
+	 *
+	 * @return The entity's index in the published snapshots.
+	 */
+	public int addEntity(Entity entity) {
+		entities.add(entity);
+		return entities.size() - 1;
+	}
+
+	/**
+	 * Adds logic to run every tick. Call before {@link #start()} or from a
+	 * submitted command.
+	 */
+	public void addTickListener(TickListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Queues a change to run on the simulation thread before the next tick.
+	 */
+	public void submit(Runnable command) {
+		commands.add(command);
+	}
+
+	/**
+	 * Hands over the current input. Mouse movement is added up until the next
+	 * tick consumes it.
+	 */
+	public synchronized void setInput(boolean forward, boolean backward, float mouseDX, float mouseDY) {
+		this.forward = forward;
+		this.backward = backward;
+		this.mouseDX += mouseDX;
+		this.mouseDY += mouseDY;
+	}
+
+	/**
+	 * Returns the most recent snapshot, or null before the first tick.
+	 */
+	public SimulationSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public long getDroppedSteps() {
+		return timestep.getDroppedSteps();
+	}
+
+	/**
+	 * Runs the ticks due at the current clock time and publishes a snapshot if
+	 * any ran.
+	 *
+	 * @return The number of ticks run.
+	 */
+	public int update() {
+		int steps = timestep.advance(clock.nanoTime());
+		if (steps == 0) {
+			return 0;
+		}
+		if (lastState == null) {
+			lastState = capture();
+		}
+		float delta = timestep.getStepSeconds();
+		float[] before = lastState;
+		for (int step = 0; step < steps; step++) {
+			// Only the last tick of a catch-up is interpolated from, skipped ticks are never drawn
+			if (step == steps - 1 && steps > 1) {
+				before = capture();
+			}
+			runTick(delta);
+		}
+		lastState = capture();
+		snapshot = new SimulationSnapshot(tick, timestep.getTime(), timestep.getStepNanos(), before, lastState);
+		return steps;
+	}
+
+	/**
+	 * Starts running the simulation on its own thread.
+	 */
+	public void start() {
+		running = true;
+		thread = new Thread(this::run, "Simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the simulation thread and waits for it to finish its current
+	 * update.
+	 */
+	public void stop() {
+		running = false;
+		if (thread == null) {
+			return;
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	private void run() {
+		while (running) {
+			update();
+			long wait = timestep.getNanosUntilNextStep(clock.nanoTime());
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+			}
+		}
+	}
+
+	private void runTick(float delta) {
+		Runnable command;
+		while ((command = commands.poll()) != null) {
+			command.run();
+		}
+
+		if (camera != null) {
+			boolean forward, backward;
+			float mouseDX, mouseDY;
+			synchronized (this) {
+				forward = this.forward;
+				backward = this.backward;
+				mouseDX = this.mouseDX;
+				mouseDY = this.mouseDY;
+				this.mouseDX = 0;
+				this.mouseDY = 0;
+			}
+			camera.move(forward, backward, mouseDX, mouseDY);
+		}
+
+		tick++;
+		for (TickListener listener : listeners) {
+			listener.tick(tick, delta);
+		}
+	}
+
+	private float[] capture() {
+		float[] state = new float[SimulationSnapshot.CAMERA_FLOATS + entities.size() * SimulationSnapshot.ENTITY_FLOATS];
+		if (camera != null) {
+			state[0] = camera.position.x;
+			state[1] = camera.position.y;
+			state[2] = camera.position.z;
+			state[3] = camera.rotX;
+			state[4] = camera.rotY;
+			state[5] = camera.rotZ;
+		}
+		int base = SimulationSnapshot.CAMERA_FLOATS;
+		for (Entity entity : entities) {
+			state[base] = entity.position.x;
+			state[base + 1] = entity.position.y;
+			state[base + 2] = entity.position.z;
+			state[base + 3] = entity.rotX;
+			state[base + 4] = entity.rotY;
+			state[base + 5] = entity.rotZ;
+			state[base + 6] = entity.scale;
+			base += SimulationSnapshot.ENTITY_FLOATS;
+		}
+		return state;
+	}
+}
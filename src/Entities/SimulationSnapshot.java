@@ -0,0 +1,104 @@
+package Entities;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Immutable copy of the simulation state after one tick, published by the
+ * {@link Simulation} thread for the render thread.
+ *
+ * A snapshot holds the state before and after its tick, so the render thread
+ * can draw any point in between from a single snapshot without having to
+ * keep the previous one. The render thread runs one tick behind the
+ * simulation: at the snapshot's time it shows the state before the tick, and
+ * one step later the state after it, by which time the next snapshot has
+ * normally arrived.
+ */
+public class SimulationSnapshot {
+
+	// Camera position and rotation, then position, rotation and scale per entity
+	static final int CAMERA_FLOATS = 6;
+	static final int ENTITY_FLOATS = 7;
+
+	@Getter
+	private final long tick;
+	// Clock time the tick's state corresponds to
+	@Getter
+	private final long time;
+	@Getter
+	private final long stepNanos;
+
+	private final float[] previous;
+	private final float[] current;
+
+	SimulationSnapshot(long tick, long time, long stepNanos, float[] previous, float[] current) {
+		this.tick = tick;
+		this.time = time;
+		this.stepNanos = stepNanos;
+		this.previous = previous;
+		this.current = current;
+	}
+
+	public int getEntityCount() {
+		return (current.length - CAMERA_FLOATS) / ENTITY_FLOATS;
+	}
+
+	/**
+	 * Returns how far between the previous and current state the render thread
+	 * should be at the given clock time, from 0 to 1.
+	 */
+	public float getAlpha(long now) {
+		float alpha = (float) (now - time) / stepNanos;
+		return Math.max(0, Math.min(1, alpha));
+	}
+
+	/**
+	 * Moves the render-side camera and entities to the interpolated state. The
+	 * entities must be in the order they were added to the simulation; entities
+	 * whose state did not change keep their cached matrices.
+	 *
+	 * @param camera   The camera to update, or null.
+	 * @param entities The entities to update, matched to the simulation's
+	 *                 entities by index.
+	 */
+	public void apply(float alpha, Camera camera, List<Entity> entities) {
+		if (camera != null) {
+			camera.position.x = lerp(0, alpha);
+			camera.position.y = lerp(1, alpha);
+			camera.position.z = lerp(2, alpha);
+			camera.rotX = lerp(3, alpha);
+			camera.rotY = lerp(4, alpha);
+			camera.rotZ = lerp(5, alpha);
+		}
+
+		int count = Math.min(entities.size(), getEntityCount());
+		for (int i = 0; i < count; i++) {
+			Entity entity = entities.get(i);
+			int base = CAMERA_FLOATS + i * ENTITY_FLOATS;
+			float x = lerp(base, alpha), y = lerp(base + 1, alpha), z = lerp(base + 2, alpha);
+			float rx = lerp(base + 3, alpha), ry = lerp(base + 4, alpha), rz = lerp(base + 5, alpha);
+			float scale = lerp(base + 6, alpha);
+			if (entity.position.x == x && entity.position.y == y && entity.position.z == z && entity.rotX == rx
+					&& entity.rotY == ry && entity.rotZ == rz && entity.scale == scale) {
+				continue;
+			}
+			entity.position.set(x, y, z);
+			entity.rotX = rx;
+			entity.rotY = ry;
+			entity.rotZ = rz;
+			entity.scale = scale;
+			entity.markTransformDirty();
+		}
+	}
+
+	private float lerp(int index, float alpha) {
+		float to = current[index];
+		// Entities added during the tick have no earlier state
+		if (index >= previous.length) {
+			return to;
+		}
+		float from = previous[index];
+		return from + (to - from) * alpha;
+	}
+}
@@ -0,0 +1,21 @@
+package Entities;
+
+import ToolBox.Maths;
+
+/**
+ * Rebuilds the transformation matrix of every entity into the store's packed
+ * matrix array, ready to be uploaded as instance data.
+ */
+public class TransformSystem implements UpdateSystem {
+
+	@Override
+	public void update(EntityStore store, int start, int end, float delta) {
+		float[] posX = store.getPosX(), posY = store.getPosY(), posZ = store.getPosZ();
+		float[] rotX = store.getRotX(), rotY = store.getRotY(), rotZ = store.getRotZ();
+		float[] scale = store.getScale();
+		float[] matrices = store.getMatrices();
+		for (int i = start; i < end; i++) {
+			Maths.storeTransformationMatrix(posX[i], posY[i], posZ[i], rotX[i], rotY[i], rotZ[i], scale[i], matrices, i * 16);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package Entities;
+
+/**
+ * Logic that runs over a range of entities in an {@link EntityStore}.
+ * 
+ * The store may call a system for several disjoint ranges at once from
+ * different threads, so an implementation must only write the entries of the
+ * range it was given.
+ */
+public interface UpdateSystem {
+
+	/**
+	 * Updates the entities stored at dense indices start (inclusive) to end
+	 * (exclusive).
+	 * 
+	 * @param delta The time step in seconds.
+	 */
+	void update(EntityStore store, int start, int end, float delta);
+}
@@ -0,0 +1,47 @@
+package Shaders;
+
+import org.lwjgl.util.vector.Matrix4f;
+
+/**
+ * Shader for chunk meshes. Samples the block texture array using the
+ * per-vertex layer written by the chunk mesher, so a whole chunk draws with a
+ * single texture bound, and darkens it by the per-vertex block and sky light.
+ */
+public class ChunkShader extends ShaderProgram implements TransformShader {
+    private static final String vertexFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/chunkVertexShader.txt";
+    private static final String fragmentFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/chunkFragmentShader.txt";
+
+    private int location_transformationMatrix;
+
+    public ChunkShader() {
+        super(vertexFile, fragmentFile);
+    }
+
+    protected ChunkShader(String vertexFile, String fragmentFile) {
+        super(vertexFile, fragmentFile);
+    }
+
+    @Override
+    protected void bindAttribute() {
+        super.bindAttribute("position", 0);
+        super.bindAttribute("textureCoords", 1);
+        super.bindAttribute("layer", 2);
+        super.bindAttribute("light", 3);
+    }
+
+    @Override
+    protected void getAllUniformLocations() {
+        location_transformationMatrix = super.getUniformLocation("transformationMatrix");
+        super.bindUniformBlock(FrameUniforms.BLOCK_NAME, FrameUniforms.BINDING);
+    }
+
+    // Number of vertex attributes the meshes drawn with this shader use
+    public int getAttributeCount() {
+        return 4;
+    }
+
+    @Override
+    public void loadTransformationMatrix(Matrix4f matrix) {
+        super.loadMatrix(location_transformationMatrix, matrix);
+    }
+}
@@ -0,0 +1,102 @@
+package Shaders;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.util.vector.Matrix4f;
+
+import Entities.Camera;
+import ToolBox.Maths;
+import renderEngine.GLBackend;
+
+/**
+ * Uniform buffer holding the per-frame projection and view matrices shared by
+ * every shader program.
+ *
+ * Programs declare the std140 block below and connect it to {@link #BINDING}
+ * with {@link ShaderProgram#bindUniformBlock}, so the camera is uploaded once
+ * per frame no matter how many programs draw with it:
+ *
+ * <pre>
+ * layout(std140) uniform FrameData {
+ *     mat4 projectionMatrix;
+ *     mat4 viewMatrix;
+ * };
+ * </pre>
+ *
+ * Each matrix is only re-uploaded when it differs from the last upload. GL
+ * calls go through a {@link GLBackend}.
+ */
+public class FrameUniforms {
+
+    public static final String BLOCK_NAME = "FrameData";
+    public static final int BINDING = 0;
+
+    private static final int MATRIX_BYTES = 16 * 4;
+    private static final int PROJECTION_OFFSET = 0;
+    private static final int VIEW_OFFSET = MATRIX_BYTES;
+
+    private final GLBackend gl;
+    private final int bufferID;
+    private final FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(16);
+    private final Matrix4f viewMatrix = new Matrix4f();
+
+    private final float[] projectionShadow = new float[16];
+    private final float[] viewShadow = new float[16];
+
+    private long uploadsIssued;
+    private long uploadsSkipped;
+
+    public FrameUniforms(GLBackend gl) {
+        this.gl = gl;
+        bufferID = gl.genBuffer();
+        gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID);
+        gl.bufferData(GL31.GL_UNIFORM_BUFFER, 2 * MATRIX_BYTES, GL15.GL_DYNAMIC_DRAW);
+        gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+        gl.bindBufferBase(GL31.GL_UNIFORM_BUFFER, BINDING, bufferID);
+        Arrays.fill(projectionShadow, Float.NaN);
+        Arrays.fill(viewShadow, Float.NaN);
+    }
+
+    public void loadProjectionMatrix(Matrix4f projection) {
+        upload(PROJECTION_OFFSET, projectionShadow, projection);
+    }
+
+    // Rebuild the view matrix from the camera and upload it if the camera moved
+    public void loadViewMatrix(Camera camera) {
+        upload(VIEW_OFFSET, viewShadow, Maths.createViewMatrix(camera, viewMatrix));
+    }
+
+    public long getUploadsIssued() {
+        return uploadsIssued;
+    }
+
+    public long getUploadsSkipped() {
+        return uploadsSkipped;
+    }
+
+    public void resetCounters() {
+        uploadsIssued = 0;
+        uploadsSkipped = 0;
+    }
+
+    public void cleanUp() {
+        gl.deleteBuffer(bufferID);
+    }
+
+    private void upload(int offset, float[] shadow, Matrix4f matrix) {
+        if (!UniformShadows.updateShadow(shadow, matrix)) {
+            uploadsSkipped++;
+            return;
+        }
+        matrix.store(matrixBuffer);
+        matrixBuffer.flip();
+        gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID);
+        gl.bufferSubData(GL31.GL_UNIFORM_BUFFER, offset, matrixBuffer);
+        gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+        uploadsIssued++;
+    }
+}
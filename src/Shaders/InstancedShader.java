@@ -0,0 +1,27 @@
+package Shaders;
+
+/**
+ * Variant of {@link StaticShader} that reads the transformation matrix from a
+ * per-instance vertex attribute instead of a uniform, for use with
+ * {@link renderEngine.InstancedRenderer}.
+ */
+public class InstancedShader extends ShaderProgram {
+    private static final String vertexFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/instancedVertexShader.txt";
+    private static final String fragmentFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/fragmentShader.txt";
+
+    public InstancedShader() {
+        super(vertexFile, fragmentFile);
+    }
+
+    @Override
+    protected void bindAttribute() {
+        super.bindAttribute("position", 0);
+        super.bindAttribute("textureCoords", 1);
+        super.bindAttribute("transformationMatrix", 2);
+    }
+
+    @Override
+    protected void getAllUniformLocations() {
+        super.bindUniformBlock(FrameUniforms.BLOCK_NAME, FrameUniforms.BINDING);
+    }
+}
@@ -0,0 +1,25 @@
+package Shaders;
+
+/**
+ * Variant of {@link ChunkShader} for meshes in the packed vertex format of
+ * {@link world.PackedVertex}, which keeps the whole vertex in one 8-byte
+ * integer attribute.
+ */
+public class PackedChunkShader extends ChunkShader {
+    private static final String vertexFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/packedChunkVertexShader.txt";
+    private static final String fragmentFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/chunkFragmentShader.txt";
+
+    public PackedChunkShader() {
+        super(vertexFile, fragmentFile);
+    }
+
+    @Override
+    protected void bindAttribute() {
+        super.bindAttribute("packedVertex", 0);
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return 1;
+    }
+}
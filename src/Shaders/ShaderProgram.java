@@ -10,6 +10,7 @@ import java.nio.FloatBuffer;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector2f;
 import org.lwjgl.util.vector.Vector3f;
@@ -19,6 +20,9 @@ public abstract class ShaderProgram {
     private int programID, vertexShaderID, fragmentShaderID;
     private FloatBuffer floatBuffer = BufferUtils.createFloatBuffer(16);
 
+    // Last value uploaded to each uniform location, so identical uploads can be skipped
+    private final UniformShadows shadows = new UniformShadows();
+
     public ShaderProgram(String vertexFile, String fragmentFile) {
         programID = GL20.glCreateProgram();
         try {
@@ -48,32 +52,64 @@ public abstract class ShaderProgram {
         return GL20.glGetUniformLocation(programID, varName);
     }
 
+    // Connect a uniform block in the shaders to a uniform buffer binding point
+    protected void bindUniformBlock(String blockName, int binding) {
+        int blockIndex = GL31.glGetUniformBlockIndex(programID, blockName);
+        if (blockIndex != GL31.GL_INVALID_INDEX) {
+            GL31.glUniformBlockBinding(programID, blockIndex, binding);
+        }
+    }
+
     // Bind attribute locations
     protected void bindAttribute(String variableName, int attribute) {
         GL20.glBindAttribLocation(programID, attribute, variableName);
     }
 
-    // Load values into shader uniforms
+    // Load values into shader uniforms; values equal to the last upload are skipped
     protected void loadFloat(int location, float value) {
-        GL20.glUniform1f(location, value);
+        if (shadows.update(location, value)) {
+            GL20.glUniform1f(location, value);
+        }
     }
 
     protected void load2DVector(int location, Vector2f vector) {
-        GL20.glUniform2f(location, vector.x, vector.y);
+        if (shadows.update(location, vector.x, vector.y)) {
+            GL20.glUniform2f(location, vector.x, vector.y);
+        }
     }
 
     protected void load3DVector(int location, Vector3f vector) {
-        GL20.glUniform3f(location, vector.x, vector.y, vector.z);
+        if (shadows.update(location, vector.x, vector.y, vector.z)) {
+            GL20.glUniform3f(location, vector.x, vector.y, vector.z);
+        }
     }
 
     protected void loadMatrix(int location, Matrix4f matrix) {
-        matrix.store(floatBuffer);
-        floatBuffer.flip();
-        GL20.glUniformMatrix4(location, false, floatBuffer);
+        if (shadows.update(location, matrix)) {
+            matrix.store(floatBuffer);
+            floatBuffer.flip();
+            GL20.glUniformMatrix4(location, false, floatBuffer);
+        }
     }
 
     protected void loadBoolean(int location, boolean value) {
-        GL20.glUniform1f(location, value ? 1 : 0);
+        loadFloat(location, value ? 1 : 0);
+    }
+
+    public static long getUniformUploadsIssued() {
+        return UniformShadows.getUploadsIssued();
+    }
+
+    public static long getUniformUploadsSkipped() {
+        return UniformShadows.getUploadsSkipped();
+    }
+
+    public static void resetUniformCounters() {
+        UniformShadows.resetCounters();
+    }
+
+    public int getProgramID() {
+        return programID;
     }
 
     public void start() {
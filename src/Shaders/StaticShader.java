@@ -2,16 +2,11 @@ package Shaders;
 
 import org.lwjgl.util.vector.Matrix4f;
 
-import Entities.Camera;
-import ToolBox.Maths;
-
-public class StaticShader extends ShaderProgram {
+public class StaticShader extends ShaderProgram implements TransformShader {
     private static final String vertexFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/vertexShader.txt";
     private static final String fragmentFile = "D:/Coding/Projects/PixelPuffEngine/src/Shaders/fragmentShader.txt";
 
     private int location_transformationMatrix;
-    private int location_projectionMatrix;
-    private int location_viewMatrix;
     
     public StaticShader() {
         super(vertexFile, fragmentFile);
@@ -26,19 +21,11 @@ public class StaticShader extends ShaderProgram {
     @Override
     protected void getAllUniformLocations() {
         location_transformationMatrix = super.getUniformLocation("transformationMatrix");
-        location_projectionMatrix = super.getUniformLocation("projectionMatrix");
-        location_viewMatrix = super.getUniformLocation("viewMatrix");
+        super.bindUniformBlock(FrameUniforms.BLOCK_NAME, FrameUniforms.BINDING);
     }
 
+    @Override
     public void loadTransformationMatrix(Matrix4f matrix) {
         super.loadMatrix(location_transformationMatrix, matrix);
     }
-
-    public void loadProjectionMatrix(Matrix4f matrix) {
-        super.loadMatrix(location_projectionMatrix, matrix);
-    }
-
-	public void loadViewMatrix(Camera camera) {
-		super.loadMatrix(location_viewMatrix, Maths.createViewMatrix(camera));
-	}
 }
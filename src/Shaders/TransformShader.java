@@ -0,0 +1,14 @@
+package Shaders;
+
+import org.lwjgl.util.vector.Matrix4f;
+
+/**
+ * A shader program that takes a per-draw transformation matrix uniform, so
+ * draws using it can be queued and submitted by {@link renderEngine.RenderQueue}.
+ */
+public interface TransformShader {
+
+    int getProgramID();
+
+    void loadTransformationMatrix(Matrix4f matrix);
+}
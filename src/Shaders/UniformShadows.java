@@ -0,0 +1,123 @@
+package Shaders;
+
+import java.util.Arrays;
+
+import org.lwjgl.util.vector.Matrix4f;
+
+/**
+ * The last value uploaded to each uniform location of a program, so uploads of
+ * an unchanged value can be skipped.
+ *
+ * Every update records whether it changed the value, and the totals over all
+ * programs are reported by {@link ShaderProgram#getUniformUploadsIssued()} and
+ * {@link ShaderProgram#getUniformUploadsSkipped()}. A location of -1, which GL
+ * returns for uniforms the program does not use, never needs an upload.
+ */
+public class UniformShadows {
+
+    private static long uploadsIssued;
+    private static long uploadsSkipped;
+
+    private float[][] shadows = new float[16][];
+
+    /**
+     * @return True if the value differs from the last one and must be uploaded.
+     */
+    public boolean update(int location, float value) {
+        float[] shadow = shadow(location, 1);
+        if (shadow == null || shadow[0] == value) {
+            return skipped();
+        }
+        shadow[0] = value;
+        return issued();
+    }
+
+    public boolean update(int location, float x, float y) {
+        float[] shadow = shadow(location, 2);
+        if (shadow == null || (shadow[0] == x && shadow[1] == y)) {
+            return skipped();
+        }
+        shadow[0] = x;
+        shadow[1] = y;
+        return issued();
+    }
+
+    public boolean update(int location, float x, float y, float z) {
+        float[] shadow = shadow(location, 3);
+        if (shadow == null || (shadow[0] == x && shadow[1] == y && shadow[2] == z)) {
+            return skipped();
+        }
+        shadow[0] = x;
+        shadow[1] = y;
+        shadow[2] = z;
+        return issued();
+    }
+
+    public boolean update(int location, Matrix4f matrix) {
+        float[] shadow = shadow(location, 16);
+        if (shadow == null || !updateShadow(shadow, matrix)) {
+            return skipped();
+        }
+        return issued();
+    }
+
+    /**
+     * Copies the matrix into the shadow in column-major order.
+     *
+     * @return True if any element differed from the shadow.
+     */
+    public static boolean updateShadow(float[] shadow, Matrix4f m) {
+        if (shadow[0] == m.m00 && shadow[1] == m.m01 && shadow[2] == m.m02 && shadow[3] == m.m03
+                && shadow[4] == m.m10 && shadow[5] == m.m11 && shadow[6] == m.m12 && shadow[7] == m.m13
+                && shadow[8] == m.m20 && shadow[9] == m.m21 && shadow[10] == m.m22 && shadow[11] == m.m23
+                && shadow[12] == m.m30 && shadow[13] == m.m31 && shadow[14] == m.m32 && shadow[15] == m.m33) {
+            return false;
+        }
+        shadow[0] = m.m00; shadow[1] = m.m01; shadow[2] = m.m02; shadow[3] = m.m03;
+        shadow[4] = m.m10; shadow[5] = m.m11; shadow[6] = m.m12; shadow[7] = m.m13;
+        shadow[8] = m.m20; shadow[9] = m.m21; shadow[10] = m.m22; shadow[11] = m.m23;
+        shadow[12] = m.m30; shadow[13] = m.m31; shadow[14] = m.m32; shadow[15] = m.m33;
+        return true;
+    }
+
+    static long getUploadsIssued() {
+        return uploadsIssued;
+    }
+
+    static long getUploadsSkipped() {
+        return uploadsSkipped;
+    }
+
+    static void resetCounters() {
+        uploadsIssued = 0;
+        uploadsSkipped = 0;
+    }
+
+    private static boolean issued() {
+        uploadsIssued++;
+        return true;
+    }
+
+    private static boolean skipped() {
+        uploadsSkipped++;
+        return false;
+    }
+
+    // Returns the shadow for a location, or null if the uniform does not exist in the program
+    private float[] shadow(int location, int length) {
+        if (location < 0) {
+            return null;
+        }
+        if (location >= shadows.length) {
+            shadows = Arrays.copyOf(shadows, Math.max(location + 1, shadows.length * 2));
+        }
+        float[] shadow = shadows[location];
+        if (shadow == null) {
+            // NaN never compares equal, so the first upload always goes through
+            shadow = new float[length];
+            Arrays.fill(shadow, Float.NaN);
+            shadows[location] = shadow;
+        }
+        return shadow;
+    }
+}
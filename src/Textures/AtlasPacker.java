@@ -0,0 +1,104 @@
+package Textures;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs rectangles into a power-of-two atlas using shelves.
+ *
+ * Rectangles are placed tallest first, left to right along horizontal
+ * shelves; a new shelf is opened when a row is full. Each texture is
+ * surrounded by a padding border that {@link #compose} fills by extending the
+ * texture's edge pixels, so mipmapping and filtering do not bleed neighbouring
+ * textures into each other.
+ */
+public class AtlasPacker {
+
+    private AtlasPacker() {
+    }
+
+    /**
+     * Computes a layout for the given texture sizes.
+     *
+     * @param sizes   Width and height of each texture, keyed by name.
+     * @param padding Pixels of border kept around each texture.
+     */
+    public static TextureAtlas pack(Map<String, int[]> sizes, int padding) {
+        List<String> names = new ArrayList<>(sizes.keySet());
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int byHeight = Integer.compare(sizes.get(b)[1], sizes.get(a)[1]);
+                return byHeight != 0 ? byHeight : a.compareTo(b);
+            }
+        });
+
+        long area = 0;
+        int widest = 1;
+        for (int[] size : sizes.values()) {
+            area += (long) (size[0] + padding * 2) * (size[1] + padding * 2);
+            widest = Math.max(widest, size[0] + padding * 2);
+        }
+
+        // Start with a square that could hold everything and widen until the shelves fit
+        int width = nextPowerOfTwo(Math.max(widest, (int) Math.ceil(Math.sqrt(area))));
+        while (true) {
+            int[][] positions = new int[names.size()][];
+            int usedHeight = place(names, sizes, padding, width, positions);
+            if (usedHeight <= width) {
+                TextureAtlas atlas = new TextureAtlas(width, nextPowerOfTwo(usedHeight));
+                for (int i = 0; i < names.size(); i++) {
+                    int[] size = sizes.get(names.get(i));
+                    atlas.addRegion(names.get(i), positions[i][0], positions[i][1], size[0], size[1]);
+                }
+                return atlas;
+            }
+            width *= 2;
+        }
+    }
+
+    /**
+     * Draws the textures into a single image following the atlas layout, filling
+     * each padding border with the nearest edge pixel of its texture.
+     */
+    public static BufferedImage compose(TextureAtlas atlas, Map<String, BufferedImage> images, int padding) {
+        BufferedImage result = new BufferedImage(atlas.getWidth(), atlas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (TextureAtlas.Region region : atlas.getAllRegions()) {
+            BufferedImage image = images.get(region.getName());
+            for (int y = -padding; y < region.getHeight() + padding; y++) {
+                int sy = Math.min(Math.max(y, 0), region.getHeight() - 1);
+                for (int x = -padding; x < region.getWidth() + padding; x++) {
+                    int sx = Math.min(Math.max(x, 0), region.getWidth() - 1);
+                    result.setRGB(region.getX() + x, region.getY() + y, image.getRGB(sx, sy));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Places every rectangle on shelves of the given width, returning the height used
+    private static int place(List<String> names, Map<String, int[]> sizes, int padding, int width, int[][] positions) {
+        int shelfY = 0, shelfHeight = 0, cursorX = 0;
+        for (int i = 0; i < names.size(); i++) {
+            int[] size = sizes.get(names.get(i));
+            int w = size[0] + padding * 2, h = size[1] + padding * 2;
+            if (cursorX + w > width) {
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+                cursorX = 0;
+            }
+            positions[i] = new int[] { cursorX + padding, shelfY + padding };
+            cursorX += w;
+            shelfHeight = Math.max(shelfHeight, h);
+        }
+        return shelfY + shelfHeight;
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
@@ -0,0 +1,127 @@
+package Textures;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The layout of several textures packed into one image, as produced by
+ * {@link AtlasPacker}. Each packed texture is a {@link Region} addressed by
+ * its file name, and {@link #remapUVs(float[], String)} moves a model's
+ * texture coordinates into its region so models with different textures can
+ * be drawn with the same texture bound.
+ */
+@Getter
+public class TextureAtlas {
+
+    private final int width;
+    private final int height;
+    private final Map<String, Region> regions = new LinkedHashMap<>();
+
+    // GL texture holding the atlas image, set once it has been uploaded
+    @Setter
+    private int textureID;
+
+    public TextureAtlas(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public void addRegion(String name, int x, int y, int regionWidth, int regionHeight) {
+        regions.put(name, new Region(name, x, y, regionWidth, regionHeight,
+                (float) x / width, (float) y / height,
+                (float) (x + regionWidth) / width, (float) (y + regionHeight) / height));
+    }
+
+    public Region getRegion(String name) {
+        Region region = regions.get(name);
+        if (region == null) {
+            throw new IllegalArgumentException("Texture is not part of the atlas: " + name);
+        }
+        return region;
+    }
+
+    public Collection<Region> getAllRegions() {
+        return regions.values();
+    }
+
+    /**
+     * Maps texture coordinates in the 0 to 1 range of a single texture into
+     * that texture's region of the atlas.
+     *
+     * @return A new array holding the remapped coordinates.
+     */
+    public float[] remapUVs(float[] uvs, String name) {
+        Region region = getRegion(name);
+        float[] remapped = new float[uvs.length];
+        float du = region.u1 - region.u0, dv = region.v1 - region.v0;
+        for (int i = 0; i + 1 < uvs.length; i += 2) {
+            remapped[i] = region.u0 + uvs[i] * du;
+            remapped[i + 1] = region.v0 + uvs[i + 1] * dv;
+        }
+        return remapped;
+    }
+
+    /**
+     * Writes the atlas size and every region as one line of text.
+     */
+    public void writeTable(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println(width + " " + height);
+            for (Region region : regions.values()) {
+                writer.println(region.name + " " + region.x + " " + region.y + " " + region.width + " " + region.height);
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #writeTable(File)}.
+     */
+    public static TextureAtlas readTable(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Empty atlas table: " + file);
+            }
+            int space = line.indexOf(' ');
+            TextureAtlas atlas = new TextureAtlas(Integer.parseInt(line.substring(0, space)),
+                    Integer.parseInt(line.substring(space + 1)));
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                // Name first, then four numbers; the name itself may contain spaces
+                int[] values = new int[4];
+                int end = line.length();
+                for (int i = 3; i >= 0; i--) {
+                    int start = line.lastIndexOf(' ', end - 1);
+                    values[i] = Integer.parseInt(line.substring(start + 1, end));
+                    end = start;
+                }
+                atlas.addRegion(line.substring(0, end), values[0], values[1], values[2], values[3]);
+            }
+            return atlas;
+        }
+    }
+
+    /**
+     * The pixel rectangle of one packed texture and its texture coordinates.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Region {
+        private final String name;
+        private final int x, y, width, height;
+        private final float u0, v0, u1, v1;
+    }
+}
@@ -0,0 +1,12 @@
+package ToolBox;
+
+/**
+ * Source of monotonic time in nanoseconds, so time-driven code can be run
+ * against a {@link ManualClock} instead of the system timer.
+ */
+public interface Clock {
+
+    Clock SYSTEM = System::nanoTime;
+
+    long nanoTime();
+}
@@ -0,0 +1,157 @@
+package ToolBox;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable direct (off-heap) buffers for staging data on its way to the GPU.
+ *
+ * Direct buffers are expensive to allocate and are only freed when the garbage
+ * collector finds them, so allocating one per upload causes native memory
+ * spikes. This pool offers two ways around that:
+ *
+ * <ul>
+ * <li>{@link #scratchFloats} and {@link #scratchInts} return a growing buffer
+ * owned by the calling thread, for data that is filled and consumed
+ * immediately on the same thread.</li>
+ * <li>{@link #acquire} and {@link #release} hand out buffers that can be filled
+ * on one thread and uploaded and released on another, e.g. the staged chunk
+ * meshes of {@link world.ChunkMesh#stage()}. Released buffers are kept in
+ * power-of-two size buckets shared by all threads.</li>
+ * </ul>
+ */
+public final class DirectBufferPool {
+
+	private static final int MIN_BUCKET_SHIFT = 12; // 4 KiB
+	private static final int MAX_BUCKET_SHIFT = 26; // 64 MiB
+	private static final int MAX_BUFFERS_PER_BUCKET = 8;
+
+	private static final Bucket[] buckets = new Bucket[MAX_BUCKET_SHIFT - MIN_BUCKET_SHIFT + 1];
+
+	static {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new Bucket();
+		}
+	}
+
+	private static final ThreadLocal<ByteBuffer[]> scratch = new ThreadLocal<ByteBuffer[]>() {
+		@Override
+		protected ByteBuffer[] initialValue() {
+			return new ByteBuffer[1];
+		}
+	};
+
+	private static final AtomicLong allocations = new AtomicLong();
+	private static final AtomicLong allocatedBytes = new AtomicLong();
+	private static final AtomicLong reuses = new AtomicLong();
+
+	private DirectBufferPool() {
+	}
+
+	/**
+	 * Returns a cleared direct buffer in native byte order with its limit set to
+	 * the requested size. The capacity may be larger. Safe to call from any
+	 * thread.
+	 */
+	public static ByteBuffer acquire(int sizeBytes) {
+		int bucket = bucketOf(sizeBytes);
+		if (bucket >= 0) {
+			ByteBuffer buffer = buckets[bucket].buffers.poll();
+			if (buffer != null) {
+				buckets[bucket].size.decrementAndGet();
+				reuses.incrementAndGet();
+				buffer.clear().limit(sizeBytes);
+				return buffer;
+			}
+			ByteBuffer allocated = allocate(1 << (bucket + MIN_BUCKET_SHIFT));
+			allocated.limit(sizeBytes);
+			return allocated;
+		}
+		return allocate(sizeBytes);
+	}
+
+	/**
+	 * Returns a buffer obtained from {@link #acquire} to the pool. The buffer,
+	 * and any view of it, must not be used afterwards.
+	 */
+	public static void release(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		int bucket = bucketOf(capacity);
+		if (bucket < 0 || capacity != 1 << (bucket + MIN_BUCKET_SHIFT)) {
+			return;
+		}
+		if (buckets[bucket].size.incrementAndGet() > MAX_BUFFERS_PER_BUCKET) {
+			// Enough spares of this size already; let the GC reclaim it
+			buckets[bucket].size.decrementAndGet();
+			return;
+		}
+		buckets[bucket].buffers.offer(buffer);
+	}
+
+	/**
+	 * Returns the calling thread's scratch memory as a cleared float buffer
+	 * with its limit set to the requested count. The contents are only valid
+	 * until the next scratch request on the same thread.
+	 */
+	public static FloatBuffer scratchFloats(int count) {
+		FloatBuffer floats = scratchBytes(count * 4).asFloatBuffer();
+		floats.limit(count);
+		return floats;
+	}
+
+	/**
+	 * Int variant of {@link #scratchFloats}.
+	 */
+	public static IntBuffer scratchInts(int count) {
+		IntBuffer ints = scratchBytes(count * 4).asIntBuffer();
+		ints.limit(count);
+		return ints;
+	}
+
+	public static long getAllocations() {
+		return allocations.get();
+	}
+
+	public static long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+
+	public static long getReuses() {
+		return reuses.get();
+	}
+
+	private static ByteBuffer scratchBytes(int sizeBytes) {
+		ByteBuffer[] holder = scratch.get();
+		ByteBuffer buffer = holder[0];
+		if (buffer == null || buffer.capacity() < sizeBytes) {
+			buffer = allocate(Math.max(1 << MIN_BUCKET_SHIFT, Integer.highestOneBit(Math.max(1, sizeBytes - 1)) << 1));
+			holder[0] = buffer;
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	private static ByteBuffer allocate(int capacity) {
+		allocations.incrementAndGet();
+		allocatedBytes.addAndGet(capacity);
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+	// Index of the smallest bucket that fits the size, or -1 if none does
+	private static int bucketOf(int sizeBytes) {
+		int shift = sizeBytes <= 1 << MIN_BUCKET_SHIFT ? MIN_BUCKET_SHIFT
+				: 32 - Integer.numberOfLeadingZeros(sizeBytes - 1);
+		return shift > MAX_BUCKET_SHIFT ? -1 : shift - MIN_BUCKET_SHIFT;
+	}
+
+	// Spare buffers of one power-of-two size; the count is kept apart as queue sizes are O(n)
+	private static final class Bucket {
+		final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+		final AtomicInteger size = new AtomicInteger();
+	}
+}
@@ -0,0 +1,381 @@
+package ToolBox;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Bounding-volume hierarchy of axis-aligned boxes that supports cheap
+ * incremental updates.
+ *
+ * Each item is stored in a leaf whose box is enlarged by a margin, so small
+ * movements that stay inside the enlarged box do not touch the tree at all.
+ * Leaves are inserted next to the sibling that grows the total surface area
+ * least, and the tree is kept height-balanced with rotations so queries stay
+ * logarithmic even when items are inserted in spatial order.
+ *
+ * Nodes live in parallel arrays and are addressed by int IDs; the ID returned
+ * by {@link #insert} identifies the item for later moves and removals.
+ */
+public class DynamicAABBTree<T> {
+
+    private static final int NULL = -1;
+
+    private final float margin;
+
+    private float[] bounds;   // minX, minY, minZ, maxX, maxY, maxZ per node
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;     // 0 for leaves, -1 for free nodes
+    private Object[] items;
+
+    private int root = NULL;
+    private int freeList = NULL;
+    private int leafCount;
+
+    // Traversal stack reused between queries
+    private int[] stack = new int[64];
+
+    // Number of nodes tested against the frustum by the last query
+    private int lastNodesTested;
+
+    /**
+     * @param margin The distance each leaf box is enlarged by on every side.
+     */
+    public DynamicAABBTree(float margin) {
+        this.margin = margin;
+        allocateNodes(16);
+    }
+
+    /**
+     * Inserts an item with the given bounds.
+     *
+     * @return The ID identifying the item in this tree.
+     */
+    public int insert(T item, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int leaf = allocateNode();
+        setFatBounds(leaf, minX, minY, minZ, maxX, maxY, maxZ);
+        items[leaf] = item;
+        height[leaf] = 0;
+        insertLeaf(leaf);
+        leafCount++;
+        return leaf;
+    }
+
+    public void remove(int id) {
+        removeLeaf(id);
+        freeNode(id);
+        leafCount--;
+    }
+
+    /**
+     * Updates the bounds of an item. The tree is only restructured if the new
+     * bounds leave the enlarged box the leaf was given when it was last placed.
+     *
+     * @return True if the leaf had to be re-inserted.
+     */
+    public boolean move(int id, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int b = id * 6;
+        if (bounds[b] <= minX && bounds[b + 1] <= minY && bounds[b + 2] <= minZ
+                && bounds[b + 3] >= maxX && bounds[b + 4] >= maxY && bounds[b + 5] >= maxZ) {
+            return false;
+        }
+        removeLeaf(id);
+        setFatBounds(id, minX, minY, minZ, maxX, maxY, maxZ);
+        insertLeaf(id);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getItem(int id) {
+        return (T) items[id];
+    }
+
+    /**
+     * Reports every item whose leaf box is not completely outside the frustum.
+     * Subtrees that lie entirely inside the frustum are reported without
+     * testing their children.
+     */
+    @SuppressWarnings("unchecked")
+    public void query(Frustum frustum, Consumer<T> visitor) {
+        lastNodesTested = 0;
+        if (root == NULL) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            lastNodesTested++;
+            int result = frustum.classifyAABB(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4],
+                    bounds[b + 5]);
+            if (result == Frustum.OUTSIDE) {
+                continue;
+            }
+            if (height[node] == 0) {
+                visitor.accept((T) items[node]);
+            } else if (result == Frustum.INSIDE) {
+                reportAll(node, visitor);
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    public int size() {
+        return leafCount;
+    }
+
+    public int getHeight() {
+        return root == NULL ? 0 : height[root];
+    }
+
+    public int getLastNodesTested() {
+        return lastNodesTested;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reportAll(int node, Consumer<T> visitor) {
+        if (height[node] == 0) {
+            visitor.accept((T) items[node]);
+            return;
+        }
+        reportAll(child1[node], visitor);
+        reportAll(child2[node], visitor);
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        // Walk down to the sibling whose enlargement costs the least surface area
+        int index = root;
+        while (height[index] > 0) {
+            int c1 = child1[index], c2 = child2[index];
+            float area = surfaceArea(index, index);
+            float combinedArea = surfaceArea(index, leaf);
+            float cost = 2 * combinedArea;
+            float inheritanceCost = 2 * (combinedArea - area);
+            float cost1 = descendCost(c1, leaf) + inheritanceCost;
+            float cost2 = descendCost(c2, leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        items[newParent] = null;
+        union(newParent, sibling, leaf);
+        height[newParent] = height[sibling] + 1;
+
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refitUpwards(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+
+        if (grandParent != NULL) {
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            refitUpwards(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+        }
+    }
+
+    private void refitUpwards(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1[index], c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            union(index, c1, c2);
+            index = parent[index];
+        }
+    }
+
+    // Rotates the subtree at A if its children's heights differ by more than one
+    private int balance(int a) {
+        if (height[a] < 2) {
+            return a;
+        }
+        int b = child1[a], c = child2[a];
+        int difference = height[c] - height[b];
+
+        if (difference > 1) {
+            // Rotate C up
+            int f = child1[c], g = child2[c];
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                union(a, b, g);
+                union(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                union(a, b, f);
+                union(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+
+        if (difference < -1) {
+            // Rotate B up
+            int d = child1[b], e = child2[b];
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                union(a, c, e);
+                union(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                union(a, c, d);
+                union(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+        return a;
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    private float descendCost(int child, int leaf) {
+        if (height[child] == 0) {
+            return surfaceArea(child, leaf);
+        }
+        return surfaceArea(child, leaf) - surfaceArea(child, child);
+    }
+
+    // Surface area of the box enclosing nodes a and b
+    private float surfaceArea(int a, int b) {
+        int i = a * 6, j = b * 6;
+        float dx = Math.max(bounds[i + 3], bounds[j + 3]) - Math.min(bounds[i], bounds[j]);
+        float dy = Math.max(bounds[i + 4], bounds[j + 4]) - Math.min(bounds[i + 1], bounds[j + 1]);
+        float dz = Math.max(bounds[i + 5], bounds[j + 5]) - Math.min(bounds[i + 2], bounds[j + 2]);
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private void union(int target, int a, int b) {
+        int t = target * 6, i = a * 6, j = b * 6;
+        bounds[t] = Math.min(bounds[i], bounds[j]);
+        bounds[t + 1] = Math.min(bounds[i + 1], bounds[j + 1]);
+        bounds[t + 2] = Math.min(bounds[i + 2], bounds[j + 2]);
+        bounds[t + 3] = Math.max(bounds[i + 3], bounds[j + 3]);
+        bounds[t + 4] = Math.max(bounds[i + 4], bounds[j + 4]);
+        bounds[t + 5] = Math.max(bounds[i + 5], bounds[j + 5]);
+    }
+
+    private void setFatBounds(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int b = node * 6;
+        bounds[b] = minX - margin;
+        bounds[b + 1] = minY - margin;
+        bounds[b + 2] = minZ - margin;
+        bounds[b + 3] = maxX + margin;
+        bounds[b + 4] = maxY + margin;
+        bounds[b + 5] = maxZ + margin;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            allocateNodes(parent.length * 2);
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        items[node] = null;
+        freeList = node;
+    }
+
+    private void allocateNodes(int capacity) {
+        int old = parent == null ? 0 : parent.length;
+        bounds = bounds == null ? new float[capacity * 6] : Arrays.copyOf(bounds, capacity * 6);
+        parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+        child1 = child1 == null ? new int[capacity] : Arrays.copyOf(child1, capacity);
+        child2 = child2 == null ? new int[capacity] : Arrays.copyOf(child2, capacity);
+        height = height == null ? new int[capacity] : Arrays.copyOf(height, capacity);
+        items = items == null ? new Object[capacity] : Arrays.copyOf(items, capacity);
+
+        // Chain the new nodes onto the free list
+        for (int i = capacity - 1; i >= old; i--) {
+            parent[i] = freeList;
+            height[i] = -1;
+            freeList = i;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ToolBox;
+
+import org.lwjgl.util.vector.Matrix4f;
+
+/**
+ * The six clipping planes of a view frustum, extracted from the combined
+ * projection and view matrix.
+ *
+ * Planes are stored as (a, b, c, d) with the normal pointing into the frustum,
+ * so a point is inside a plane when a*x + b*y + c*z + d >= 0.
+ */
+public class Frustum {
+
+    public static final int OUTSIDE = 0;
+    public static final int INTERSECTS = 1;
+    public static final int INSIDE = 2;
+
+    private final float[] planes = new float[6 * 4];
+    private final Matrix4f clip = new Matrix4f();
+
+    /**
+     * Recomputes the planes for the given projection and view matrices.
+     */
+    public void update(Matrix4f projection, Matrix4f view) {
+        Matrix4f.mul(projection, view, clip);
+
+        // Matrix fields are mColumnRow, so row i is (m0i, m1i, m2i, m3i)
+        setPlane(0, clip.m03 + clip.m00, clip.m13 + clip.m10, clip.m23 + clip.m20, clip.m33 + clip.m30); // Left
+        setPlane(1, clip.m03 - clip.m00, clip.m13 - clip.m10, clip.m23 - clip.m20, clip.m33 - clip.m30); // Right
+        setPlane(2, clip.m03 + clip.m01, clip.m13 + clip.m11, clip.m23 + clip.m21, clip.m33 + clip.m31); // Bottom
+        setPlane(3, clip.m03 - clip.m01, clip.m13 - clip.m11, clip.m23 - clip.m21, clip.m33 - clip.m31); // Top
+        setPlane(4, clip.m03 + clip.m02, clip.m13 + clip.m12, clip.m23 + clip.m22, clip.m33 + clip.m32); // Near
+        setPlane(5, clip.m03 - clip.m02, clip.m13 - clip.m12, clip.m23 - clip.m22, clip.m33 - clip.m32); // Far
+    }
+
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        for (int i = 0; i < 24; i += 4) {
+            if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Classifies an axis-aligned box against the frustum.
+     *
+     * @return {@link #OUTSIDE}, {@link #INTERSECTS} or {@link #INSIDE}.
+     */
+    public int classifyAABB(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int result = INSIDE;
+        for (int i = 0; i < 24; i += 4) {
+            float a = planes[i], b = planes[i + 1], c = planes[i + 2], d = planes[i + 3];
+            // Corner furthest along the plane normal, then the one furthest against it
+            float far = a * (a > 0 ? maxX : minX) + b * (b > 0 ? maxY : minY) + c * (c > 0 ? maxZ : minZ) + d;
+            if (far < 0) {
+                return OUTSIDE;
+            }
+            float near = a * (a > 0 ? minX : maxX) + b * (b > 0 ? minY : maxY) + c * (c > 0 ? minZ : maxZ) + d;
+            if (near < 0) {
+                result = INTERSECTS;
+            }
+        }
+        return result;
+    }
+
+    public boolean intersectsAABB(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return classifyAABB(minX, minY, minZ, maxX, maxY, maxZ) != OUTSIDE;
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d) {
+        float length = (float) Math.sqrt(a * a + b * b + c * c);
+        int i = plane * 4;
+        planes[i] = a / length;
+        planes[i + 1] = b / length;
+        planes[i + 2] = c / length;
+        planes[i + 3] = d / length;
+    }
+}
@@ -0,0 +1,86 @@
+package ToolBox;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue for handing work from many producer threads to a
+ * single consumer thread (typically the render thread).
+ *
+ * Each slot carries a sequence number telling producers and the consumer
+ * whether it is free or filled, so neither side ever takes a lock. When the
+ * queue is full {@link #offer(Object)} fails instead of blocking, and the
+ * producer decides how to back off.
+ */
+public class HandoffQueue<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    // Only touched by the consumer thread
+    private long head;
+
+    public HandoffQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        buffer = new AtomicReferenceArray<E>(size);
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element to the queue. Safe to call from any number of threads.
+     *
+     * @return False if the queue is full.
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called from the consumer thread.
+     *
+     * @return The element, or null if the queue is empty.
+     */
+    public E poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return element;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Only exact on the consumer thread; other threads get an estimate
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
@@ -0,0 +1,159 @@
+package ToolBox;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive longs to primitive ints, for hot
+ * paths where boxing every key into a HashMap&lt;Long, Integer&gt; would cost an
+ * allocation per lookup.
+ */
+public class LongIntHashMap {
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private final int missingValue;
+
+    /**
+     * @param expectedSize The number of entries to size the table for.
+     * @param missingValue The value {@link #get(long)} returns for absent keys.
+     */
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        this.missingValue = missingValue;
+    }
+
+    public int get(long key) {
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            if (!used[i]) {
+                return missingValue;
+            }
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the value stored for the key, inserting the given value first if
+     * the key is absent.
+     */
+    public int putIfAbsent(long key, int value) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return value;
+    }
+
+    /**
+     * Stores the value for the key, replacing any previous value.
+     *
+     * @return The previous value, or the missing value if the key was absent.
+     */
+    public int put(long key, int value) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return The removed value, or the missing value if the key was absent.
+     */
+    public int remove(long key) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        int capacity = keys.length * 2;
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldUsed[j]) {
+                int i = slot(oldKeys[j]);
+                while (used[i]) {
+                    i = (i + 1) & mask;
+                }
+                used[i] = true;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    // Backward-shift deletion keeps every probe chain unbroken without tombstones
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (!used[i]) {
+                break;
+            }
+            int home = slot(keys[i]);
+            // Move the entry if its home slot is not cyclically within (gap, i]
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        used[gap] = false;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
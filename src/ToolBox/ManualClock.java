@@ -0,0 +1,31 @@
+package ToolBox;
+
+/**
+ * A {@link Clock} that only moves when told to. Safe to read from other
+ * threads while it is being advanced.
+ */
+public class ManualClock implements Clock {
+
+    private volatile long now;
+
+    public ManualClock() {
+        this(0);
+    }
+
+    public ManualClock(long startNanos) {
+        this.now = startNanos;
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    public synchronized void advance(long nanos) {
+        now += nanos;
+    }
+
+    public synchronized void set(long nanos) {
+        now = nanos;
+    }
+}
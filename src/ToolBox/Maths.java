@@ -1,5 +1,7 @@
 package ToolBox;
 
+import java.nio.FloatBuffer;
+
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 
@@ -32,4 +34,103 @@ public class Maths {
         Matrix4f.translate(new Vector3f(-camera.getPosition().x, -camera.getPosition().y, -camera.getPosition().z), matrix, matrix);
         return matrix;
     }
+
+    // Column-major scratch matrix per thread for the Matrix4f and FloatBuffer variants
+    private static final ThreadLocal<float[]> SCRATCH = ThreadLocal.withInitial(() -> new float[16]);
+
+    /**
+     * Allocation-free version of {@link #createTransformationMatrix(Vector3f, float, float, float, float)}.
+     * Builds translation * rotX * rotY * rotZ * scale directly from the sines and
+     * cosines of the three angles and writes it into the caller's matrix.
+     *
+     * @return The destination matrix.
+     */
+    public static Matrix4f createTransformationMatrix(Vector3f translation, float rx, float ry, float rz, float scale, Matrix4f dest) {
+        float[] m = SCRATCH.get();
+        storeTransformationMatrix(translation.x, translation.y, translation.z, rx, ry, rz, scale, m, 0);
+        return load(m, dest);
+    }
+
+    /**
+     * Writes the same matrix as {@link #createTransformationMatrix(Vector3f, float, float, float, float, Matrix4f)}
+     * into a float array in column-major order, starting at the given offset.
+     */
+    public static void storeTransformationMatrix(float x, float y, float z, float rx, float ry, float rz, float scale, float[] dest, int offset) {
+        storeRotation(rx, ry, rz, scale, dest, offset);
+        dest[offset + 12] = x;
+        dest[offset + 13] = y;
+        dest[offset + 14] = z;
+        dest[offset + 15] = 1;
+    }
+
+    /**
+     * Same as {@link #storeTransformationMatrix(float, float, float, float, float, float, float, float[], int)}
+     * but appends the 16 floats to a buffer at its current position.
+     */
+    public static void storeTransformationMatrix(Vector3f translation, float rx, float ry, float rz, float scale, FloatBuffer dest) {
+        float[] m = SCRATCH.get();
+        storeTransformationMatrix(translation.x, translation.y, translation.z, rx, ry, rz, scale, m, 0);
+        dest.put(m, 0, 16);
+    }
+
+    /**
+     * Allocation-free version of {@link #createViewMatrix(Camera)}: rotX * rotY *
+     * rotZ * translate(-position), written into the caller's matrix.
+     *
+     * @return The destination matrix.
+     */
+    public static Matrix4f createViewMatrix(Camera camera, Matrix4f dest) {
+        float[] m = SCRATCH.get();
+        storeRotation(camera.getRotX(), camera.getRotY(), camera.getRotZ(), 1, m, 0);
+
+        // The translation is applied first, so it is rotated along with everything else
+        Vector3f p = camera.getPosition();
+        m[12] = -(m[0] * p.x + m[4] * p.y + m[8] * p.z);
+        m[13] = -(m[1] * p.x + m[5] * p.y + m[9] * p.z);
+        m[14] = -(m[2] * p.x + m[6] * p.y + m[10] * p.z);
+        m[15] = 1;
+        return load(m, dest);
+    }
+
+    // Writes the first three columns of rotX * rotY * rotZ * scale in column-major order
+    private static void storeRotation(float rx, float ry, float rz, float scale, float[] dest, int offset) {
+        double ax = Math.toRadians(rx), ay = Math.toRadians(ry), az = Math.toRadians(rz);
+        float sx = (float) Math.sin(ax), cx = (float) Math.cos(ax);
+        float sy = (float) Math.sin(ay), cy = (float) Math.cos(ay);
+        float sz = (float) Math.sin(az), cz = (float) Math.cos(az);
+
+        dest[offset] = cy * cz * scale;
+        dest[offset + 1] = (sx * sy * cz + cx * sz) * scale;
+        dest[offset + 2] = (-cx * sy * cz + sx * sz) * scale;
+        dest[offset + 3] = 0;
+        dest[offset + 4] = -cy * sz * scale;
+        dest[offset + 5] = (-sx * sy * sz + cx * cz) * scale;
+        dest[offset + 6] = (cx * sy * sz + sx * cz) * scale;
+        dest[offset + 7] = 0;
+        dest[offset + 8] = sy * scale;
+        dest[offset + 9] = -sx * cy * scale;
+        dest[offset + 10] = cx * cy * scale;
+        dest[offset + 11] = 0;
+    }
+
+    // Copies a column-major array into a matrix, whose fields are mColumnRow
+    private static Matrix4f load(float[] m, Matrix4f dest) {
+        dest.m00 = m[0];
+        dest.m01 = m[1];
+        dest.m02 = m[2];
+        dest.m03 = m[3];
+        dest.m10 = m[4];
+        dest.m11 = m[5];
+        dest.m12 = m[6];
+        dest.m13 = m[7];
+        dest.m20 = m[8];
+        dest.m21 = m[9];
+        dest.m22 = m[10];
+        dest.m23 = m[11];
+        dest.m30 = m[12];
+        dest.m31 = m[13];
+        dest.m32 = m[14];
+        dest.m33 = m[15];
+        return dest;
+    }
 }
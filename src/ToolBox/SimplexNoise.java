@@ -0,0 +1,204 @@
+package ToolBox;
+
+import java.util.Random;
+
+/**
+ * Seeded 2D and 3D simplex noise, returning values in roughly [-1, 1].
+ *
+ * Besides the single-point methods there are batched versions that evaluate
+ * many points at once. They run in two passes over flat arrays: a pure
+ * arithmetic pass that finds each point's simplex cell and offsets, which the
+ * JIT can unroll and vectorize, followed by the gradient lookups. Both paths
+ * perform the same float operations, so the batched results are bit-identical
+ * to the single-point ones.
+ *
+ * An instance only holds its permutation table and can be shared between
+ * threads; the batch scratch arrays are per thread.
+ */
+public class SimplexNoise {
+
+    private static final float F2 = 0.36602540378f; // (sqrt(3) - 1) / 2
+    private static final float G2 = 0.21132486540f; // (3 - sqrt(3)) / 6
+    private static final float F3 = 1f / 3f;
+    private static final float G3 = 1f / 6f;
+
+    // Edge midpoints of a cube; 2D noise uses their x and y components
+    private static final float[] GRADIENTS = {
+            1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1, 0,
+            1, 0, 1, -1, 0, 1, 1, 0, -1, -1, 0, -1,
+            0, 1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1 };
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final int[] perm = new int[512];
+
+    public SimplexNoise(long seed) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = 255; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = table[i];
+            table[i] = table[j];
+            table[j] = swap;
+        }
+        for (int i = 0; i < 512; i++) {
+            perm[i] = table[i & 255];
+        }
+    }
+
+    public float noise(float x, float y) {
+        float s = (x + y) * F2;
+        int i = fastFloor(x + s);
+        int j = fastFloor(y + s);
+        float t = (i + j) * G2;
+        return corners(i, j, x - (i - t), y - (j - t));
+    }
+
+    public float noise(float x, float y, float z) {
+        float s = (x + y + z) * F3;
+        int i = fastFloor(x + s);
+        int j = fastFloor(y + s);
+        int k = fastFloor(z + s);
+        float t = (i + j + k) * G3;
+        return corners(i, j, k, x - (i - t), y - (j - t), z - (k - t));
+    }
+
+    /**
+     * Evaluates 2D noise at count points, writing the results to out.
+     */
+    public void noise(float[] xs, float[] ys, float[] out, int count) {
+        Scratch scratch = SCRATCH.get().ensure(count);
+        int[] ci = scratch.i, cj = scratch.j;
+        float[] dx = scratch.x, dy = scratch.y;
+
+        for (int n = 0; n < count; n++) {
+            float x = xs[n], y = ys[n];
+            float s = (x + y) * F2;
+            int i = fastFloor(x + s);
+            int j = fastFloor(y + s);
+            float t = (i + j) * G2;
+            ci[n] = i;
+            cj[n] = j;
+            dx[n] = x - (i - t);
+            dy[n] = y - (j - t);
+        }
+        for (int n = 0; n < count; n++) {
+            out[n] = corners(ci[n], cj[n], dx[n], dy[n]);
+        }
+    }
+
+    /**
+     * Evaluates 3D noise at count points, writing the results to out.
+     */
+    public void noise(float[] xs, float[] ys, float[] zs, float[] out, int count) {
+        Scratch scratch = SCRATCH.get().ensure(count);
+        int[] ci = scratch.i, cj = scratch.j, ck = scratch.k;
+        float[] dx = scratch.x, dy = scratch.y, dz = scratch.z;
+
+        for (int n = 0; n < count; n++) {
+            float x = xs[n], y = ys[n], z = zs[n];
+            float s = (x + y + z) * F3;
+            int i = fastFloor(x + s);
+            int j = fastFloor(y + s);
+            int k = fastFloor(z + s);
+            float t = (i + j + k) * G3;
+            ci[n] = i;
+            cj[n] = j;
+            ck[n] = k;
+            dx[n] = x - (i - t);
+            dy[n] = y - (j - t);
+            dz[n] = z - (k - t);
+        }
+        for (int n = 0; n < count; n++) {
+            out[n] = corners(ci[n], cj[n], ck[n], dx[n], dy[n], dz[n]);
+        }
+    }
+
+    // Sums the contributions of the three corners of the 2D simplex containing the point
+    private float corners(int i, int j, float x0, float y0) {
+        int i1 = x0 > y0 ? 1 : 0;
+        int j1 = 1 - i1;
+        float x1 = x0 - i1 + G2, y1 = y0 - j1 + G2;
+        float x2 = x0 - 1 + 2 * G2, y2 = y0 - 1 + 2 * G2;
+
+        int ii = i & 255, jj = j & 255;
+        return 70 * (corner(perm[ii + perm[jj]], x0, y0)
+                + corner(perm[ii + i1 + perm[jj + j1]], x1, y1)
+                + corner(perm[ii + 1 + perm[jj + 1]], x2, y2));
+    }
+
+    private static float corner(int hash, float x, float y) {
+        float t = 0.5f - x * x - y * y;
+        if (t < 0) {
+            return 0;
+        }
+        int g = (hash % 12) * 3;
+        t *= t;
+        return t * t * (GRADIENTS[g] * x + GRADIENTS[g + 1] * y);
+    }
+
+    // Sums the contributions of the four corners of the 3D simplex containing the point
+    private float corners(int i, int j, int k, float x0, float y0, float z0) {
+        int i1, j1, k1, i2, j2, k2;
+        if (x0 >= y0) {
+            if (y0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            } else if (x0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 0; k2 = 1;
+            } else {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 1; j2 = 0; k2 = 1;
+            }
+        } else {
+            if (y0 < z0) {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 0; j2 = 1; k2 = 1;
+            } else if (x0 < z0) {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 0; j2 = 1; k2 = 1;
+            } else {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            }
+        }
+
+        int ii = i & 255, jj = j & 255, kk = k & 255;
+        return 32 * (corner(perm[ii + perm[jj + perm[kk]]], x0, y0, z0)
+                + corner(perm[ii + i1 + perm[jj + j1 + perm[kk + k1]]], x0 - i1 + G3, y0 - j1 + G3, z0 - k1 + G3)
+                + corner(perm[ii + i2 + perm[jj + j2 + perm[kk + k2]]], x0 - i2 + 2 * G3, y0 - j2 + 2 * G3,
+                        z0 - k2 + 2 * G3)
+                + corner(perm[ii + 1 + perm[jj + 1 + perm[kk + 1]]], x0 - 1 + 3 * G3, y0 - 1 + 3 * G3,
+                        z0 - 1 + 3 * G3));
+    }
+
+    private static float corner(int hash, float x, float y, float z) {
+        float t = 0.6f - x * x - y * y - z * z;
+        if (t < 0) {
+            return 0;
+        }
+        int g = (hash % 12) * 3;
+        t *= t;
+        return t * t * (GRADIENTS[g] * x + GRADIENTS[g + 1] * y + GRADIENTS[g + 2] * z);
+    }
+
+    private static int fastFloor(float value) {
+        int truncated = (int) value;
+        return value < truncated ? truncated - 1 : truncated;
+    }
+
+    private static class Scratch {
+        int[] i = new int[0], j = new int[0], k = new int[0];
+        float[] x = new float[0], y = new float[0], z = new float[0];
+
+        Scratch ensure(int count) {
+            if (i.length < count) {
+                i = new int[count];
+                j = new int[count];
+                k = new int[count];
+                x = new float[count];
+                y = new float[count];
+                z = new float[count];
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lwjgl.opengl.GL15;
+
+import ToolBox.Clock;
+import models.RawModel;
+import renderEngine.BufferPool;
+import renderEngine.BufferPool.PooledBuffer;
+import renderEngine.ChunkModelUploader;
+import renderEngine.CountingGLBackend;
+import renderEngine.CountingGLBackend.Call;
+import renderEngine.GpuMemoryTracker;
+import renderEngine.GpuMemoryTracker.Category;
+import renderEngine.Loader;
+import world.Blocks;
+import world.Chunk;
+import world.ChunkEditTracker;
+import world.ChunkMeshScheduler;
+import world.LightEngine;
+import world.MeshUploader;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Measures the path from a block edit to its uploaded mesh on lit, generated
+ * terrain: single digs and placements, and explosions, go through a
+ * {@link ChunkEditTracker}, are meshed on a worker pool and uploaded by a
+ * {@link ChunkModelUploader} within a per-frame budget. Reports the
+ * edit-to-upload latency, the bytes uploaded per edit, how many uploads
+ * patched the chunk's existing buffers, and the GL buffer calls. Uploads go
+ * through a headless stand-in for the {@link Loader} whose buffers come from
+ * a {@link BufferPool} on a recording {@link CountingGLBackend}, and which
+ * patches a model when the new data fits its buffers, as the Loader does.
+ *
+ * Usage: ChunkEditBenchmark [rounds] [frames per round] [edits per frame]
+ */
+public class ChunkEditBenchmark {
+
+	private static final int RADIUS = 4;
+	private static final int HEIGHT = 6;
+	private static final long UPLOAD_BUDGET_NANOS = 2000000;
+	private static final int EXPLOSION_EVERY = 10;
+	private static final int EXPLOSION_RADIUS = 4;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int editsPerFrame = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		World world = new World();
+		new TerrainGenerator(42).generate(world, -RADIUS, 0, -RADIUS, RADIUS - 1, HEIGHT - 1, RADIUS - 1,
+				ForkJoinPool.commonPool());
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		world.getChunks().forEach(chunks::add);
+
+		CountingGLBackend gl = new CountingGLBackend(null);
+		ChunkModelUploader models = new ChunkModelUploader(new HeadlessLoader(gl));
+		final MeshUploader[] uploader = new MeshUploader[1];
+		ChunkMeshScheduler scheduler = new ChunkMeshScheduler(world, (key, mesh) -> uploader[0].upload(key, mesh));
+		ChunkEditTracker tracker = new ChunkEditTracker(world, scheduler, null, Clock.SYSTEM);
+		uploader[0] = tracker.trackUploads(models);
+		LightEngine light = new LightEngine(world, tracker);
+		tracker.setLightEngine(light);
+		light.lightChunks(chunks, null);
+
+		for (Chunk chunk : chunks) {
+			scheduler.schedule(chunk);
+		}
+		drain(scheduler);
+
+		Random random = new Random(6);
+		int span = RADIUS * Chunk.SIZE;
+		for (int round = 0; round < rounds; round++) {
+			long editsBefore = tracker.getEdits(), scheduledBefore = tracker.getChunksScheduled();
+			long samplesBefore = tracker.getLatencySamples(), latencyBefore = tracker.getTotalLatencyNanos();
+			long bytesBefore = models.getBytesUploaded(), patchedBefore = models.getPatchedUploads();
+			long newBefore = models.getNewUploads();
+			gl.resetCounts();
+			int uploadFrames = 0;
+
+			for (int frame = 0; frame < frames; frame++) {
+				if (frame % EXPLOSION_EVERY == EXPLOSION_EVERY - 1) {
+					explode(tracker, world, random.nextInt(span * 2) - span, random.nextInt(span * 2) - span);
+				} else {
+					for (int e = 0; e < editsPerFrame; e++) {
+						int x = random.nextInt(span * 2) - span, z = random.nextInt(span * 2) - span;
+						int top = surface(world, x, z);
+						if (random.nextBoolean()) {
+							tracker.setBlock(x, top, z, Blocks.AIR);
+						} else {
+							tracker.setBlock(x, top + 1, z, Blocks.DIRT);
+						}
+					}
+				}
+				tracker.flush();
+				uploadFrames += drain(scheduler);
+			}
+
+			long edits = tracker.getEdits() - editsBefore;
+			long samples = tracker.getLatencySamples() - samplesBefore;
+			long patched = models.getPatchedUploads() - patchedBefore, created = models.getNewUploads() - newBefore;
+			System.out.printf("round %d: %d edits, %.2f chunks re-meshed per flush | latency avg %.2f ms over %d uploads, "
+					+ "%.1f frames of %d ms per flush | %.0f bytes uploaded per edit | %d patched, %d new uploads | %s%n",
+					round, edits, (double) (tracker.getChunksScheduled() - scheduledBefore) / frames,
+					(tracker.getTotalLatencyNanos() - latencyBefore) / 1e6 / Math.max(1, samples), samples,
+					(double) uploadFrames / frames, UPLOAD_BUDGET_NANOS / 1000000,
+					(double) (models.getBytesUploaded() - bytesBefore) / edits, patched, created,
+					bufferCalls(gl));
+		}
+		System.out.printf("max latency %.2f ms%n", tracker.getMaxLatencyNanos() / 1e6);
+		scheduler.shutdown();
+	}
+
+	// Uploads within the frame budget until everything scheduled is uploaded; returns the frames it took
+	private static int drain(ChunkMeshScheduler scheduler) {
+		int frames = 0;
+		while (scheduler.getPendingCount() > 0) {
+			scheduler.drainUploads(UPLOAD_BUDGET_NANOS);
+			frames++;
+			Thread.yield();
+		}
+		return frames;
+	}
+
+	private static void explode(ChunkEditTracker tracker, World world, int cx, int cz) {
+		int cy = surface(world, cx, cz);
+		int r = EXPLOSION_RADIUS;
+		for (int y = -r; y <= r; y++) {
+			for (int z = -r; z <= r; z++) {
+				for (int x = -r; x <= r; x++) {
+					if (x * x + y * y + z * z <= r * r) {
+						tracker.setBlock(cx + x, cy + y, cz + z, Blocks.AIR);
+					}
+				}
+			}
+		}
+	}
+
+	// Height of the highest block in the column, or 0 if there is none
+	private static int surface(World world, int x, int z) {
+		for (int y = HEIGHT * Chunk.SIZE - 1; y > 0; y--) {
+			if (world.getBlock(x, y, z) != Blocks.AIR) {
+				return y;
+			}
+		}
+		return 0;
+	}
+
+	private static String bufferCalls(CountingGLBackend gl) {
+		return "GL gen " + gl.getCount(Call.GEN_BUFFER) + ", allocate " + gl.getCount(Call.BUFFER_DATA)
+				+ ", sub-data " + gl.getCount(Call.BUFFER_SUB_DATA) + ", delete " + gl.getCount(Call.DELETE_BUFFER);
+	}
+
+	/**
+	 * Handles the staged uploads ChunkModelUploader makes without a GL
+	 * context: one vertex and one index buffer per model from a pool on the
+	 * recording backend, patched with sub-data when the new data fits.
+	 */
+	private static class HeadlessLoader extends Loader {
+
+		private final CountingGLBackend gl;
+		private final BufferPool pool;
+		private final Map<Integer, PooledBuffer[]> buffers = new HashMap<Integer, PooledBuffer[]>();
+		private ByteBuffer indexBytes = ByteBuffer.allocateDirect(0);
+		private int nextVao = 1;
+
+		HeadlessLoader(CountingGLBackend gl) {
+			this.gl = gl;
+			this.pool = new BufferPool(gl, new GpuMemoryTracker(), 64L * 1024 * 1024);
+		}
+
+		@Override
+		public RawModel loadInterleavedToVAO(ByteBuffer vertices, IntBuffer indices, int... components) {
+			return load(vertices, indices);
+		}
+
+		@Override
+		public RawModel loadPackedToVAO(ByteBuffer packedVertices, IntBuffer indices) {
+			return load(packedVertices, indices);
+		}
+
+		@Override
+		public boolean updateInterleavedVAO(RawModel model, ByteBuffer vertices, IntBuffer indices, int... components) {
+			return update(model, vertices, indices);
+		}
+
+		@Override
+		public boolean updatePackedVAO(RawModel model, ByteBuffer packedVertices, IntBuffer indices) {
+			return update(model, packedVertices, indices);
+		}
+
+		@Override
+		public void release(RawModel model) {
+			PooledBuffer[] released = buffers.remove(model.getVaoID());
+			if (released != null) {
+				pool.release(released[0]);
+				pool.release(released[1]);
+			}
+		}
+
+		private RawModel load(ByteBuffer vertices, IntBuffer indices) {
+			PooledBuffer[] created = {
+					pool.acquire(GL15.GL_ARRAY_BUFFER, vertices.remaining(), Category.VERTEX_BUFFERS),
+					pool.acquire(GL15.GL_ELEMENT_ARRAY_BUFFER, indices.remaining() * 4, Category.INDEX_BUFFERS) };
+			write(created, vertices, indices);
+			int vao = nextVao++;
+			buffers.put(vao, created);
+			return new RawModel(vao, indices.remaining(), Chunk.SIZE);
+		}
+
+		private boolean update(RawModel model, ByteBuffer vertices, IntBuffer indices) {
+			PooledBuffer[] existing = buffers.get(model.getVaoID());
+			if (existing == null || vertices.remaining() > existing[0].getCapacity()
+					|| indices.remaining() * 4 > existing[1].getCapacity()) {
+				return false;
+			}
+			write(existing, vertices, indices);
+			model.setVertexCount(indices.remaining());
+			return true;
+		}
+
+		// The backend takes no int data, so the indices are copied as bytes the way the driver would copy them
+		private void write(PooledBuffer[] target, ByteBuffer vertices, IntBuffer indices) {
+			int indexSize = indices.remaining() * 4;
+			if (indexBytes.capacity() < indexSize) {
+				indexBytes = ByteBuffer.allocateDirect(indexSize).order(ByteOrder.nativeOrder());
+			}
+			indexBytes.clear();
+			indexBytes.asIntBuffer().put(indices.duplicate());
+			indexBytes.limit(indexSize);
+
+			gl.bindBuffer(GL15.GL_ARRAY_BUFFER, target[0].getBufferID());
+			gl.bufferSubData(GL15.GL_ARRAY_BUFFER, 0, vertices);
+			gl.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, target[1].getBufferID());
+			gl.bufferSubData(GL15.GL_ELEMENT_ARRAY_BUFFER, 0, indexBytes);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import world.Blocks;
+import world.Chunk;
+import world.ChunkMesh;
+import world.ChunkMesher;
+import world.LightEngine;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Measures {@link ChunkMesher} on lit, generated terrain: the triangles the
+ * greedy merge produces against one quad per visible block face, and the time
+ * and heap each mesh costs in the float and the packed vertex format. Blocks
+ * and light are captured once up front, as the mesh scheduler does before
+ * handing them to a worker. The first rounds warm up the JIT.
+ *
+ * Usage: ChunkMesherBenchmark [radius in chunks] [rounds]
+ */
+public class ChunkMesherBenchmark {
+
+	private static final int PADDED = Chunk.SIZE + 2;
+
+	public static void main(String[] args) {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+		World world = new World();
+		TerrainGenerator generator = new TerrainGenerator(42);
+		for (int x = -radius; x < radius; x++) {
+			for (int z = -radius; z < radius; z++) {
+				for (int y = 0; y < 6; y++) {
+					generator.generate(world.getOrCreateChunk(x, y, z));
+				}
+			}
+		}
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		world.getChunks().forEach(chunks::add);
+		new LightEngine(world, null).lightChunks(chunks, null);
+
+		List<int[]> blocks = new ArrayList<int[]>();
+		List<byte[]> light = new ArrayList<byte[]>();
+		long naiveTriangles = 0;
+		for (Chunk chunk : chunks) {
+			int[] captured = ChunkMesher.capture(chunk, world, null);
+			blocks.add(captured);
+			light.add(ChunkMesher.captureLight(chunk, world, null));
+			naiveTriangles += visibleFaces(captured) * 2L;
+		}
+
+		ChunkMesher floats = new ChunkMesher(false), packed = new ChunkMesher(true);
+		for (int round = 0; round < rounds; round++) {
+			long triangles = 0, floatBytes = 0, packedBytes = 0;
+			long allocatedBefore = Measure.allocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < blocks.size(); i++) {
+				ChunkMesh mesh = floats.mesh(blocks.get(i), light.get(i));
+				triangles += mesh.getTriangleCount();
+				floatBytes += mesh.getUploadBytes();
+			}
+			long floatNanos = System.nanoTime() - start;
+			long floatAllocated = Measure.allocatedBytes() - allocatedBefore;
+
+			allocatedBefore = Measure.allocatedBytes();
+			start = System.nanoTime();
+			for (int i = 0; i < blocks.size(); i++) {
+				packedBytes += packed.mesh(blocks.get(i), light.get(i)).getUploadBytes();
+			}
+			long packedNanos = System.nanoTime() - start;
+			long packedAllocated = Measure.allocatedBytes() - allocatedBefore;
+
+			System.out.printf("round %d: %d chunks, %d triangles (%.1f%% of %d per face)"
+					+ " | float %.1f us/chunk, %d KiB upload, %d KiB heap"
+					+ " | packed %.1f us/chunk, %d KiB upload, %d KiB heap%n", round, blocks.size(), triangles,
+					triangles * 100.0 / naiveTriangles, naiveTriangles, floatNanos / 1e3 / blocks.size(),
+					floatBytes / 1024, floatAllocated / 1024, packedNanos / 1e3 / blocks.size(), packedBytes / 1024,
+					packedAllocated / 1024);
+		}
+	}
+
+	// Counts the block faces the mesher keeps before merging: those not against an opaque or identical block
+	private static int visibleFaces(int[] padded) {
+		int[] strides = { 1, PADDED * PADDED, PADDED };
+		int faces = 0;
+		for (int y = 1; y <= Chunk.SIZE; y++) {
+			for (int z = 1; z <= Chunk.SIZE; z++) {
+				for (int x = 1; x <= Chunk.SIZE; x++) {
+					int index = x + z * PADDED + y * PADDED * PADDED;
+					int block = padded[index];
+					if (block == Blocks.AIR) {
+						continue;
+					}
+					for (int stride : strides) {
+						for (int neighbour : new int[] { padded[index - stride], padded[index + stride] }) {
+							if (neighbour != block && !Blocks.isOpaque(neighbour)) {
+								faces++;
+							}
+						}
+					}
+				}
+			}
+		}
+		return faces;
+	}
+}
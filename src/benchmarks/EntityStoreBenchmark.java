@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Entity;
+import Entities.EntityStore;
+import Entities.MovementSystem;
+import Entities.TransformSystem;
+import models.RawModel;
+import models.TexturedModel;
+
+/**
+ * Compares moving entities and rebuilding their matrices in an
+ * {@link EntityStore}, on pools of 1, 4 and all available threads, with doing
+ * the same through a list of {@link Entity} objects. Reports entities updated
+ * per second and the heap the calling thread allocated per frame. The first
+ * rounds warm up the JIT.
+ *
+ * Usage: EntityStoreBenchmark [entities] [rounds] [frames per round]
+ */
+public class EntityStoreBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+		Random random = new Random(3);
+		EntityStore store = new EntityStore(count);
+		List<Entity> entities = new ArrayList<Entity>(count);
+		TexturedModel model = new TexturedModel(new RawModel(0, 36, 1), null);
+		int modelID = store.registerModel(model);
+		float[] velocities = new float[count * 3];
+		for (int i = 0; i < count; i++) {
+			float x = random.nextFloat() * 100, y = random.nextFloat() * 100, z = random.nextFloat() * 100;
+			int id = store.create(modelID, x, y, z, 0, 0, 0, 1);
+			velocities[i * 3] = random.nextFloat() - 0.5f;
+			velocities[i * 3 + 1] = random.nextFloat() - 0.5f;
+			velocities[i * 3 + 2] = random.nextFloat() - 0.5f;
+			store.setVelocity(id, velocities[i * 3], velocities[i * 3 + 1], velocities[i * 3 + 2]);
+			store.setSpin(id, 0, 45, 0);
+			entities.add(new Entity(model, new Vector3f(x, y, z), 0, 0, 0, 1));
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = { 1, 4, cores };
+		ForkJoinPool[] pools = new ForkJoinPool[threadCounts.length];
+		for (int i = 0; i < pools.length; i++) {
+			pools[i] = new ForkJoinPool(threadCounts[i]);
+		}
+		MovementSystem movement = new MovementSystem();
+		TransformSystem transform = new TransformSystem();
+		float delta = 1 / 60f;
+
+		for (int round = 0; round < rounds; round++) {
+			StringBuilder line = new StringBuilder("round " + round + ":");
+			for (int p = 0; p < pools.length; p++) {
+				long allocatedBefore = Measure.allocatedBytes();
+				long start = System.nanoTime();
+				for (int frame = 0; frame < frames; frame++) {
+					store.run(movement, delta, pools[p]);
+					store.run(transform, delta, pools[p]);
+				}
+				long nanos = System.nanoTime() - start;
+				line.append(String.format(" | store %d threads %.1f M/s, %d B/frame", threadCounts[p],
+						(double) count * frames * 1e3 / nanos, (Measure.allocatedBytes() - allocatedBefore) / frames));
+			}
+
+			long allocatedBefore = Measure.allocatedBytes();
+			long start = System.nanoTime();
+			float sum = 0;
+			for (int frame = 0; frame < frames; frame++) {
+				for (int i = 0; i < count; i++) {
+					Entity entity = entities.get(i);
+					entity.increasePosition(velocities[i * 3] * delta, velocities[i * 3 + 1] * delta,
+							velocities[i * 3 + 2] * delta);
+					entity.increaseRotation(0, 45 * delta, 0);
+					sum += entity.getTransformationMatrix().m30;
+				}
+			}
+			long nanos = System.nanoTime() - start;
+			line.append(String.format(" | objects %.1f M/s, %d B/frame (%.0f)", (double) count * frames * 1e3 / nanos,
+					(Measure.allocatedBytes() - allocatedBefore) / frames, sum));
+			System.out.println(line);
+		}
+		for (ForkJoinPool pool : pools) {
+			pool.shutdown();
+		}
+	}
+}
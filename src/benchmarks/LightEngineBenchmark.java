@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import world.Chunk;
+import world.LightEngine;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Measures how fast {@link LightEngine} lights a freshly generated square of
+ * terrain, on the calling thread and split across a {@link ForkJoinPool}.
+ * Each round generates the area twice and lights one copy each way, reporting
+ * the time and light updates per second. The first rounds warm up the JIT.
+ *
+ * Usage: LightEngineBenchmark [radius in chunks] [rounds] [pool threads]
+ */
+public class LightEngineBenchmark {
+
+	public static void main(String[] args) {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		TerrainGenerator generator = new TerrainGenerator(42);
+		for (int round = 0; round < rounds; round++) {
+			double[] sequential = light(generator, radius, executor, null);
+			double[] parallel = light(generator, radius, executor, pool);
+			System.out.printf("round %d: %d chunks | sequential %.1f ms, %.1f M updates/s"
+					+ " | %d threads %.1f ms, %.1f M updates/s%n", round, (int) sequential[0], sequential[1],
+					sequential[2] / 1e6, threads, parallel[1], parallel[2] / 1e6);
+		}
+		executor.shutdown();
+		pool.shutdown();
+	}
+
+	// Returns the chunk count, the milliseconds taken and the updates per second
+	private static double[] light(TerrainGenerator generator, int radius, ExecutorService executor,
+			ForkJoinPool pool) {
+		World world = new World();
+		generator.generate(world, -radius, 0, -radius, radius - 1, 4, radius - 1, executor);
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		world.getChunks().forEach(chunks::add);
+
+		LightEngine engine = new LightEngine(world, null);
+		long start = System.nanoTime();
+		engine.lightChunks(chunks, pool);
+		long nanos = System.nanoTime() - start;
+		return new double[] { chunks.size(), nanos / 1e6, engine.getLightUpdates().get() * 1e9 / nanos };
+	}
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+
+import world.Chunk;
+import world.LodReport;
+import world.LodSelector;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Prints the {@link LodReport} of generated terrain seen from above its
+ * center: chunks and triangles per level of detail ring, next to what the
+ * same chunks cost at full detail. Uses the default {@link LodSelector}
+ * thresholds of 8, 16 and 32 chunks, or the given ones.
+ *
+ * Usage: LodBenchmark [radius in chunks] [threshold in chunks]...
+ */
+public class LodBenchmark {
+
+	private static final int HEIGHT = 6;
+
+	public static void main(String[] args) {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+		LodSelector selector;
+		if (args.length > 1) {
+			float[] thresholds = new float[args.length - 1];
+			for (int i = 0; i < thresholds.length; i++) {
+				thresholds[i] = Float.parseFloat(args[i + 1]) * Chunk.SIZE;
+			}
+			selector = new LodSelector(thresholds, Chunk.SIZE / 2f);
+		} else {
+			selector = new LodSelector();
+		}
+
+		World world = new World();
+		new TerrainGenerator(42).generate(world, -radius, 0, -radius, radius - 1, HEIGHT - 1, radius - 1,
+				ForkJoinPool.commonPool());
+
+		long start = System.nanoTime();
+		LodReport report = selector.report(world, 0, TerrainGenerator.BASE_HEIGHT + TerrainGenerator.HEIGHT_AMPLITUDE, 0);
+		long nanos = System.nanoTime() - start;
+		System.out.println(report);
+		System.out.printf("%.1f%% of the full detail triangles, report took %d ms%n",
+				100.0 * report.getTotalTriangles() / report.getTotalFullDetailTriangles(), nanos / 1000000);
+	}
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import ToolBox.Maths;
+
+/**
+ * Compares the original transformation matrix builder, which allocates a
+ * matrix and several vectors and rotates about three general axes, with the
+ * allocation-free builders writing into a reused Matrix4f, a float array and a
+ * FloatBuffer. Reports nanoseconds and heap bytes per matrix and the garbage
+ * collections each variant caused. The first rounds warm up the JIT.
+ *
+ * Usage: MathsBenchmark [matrices per round] [rounds]
+ */
+public class MathsBenchmark {
+
+	private static final String[] NAMES = { "rotate", "Matrix4f", "float[]", "FloatBuffer" };
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+		Random random = new Random(5);
+		Vector3f[] positions = new Vector3f[1024];
+		float[] angles = new float[positions.length * 3];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = new Vector3f(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 100);
+			angles[i * 3] = random.nextFloat() * 360;
+			angles[i * 3 + 1] = random.nextFloat() * 360;
+			angles[i * 3 + 2] = random.nextFloat() * 360;
+		}
+		int mask = positions.length - 1;
+		Matrix4f matrix = new Matrix4f();
+		float[] array = new float[16 * 64];
+		FloatBuffer buffer = BufferUtils.createFloatBuffer(16 * 64);
+
+		for (int round = 0; round < rounds; round++) {
+			StringBuilder line = new StringBuilder("round " + round + ":");
+			for (int variant = 0; variant < 4; variant++) {
+				float sum = 0;
+				long gcBefore = Measure.collections(), allocatedBefore = Measure.allocatedBytes();
+				long start = System.nanoTime();
+				for (int i = 0; i < count; i++) {
+					int n = i & mask;
+					Vector3f p = positions[n];
+					float rx = angles[n * 3], ry = angles[n * 3 + 1], rz = angles[n * 3 + 2];
+					switch (variant) {
+					case 0:
+						sum += Maths.createTransformationMatrix(p, rx, ry, rz, 1).m00;
+						break;
+					case 1:
+						sum += Maths.createTransformationMatrix(p, rx, ry, rz, 1, matrix).m00;
+						break;
+					case 2:
+						Maths.storeTransformationMatrix(p.x, p.y, p.z, rx, ry, rz, 1, array, (i & 63) * 16);
+						sum += array[(i & 63) * 16];
+						break;
+					default:
+						if (!buffer.hasRemaining()) {
+							buffer.clear();
+						}
+						Maths.storeTransformationMatrix(p, rx, ry, rz, 1, buffer);
+						sum += buffer.get(buffer.position() - 16);
+						break;
+					}
+				}
+				long nanos = System.nanoTime() - start;
+				long allocated = Measure.allocatedBytes() - allocatedBefore;
+				line.append(String.format(" | %s %.1f ns, %.1f B, %d GCs (%.0f)", NAMES[variant], (double) nanos / count,
+						(double) allocated / count, Measure.collections() - gcBefore, sum));
+			}
+			System.out.println(line);
+		}
+	}
+}
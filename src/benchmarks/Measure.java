@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Allocation and garbage collection counters shared by the benchmarks in this
+ * package. Allocated bytes come from the HotSpot thread bean and read as -1
+ * on JVMs that do not provide it.
+ */
+public final class Measure {
+
+	private Measure() {
+	}
+
+	/**
+	 * Returns the number of garbage collections since the JVM started, over all
+	 * collectors.
+	 */
+	public static long collections() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the bytes the calling thread has allocated on the heap since it
+	 * started, or -1 if the JVM does not track it.
+	 */
+	public static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import ToolBox.DirectBufferPool;
+import world.Chunk;
+import world.ChunkMesh;
+import world.ChunkMesher;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Compares staging chunk meshes through the {@link DirectBufferPool} with
+ * allocating a fresh direct buffer for every mesh, the way uploads worked
+ * before the pool. Each round meshes a block of generated terrain, stages
+ * every mesh and releases it again, as the mesh scheduler does around an
+ * upload, and reports the time, the direct memory allocated and the garbage
+ * collections it caused.
+ *
+ * Usage: MeshStagingBenchmark [rounds]
+ */
+public class MeshStagingBenchmark {
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+		World world = new World();
+		TerrainGenerator generator = new TerrainGenerator(42);
+		for (int x = -5; x <= 5; x++) {
+			for (int z = -5; z <= 5; z++) {
+				for (int y = 0; y < 6; y++) {
+					generator.generate(world.getOrCreateChunk(x, y, z));
+				}
+			}
+		}
+		ChunkMesher mesher = new ChunkMesher();
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		world.getChunks().forEach(chunks::add);
+		List<ChunkMesh> meshes = new ArrayList<ChunkMesh>();
+		for (Chunk chunk : chunks) {
+			ChunkMesh mesh = mesher.mesh(chunk, world);
+			if (!mesh.isEmpty()) {
+				meshes.add(mesh);
+			}
+		}
+		System.out.println(meshes.size() + " non-empty meshes");
+
+		for (int round = 0; round < rounds; round++) {
+			long gcBefore = Measure.collections();
+			long allocatedBefore = DirectBufferPool.getAllocatedBytes();
+			long start = System.nanoTime();
+			for (ChunkMesh mesh : meshes) {
+				mesh.stage();
+				mesh.releaseStaged();
+			}
+			long pooledNanos = System.nanoTime() - start;
+			long pooledBytes = DirectBufferPool.getAllocatedBytes() - allocatedBefore;
+			long pooledCollections = Measure.collections() - gcBefore;
+
+			gcBefore = Measure.collections();
+			long freshBytes = 0;
+			start = System.nanoTime();
+			for (ChunkMesh mesh : meshes) {
+				freshBytes += stageFresh(mesh).capacity();
+			}
+			long freshNanos = System.nanoTime() - start;
+			long freshCollections = Measure.collections() - gcBefore;
+
+			System.out.printf("round %d: pooled %.1f us/mesh, %d KiB direct, %d GCs"
+					+ " | fresh %.1f us/mesh, %d KiB direct, %d GCs%n", round, pooledNanos / 1e3 / meshes.size(),
+					pooledBytes / 1024, pooledCollections, freshNanos / 1e3 / meshes.size(), freshBytes / 1024,
+					freshCollections);
+		}
+		System.out.println("pool reuses: " + DirectBufferPool.getReuses() + ", allocations: "
+				+ DirectBufferPool.getAllocations());
+	}
+
+	// The same layout as ChunkMesh.stage(), in a buffer of its own
+	private static ByteBuffer stageFresh(ChunkMesh mesh) {
+		int vertexCount = mesh.getVertexCount();
+		int bytes = (vertexCount * ChunkMesh.STAGED_FLOATS + mesh.getIndices().length) * 4;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+		for (int i = 0; i < vertexCount; i++) {
+			buffer.putFloat(mesh.getPositions()[i * 3]).putFloat(mesh.getPositions()[i * 3 + 1])
+					.putFloat(mesh.getPositions()[i * 3 + 2]);
+			buffer.putFloat(mesh.getUvs()[i * 2]).putFloat(mesh.getUvs()[i * 2 + 1]);
+			buffer.putFloat(mesh.getLayers()[i]).putFloat(mesh.getLights()[i]);
+		}
+		buffer.asIntBuffer().put(mesh.getIndices());
+		return buffer;
+	}
+}
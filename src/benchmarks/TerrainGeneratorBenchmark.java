@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import world.Chunk;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Measures {@link TerrainGenerator#generate(World, int, int, int, int, int, int, ExecutorService)}
+ * on pools of 1, 4 and all available threads, reporting chunks per second, and
+ * checks that every thread count produces the same blocks. The first rounds
+ * warm up the JIT.
+ *
+ * Usage: TerrainGeneratorBenchmark [radius in chunks] [rounds]
+ */
+public class TerrainGeneratorBenchmark {
+
+	private static final int HEIGHT = 6;
+
+	public static void main(String[] args) {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		int[] threadCounts = { 1, 4, Runtime.getRuntime().availableProcessors() };
+		ExecutorService[] executors = new ExecutorService[threadCounts.length];
+		for (int i = 0; i < executors.length; i++) {
+			executors[i] = Executors.newFixedThreadPool(threadCounts[i]);
+		}
+		int chunks = radius * 2 * radius * 2 * HEIGHT;
+
+		long expectedHash = 0;
+		for (int round = 0; round < rounds; round++) {
+			StringBuilder line = new StringBuilder("round " + round + ": " + chunks + " chunks");
+			for (int t = 0; t < executors.length; t++) {
+				TerrainGenerator generator = new TerrainGenerator(42);
+				World world = new World();
+				long start = System.nanoTime();
+				generator.generate(world, -radius, 0, -radius, radius - 1, HEIGHT - 1, radius - 1, executors[t]);
+				long nanos = System.nanoTime() - start;
+
+				long hash = hash(world);
+				if (round == 0 && t == 0) {
+					expectedHash = hash;
+				} else if (hash != expectedHash) {
+					throw new IllegalStateException(threadCounts[t] + " threads generated different blocks");
+				}
+				line.append(String.format(" | %d threads %.0f chunks/s (%.0f us per chunk job)", threadCounts[t],
+						chunks * 1e9 / nanos, generator.getGenerateNanos().get() / 1e3 / chunks));
+			}
+			System.out.println(line);
+		}
+		System.out.println("all thread counts generated identical blocks");
+		for (ExecutorService executor : executors) {
+			executor.shutdown();
+		}
+	}
+
+	// Hashes every block of every chunk in a fixed order
+	private static long hash(World world) {
+		long[] hash = { 0 };
+		world.getChunks().forEach(chunk -> {
+			long h = chunk.getKey() * 0x9E3779B97F4A7C15L;
+			for (int i = 0; i < Chunk.VOLUME; i++) {
+				h = h * 31 + chunk.getBlocks().get(i);
+			}
+			// Chunk iteration order depends on the map, so combine the chunks order-independently
+			hash[0] += h;
+		});
+		return hash[0];
+	}
+}
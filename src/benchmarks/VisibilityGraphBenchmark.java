@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import renderEngine.FrustumCuller;
+import world.TerrainGenerator;
+import world.VisibilityGraph;
+import world.World;
+
+/**
+ * Measures {@link VisibilityGraph} searches on generated terrain from random
+ * cameras, half of them above the surface and half underground, with a 70
+ * degree frustum. Reports the non-empty chunks the search found against the
+ * ones inside the frustum alone, and microseconds per search. The first
+ * rounds warm up the JIT.
+ *
+ * Usage: VisibilityGraphBenchmark [radius in chunks] [searches per round] [rounds]
+ */
+public class VisibilityGraphBenchmark {
+
+	private static final int HEIGHT = 6;
+
+	public static void main(String[] args) {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int searches = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		World world = new World();
+		new TerrainGenerator(42).generate(world, -radius, 0, -radius, radius - 1, HEIGHT - 1, radius - 1,
+				ForkJoinPool.commonPool());
+		int[] nonEmpty = { 0 };
+		world.getChunks().forEach(chunk -> {
+			if (!chunk.isEmpty()) {
+				nonEmpty[0]++;
+			}
+		});
+		VisibilityGraph graph = new VisibilityGraph(world);
+		graph.setRadius(radius);
+		FrustumCuller culler = new FrustumCuller();
+		world.getChunks().forEach(chunk -> {
+			if (!chunk.isEmpty()) {
+				culler.addChunk(chunk.getKey());
+			}
+		});
+		Matrix4f projection = projection();
+		List<Long> frustumChunks = new ArrayList<Long>();
+
+		Random random = new Random(8);
+		for (int round = 0; round < rounds; round++) {
+			long above = 0, below = 0, inFrustum = 0, nanos = 0;
+			for (int i = 0; i < searches; i++) {
+				boolean underground = i % 2 == 1;
+				float y = underground ? 8 + random.nextFloat() * 16 : 70 + random.nextFloat() * 20;
+				Camera camera = new Camera(new Vector3f(random.nextFloat() * 64 - 32, y, random.nextFloat() * 64 - 32),
+						random.nextFloat() * 60 - 30, random.nextFloat() * 360, 0);
+				culler.update(projection, camera);
+				culler.collectVisibleChunks(frustumChunks);
+				inFrustum += culler.getVisibleChunks();
+
+				long start = System.nanoTime();
+				Vector3f p = camera.getPosition();
+				int visible = graph.collectVisibleChunks(p.x, p.y, p.z, culler.getFrustum());
+				nanos += System.nanoTime() - start;
+				if (underground) {
+					below += visible;
+				} else {
+					above += visible;
+				}
+			}
+			int half = searches / 2;
+			System.out.printf("round %d: %d non-empty chunks | %.0f in the frustum | found %.0f from above, %.0f from "
+					+ "underground | %.1f us per search%n", round, nonEmpty[0], (double) inFrustum / searches,
+					(double) above / half, (double) below / half, nanos / 1e3 / searches);
+		}
+	}
+
+	private static Matrix4f projection() {
+		Matrix4f projection = new Matrix4f();
+		float scale = (float) (1f / Math.tan(Math.toRadians(35)));
+		projection.m00 = scale;
+		projection.m11 = scale;
+		projection.m22 = -1000.2f / 999.8f;
+		projection.m23 = -1;
+		projection.m32 = -(2 * 1000f * 0.1f) / 999.8f;
+		projection.m33 = 0;
+		return projection;
+	}
+}
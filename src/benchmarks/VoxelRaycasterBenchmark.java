@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import world.RaycastHit;
+import world.TerrainGenerator;
+import world.VoxelRaycaster;
+import world.World;
+
+/**
+ * Measures {@link VoxelRaycaster} on generated terrain with rays of 8, 32 and
+ * 128 blocks cast from above the surface, mostly sideways so that long rays
+ * cross many blocks. Reports millions of rays per second cast one at a time
+ * and through {@link VoxelRaycaster#castAll}. The first rounds warm up the
+ * JIT.
+ *
+ * Usage: VoxelRaycasterBenchmark [rays per round] [rounds]
+ */
+public class VoxelRaycasterBenchmark {
+
+	private static final int[] LENGTHS = { 8, 32, 128 };
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		World world = new World();
+		new TerrainGenerator(9).generate(world, -8, 0, -8, 7, 5, 7, ForkJoinPool.commonPool());
+		VoxelRaycaster raycaster = new VoxelRaycaster(world);
+
+		Random random = new Random(2);
+		float[] rays = new float[count * 6];
+		RaycastHit[] results = new RaycastHit[count];
+		for (int i = 0; i < count; i++) {
+			results[i] = new RaycastHit();
+			rays[i * 6] = random.nextFloat() * 100 - 50;
+			rays[i * 6 + 1] = 70;
+			rays[i * 6 + 2] = random.nextFloat() * 100 - 50;
+			rays[i * 6 + 3] = random.nextFloat() * 2 - 1;
+			rays[i * 6 + 4] = random.nextFloat() * 0.4f - 0.2f;
+			rays[i * 6 + 5] = random.nextFloat() * 2 - 1;
+		}
+
+		for (int round = 0; round < rounds; round++) {
+			StringBuilder line = new StringBuilder("round " + round + ":");
+			for (int length : LENGTHS) {
+				int hits = 0;
+				long start = System.nanoTime();
+				for (int i = 0; i < count; i++) {
+					int r = i * 6;
+					if (raycaster.cast(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5], length,
+							results[i])) {
+						hits++;
+					}
+				}
+				long single = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				raycaster.castAll(rays, count, length, results);
+				long batch = System.nanoTime() - start;
+				line.append(String.format(" | %d blocks: single %.2f M/s, castAll %.2f M/s (%d hits)", length,
+						count * 1e3 / single, count * 1e3 / batch, hits));
+			}
+			System.out.println(line);
+		}
+	}
+}
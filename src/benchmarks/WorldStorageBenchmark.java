@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import world.Chunk;
+import world.TerrainGenerator;
+import world.WorldStorage;
+
+/**
+ * Measures how fast {@link WorldStorage} saves and loads generated terrain.
+ * Each round writes every chunk of a square area to a fresh directory,
+ * flushes, then reopens the storage and reads them all back. The first rounds
+ * warm up the JIT.
+ *
+ * Usage: WorldStorageBenchmark [radius in chunks] [rounds]
+ */
+public class WorldStorageBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		TerrainGenerator generator = new TerrainGenerator(42);
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (int x = -radius; x < radius; x++) {
+			for (int z = -radius; z < radius; z++) {
+				for (int y = 0; y < 6; y++) {
+					Chunk chunk = new Chunk(x, y, z);
+					generator.generate(chunk);
+					chunks.add(chunk);
+				}
+			}
+		}
+		System.out.println(chunks.size() + " chunks");
+
+		for (int round = 0; round < rounds; round++) {
+			File directory = Files.createTempDirectory("storage-benchmark").toFile();
+
+			WorldStorage storage = new WorldStorage(directory);
+			long start = System.nanoTime();
+			for (Chunk chunk : chunks) {
+				storage.saveChunk(chunk);
+			}
+			storage.flush();
+			long writeNanos = System.nanoTime() - start;
+			long bytes = storage.getBytesWritten().get();
+			long uncompressed = storage.getUncompressedBytesWritten().get();
+			storage.close();
+
+			storage = new WorldStorage(directory);
+			start = System.nanoTime();
+			for (Chunk chunk : chunks) {
+				storage.loadChunk(chunk.getChunkX(), chunk.getChunkY(), chunk.getChunkZ());
+			}
+			long readNanos = System.nanoTime() - start;
+			storage.close();
+
+			System.out.printf("round %d: write %.0f chunks/s (%.1f MB/s compressed, ratio %.1f), read %.0f chunks/s%n",
+					round, chunks.size() / (writeNanos / 1e9), bytes / (writeNanos / 1e3),
+					(double) uncompressed / bytes, chunks.size() / (readNanos / 1e9));
+
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+}
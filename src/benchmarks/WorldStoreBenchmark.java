@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.util.Random;
+
+import world.Chunk;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Measures the palette-compressed world store on generated terrain: bytes per
+ * block compared with a plain int or short per block, and random block reads
+ * and writes through {@link World} with the heap they allocate. The writes
+ * swap pairs of blocks within a chunk, so every chunk keeps its palette. The
+ * first rounds warm up the JIT.
+ *
+ * Usage: WorldStoreBenchmark [radius in chunks] [rounds]
+ */
+public class WorldStoreBenchmark {
+
+	private static final int OPERATIONS = 4000000;
+
+	public static void main(String[] args) {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		World world = new World();
+		TerrainGenerator generator = new TerrainGenerator(42);
+		for (int x = -radius; x < radius; x++) {
+			for (int z = -radius; z < radius; z++) {
+				for (int y = 0; y < 6; y++) {
+					generator.generate(world.getOrCreateChunk(x, y, z));
+				}
+			}
+		}
+		long blocks = world.getLoadedBlockCount();
+		System.out.printf("%d chunks, %.3f bytes/block (int[] 4, short[] 2), %d KiB total%n",
+				world.getChunks().size(), (double) world.estimateMemoryBytes() / blocks,
+				world.estimateMemoryBytes() / 1024);
+
+		int span = radius * 2 * Chunk.SIZE, height = 6 * Chunk.SIZE;
+		int[] xs = new int[OPERATIONS], ys = new int[OPERATIONS], zs = new int[OPERATIONS];
+		// A second block in the same chunk as each position, to swap with
+		int[] pairXs = new int[OPERATIONS], pairYs = new int[OPERATIONS], pairZs = new int[OPERATIONS];
+		Random random = new Random(1);
+		for (int i = 0; i < OPERATIONS; i++) {
+			xs[i] = random.nextInt(span) - span / 2;
+			ys[i] = random.nextInt(height);
+			zs[i] = random.nextInt(span) - span / 2;
+			pairXs[i] = (xs[i] & ~Chunk.MASK) | random.nextInt(Chunk.SIZE);
+			pairYs[i] = (ys[i] & ~Chunk.MASK) | random.nextInt(Chunk.SIZE);
+			pairZs[i] = (zs[i] & ~Chunk.MASK) | random.nextInt(Chunk.SIZE);
+		}
+
+		for (int round = 0; round < rounds; round++) {
+			long gcBefore = Measure.collections(), allocatedBefore = Measure.allocatedBytes();
+			long start = System.nanoTime();
+			long sum = 0;
+			for (int i = 0; i < OPERATIONS; i++) {
+				sum += world.getBlock(xs[i], ys[i], zs[i]);
+			}
+			long readNanos = System.nanoTime() - start;
+			long readAllocated = Measure.allocatedBytes() - allocatedBefore;
+
+			allocatedBefore = Measure.allocatedBytes();
+			start = System.nanoTime();
+			for (int i = 0; i < OPERATIONS; i++) {
+				// Two writes and a read; the palettes keep their size because no block type comes or goes
+				int previous = world.setBlock(xs[i], ys[i], zs[i], world.getBlock(pairXs[i], pairYs[i], pairZs[i]));
+				sum += world.setBlock(pairXs[i], pairYs[i], pairZs[i], previous);
+			}
+			long writeNanos = (System.nanoTime() - start) / 2;
+			long writeAllocated = Measure.allocatedBytes() - allocatedBefore;
+
+			System.out.printf("round %d: reads %.1f M/s, %d bytes allocated | writes %.1f M/s, %d KiB allocated"
+					+ " | %d GCs, %.3f bytes/block (checksum %d)%n", round, OPERATIONS * 1e3 / readNanos,
+					readAllocated, OPERATIONS * 1e3 / writeNanos, writeAllocated / 1024,
+					Measure.collections() - gcBefore, (double) world.estimateMemoryBytes() / blocks, sum);
+		}
+	}
+}
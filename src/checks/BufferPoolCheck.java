@@ -0,0 +1,123 @@
+package checks;
+
+import org.lwjgl.opengl.GL15;
+
+import renderEngine.BufferPool;
+import renderEngine.BufferPool.PooledBuffer;
+import renderEngine.CountingGLBackend;
+import renderEngine.CountingGLBackend.Call;
+import renderEngine.GpuMemoryTracker;
+import renderEngine.GpuMemoryTracker.Category;
+
+/**
+ * Drives a {@link BufferPool} and its {@link GpuMemoryTracker} headless
+ * through a {@link CountingGLBackend}: capacities round up to a power of two,
+ * released buffers are reused without new GL allocations, the pool deletes
+ * what it cannot keep, and every byte is accounted to the right category.
+ */
+public class BufferPoolCheck {
+
+	private static final int KIB = 1024;
+
+	public static void main(String[] args) {
+		bucketSizing();
+		reuse();
+		poolCap();
+		accounting();
+	}
+
+	private static void bucketSizing() {
+		BufferPool pool = new BufferPool(new CountingGLBackend(null), new GpuMemoryTracker(), 64L * KIB * KIB);
+		Check.equal(KIB, acquire(pool, 1).getCapacity(), "tiny buffers get the smallest bucket");
+		Check.equal(KIB, acquire(pool, KIB).getCapacity(), "an exact power of two is not rounded up");
+		Check.equal(2 * KIB, acquire(pool, KIB + 1).getCapacity(), "one byte more takes the next bucket");
+		Check.equal(16 * KIB * KIB, acquire(pool, 9 * KIB * KIB).getCapacity(), "the largest bucket");
+		Check.equal(20 * KIB * KIB, acquire(pool, 20 * KIB * KIB).getCapacity(),
+				"buffers beyond the largest bucket get their exact size");
+		Check.passed("buffer pool bucket sizing");
+	}
+
+	private static void reuse() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		BufferPool pool = new BufferPool(gl, new GpuMemoryTracker(), 64L * KIB * KIB);
+		PooledBuffer first = acquire(pool, 3000);
+		pool.release(first);
+		long generated = gl.getCount(Call.GEN_BUFFER), allocations = gl.getCount(Call.BUFFER_DATA);
+
+		PooledBuffer second = acquire(pool, 2500);
+		Check.equal(first.getBufferID(), second.getBufferID(), "a similar size reuses the released buffer");
+		Check.equal(generated, gl.getCount(Call.GEN_BUFFER), "no buffer generated for a reuse");
+		Check.equal(allocations, gl.getCount(Call.BUFFER_DATA), "no storage allocated for a reuse");
+		Check.equal(1, pool.getHits(), "hits");
+		Check.equal(1, pool.getMisses(), "misses");
+
+		PooledBuffer other = acquire(pool, 8000);
+		Check.that(other.getBufferID() != first.getBufferID(), "another bucket gets its own buffer");
+		Check.equal(2, pool.getMisses(), "a different size misses");
+
+		// Unpooled sizes are deleted on release and never handed out again
+		PooledBuffer huge = acquire(pool, 20 * KIB * KIB);
+		long deleted = gl.getCount(Call.DELETE_BUFFER);
+		pool.release(huge);
+		Check.equal(deleted + 1, gl.getCount(Call.DELETE_BUFFER), "oversized buffers are deleted on release");
+		Check.equal(0, pool.getPooledBytes(), "oversized buffers are not pooled");
+		Check.passed("buffer pool reuse");
+	}
+
+	private static void poolCap() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		GpuMemoryTracker memory = new GpuMemoryTracker();
+		BufferPool pool = new BufferPool(gl, memory, 3 * 64 * KIB);
+		PooledBuffer[] buffers = new PooledBuffer[5];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = acquire(pool, 64 * KIB);
+		}
+		for (PooledBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+		Check.equal(3 * 64 * KIB, pool.getPooledBytes(), "the pool stops at its cap");
+		Check.equal(2, gl.getCount(Call.DELETE_BUFFER), "buffers beyond the cap are deleted");
+		Check.equal(3, memory.getCount(Category.POOLED_BUFFERS), "pooled buffers are counted");
+		Check.equal(0, memory.getCount(Category.VERTEX_BUFFERS), "no vertex buffers are left");
+
+		pool.clear();
+		Check.equal(5, gl.getCount(Call.DELETE_BUFFER), "clear deletes the pooled buffers");
+		Check.equal(0, pool.getPooledBytes(), "nothing is pooled after a clear");
+		Check.equal(0, memory.getTotalBytes(), "all memory is freed");
+		Check.passed("buffer pool cap");
+	}
+
+	private static void accounting() {
+		GpuMemoryTracker memory = new GpuMemoryTracker();
+		BufferPool pool = new BufferPool(new CountingGLBackend(null), memory, 64L * KIB * KIB);
+		PooledBuffer vertices = pool.acquire(GL15.GL_ARRAY_BUFFER, 3000, Category.VERTEX_BUFFERS);
+		PooledBuffer indices = pool.acquire(GL15.GL_ELEMENT_ARRAY_BUFFER, 500, Category.INDEX_BUFFERS);
+		memory.allocated(Category.TEXTURES, 256 * KIB);
+		Check.equal(4 * KIB, memory.getBytes(Category.VERTEX_BUFFERS), "vertex bytes are the rounded capacity");
+		Check.equal(KIB, memory.getBytes(Category.INDEX_BUFFERS), "index bytes");
+		Check.equal(261 * KIB, memory.getTotalBytes(), "total");
+
+		// Releasing moves the bytes to the pool; reacquiring for indices moves them on
+		pool.release(vertices);
+		Check.equal(0, memory.getBytes(Category.VERTEX_BUFFERS), "released vertex bytes leave their category");
+		Check.equal(4 * KIB, memory.getBytes(Category.POOLED_BUFFERS), "and are held by the pool");
+		Check.equal(261 * KIB, memory.getTotalBytes(), "pooling does not change the total");
+		PooledBuffer reused = pool.acquire(GL15.GL_ELEMENT_ARRAY_BUFFER, 4000, Category.INDEX_BUFFERS);
+		Check.equal(vertices.getBufferID(), reused.getBufferID(), "the pooled buffer is reused for indices");
+		Check.equal(5 * KIB, memory.getBytes(Category.INDEX_BUFFERS), "reused bytes count as index buffers");
+		Check.equal(2, memory.getCount(Category.INDEX_BUFFERS), "index buffer count");
+		Check.equal(0, memory.getCount(Category.POOLED_BUFFERS), "the pool is empty again");
+
+		pool.release(indices);
+		pool.release(reused);
+		memory.freed(Category.TEXTURES, 256 * KIB);
+		pool.clear();
+		Check.equal(0, memory.getTotalBytes(), "everything is freed");
+		Check.equal(261 * KIB, memory.getPeakBytes(), "the peak is kept");
+		Check.passed("GPU memory accounting");
+	}
+
+	private static PooledBuffer acquire(BufferPool pool, int sizeBytes) {
+		return pool.acquire(GL15.GL_ARRAY_BUFFER, sizeBytes, Category.VERTEX_BUFFERS);
+	}
+}
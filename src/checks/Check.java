@@ -0,0 +1,28 @@
+package checks;
+
+/**
+ * Minimal assertion helper for the headless checks in this package. Each
+ * check is a plain main() that throws on the first failure, so a non-zero
+ * exit status means something broke.
+ */
+public final class Check {
+
+	private Check() {
+	}
+
+	public static void that(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalStateException("Check failed: " + message);
+		}
+	}
+
+	public static void equal(long expected, long actual, String message) {
+		if (expected != actual) {
+			throw new IllegalStateException("Check failed: " + message + " (expected " + expected + ", got " + actual + ")");
+		}
+	}
+
+	public static void passed(String name) {
+		System.out.println("[ok] " + name);
+	}
+}
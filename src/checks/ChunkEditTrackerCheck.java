@@ -0,0 +1,134 @@
+package checks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ToolBox.ManualClock;
+import world.Blocks;
+import world.Chunk;
+import world.ChunkEditTracker;
+import world.ChunkMeshScheduler;
+import world.MeshUploader;
+import world.World;
+
+/**
+ * Edits a solid block of 4 by 4 by 4 chunks through a
+ * {@link ChunkEditTracker} with a direct executor and counts the chunks each
+ * flush re-meshes: single edits inside a chunk and on its faces, edges and
+ * corners, and an explosion carving a sphere out of the chunk corner, whose
+ * edit-to-upload latency is measured on a manual clock.
+ */
+public class ChunkEditTrackerCheck {
+
+	private static final int CHUNKS = 4;
+	private static final long UPLOAD_BUDGET_NANOS = 1000000000L;
+
+	public static void main(String[] args) {
+		borderNeighbours();
+		explosion();
+		uploadLatency();
+	}
+
+	private static void borderNeighbours() {
+		// Local position in chunk (1, 1, 1) and the number of chunks that must be re-meshed
+		int[][] cases = { { 5, 5, 5, 1 }, { 0, 5, 5, 2 }, { 5, 15, 5, 2 }, { 0, 0, 5, 4 }, { 15, 5, 0, 4 },
+				{ 0, 0, 0, 8 }, { 15, 15, 15, 8 }, { 15, 0, 15, 8 } };
+		for (int[] edit : cases) {
+			Map<Long, Integer> uploads = new HashMap<Long, Integer>();
+			ChunkEditTracker tracker = solidWorld(uploads);
+			tracker.setBlock(Chunk.SIZE + edit[0], Chunk.SIZE + edit[1], Chunk.SIZE + edit[2], Blocks.AIR);
+			Check.equal(edit[3], tracker.flush(),
+					"chunks re-meshed for an edit at " + edit[0] + "," + edit[1] + "," + edit[2]);
+		}
+		Check.passed("border edits mark face, edge and corner neighbours");
+	}
+
+	private static void explosion() {
+		Map<Long, Integer> uploads = new HashMap<Long, Integer>();
+		ChunkEditTracker tracker = solidWorld(uploads);
+		int radius = 6, centre = Chunk.SIZE * 2;
+		int edits = 0;
+		for (int y = -radius; y <= radius; y++) {
+			for (int z = -radius; z <= radius; z++) {
+				for (int x = -radius; x <= radius; x++) {
+					if (x * x + y * y + z * z <= radius * radius) {
+						tracker.setBlock(centre + x, centre + y, centre + z, Blocks.AIR);
+						edits++;
+					}
+				}
+			}
+		}
+		int scheduled = tracker.flush();
+		// The sphere covers the 8 chunks around the corner and touches none of their outer borders
+		Check.equal(8, scheduled, "chunks re-meshed by the explosion");
+		Check.equal(8, uploads.size(), "chunks uploaded");
+		for (int count : uploads.values()) {
+			Check.equal(1, count, "uploads per chunk");
+		}
+		Check.equal(edits, tracker.getEdits(), "edits");
+		System.out.println("explosion of radius " + radius + ": " + edits + " edits, " + scheduled + " chunks re-meshed");
+		Check.passed("explosion coalesced");
+	}
+
+	private static void uploadLatency() {
+		Map<Long, Integer> uploads = new HashMap<Long, Integer>();
+		ManualClock clock = new ManualClock();
+		ChunkEditTracker tracker = solidWorld(uploads, clock, true);
+		long delay = 5000000L;
+		tracker.setBlock(Chunk.SIZE * 2, Chunk.SIZE * 2, Chunk.SIZE * 2, Blocks.AIR);
+		clock.advance(delay);
+		// Later edits to the same chunks do not restart their latency
+		tracker.setBlock(Chunk.SIZE * 2 - 1, Chunk.SIZE * 2 - 1, Chunk.SIZE * 2 - 1, Blocks.AIR);
+		clock.advance(delay);
+		tracker.flush();
+		Check.equal(8, tracker.getLatencySamples(), "latency samples");
+		Check.equal(8 * 2 * delay, tracker.getTotalLatencyNanos(), "total latency");
+		Check.equal(2 * delay, tracker.getMaxLatencyNanos(), "max latency");
+
+		// The next edit of an uploaded chunk is timed from that edit, not the first one
+		tracker.markDirty(Chunk.SIZE + 5, Chunk.SIZE + 5, Chunk.SIZE + 5);
+		clock.advance(delay);
+		tracker.flush();
+		Check.equal(9, tracker.getLatencySamples(), "latency samples after a re-mesh");
+		Check.equal(8 * 2 * delay + delay, tracker.getTotalLatencyNanos(), "total latency after a re-mesh");
+		Check.passed("edit-to-upload latency");
+	}
+
+	private static ChunkEditTracker solidWorld(Map<Long, Integer> uploads) {
+		return solidWorld(uploads, new ManualClock(), false);
+	}
+
+	// A tracker over solid chunks whose uploads are counted per chunk, optionally through trackUploads
+	private static ChunkEditTracker solidWorld(final Map<Long, Integer> uploads, ManualClock clock,
+			boolean trackUploads) {
+		World world = new World();
+		for (int y = 0; y < CHUNKS * Chunk.SIZE; y++) {
+			for (int z = 0; z < CHUNKS * Chunk.SIZE; z++) {
+				for (int x = 0; x < CHUNKS * Chunk.SIZE; x++) {
+					world.setBlock(x, y, z, Blocks.DIRT);
+				}
+			}
+		}
+		final MeshUploader counter = (key, mesh) -> {
+			Integer count = uploads.get(key);
+			uploads.put(key, count == null ? 1 : count + 1);
+		};
+		final MeshUploader[] uploader = { counter };
+		final ChunkMeshScheduler scheduler = new ChunkMeshScheduler(world, (key, mesh) -> uploader[0].upload(key, mesh),
+				Runnable::run);
+		ChunkEditTracker tracker = new ChunkEditTracker(world, scheduler, null, clock) {
+			@Override
+			public int flush() {
+				int scheduled = super.flush();
+				while (scheduler.drainUploads(UPLOAD_BUDGET_NANOS) > 0) {
+					// Upload everything the flush scheduled
+				}
+				return scheduled;
+			}
+		};
+		if (trackUploads) {
+			uploader[0] = tracker.trackUploads(counter);
+		}
+		return tracker;
+	}
+}
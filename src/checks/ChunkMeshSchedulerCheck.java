@@ -0,0 +1,163 @@
+package checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import world.Blocks;
+import world.Chunk;
+import world.ChunkMesh;
+import world.ChunkMeshScheduler;
+import world.ChunkPos;
+import world.MeshUploader;
+import world.World;
+
+/**
+ * Drives a {@link ChunkMeshScheduler} with an executor whose jobs run only
+ * when the check says so, and a fake uploader that records what reaches it:
+ * results superseded before meshing or while queued are dropped, cancelling
+ * an unloaded chunk drops its result, and draining keeps to the time budget
+ * while always making progress.
+ */
+public class ChunkMeshSchedulerCheck {
+
+	private static final long UNLIMITED_BUDGET_NANOS = 1000000000L;
+
+	public static void main(String[] args) {
+		supersededBeforeMeshing();
+		supersededWhileQueued();
+		cancelledOnUnload();
+		uploadBudget();
+	}
+
+	private static void supersededBeforeMeshing() {
+		World world = new World();
+		world.setBlock(1, 1, 1, Blocks.DIRT);
+		Recorder recorder = new Recorder();
+		List<Runnable> jobs = new ArrayList<Runnable>();
+		ChunkMeshScheduler scheduler = new ChunkMeshScheduler(world, recorder, jobs::add);
+		Chunk chunk = world.getChunk(0, 0, 0);
+
+		scheduler.schedule(chunk);
+		// A second edit before the first job ran
+		world.setBlock(5, 5, 5, Blocks.DIRT);
+		scheduler.schedule(chunk);
+		runAll(jobs);
+		Check.equal(1, scheduler.getStaleCount().get(), "the first job is dropped before meshing");
+		Check.equal(1, scheduler.getMeshedCount().get(), "only the current job meshes");
+
+		Check.equal(1, scheduler.drainUploads(UNLIMITED_BUDGET_NANOS), "one upload");
+		Check.equal(24, recorder.meshes.get(0).getTriangleCount(), "the upload holds both blocks");
+		Check.that(recorder.stagedOnUpload.get(0), "the uploader gets a staged mesh");
+		Check.that(!recorder.meshes.get(0).isStaged(), "the staged buffer is released after the upload");
+		Check.equal(0, scheduler.getPendingCount(), "nothing pending");
+		Check.passed("superseded before meshing");
+	}
+
+	private static void supersededWhileQueued() {
+		World world = new World();
+		world.setBlock(1, 1, 1, Blocks.DIRT);
+		Recorder recorder = new Recorder();
+		List<Runnable> jobs = new ArrayList<Runnable>();
+		ChunkMeshScheduler scheduler = new ChunkMeshScheduler(world, recorder, jobs::add);
+		Chunk chunk = world.getChunk(0, 0, 0);
+
+		scheduler.schedule(chunk);
+		runAll(jobs);
+		Check.equal(1, scheduler.getQueuedCount(), "first mesh waiting for upload");
+		world.setBlock(1, 1, 1, Blocks.AIR);
+		scheduler.schedule(chunk);
+
+		Check.equal(0, scheduler.drainUploads(UNLIMITED_BUDGET_NANOS), "the queued mesh is stale");
+		Check.equal(1, scheduler.getStaleCount().get(), "stale count");
+		Check.equal(1, scheduler.getPendingCount(), "the re-edit is still pending");
+		runAll(jobs);
+		Check.equal(1, scheduler.drainUploads(UNLIMITED_BUDGET_NANOS), "the re-edit is uploaded");
+		Check.that(recorder.meshes.get(0).isEmpty(), "the upload reflects the re-edit");
+		Check.passed("superseded while queued");
+	}
+
+	private static void cancelledOnUnload() {
+		World world = new World();
+		world.setBlock(1, 1, 1, Blocks.DIRT);
+		world.setBlock(Chunk.SIZE + 1, 1, 1, Blocks.DIRT);
+		Recorder recorder = new Recorder();
+		List<Runnable> jobs = new ArrayList<Runnable>();
+		ChunkMeshScheduler scheduler = new ChunkMeshScheduler(world, recorder, jobs::add);
+		long meshedKey = ChunkPos.pack(0, 0, 0), waitingKey = ChunkPos.pack(1, 0, 0);
+
+		// One chunk unloads after meshing, the other before its job runs
+		scheduler.schedule(world.getChunk(0, 0, 0));
+		runAll(jobs);
+		scheduler.schedule(world.getChunk(1, 0, 0));
+		scheduler.cancel(meshedKey);
+		scheduler.cancel(waitingKey);
+		runAll(jobs);
+
+		Check.equal(1, scheduler.getMeshedCount().get(), "the cancelled job is not meshed");
+		Check.equal(0, scheduler.drainUploads(UNLIMITED_BUDGET_NANOS), "nothing uploaded");
+		Check.equal(2, scheduler.getStaleCount().get(), "both dropped as stale");
+		Check.equal(0, scheduler.getPendingCount(), "nothing pending");
+		Check.that(recorder.keys.isEmpty(), "the uploader never saw the cancelled chunks");
+		Check.passed("cancelled on unload");
+	}
+
+	private static void uploadBudget() {
+		World world = new World();
+		int chunks = 10;
+		for (int i = 0; i < chunks; i++) {
+			world.setBlock(i * Chunk.SIZE, 0, 0, Blocks.DIRT);
+		}
+		final long uploadNanos = 2000000;
+		Recorder recorder = new Recorder() {
+			@Override
+			public void upload(long chunkKey, ChunkMesh mesh) {
+				super.upload(chunkKey, mesh);
+				long end = System.nanoTime() + uploadNanos;
+				while (System.nanoTime() < end) {
+					// Stand in for a slow upload
+				}
+			}
+		};
+		List<Runnable> jobs = new ArrayList<Runnable>();
+		ChunkMeshScheduler scheduler = new ChunkMeshScheduler(world, recorder, jobs::add);
+		for (int i = 0; i < chunks; i++) {
+			scheduler.schedule(world.getChunk(i, 0, 0));
+		}
+		runAll(jobs);
+
+		Check.equal(1, scheduler.drainUploads(0), "a spent budget still uploads one mesh");
+		int uploaded = scheduler.drainUploads(uploadNanos * 5 / 2);
+		// The budget runs out during the second or third upload
+		Check.that(uploaded >= 1 && uploaded <= 3, "uploads within the budget: " + uploaded);
+		Check.equal(chunks - 1 - uploaded, scheduler.getQueuedCount(), "the rest stays queued");
+		Check.equal(chunks - 1 - uploaded, scheduler.getPendingCount(), "the rest stays pending");
+
+		while (scheduler.getPendingCount() > 0) {
+			Check.that(scheduler.drainUploads(uploadNanos) > 0, "every drain makes progress");
+		}
+		Check.equal(chunks, recorder.keys.size(), "every chunk uploaded once");
+		Check.equal(chunks, scheduler.getUploadedCount(), "uploaded count");
+		Check.passed("upload budget");
+	}
+
+	private static void runAll(List<Runnable> jobs) {
+		List<Runnable> batch = new ArrayList<Runnable>(jobs);
+		jobs.clear();
+		for (Runnable job : batch) {
+			job.run();
+		}
+	}
+
+	private static class Recorder implements MeshUploader {
+		final List<Long> keys = new ArrayList<Long>();
+		final List<ChunkMesh> meshes = new ArrayList<ChunkMesh>();
+		final List<Boolean> stagedOnUpload = new ArrayList<Boolean>();
+
+		@Override
+		public void upload(long chunkKey, ChunkMesh mesh) {
+			keys.add(chunkKey);
+			meshes.add(mesh);
+			stagedOnUpload.add(mesh.isStaged());
+		}
+	}
+}
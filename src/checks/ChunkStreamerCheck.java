@@ -0,0 +1,216 @@
+package checks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ToolBox.ManualClock;
+import world.Blocks;
+import world.Chunk;
+import world.ChunkListener;
+import world.ChunkStreamer;
+import world.LightEngine;
+import world.LodSelector;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Replays camera paths through a {@link ChunkStreamer} with a direct executor
+ * and a manual clock: hysteresis at a chunk border, failed loads, the heap
+ * estimate, edits made while a chunk loads and what eviction tells the
+ * listeners.
+ */
+public class ChunkStreamerCheck {
+
+	public static void main(String[] args) {
+		hysteresis();
+		failedLoads();
+		heapFollowsGrowth();
+		editsDuringLoad();
+		evictionForgets();
+	}
+
+	private static void hysteresis() {
+		World world = new World();
+		ManualClock clock = new ManualClock();
+		ChunkStreamer streamer = new ChunkStreamer(world, null, new TerrainGenerator(7), Runnable::run, clock);
+		streamer.setLoadRadius(4);
+		settle(streamer, clock, 8, 40, 8);
+
+		// The first crossing legitimately loads the chunks that come into range on the other side
+		for (int i = 0; i < 20; i++) {
+			clock.advance(1000000);
+			streamer.update(i % 2 == 0 ? 15.5f : 16.5f, 40, 8, 0, 0, -1);
+		}
+		long generated = streamer.getChunksGenerated(), evicted = streamer.getChunksEvicted();
+		for (int i = 0; i < 200; i++) {
+			clock.advance(1000000);
+			streamer.update(i % 2 == 0 ? 15.5f : 16.5f, 40, 8, 0, 0, -1);
+		}
+		Check.equal(generated, streamer.getChunksGenerated(), "no reloads while crossing a border back and forth");
+		Check.equal(evicted, streamer.getChunksEvicted(), "no evictions while crossing a border back and forth");
+		Check.passed("streamer hysteresis");
+	}
+
+	private static void failedLoads() {
+		final Set<Long> failing = new HashSet<Long>();
+		TerrainGenerator generator = new TerrainGenerator(7) {
+			@Override
+			public void generate(Chunk chunk) {
+				if (failing.contains(chunk.getKey())) {
+					throw new IllegalStateException("Injected failure");
+				}
+				super.generate(chunk);
+			}
+		};
+		World world = new World();
+		ManualClock clock = new ManualClock();
+		ChunkStreamer streamer = new ChunkStreamer(world, null, generator, Runnable::run, clock);
+		streamer.setLoadRadius(2);
+		streamer.setMaxInFlight(4);
+		failing.add(key(0, 2, 0));
+		failing.add(key(1, 2, 0));
+
+		System.out.println("(injected load failures follow)");
+		// 200 ms: the first retry is due after 250 ms
+		settle(streamer, clock, 8, 40, 8);
+		Check.equal(2, streamer.getFailedLoads(), "failed loads are counted and not retried at once");
+		Check.equal(0, streamer.getInFlightCount(), "failed loads give back their in-flight slot");
+		Check.that(!streamer.isLoaded(key(0, 2, 0)), "a failed chunk is not loaded");
+
+		// 1.2 s more: retries after 250 and 500 ms, the next one waits for a second
+		settle(streamer, clock, 8, 40, 8);
+		for (int i = 0; i < 5; i++) {
+			settle(streamer, clock, 8, 40, 8);
+		}
+		Check.equal(6, streamer.getFailedLoads(), "retries back off");
+
+		// Once the failure goes away, the chunk loads without the camera moving or turning
+		failing.clear();
+		for (int i = 0; i < 10; i++) {
+			settle(streamer, clock, 8, 40, 8);
+		}
+		Check.that(streamer.isLoaded(key(0, 2, 0)) && streamer.isLoaded(key(1, 2, 0)),
+				"failed chunks are retried while the camera stands still");
+		Check.equal(6, streamer.getFailedLoads(), "no failures once the cause is gone");
+		Check.passed("streamer failed loads");
+	}
+
+	private static void heapFollowsGrowth() {
+		World world = new World();
+		ManualClock clock = new ManualClock();
+		ChunkStreamer streamer = new ChunkStreamer(world, null, new TerrainGenerator(7), Runnable::run, clock);
+		streamer.setLoadRadius(2);
+		settle(streamer, clock, 8, 40, 8);
+		long unlit = streamer.getHeapBytes();
+
+		World litWorld = new World();
+		ChunkStreamer lit = new ChunkStreamer(litWorld, null, new TerrainGenerator(7), Runnable::run, clock);
+		lit.setLoadRadius(2);
+		lit.setLightEngine(new LightEngine(litWorld, null));
+		settle(lit, clock, 8, 40, 8);
+		Check.that(lit.getHeapBytes() > unlit, "light arrays are counted: " + lit.getHeapBytes() + " vs " + unlit);
+
+		// Many block types in a chunk of solid rock widen its palette
+		long before = streamer.getHeapBytes();
+		Chunk chunk = world.getChunk(0, 0, 0);
+		for (int i = 0; i < Chunk.VOLUME; i++) {
+			chunk.setBlock(i % Chunk.SIZE, i / Chunk.SIZE % Chunk.SIZE, i / (Chunk.SIZE * Chunk.SIZE), 1 + i % 5);
+		}
+		settle(streamer, clock, 8, 40, 8);
+		Check.that(streamer.getHeapBytes() > before, "edits that grow a chunk are counted");
+		Check.passed("streamer heap estimate follows lighting and edits");
+	}
+
+	private static void editsDuringLoad() {
+		World world = new World();
+		ManualClock clock = new ManualClock();
+		final List<Runnable> jobs = new ArrayList<Runnable>();
+		ChunkStreamer streamer = new ChunkStreamer(world, null, new TerrainGenerator(7), jobs::add, clock);
+		streamer.setLoadRadius(1);
+		streamer.update(8, 40, 8, 0, 0, -1);
+		Check.that(!jobs.isEmpty(), "loads are queued");
+
+		// Place a block high in the chunk, above the terrain, while its load is still queued
+		Chunk generated = new Chunk(0, 2, 0);
+		new TerrainGenerator(7).generate(generated);
+		world.setBlock(3, 47, 3, Blocks.LEAF);
+		for (Runnable job : jobs) {
+			job.run();
+		}
+		streamer.update(8, 40, 8, 0, 0, -1);
+
+		Check.that(streamer.isLoaded(key(0, 2, 0)), "the chunk loaded");
+		Check.equal(Blocks.LEAF, world.getBlock(3, 47, 3), "the edit made during the load survives");
+		int kept = 0;
+		for (int i = 0; i < Chunk.VOLUME; i++) {
+			int x = i % Chunk.SIZE, y = i / Chunk.SIZE % Chunk.SIZE, z = i / (Chunk.SIZE * Chunk.SIZE);
+			int block = generated.getBlock(x, y, z);
+			if (block != Blocks.AIR && world.getBlock(x, 32 + y, z) == block) {
+				kept++;
+			}
+		}
+		Check.that(kept > 0 && kept == count(generated), "the loaded terrain fills in around the edit");
+		Check.passed("streamer keeps edits made during a load");
+	}
+
+	private static int count(Chunk chunk) {
+		int solid = 0;
+		for (int i = 0; i < Chunk.VOLUME; i++) {
+			if (chunk.getBlock(i % Chunk.SIZE, i / Chunk.SIZE % Chunk.SIZE, i / (Chunk.SIZE * Chunk.SIZE)) != Blocks.AIR) {
+				solid++;
+			}
+		}
+		return solid;
+	}
+
+	private static void evictionForgets() {
+		World world = new World();
+		ManualClock clock = new ManualClock();
+		ChunkStreamer streamer = new ChunkStreamer(world, null, new TerrainGenerator(7), Runnable::run, clock);
+		streamer.setLoadRadius(3);
+		streamer.setUnloadMargin(1);
+		final Set<Long> listened = new HashSet<Long>();
+		streamer.setChunkListener(new ChunkListener() {
+			@Override
+			public void chunkLoaded(long chunkKey) {
+				listened.add(chunkKey);
+			}
+
+			@Override
+			public void chunkUnloaded(long chunkKey) {
+				listened.remove(chunkKey);
+			}
+		});
+		final Set<Long> forgotten = new HashSet<Long>();
+		streamer.setLodSelector(new LodSelector() {
+			@Override
+			public void forget(long chunkKey) {
+				forgotten.add(chunkKey);
+				super.forget(chunkKey);
+			}
+		});
+
+		settle(streamer, clock, 8, 40, 8);
+		long evicted = streamer.getChunksEvicted();
+		settle(streamer, clock, 8 + 16 * 20, 40, 8);
+
+		Check.equal(world.getChunks().size(), listened.size(), "listener sees exactly the chunks in the world");
+		Check.equal(streamer.getChunksEvicted() - evicted, forgotten.size(), "every eviction is forgotten by the LOD selector");
+		Check.that(forgotten.contains(key(0, 2, 0)), "the chunk at the start is forgotten");
+		Check.that(!streamer.isLoaded(key(0, 2, 0)), "chunks far behind are evicted");
+		Check.passed("streamer eviction");
+	}
+
+	private static void settle(ChunkStreamer streamer, ManualClock clock, float x, float y, float z) {
+		for (int i = 0; i < 200; i++) {
+			clock.advance(1000000);
+			streamer.update(x, y, z, 0, 0, -1);
+		}
+	}
+
+	private static long key(int cx, int cy, int cz) {
+		return world.ChunkPos.pack(cx, cy, cz);
+	}
+}
@@ -0,0 +1,109 @@
+package checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import Entities.Entity;
+import models.RawModel;
+import models.TexturedModel;
+import renderEngine.FrustumCuller;
+import world.ChunkPos;
+
+/**
+ * Moves entities registered with a {@link FrustumCuller} and checks that their
+ * matrices are only rebuilt by the cull pass, once per frame, and that the
+ * refitted leaves still cull correctly. Also checks the chunks the culler
+ * tracks as a chunk listener.
+ */
+public class EntityCullingCheck {
+
+	public static void main(String[] args) {
+		lazyRefit();
+		refittedBoundsCull();
+		chunksFollowListener();
+	}
+
+	private static void lazyRefit() {
+		FrustumCuller culler = newCuller();
+		Entity entity = newEntity(new Vector3f(0, 0, -10));
+		culler.addEntity(entity);
+		List<Entity> visible = new ArrayList<Entity>();
+		culler.collectVisibleEntities(visible);
+
+		Entity.resetTransformCounters();
+		for (int i = 0; i < 10; i++) {
+			entity.increaseRotation(0, 5, 0);
+			entity.increasePosition(0.1f, 0, 0);
+		}
+		Check.equal(0, Entity.getMatricesRecomputed(), "mutations alone rebuild no matrix");
+
+		culler.collectVisibleEntities(visible);
+		Check.equal(1, Entity.getMatricesRecomputed(), "the cull pass rebuilds the matrix once");
+		Check.equal(1, visible.size(), "the moved entity is still visible");
+		Check.passed("lazy culling refit");
+	}
+
+	private static void refittedBoundsCull() {
+		FrustumCuller culler = newCuller();
+		Entity entity = newEntity(new Vector3f(0, 0, -10));
+		culler.addEntity(entity);
+		List<Entity> visible = new ArrayList<Entity>();
+
+		// Behind the camera
+		entity.setPosition(new Vector3f(0, 0, 10));
+		culler.collectVisibleEntities(visible);
+		Check.equal(0, visible.size(), "an entity moved behind the camera is culled");
+
+		entity.setPosition(new Vector3f(0, 0, -20));
+		culler.collectVisibleEntities(visible);
+		Check.equal(1, visible.size(), "an entity moved back in front is visible");
+
+		// The parent's move makes the child's leaf stale too
+		Entity child = newEntity(new Vector3f(0, 0, 0));
+		entity.addChild(child);
+		culler.addEntity(child);
+		entity.setPosition(new Vector3f(0, 0, 10));
+		culler.collectVisibleEntities(visible);
+		Check.equal(0, visible.size(), "a child moved by its parent is culled with it");
+		Check.passed("refitted bounds cull");
+	}
+
+	private static void chunksFollowListener() {
+		FrustumCuller culler = newCuller();
+		long ahead = ChunkPos.pack(0, 0, -2), behind = ChunkPos.pack(0, 0, 2);
+		culler.chunkLoaded(ahead);
+		culler.chunkLoaded(behind);
+		List<Long> visible = new ArrayList<Long>();
+		culler.collectVisibleChunks(visible);
+		Check.equal(1, visible.size(), "chunks inside the frustum");
+		Check.equal(ahead, visible.get(0), "the chunk ahead of the camera");
+		Check.equal(1, culler.getCulledChunks(), "the chunk behind the camera is culled");
+
+		culler.chunkUnloaded(ahead);
+		culler.collectVisibleChunks(visible);
+		Check.equal(0, visible.size(), "an unloaded chunk is forgotten");
+		Check.passed("chunks follow the chunk listener");
+	}
+
+	private static FrustumCuller newCuller() {
+		Matrix4f projection = new Matrix4f();
+		float scale = (float) (1f / Math.tan(Math.toRadians(35)));
+		projection.m00 = scale;
+		projection.m11 = scale;
+		projection.m22 = -1000.2f / 999.8f;
+		projection.m23 = -1;
+		projection.m32 = -(2 * 1000f * 0.1f) / 999.8f;
+		projection.m33 = 0;
+		FrustumCuller culler = new FrustumCuller();
+		culler.update(projection, new Camera(new Vector3f(0, 0, 0), 0, 0, 0));
+		return culler;
+	}
+
+	private static Entity newEntity(Vector3f position) {
+		return new Entity(new TexturedModel(new RawModel(0, 3, 1), null), position, 0, 0, 0, 1);
+	}
+}
@@ -0,0 +1,60 @@
+package checks;
+
+import Entities.EntityStore;
+
+/**
+ * Creates and destroys entities in an {@link EntityStore}: data follows its
+ * ID through swap-removal, IDs are reused, and destroying an ID that is not
+ * alive is rejected.
+ */
+public class EntityStoreCheck {
+
+	public static void main(String[] args) {
+		swapRemoval();
+		invalidDestroy();
+	}
+
+	private static void swapRemoval() {
+		EntityStore store = new EntityStore(16);
+		int[] ids = new int[40];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = store.create(0, i, 0, 0, 0, 0, 0, 1);
+		}
+		for (int i = 0; i < ids.length; i += 3) {
+			store.destroy(ids[i]);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			Check.that(store.contains(ids[i]) == (i % 3 != 0), "entity " + i + " alive");
+			if (i % 3 != 0) {
+				Check.equal(i, (long) store.getPosX()[store.indexOf(ids[i])], "position of entity " + i);
+			}
+		}
+		int reused = store.create(0, 99, 0, 0, 0, 0, 0, 1);
+		Check.that(reused < ids.length && reused % 3 == 0, "a destroyed ID is reused");
+		Check.equal(99, (long) store.getPosX()[store.indexOf(reused)], "position of the reused ID");
+		Check.passed("entity store swap removal");
+	}
+
+	private static void invalidDestroy() {
+		EntityStore store = new EntityStore(16);
+		int a = store.create(0, 1, 0, 0, 0, 0, 0, 1);
+		int b = store.create(0, 2, 0, 0, 0, 0, 0, 1);
+		store.destroy(a);
+		expectRejected(store, a, "a destroyed ID");
+		expectRejected(store, b + 1, "an ID never handed out");
+		expectRejected(store, 5000, "an ID past the end");
+		expectRejected(store, -1, "a negative ID");
+		Check.equal(1, store.getCount(), "rejected destroys leave the store alone");
+		Check.equal(2, (long) store.getPosX()[store.indexOf(b)], "the remaining entity is untouched");
+		Check.passed("entity store rejects invalid destroys");
+	}
+
+	private static void expectRejected(EntityStore store, int id, String what) {
+		try {
+			store.destroy(id);
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		throw new IllegalStateException("Check failed: destroying " + what + " was accepted");
+	}
+}
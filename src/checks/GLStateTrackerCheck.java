@@ -0,0 +1,96 @@
+package checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.util.vector.Matrix4f;
+
+import Shaders.TransformShader;
+import renderEngine.CountingGLBackend;
+import renderEngine.CountingGLBackend.Call;
+import renderEngine.GLStateTracker;
+import renderEngine.RenderQueue;
+
+/**
+ * Drives a {@link GLStateTracker} and a {@link RenderQueue} on a headless
+ * {@link CountingGLBackend}: what partial invalidation keeps, reused VAO IDs,
+ * and the order of shaders whose IDs reach the top of the sort key.
+ */
+public class GLStateTrackerCheck {
+
+	public static void main(String[] args) {
+		bindingsInvalidationKeepsCapabilities();
+		reusedVertexArray();
+		sortKeyOrder();
+	}
+
+	private static void bindingsInvalidationKeepsCapabilities() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		GLStateTracker state = new GLStateTracker(gl);
+		state.enable(GL11.GL_DEPTH_TEST);
+		state.useProgram(3);
+		state.invalidateBindings();
+		state.enable(GL11.GL_DEPTH_TEST);
+		state.useProgram(3);
+		Check.equal(1, gl.getCount(Call.ENABLE), "depth test enabled once");
+		Check.equal(2, gl.getCount(Call.USE_PROGRAM), "program rebound after invalidating bindings");
+		Check.passed("bindings invalidation keeps capabilities");
+	}
+
+	private static void reusedVertexArray() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		GLStateTracker state = new GLStateTracker(gl);
+		state.bindVertexArray(5);
+		state.enableVertexAttribArray(0);
+		state.enableVertexAttribArray(1);
+		Check.equal(2, gl.getCount(Call.ENABLE_VERTEX_ATTRIB_ARRAY), "attributes of the first VAO enabled");
+
+		// The VAO is deleted and GL hands its ID to a new one with nothing enabled
+		state.forgetVertexArray(5);
+		state.bindVertexArray(5);
+		state.enableVertexAttribArray(0);
+		state.enableVertexAttribArray(1);
+		Check.equal(4, gl.getCount(Call.ENABLE_VERTEX_ATTRIB_ARRAY), "attributes of the reused VAO enabled again");
+		Check.equal(2, gl.getCount(Call.BIND_VERTEX_ARRAY), "deleting the bound VAO unbinds it");
+		Check.passed("reused VAO IDs");
+	}
+
+	private static void sortKeyOrder() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		RenderQueue queue = new RenderQueue(new GLStateTracker(gl));
+		List<Integer> order = new ArrayList<Integer>();
+		// Program IDs are truncated to the shader field; 17 and 31 fill its top bit
+		int[] programs = { 31, 1, 17, 1, 31, 17 };
+		for (int i = 0; i < programs.length; i++) {
+			queue.submit(new RecordingShader(programs[i], order), GL11.GL_TEXTURE_2D, 1, 1, 6, 0b1, new Matrix4f(),
+					0.5f);
+		}
+		queue.flush();
+		int[] expected = { 1, 1, 17, 17, 31, 31 };
+		for (int i = 0; i < expected.length; i++) {
+			Check.equal(expected[i], order.get(i), "program of draw " + i);
+		}
+		Check.passed("sort key order");
+	}
+
+	private static class RecordingShader implements TransformShader {
+		private final int programID;
+		private final List<Integer> order;
+
+		RecordingShader(int programID, List<Integer> order) {
+			this.programID = programID;
+			this.order = order;
+		}
+
+		@Override
+		public int getProgramID() {
+			return programID;
+		}
+
+		@Override
+		public void loadTransformationMatrix(Matrix4f matrix) {
+			order.add(programID);
+		}
+	}
+}
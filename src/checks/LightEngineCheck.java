@@ -0,0 +1,190 @@
+package checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import world.Blocks;
+import world.Chunk;
+import world.LightEngine;
+import world.NibbleArray;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Lights generated terrain with {@link LightEngine} sequentially, split across
+ * a {@link ForkJoinPool} and chunk by chunk, and compares each result, and the
+ * result of random edits applied incrementally, with a brute-force fixpoint of
+ * the same light rules.
+ */
+public class LightEngineCheck {
+
+	private static final int RADIUS = 3;
+	private static final int HEIGHT = 5;
+
+	// Face neighbours in the light engine's direction order: -X, +X, -Y, +Y, -Z, +Z
+	private static final int[] DX = { -1, 1, 0, 0, 0, 0 };
+	private static final int[] DY = { 0, 0, -1, 1, 0, 0 };
+	private static final int[] DZ = { 0, 0, 0, 0, -1, 1 };
+	private static final int UP = 3;
+
+	public static void main(String[] args) {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			World reference = generate(executor);
+			bruteForce(reference);
+			batchModes(executor, pool, reference);
+			incrementalEdits(executor, reference);
+		} finally {
+			executor.shutdown();
+			pool.shutdown();
+		}
+	}
+
+	private static void batchModes(ExecutorService executor, ForkJoinPool pool, World reference) {
+		World sequential = generate(executor);
+		new LightEngine(sequential, null).lightChunks(chunks(sequential), null);
+		Check.that(countGlowing(sequential) > 0, "the terrain has glowing leaves");
+		Check.that(maxBlockLight(sequential) == Blocks.getLightEmission(Blocks.GLOW_LEAF), "glowing leaves emit");
+		Check.equal(0, differences(sequential, reference), "sequential blocks differing from brute force");
+
+		World parallel = generate(executor);
+		new LightEngine(parallel, null).lightChunks(chunks(parallel), pool);
+		Check.equal(0, differences(parallel, reference), "parallel blocks differing from brute force");
+
+		World oneByOne = generate(executor);
+		LightEngine engine = new LightEngine(oneByOne, null);
+		List<Chunk> order = chunks(oneByOne);
+		Collections.shuffle(order, new Random(3));
+		for (Chunk chunk : order) {
+			engine.lightChunk(chunk);
+		}
+		Check.equal(0, differences(oneByOne, reference), "chunk by chunk blocks differing from brute force");
+		Check.passed("sequential, parallel and chunk by chunk lighting agree");
+	}
+
+	private static void incrementalEdits(ExecutorService executor, World reference) {
+		World world = generate(executor);
+		LightEngine engine = new LightEngine(world, null);
+		engine.lightChunks(chunks(world), null);
+
+		Random random = new Random(11);
+		int[] ids = { Blocks.AIR, Blocks.AIR, Blocks.DIRT, Blocks.LEAF, Blocks.GLOW_LEAF };
+		int limit = RADIUS * Chunk.SIZE;
+		for (int round = 0; round < 100; round++) {
+			int baseX = random.nextInt(limit * 2) - limit, baseZ = random.nextInt(limit * 2) - limit;
+			int baseY = 20 + random.nextInt(40);
+			for (int edit = 1 + random.nextInt(20); edit > 0; edit--) {
+				int x = baseX + random.nextInt(5), y = baseY + random.nextInt(5), z = baseZ + random.nextInt(5);
+				if (x >= limit || z >= limit || world.getChunk(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT) == null) {
+					continue;
+				}
+				int id = ids[random.nextInt(ids.length)];
+				engine.blockChanged(x, y, z, world.setBlock(x, y, z, id), id);
+				reference.setBlock(x, y, z, id);
+			}
+			engine.update();
+		}
+		bruteForce(reference);
+		Check.equal(0, differences(world, reference), "incrementally lit blocks differing from brute force");
+		Check.passed("incremental light updates");
+	}
+
+	private static World generate(ExecutorService executor) {
+		World world = new World();
+		new TerrainGenerator(7).generate(world, -RADIUS, 0, -RADIUS, RADIUS - 1, HEIGHT - 1, RADIUS - 1, executor);
+		return world;
+	}
+
+	private static List<Chunk> chunks(World world) {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		world.getChunks().forEach(chunks::add);
+		return chunks;
+	}
+
+	// Relights the world by sweeping every block until nothing changes
+	private static void bruteForce(World world) {
+		List<Chunk> chunks = chunks(world);
+		for (Chunk chunk : chunks) {
+			chunk.getSkyLight().clear();
+			chunk.getBlockLight().clear();
+			chunk.setLit(true);
+			for (int i = 0; i < Chunk.VOLUME; i++) {
+				chunk.getBlockLight().set(i, Blocks.getLightEmission(chunk.getBlocks().get(i)));
+			}
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Chunk chunk : chunks) {
+				for (int i = 0; i < Chunk.VOLUME; i++) {
+					int opacity = Blocks.getLightOpacity(chunk.getBlocks().get(i));
+					if (opacity >= LightEngine.MAX_LIGHT) {
+						continue;
+					}
+					int x = (chunk.getChunkX() << Chunk.SHIFT) + (i & Chunk.MASK);
+					int y = (chunk.getChunkY() << Chunk.SHIFT) + (i >> (Chunk.SHIFT * 2));
+					int z = (chunk.getChunkZ() << Chunk.SHIFT) + ((i >> Chunk.SHIFT) & Chunk.MASK);
+					for (int direction = 0; direction < 6; direction++) {
+						int nx = x + DX[direction], ny = y + DY[direction], nz = z + DZ[direction];
+						Chunk neighbour = world.getChunk(nx >> Chunk.SHIFT, ny >> Chunk.SHIFT, nz >> Chunk.SHIFT);
+						int index = Chunk.index(nx & Chunk.MASK, ny & Chunk.MASK, nz & Chunk.MASK);
+						for (int sky = 0; sky < 2; sky++) {
+							int level = neighbour == null ? (sky == 1 ? LightEngine.MAX_LIGHT : 0)
+									: (sky == 1 ? neighbour.getSkyLight() : neighbour.getBlockLight()).get(index);
+							// Full sky light falls straight down through clear blocks
+							int next = sky == 1 && direction == UP && level == LightEngine.MAX_LIGHT && opacity == 0
+									? LightEngine.MAX_LIGHT : level - 1 - opacity;
+							NibbleArray light = sky == 1 ? chunk.getSkyLight() : chunk.getBlockLight();
+							if (next > light.get(i)) {
+								light.set(i, next);
+								changed = true;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static long differences(World world, World reference) {
+		long count = 0;
+		for (Chunk chunk : chunks(world)) {
+			Chunk other = reference.getChunk(chunk.getChunkX(), chunk.getChunkY(), chunk.getChunkZ());
+			for (int i = 0; i < Chunk.VOLUME; i++) {
+				if (chunk.getSkyLight().get(i) != other.getSkyLight().get(i)
+						|| chunk.getBlockLight().get(i) != other.getBlockLight().get(i)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static int countGlowing(World world) {
+		int count = 0;
+		for (Chunk chunk : chunks(world)) {
+			for (int i = 0; i < Chunk.VOLUME; i++) {
+				if (chunk.getBlocks().get(i) == Blocks.GLOW_LEAF) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static int maxBlockLight(World world) {
+		int max = 0;
+		for (Chunk chunk : chunks(world)) {
+			for (int i = 0; i < Chunk.VOLUME; i++) {
+				max = Math.max(max, chunk.getBlockLight().get(i));
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,158 @@
+package checks;
+
+import java.util.Random;
+
+import world.Blocks;
+import world.Chunk;
+import world.ChunkLod;
+import world.ChunkMesher;
+import world.LodSelector;
+import world.World;
+
+/**
+ * Checks the level-of-detail pipeline without a GL context: downsampled cells
+ * hold the most common solid block of the blocks they replace, the selector
+ * switches level at its thresholds only once past the hysteresis distance,
+ * and coarse meshes keep their border faces so no seam opens next to a chunk
+ * drawn at another level.
+ */
+public class LodCheck {
+
+	private static final int PADDED = Chunk.SIZE + 2;
+
+	public static void main(String[] args) {
+		downsampling();
+		selection();
+		seams();
+	}
+
+	private static void downsampling() {
+		Random random = new Random(17);
+		int[] padded = new int[PADDED * PADDED * PADDED];
+		for (int i = 0; i < padded.length; i++) {
+			// Mostly air with a few block types, so cells are mixed
+			int roll = random.nextInt(10);
+			padded[i] = roll < 6 ? Blocks.AIR : roll < 8 ? Blocks.DIRT : roll < 9 ? Blocks.GRASS : Blocks.LEAF;
+		}
+		for (int level = 1; level <= ChunkLod.MAX_LEVEL; level++) {
+			int factor = ChunkLod.getFactor(level);
+			int[] cells = ChunkLod.downsample(padded, level, null);
+			for (int y = 0; y < Chunk.SIZE; y += factor) {
+				for (int z = 0; z < Chunk.SIZE; z += factor) {
+					for (int x = 0; x < Chunk.SIZE; x += factor) {
+						int expected = majority(padded, x, y, z, factor);
+						for (int dy = 0; dy < factor; dy++) {
+							for (int dz = 0; dz < factor; dz++) {
+								for (int dx = 0; dx < factor; dx++) {
+									Check.equal(expected, cells[index(x + dx, y + dy, z + dz)],
+											"level " + level + " cell at " + x + "," + y + "," + z);
+								}
+							}
+						}
+					}
+				}
+			}
+			for (int y = -1; y <= Chunk.SIZE; y++) {
+				for (int z = -1; z <= Chunk.SIZE; z++) {
+					for (int x = -1; x <= Chunk.SIZE; x++) {
+						if (x < 0 || y < 0 || z < 0 || x == Chunk.SIZE || y == Chunk.SIZE || z == Chunk.SIZE) {
+							Check.equal(Blocks.AIR, cells[index(x, y, z)], "level " + level + " border is air");
+						}
+					}
+				}
+			}
+		}
+
+		// A single block keeps its whole cell solid, so coarse meshes cover every full detail block
+		int[] single = new int[PADDED * PADDED * PADDED];
+		single[index(5, 9, 13)] = Blocks.DIRT;
+		int[] cells = ChunkLod.downsample(single, 3, null);
+		Check.equal(Blocks.DIRT, cells[index(0, 8, 8)], "a lone block fills its 8x8x8 cell");
+		Check.equal(Blocks.AIR, cells[index(8, 8, 8)], "neighbouring cells stay air");
+		Check.passed("LOD downsampling");
+	}
+
+	private static void selection() {
+		LodSelector selector = new LodSelector(new float[] { 100, 200 }, 10);
+		Check.equal(0, selector.select(-1, 50), "new chunk near the camera");
+		Check.equal(1, selector.select(-1, 150), "new chunk past the first threshold");
+		Check.equal(2, selector.select(-1, 250), "new chunk past the second threshold");
+		Check.equal(0, selector.select(0, 105), "level 0 kept within the hysteresis");
+		Check.equal(1, selector.select(0, 111), "level 1 once past the hysteresis");
+		Check.equal(1, selector.select(1, 95), "level 1 kept within the hysteresis");
+		Check.equal(0, selector.select(1, 89), "level 0 once back past the hysteresis");
+		Check.equal(2, selector.select(0, 300), "several levels at once");
+		Check.equal(0, selector.select(2, 10), "and back");
+
+		// A camera wobbling across a threshold does not make the chunk switch back and forth
+		Chunk chunk = new Chunk(0, 0, 0);
+		float center = Chunk.SIZE / 2f;
+		Check.equal(1, selector.update(chunk, center + 150, center, center), "first update picks a level");
+		int switches = 0;
+		for (int i = 0; i < 20; i++) {
+			float distance = i % 2 == 0 ? 95 : 105;
+			if (selector.update(chunk, center + distance, center, center) >= 0) {
+				switches++;
+			}
+		}
+		Check.equal(0, switches, "switches while wobbling around a threshold");
+		Check.equal(0, selector.update(chunk, center + 80, center, center), "update reports the new level");
+		Check.equal(-1, selector.update(chunk, center + 80, center, center), "and nothing when it stays");
+		Check.equal(0, selector.getLevel(chunk.getKey()), "remembered level");
+		selector.forget(chunk.getKey());
+		Check.equal(1, selector.update(chunk, center + 150, center, center), "forgotten chunks start over");
+		Check.passed("LOD selection and hysteresis");
+	}
+
+	private static void seams() {
+		// A solid chunk surrounded by solid chunks: at full detail every face is culled
+		World world = new World();
+		for (int cy = -1; cy <= 1; cy++) {
+			for (int cz = -1; cz <= 1; cz++) {
+				for (int cx = -1; cx <= 1; cx++) {
+					Chunk chunk = world.getOrCreateChunk(cx, cy, cz);
+					for (int i = 0; i < Chunk.VOLUME; i++) {
+						chunk.setBlock(i % Chunk.SIZE, i / Chunk.SIZE % Chunk.SIZE, i / (Chunk.SIZE * Chunk.SIZE),
+								Blocks.DIRT);
+					}
+				}
+			}
+		}
+		int[] blocks = ChunkMesher.capture(world.getChunk(0, 0, 0), world, null);
+		ChunkMesher mesher = new ChunkMesher();
+		Check.equal(0, mesher.mesh(blocks).getTriangleCount(), "buried chunk at full detail");
+		for (int level = 1; level <= ChunkLod.MAX_LEVEL; level++) {
+			// The neighbours may be drawn at another level, so a coarse chunk keeps one quad per side
+			Check.equal(12, mesher.mesh(blocks, level).getTriangleCount(), "buried chunk at level " + level);
+		}
+		Check.passed("LOD seams stay closed");
+	}
+
+	private static int majority(int[] padded, int x, int y, int z, int factor) {
+		int[] counts = new int[8];
+		for (int dy = 0; dy < factor; dy++) {
+			for (int dz = 0; dz < factor; dz++) {
+				for (int dx = 0; dx < factor; dx++) {
+					counts[padded[index(x + dx, y + dy, z + dz)]]++;
+				}
+			}
+		}
+		// Ties go to the block found first, as in ChunkLod
+		int best = Blocks.AIR;
+		for (int dy = 0; dy < factor; dy++) {
+			for (int dz = 0; dz < factor; dz++) {
+				for (int dx = 0; dx < factor; dx++) {
+					int block = padded[index(x + dx, y + dy, z + dz)];
+					if (block != Blocks.AIR && (best == Blocks.AIR || counts[block] > counts[best])) {
+						best = block;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	private static int index(int x, int y, int z) {
+		return ((y + 1) * PADDED + (z + 1)) * PADDED + (x + 1);
+	}
+}
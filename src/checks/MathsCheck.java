@@ -0,0 +1,76 @@
+package checks;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import ToolBox.Maths;
+
+/**
+ * Compares the allocation-free matrix builders in {@link Maths}, in all three
+ * output forms, with the original {@link Matrix4f#rotate} based ones on random
+ * transforms and cameras.
+ */
+public class MathsCheck {
+
+	private static final float TOLERANCE = 1e-3f;
+
+	public static void main(String[] args) {
+		Random random = new Random(9);
+		Matrix4f matrix = new Matrix4f();
+		float[] array = new float[20];
+		FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+		for (int i = 0; i < 1000; i++) {
+			Vector3f position = new Vector3f(coordinate(random), coordinate(random), coordinate(random));
+			float rx = angle(random), ry = angle(random), rz = angle(random), scale = 0.1f + random.nextFloat() * 4;
+			Matrix4f reference = Maths.createTransformationMatrix(position, rx, ry, rz, scale);
+
+			compare(reference, Maths.createTransformationMatrix(position, rx, ry, rz, scale, matrix), "Matrix4f " + i);
+			Maths.storeTransformationMatrix(position.x, position.y, position.z, rx, ry, rz, scale, array, 4);
+			buffer.clear();
+			for (int j = 0; j < 16; j++) {
+				buffer.put(array[4 + j]);
+			}
+			buffer.flip();
+			compare(reference, (Matrix4f) new Matrix4f().load(buffer), "float[] " + i);
+			buffer.clear();
+			Maths.storeTransformationMatrix(position, rx, ry, rz, scale, buffer);
+			Check.equal(16, buffer.position(), "floats appended to the buffer");
+			buffer.flip();
+			compare(reference, (Matrix4f) new Matrix4f().load(buffer), "FloatBuffer " + i);
+
+			Camera camera = new Camera(position, rx, ry, rz);
+			compare(Maths.createViewMatrix(camera), Maths.createViewMatrix(camera, matrix), "view " + i);
+		}
+		Check.passed("allocation-free matrices match the reference");
+	}
+
+	private static void compare(Matrix4f expected, Matrix4f actual, String name) {
+		float[] a = new float[16], b = new float[16];
+		FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+		expected.store(buffer);
+		buffer.flip();
+		buffer.get(a);
+		buffer.clear();
+		actual.store(buffer);
+		buffer.flip();
+		buffer.get(b);
+		for (int i = 0; i < 16; i++) {
+			// The translation grows with the coordinates, so compare it relative to them
+			float limit = TOLERANCE * Math.max(1, Math.abs(a[i]));
+			Check.that(Math.abs(a[i] - b[i]) <= limit, name + ": element " + i + " is " + b[i] + ", expected " + a[i]);
+		}
+	}
+
+	private static float coordinate(Random random) {
+		return (random.nextFloat() - 0.5f) * 200;
+	}
+
+	private static float angle(Random random) {
+		return (random.nextFloat() - 0.5f) * 720;
+	}
+}
@@ -0,0 +1,90 @@
+package checks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import models.MeshData;
+import renderEngine.OBJLoader;
+
+/**
+ * Parses small OBJ sources with {@link OBJLoader}, checks that bad face
+ * indices are rejected, and round-trips a mesh through the binary cache while
+ * the OBJ file changes underneath it.
+ */
+public class OBJLoaderCheck {
+
+	private static final String QUAD = "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+			+ "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\nvn 0 0 1\n";
+
+	public static void main(String[] args) throws IOException {
+		faces();
+		badIndices();
+		cacheRoundTrip();
+	}
+
+	private static void faces() {
+		MeshData data = parse(QUAD + "f 1/1/1 2/2/1 3/3/1 4/4/1\n");
+		Check.equal(4, data.getVertexCount(), "quad vertices");
+		Check.equal(6, data.getIndices().length, "quad triangulated as a fan");
+
+		MeshData relative = parse(QUAD + "f -4/-4/-1 -3/-3/-1 -2/-2/-1 -1/-1/-1\n");
+		Check.that(Arrays.equals(data.getPositions(), relative.getPositions()), "negative indices resolve");
+		Check.that(Arrays.equals(data.getUvs(), relative.getUvs()), "negative uv indices resolve");
+
+		MeshData positionsOnly = parse(QUAD + "f 1 2 3\nf 1//1 3//1 4//1\n");
+		Check.equal(6, positionsOnly.getIndices().length, "v and v//vn faces");
+		Check.passed("OBJ faces");
+	}
+
+	private static void badIndices() {
+		String[] faces = { "f 1/0/1 2/2/1 3/3/1", "f 1/5/1 2/2/1 3/3/1", "f 1/1/0 2/2/1 3/3/1", "f 1/1/2 2/2/1 3/3/1",
+				"f 1/-5/1 2/2/1 3/3/1", "f 0 2 3", "f 1 2 9" };
+		for (String face : faces) {
+			try {
+				parse(QUAD + face + "\n");
+			} catch (RuntimeException e) {
+				Check.that(e.getMessage().contains("line 10"), "error names the line: " + e.getMessage());
+				continue;
+			}
+			throw new IllegalStateException("Check failed: accepted '" + face + "'");
+		}
+		Check.passed("OBJ bad indices rejected");
+	}
+
+	private static void cacheRoundTrip() throws IOException {
+		File directory = Files.createTempDirectory("obj-check").toFile();
+		File obj = new File(directory, "quad.obj");
+		File cache = new File(directory, "cache/quad.mesh");
+		try {
+			Files.write(obj.toPath(), (QUAD + "f 1/1/1 2/2/1 3/3/1 4/4/1\n").getBytes(StandardCharsets.US_ASCII));
+			MeshData parsed = OBJLoader.loadMeshData(obj, cache);
+			Check.that(cache.isFile(), "cache written");
+			MeshData cached = OBJLoader.loadMeshData(obj, cache);
+			Check.that(Arrays.equals(parsed.getPositions(), cached.getPositions()), "cached positions");
+			Check.that(Arrays.equals(parsed.getUvs(), cached.getUvs()), "cached uvs");
+			Check.that(Arrays.equals(parsed.getNormals(), cached.getNormals()), "cached normals");
+			Check.that(Arrays.equals(parsed.getIndices(), cached.getIndices()), "cached indices");
+
+			// A changed OBJ file replaces the cache that was just read
+			Files.write(obj.toPath(), (QUAD + "f 1/1/1 2/2/1 3/3/1\nv 2 2 2\n").getBytes(StandardCharsets.US_ASCII));
+			obj.setLastModified(obj.lastModified() + 2000);
+			MeshData changed = OBJLoader.loadMeshData(obj, cache);
+			Check.equal(3, changed.getIndices().length, "changed OBJ reparsed");
+			Check.equal(3, OBJLoader.loadMeshData(obj, cache).getIndices().length, "replaced cache read back");
+			Check.that(!new File(cache.getPath() + ".tmp").exists(), "temporary cache file moved into place");
+		} finally {
+			new File(directory, "cache/quad.mesh").delete();
+			new File(directory, "cache").delete();
+			obj.delete();
+			directory.delete();
+		}
+		Check.passed("OBJ cache round trip");
+	}
+
+	private static MeshData parse(String source) {
+		return OBJLoader.parse(source.getBytes(StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,107 @@
+package checks;
+
+import java.util.Arrays;
+
+import world.Chunk;
+import world.ChunkMesh;
+import world.ChunkMesher;
+import world.PackedVertex;
+import world.TerrainGenerator;
+import world.World;
+
+/**
+ * Round-trips every field of {@link PackedVertex} over its whole range, and
+ * checks that a packed mesh decodes to the same vertices as the float mesh of
+ * the same chunk and that blocks without a texture of their own still mesh.
+ */
+public class PackedVertexCheck {
+
+	public static void main(String[] args) {
+		fieldsRoundTrip();
+		packedMatchesFloatMesh();
+		unknownBlockMeshes();
+	}
+
+	private static void fieldsRoundTrip() {
+		int[] layers = { 0, 1, 255, 4096, PackedVertex.MAX_LAYER };
+		for (int x = 0; x <= Chunk.SIZE; x++) {
+			for (int y = 0; y <= Chunk.SIZE; y++) {
+				for (int z = 0; z <= Chunk.SIZE; z++) {
+					for (int direction = 0; direction < 6; direction++) {
+						for (int layer : layers) {
+							int word = PackedVertex.packPosition(x, y, z, direction, layer);
+							Check.equal(x, PackedVertex.unpackX(word), "x");
+							Check.equal(y, PackedVertex.unpackY(word), "y");
+							Check.equal(z, PackedVertex.unpackZ(word), "z");
+							Check.equal(direction, PackedVertex.unpackDirection(word), "direction");
+							Check.equal(layer, PackedVertex.unpackLayer(word), "layer");
+						}
+					}
+				}
+			}
+		}
+		for (int u = 0; u <= Chunk.SIZE; u++) {
+			for (int v = 0; v <= Chunk.SIZE; v++) {
+				for (int light = 0; light < 256; light++) {
+					int word = PackedVertex.packTexture(u, v, light);
+					Check.equal(u, PackedVertex.unpackU(word), "u");
+					Check.equal(v, PackedVertex.unpackV(word), "v");
+					Check.equal(light, PackedVertex.unpackLight(word), "light");
+				}
+				Check.equal(0, PackedVertex.unpackLight(PackedVertex.packTexture(u, v)), "unlit texture word");
+			}
+		}
+		Check.passed("packed vertex fields round trip");
+	}
+
+	private static void packedMatchesFloatMesh() {
+		World world = new World();
+		TerrainGenerator generator = new TerrainGenerator(11);
+		for (int x = -1; x <= 1; x++) {
+			for (int y = 0; y < 4; y++) {
+				for (int z = -1; z <= 1; z++) {
+					generator.generate(world.getOrCreateChunk(x, y, z));
+				}
+			}
+		}
+		ChunkMesher floats = new ChunkMesher(false);
+		ChunkMesher packed = new ChunkMesher(true);
+		int vertices = 0;
+		for (int y = 0; y < 4; y++) {
+			Chunk chunk = world.getChunk(0, y, 0);
+			int[] blocks = ChunkMesher.capture(chunk, world, null);
+			byte[] light = ChunkMesher.captureLight(chunk, world, null);
+			ChunkMesh a = floats.mesh(blocks, light);
+			ChunkMesh b = packed.mesh(blocks, light);
+			Check.equal(a.getVertexCount(), b.getVertexCount(), "vertex count");
+			Check.that(Arrays.equals(a.getIndices(), b.getIndices()), "indices");
+			int[] words = b.getPackedVertices();
+			for (int i = 0; i < a.getVertexCount(); i++) {
+				int position = words[i * 2], texture = words[i * 2 + 1];
+				Check.equal((long) a.getPositions()[i * 3], PackedVertex.unpackX(position), "x of vertex " + i);
+				Check.equal((long) a.getPositions()[i * 3 + 1], PackedVertex.unpackY(position), "y of vertex " + i);
+				Check.equal((long) a.getPositions()[i * 3 + 2], PackedVertex.unpackZ(position), "z of vertex " + i);
+				Check.equal((long) a.getLayers()[i], PackedVertex.unpackLayer(position), "layer of vertex " + i);
+				Check.equal((long) a.getUvs()[i * 2], PackedVertex.unpackU(texture), "u of vertex " + i);
+				Check.equal((long) a.getUvs()[i * 2 + 1], PackedVertex.unpackV(texture), "v of vertex " + i);
+				Check.equal((long) a.getLights()[i], PackedVertex.unpackLight(texture), "light of vertex " + i);
+			}
+			vertices += a.getVertexCount();
+		}
+		Check.that(vertices > 0, "the terrain produced vertices");
+		Check.passed("packed mesh matches float mesh");
+	}
+
+	private static void unknownBlockMeshes() {
+		World world = new World();
+		world.setBlock(3, 3, 3, 99);
+		Chunk chunk = world.getChunk(0, 0, 0);
+		ChunkMesh mesh = new ChunkMesher(true).mesh(ChunkMesher.capture(chunk, world, null),
+				ChunkMesher.captureLight(chunk, world, null));
+		Check.equal(24, mesh.getVertexCount(), "vertices of an unknown block");
+		for (int i = 0; i < mesh.getVertexCount(); i++) {
+			Check.equal(0, PackedVertex.unpackLayer(mesh.getPackedVertices()[i * 2]), "layer of vertex " + i);
+		}
+		Check.passed("unknown block IDs use the first layer");
+	}
+}
@@ -0,0 +1,187 @@
+package checks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import world.Chunk;
+import world.RegionFile;
+import world.TerrainGenerator;
+import world.WorldStorage;
+
+/**
+ * Round-trips payloads through a {@link RegionFile} and chunks through
+ * {@link WorldStorage} in a temporary directory: growing, shrinking and
+ * rewriting chunks without overwriting the stored version, reopening the file,
+ * and a write that fails before it succeeds.
+ */
+public class RegionFileCheck {
+
+	public static void main(String[] args) throws IOException {
+		File directory = Files.createTempDirectory("region-check").toFile();
+		try {
+			regionRoundTrip(directory);
+			growthKeepsOldRun(directory);
+			rewriteKeepsOldRun(directory);
+			storageRoundTrip(directory);
+			failedWriteIsRetried(directory);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	private static void regionRoundTrip(File directory) throws IOException {
+		File file = new File(directory, "round-trip" + WorldStorage.REGION_EXTENSION);
+		Random random = new Random(1);
+		byte[][] payloads = new byte[RegionFile.CHUNKS][];
+		RegionFile region = new RegionFile(file);
+		// Write every chunk a few times with random sizes, so runs grow, shrink and move
+		for (int pass = 0; pass < 4; pass++) {
+			for (int i = 0; i < RegionFile.CHUNKS; i += 3) {
+				byte[] payload = new byte[random.nextInt(3 * RegionFile.SECTOR_BYTES)];
+				random.nextBytes(payload);
+				region.write(i, payload, payload.length);
+				payloads[i] = payload;
+			}
+		}
+		region.delete(3);
+		payloads[3] = null;
+		verify(region, payloads);
+		region.close();
+
+		region = new RegionFile(file);
+		verify(region, payloads);
+		region.close();
+		Check.passed("region file round trip");
+	}
+
+	private static void growthKeepsOldRun(File directory) throws IOException {
+		File file = new File(directory, "growth" + WorldStorage.REGION_EXTENSION);
+		RegionFile region = new RegionFile(file);
+		region.write(0, new byte[100], 100);
+		Check.equal(2, region.getSectorCount(), "header and one chunk sector");
+
+		// Growing must not reuse the old sector, even though it could be merged with the free space after it
+		region.write(0, new byte[5000], 5000);
+		Check.equal(4, region.getSectorCount(), "the grown chunk is written after its old run");
+
+		// The old sector is free once the header points at the new run
+		region.write(1, new byte[100], 100);
+		Check.equal(4, region.getSectorCount(), "the old sector is reused");
+		Check.equal(5000, region.read(0).remaining(), "grown chunk length");
+		Check.equal(100, region.read(1).remaining(), "reusing chunk length");
+		region.close();
+		Check.passed("growth keeps the old run until the header moves");
+	}
+
+	private static void rewriteKeepsOldRun(File directory) throws IOException {
+		File file = new File(directory, "rewrite" + WorldStorage.REGION_EXTENSION);
+		RegionFile region = new RegionFile(file);
+		region.write(0, new byte[] { 1 }, 1);
+
+		// A payload that fits the old sector still goes to a fresh one, so a crash can't tear the stored copy
+		region.write(0, new byte[] { 2 }, 1);
+		Check.equal(3, region.getSectorCount(), "the rewrite is placed after the old sector");
+		Check.equal(2, region.read(0).get(0), "the header points at the rewrite");
+
+		region.write(1, new byte[] { 3 }, 1);
+		Check.equal(3, region.getSectorCount(), "the old sector is reused");
+		region.close();
+
+		region = new RegionFile(file);
+		Check.equal(2, region.read(0).get(0), "rewritten chunk after reopening");
+		Check.equal(3, region.read(1).get(0), "reusing chunk after reopening");
+		region.close();
+		Check.passed("rewrites keep the old run until the header moves");
+	}
+
+	private static void storageRoundTrip(File directory) {
+		File worldDirectory = new File(directory, "world");
+		TerrainGenerator generator = new TerrainGenerator(3);
+		WorldStorage storage = new WorldStorage(worldDirectory);
+		for (int x = -4; x < 4; x++) {
+			for (int y = 0; y < 4; y++) {
+				Chunk chunk = new Chunk(x, y, 0);
+				generator.generate(chunk);
+				storage.saveChunk(chunk);
+			}
+		}
+		storage.close();
+
+		storage = new WorldStorage(worldDirectory);
+		for (int x = -4; x < 4; x++) {
+			for (int y = 0; y < 4; y++) {
+				Chunk expected = new Chunk(x, y, 0);
+				generator.generate(expected);
+				Chunk loaded = storage.loadChunk(x, y, 0);
+				Check.that(loaded != null, "chunk " + x + ", " + y + " was saved");
+				for (int i = 0; i < Chunk.VOLUME; i++) {
+					Check.equal(expected.getBlocks().get(i), loaded.getBlocks().get(i), "block " + i);
+				}
+			}
+		}
+		Check.that(storage.loadChunk(0, 9, 0) == null, "a chunk that was never saved loads as null");
+		storage.close();
+		Check.passed("world storage round trip");
+	}
+
+	private static void failedWriteIsRetried(File directory) throws IOException {
+		File worldDirectory = new File(directory, "failing");
+		// A directory where the region file should be makes every write to it fail
+		File blocker = new File(worldDirectory, "r.0.0.0" + WorldStorage.REGION_EXTENSION);
+		blocker.mkdirs();
+
+		WorldStorage storage = new WorldStorage(worldDirectory);
+		Chunk chunk = new Chunk(1, 1, 1);
+		chunk.setBlock(1, 2, 3, 1);
+		storage.saveChunk(chunk);
+		storage.flush();
+		Check.equal(1, storage.getPendingCount(), "the failed chunk is still pending");
+		Check.equal(1, storage.getFailingCount(), "the failed chunk is reported");
+		Check.that(storage.getFailedWrites().get() > 0, "the failure is counted");
+		Check.equal(1, storage.loadChunk(1, 1, 1).getBlock(1, 2, 3), "the pending edit is still loadable");
+
+		blocker.delete();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (storage.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+			storage.flush();
+		}
+		Check.equal(0, storage.getPendingCount(), "the retry writes the chunk");
+		storage.close();
+
+		storage = new WorldStorage(worldDirectory);
+		Check.equal(1, storage.loadChunk(1, 1, 1).getBlock(1, 2, 3), "the retried edit reached the disk");
+		storage.close();
+		Check.passed("failed writes are retried");
+	}
+
+	private static void verify(RegionFile region, byte[][] payloads) throws IOException {
+		for (int i = 0; i < RegionFile.CHUNKS; i++) {
+			ByteBuffer stored = region.read(i);
+			if (payloads[i] == null) {
+				Check.that(stored == null, "chunk " + i + " is absent");
+				continue;
+			}
+			Check.equal(payloads[i].length, stored.remaining(), "length of chunk " + i);
+			byte[] data = new byte[stored.remaining()];
+			stored.get(data);
+			for (int b = 0; b < data.length; b++) {
+				if (data[b] != payloads[i][b]) {
+					throw new IllegalStateException("Check failed: byte " + b + " of chunk " + i);
+				}
+			}
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
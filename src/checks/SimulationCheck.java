@@ -0,0 +1,161 @@
+package checks;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import Entities.Entity;
+import Entities.FixedTimestep;
+import Entities.Simulation;
+import Entities.SimulationSnapshot;
+import ToolBox.ManualClock;
+
+/**
+ * Drives {@link FixedTimestep} and {@link Simulation} with a
+ * {@link ManualClock}, no display needed: steps carry their remainder over,
+ * hitches are capped and the excess dropped, snapshots interpolate between
+ * the last two ticks, and snapshots reach the render side from the
+ * simulation thread.
+ */
+public class SimulationCheck {
+
+	private static final long MILLIS = 1000000;
+	private static final float TOLERANCE = 1e-4f;
+
+	public static void main(String[] args) throws InterruptedException {
+		timestep();
+		stepCap();
+		interpolation();
+		handoff();
+	}
+
+	private static void timestep() {
+		FixedTimestep timestep = new FixedTimestep(10 * MILLIS, 4);
+		Check.equal(0, timestep.advance(0), "the first call only starts the timer");
+		Check.equal(2, timestep.advance(25 * MILLIS), "two whole steps in 25 ms");
+		Check.equal(0, timestep.advance(29 * MILLIS), "the remainder carries over");
+		Check.equal(1, timestep.advance(30 * MILLIS), "the carried remainder completes a step");
+		Check.equal(10 * MILLIS, timestep.getNanosUntilNextStep(30 * MILLIS), "wait until the next step");
+		Check.equal(3, timestep.getSteps(), "steps run");
+
+		// A 100 ms hitch: ten steps are due, four run and six are dropped
+		Check.equal(4, timestep.advance(130 * MILLIS), "steps are capped");
+		Check.equal(6, timestep.getDroppedSteps(), "the excess is dropped");
+		Check.equal(130 * MILLIS, timestep.getTime(), "dropped steps are not caught up later");
+		Check.equal(0, timestep.advance(135 * MILLIS), "no catch-up after the hitch");
+
+		boolean rejected = false;
+		try {
+			new FixedTimestep(0, 1);
+		} catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+		Check.that(rejected, "a zero step is rejected");
+		Check.passed("fixed timestep");
+	}
+
+	private static void stepCap() {
+		ManualClock clock = new ManualClock();
+		Simulation simulation = new Simulation(clock, 0.01f, null);
+		Entity entity = entity();
+		simulation.addEntity(entity);
+		simulation.addTickListener((tick, delta) -> entity.increasePosition(1, 0, 0));
+		long step = simulation.getTimestep().getStepNanos();
+
+		Check.equal(0, simulation.update(), "the first update starts the clock");
+		clock.advance(step * 20);
+		Check.equal(8, simulation.update(), "at most eight ticks per update");
+		Check.equal(12, simulation.getDroppedSteps(), "the rest are dropped");
+		Check.equal(8, simulation.getTick(), "ticks run");
+
+		// Only the last tick of a catch-up is interpolated; the skipped ones are never drawn
+		SimulationSnapshot snapshot = simulation.getSnapshot();
+		Entity drawn = entity();
+		List<Entity> drawnList = Collections.singletonList(drawn);
+		snapshot.apply(0, null, drawnList);
+		close(7, drawn.getPosition().x, "catch-up snapshot starts at the last tick but one");
+		snapshot.apply(1, null, drawnList);
+		close(8, drawn.getPosition().x, "and ends at the last tick");
+		Check.passed("simulation step cap");
+	}
+
+	private static void interpolation() {
+		ManualClock clock = new ManualClock();
+		Camera camera = new Camera(new Vector3f(0, 0, 0), 0, 0, 0);
+		Simulation simulation = new Simulation(clock, 0.01f, camera);
+		Entity entity = entity();
+		simulation.addEntity(entity);
+		simulation.addTickListener((tick, delta) -> entity.increasePosition(2, 0, 0));
+		simulation.submit(() -> entity.increasePosition(0, 5, 0));
+		long step = simulation.getTimestep().getStepNanos();
+
+		simulation.update();
+		Check.that(simulation.getSnapshot() == null, "no snapshot before the first tick");
+		clock.advance(step);
+		simulation.setInput(true, false, 0, 0);
+		Check.equal(1, simulation.update(), "one tick");
+		SimulationSnapshot snapshot = simulation.getSnapshot();
+		Check.equal(1, snapshot.getTick(), "snapshot tick");
+		Check.equal(1, snapshot.getEntityCount(), "snapshot entities");
+
+		long time = snapshot.getTime();
+		close(0, snapshot.getAlpha(time), "alpha at the snapshot time");
+		close(0.5f, snapshot.getAlpha(time + step / 2), "alpha half a step later");
+		close(1, snapshot.getAlpha(time + step * 3), "alpha is clamped above");
+		close(0, snapshot.getAlpha(time - step), "alpha is clamped below");
+
+		Camera drawnCamera = new Camera(new Vector3f(), 0, 0, 0);
+		Entity drawn = entity();
+		snapshot.apply(0.5f, drawnCamera, Collections.singletonList(drawn));
+		close(1, drawn.getPosition().x, "entity halfway through its move");
+		close(camera.getPosition().z / 2, drawnCamera.getPosition().z, "camera halfway through its move");
+		Check.that(camera.getPosition().z != 0, "input moved the simulation camera");
+
+		// The next tick publishes a new snapshot and leaves the old one alone
+		clock.advance(step);
+		simulation.update();
+		Check.that(simulation.getSnapshot() != snapshot, "a new snapshot per update");
+		snapshot.apply(1, null, Collections.singletonList(drawn));
+		close(2, drawn.getPosition().x, "old snapshots do not change");
+		close(5, drawn.getPosition().y, "submitted commands ran on the simulation thread");
+		simulation.getSnapshot().apply(1, null, Collections.singletonList(drawn));
+		close(4, drawn.getPosition().x, "the new snapshot holds the new tick");
+		Check.passed("simulation interpolation");
+	}
+
+	private static void handoff() throws InterruptedException {
+		ManualClock clock = new ManualClock();
+		Simulation simulation = new Simulation(clock, 0.01f, null);
+		Entity entity = entity();
+		simulation.addEntity(entity);
+		simulation.addTickListener((tick, delta) -> entity.increasePosition(1, 0, 0));
+		long step = simulation.getTimestep().getStepNanos();
+
+		simulation.start();
+		Entity drawn = entity();
+		long deadline = System.nanoTime() + 5000 * MILLIS;
+		for (long tick = 1; tick <= 5; tick++) {
+			clock.advance(step);
+			SimulationSnapshot snapshot;
+			while ((snapshot = simulation.getSnapshot()) == null || snapshot.getTick() < tick) {
+				Check.that(System.nanoTime() < deadline, "the simulation thread publishes tick " + tick);
+				Thread.sleep(1);
+			}
+			snapshot.apply(1, null, Collections.singletonList(drawn));
+			close(snapshot.getTick(), drawn.getPosition().x, "render side sees tick " + tick);
+		}
+		simulation.stop();
+		Check.passed("simulation snapshot handoff");
+	}
+
+	private static Entity entity() {
+		return new Entity(null, new Vector3f(0, 0, 0), 0, 0, 0, 1);
+	}
+
+	private static void close(float expected, float actual, String message) {
+		Check.that(Math.abs(expected - actual) <= TOLERANCE * Math.max(1, Math.abs(expected)),
+				message + ": " + actual + ", expected " + expected);
+	}
+}
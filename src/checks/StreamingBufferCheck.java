@@ -0,0 +1,116 @@
+package checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Entity;
+import Textures.ModelTexture;
+import models.RawModel;
+import models.TexturedModel;
+import renderEngine.CountingGLBackend;
+import renderEngine.CountingGLBackend.Call;
+import renderEngine.InstancedRenderer;
+import renderEngine.StreamingBuffer;
+
+/**
+ * Drives a {@link StreamingBuffer} and the {@link InstancedRenderer} on a
+ * headless {@link CountingGLBackend} whose fences can be held back, covering
+ * the stall path, the bounded wait, the orphaning fallback and growing a
+ * stream that keeps overflowing.
+ */
+public class StreamingBufferCheck {
+
+	public static void main(String[] args) {
+		heldFencesTimeOut();
+		orphaningNeedsNoFences();
+		instancedFallback();
+	}
+
+	private static void heldFencesTimeOut() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		StreamingBuffer stream = new StreamingBuffer(gl, GL15.GL_ARRAY_BUFFER, 1024, 3, true);
+		Check.that(stream.isPersistent(), "headless backend maps persistently");
+
+		gl.setHoldFences(true);
+		for (int frame = 0; frame < 3; frame++) {
+			Check.that(stream.beginFrame(), "fresh region " + frame + " is free");
+			Check.that(stream.write(BufferUtils.createFloatBuffer(16)) >= 0, "write to fresh region " + frame);
+			stream.endFrame();
+		}
+
+		// The GPU has not finished with the first region yet
+		Check.that(!stream.beginFrame(), "a held region is given up after the timeout");
+		Check.equal(1, stream.getStalls(), "stalls");
+		Check.equal(1, stream.getTimeouts(), "timeouts");
+		Check.equal(-1, stream.write(BufferUtils.createFloatBuffer(16)), "writes to a given-up region fail");
+		stream.endFrame();
+
+		gl.signalFences();
+		Check.that(stream.beginFrame(), "a signalled region is reused");
+		Check.that(stream.write(BufferUtils.createFloatBuffer(16)) >= 0, "write after the fence signalled");
+		stream.endFrame();
+		Check.that(stream.beginFrame(), "the given-up region keeps its fence and is reused once signalled");
+		Check.equal(1, stream.getTimeouts(), "no further timeouts");
+		stream.cleanUp();
+		Check.passed("held fences time out");
+	}
+
+	private static void orphaningNeedsNoFences() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		StreamingBuffer stream = new StreamingBuffer(gl, GL15.GL_ARRAY_BUFFER, 1024, 3, false);
+		gl.setHoldFences(true);
+		for (int frame = 0; frame < 10; frame++) {
+			Check.that(stream.beginFrame(), "orphaned frame " + frame + " never waits");
+			Check.that(stream.write(BufferUtils.createFloatBuffer(16)) >= 0, "orphaned write " + frame);
+			stream.endFrame();
+		}
+		Check.equal(0, gl.getCount(Call.FENCE_SYNC), "fences placed while orphaning");
+		Check.equal(0, gl.getCount(Call.CLIENT_WAIT_SYNC), "fence waits while orphaning");
+		Check.equal(11, gl.getCount(Call.BUFFER_DATA), "one allocation and one orphan per frame");
+		Check.passed("orphaning needs no fences");
+	}
+
+	private static void instancedFallback() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		InstancedRenderer renderer = new InstancedRenderer(gl, 8);
+		TexturedModel model = new TexturedModel(new RawModel(1, 36, 1), new ModelTexture(1));
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int i = 0; i < 8; i++) {
+			entities.add(new Entity(model, new Vector3f(i, 0, 0), 0, 0, 0, 1));
+		}
+
+		renderer.render(entities);
+		Check.equal(1, renderer.getDrawCalls(), "one instanced draw");
+		Check.equal(0, gl.getCount(Call.BUFFER_SUB_DATA) + gl.getCount(Call.BUFFER_DATA), "no upload call while streaming");
+		Check.equal(512, renderer.getStream().getBytesWritten(), "matrices streamed");
+
+		// More instances than a region holds go to the orphaned fallback buffer
+		for (int i = 0; i < 8; i++) {
+			entities.add(new Entity(model, new Vector3f(i, 1, 0), 0, 0, 0, 1));
+		}
+		gl.resetCounts();
+		renderer.render(entities);
+		Check.equal(16, renderer.getInstancesDrawn(), "all instances drawn from the fallback");
+		Check.equal(1, gl.getCount(Call.BUFFER_DATA), "the fallback orphans its buffer");
+		Check.equal(1, gl.getCount(Call.BUFFER_SUB_DATA), "the fallback uploads once");
+
+		// A region that keeps overflowing is replaced by a larger one
+		renderer.render(entities);
+		Check.equal(0, renderer.getStreamGrowths(), "no growth before the fallback keeps firing");
+		gl.resetCounts();
+		renderer.render(entities);
+		Check.equal(1, renderer.getStreamGrowths(), "stream grown");
+		Check.equal(1024, renderer.getStream().getRegionSize(), "grown region holds the frame");
+		Check.equal(1, gl.getCount(Call.DELETE_BUFFER), "old stream released");
+		Check.equal(0, gl.getCount(Call.BUFFER_SUB_DATA), "no fallback upload after growing");
+		Check.equal(1024, renderer.getStream().getBytesWritten(), "matrices streamed after growing");
+		renderer.render(entities);
+		Check.equal(1, renderer.getStreamGrowths(), "grown once");
+		renderer.cleanUp();
+		Check.passed("instanced renderer streams, falls back and grows");
+	}
+}
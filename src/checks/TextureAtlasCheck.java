@@ -0,0 +1,143 @@
+package checks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import Textures.AtlasPacker;
+import Textures.TextureAtlas;
+import Textures.TextureAtlas.Region;
+
+/**
+ * Packs random texture sizes with {@link AtlasPacker} and checks the layout,
+ * the padding border of the composed image, the UV remap into a region and the
+ * region table round trip.
+ */
+public class TextureAtlasCheck {
+
+	private static final int PADDING = 2;
+
+	public static void main(String[] args) throws IOException {
+		packing();
+		composedBorders();
+		uvRemap();
+		tableRoundTrip();
+	}
+
+	private static void packing() {
+		Random random = new Random(3);
+		for (int trial = 0; trial < 50; trial++) {
+			Map<String, int[]> sizes = randomSizes(random, 1 + random.nextInt(40));
+			TextureAtlas atlas = AtlasPacker.pack(sizes, PADDING);
+			Check.equal(Integer.highestOneBit(atlas.getWidth()), atlas.getWidth(), "atlas width is a power of two");
+			Check.equal(Integer.highestOneBit(atlas.getHeight()), atlas.getHeight(), "atlas height is a power of two");
+			Check.equal(sizes.size(), atlas.getAllRegions().size(), "every texture placed");
+
+			List<Region> regions = new ArrayList<Region>(atlas.getAllRegions());
+			for (int i = 0; i < regions.size(); i++) {
+				Region a = regions.get(i);
+				int[] size = sizes.get(a.getName());
+				Check.equal(size[0], a.getWidth(), "width of " + a.getName());
+				Check.equal(size[1], a.getHeight(), "height of " + a.getName());
+				Check.that(a.getX() - PADDING >= 0 && a.getY() - PADDING >= 0
+						&& a.getX() + a.getWidth() + PADDING <= atlas.getWidth()
+						&& a.getY() + a.getHeight() + PADDING <= atlas.getHeight(), a.getName() + " padded inside the atlas");
+				for (int j = i + 1; j < regions.size(); j++) {
+					Check.that(!paddedOverlap(a, regions.get(j)), a.getName() + " overlaps " + regions.get(j).getName());
+				}
+			}
+		}
+		Check.passed("atlas packing");
+	}
+
+	private static void composedBorders() {
+		Random random = new Random(5);
+		Map<String, int[]> sizes = randomSizes(random, 12);
+		Map<String, BufferedImage> images = new LinkedHashMap<String, BufferedImage>();
+		for (Map.Entry<String, int[]> entry : sizes.entrySet()) {
+			BufferedImage image = new BufferedImage(entry.getValue()[0], entry.getValue()[1], BufferedImage.TYPE_INT_ARGB);
+			for (int y = 0; y < image.getHeight(); y++) {
+				for (int x = 0; x < image.getWidth(); x++) {
+					image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+				}
+			}
+			images.put(entry.getKey(), image);
+		}
+		TextureAtlas atlas = AtlasPacker.pack(sizes, PADDING);
+		BufferedImage composed = AtlasPacker.compose(atlas, images, PADDING);
+		for (Region region : atlas.getAllRegions()) {
+			BufferedImage image = images.get(region.getName());
+			for (int y = -PADDING; y < region.getHeight() + PADDING; y++) {
+				for (int x = -PADDING; x < region.getWidth() + PADDING; x++) {
+					int sx = Math.min(Math.max(x, 0), region.getWidth() - 1);
+					int sy = Math.min(Math.max(y, 0), region.getHeight() - 1);
+					Check.equal(image.getRGB(sx, sy), composed.getRGB(region.getX() + x, region.getY() + y),
+							"pixel " + x + "," + y + " of " + region.getName());
+				}
+			}
+		}
+		Check.passed("composed atlas borders");
+	}
+
+	private static void uvRemap() {
+		TextureAtlas atlas = new TextureAtlas(256, 128);
+		atlas.addRegion("grass.png", 32, 64, 16, 32);
+		float[] remapped = atlas.remapUVs(new float[] { 0, 0, 1, 1, 0.5f, 0.25f }, "grass.png");
+		float[] expected = { 32 / 256f, 64 / 128f, 48 / 256f, 96 / 128f, 40 / 256f, 72 / 128f };
+		Check.equal(expected.length, remapped.length, "remapped length");
+		for (int i = 0; i < expected.length; i++) {
+			Check.that(Math.abs(expected[i] - remapped[i]) < 1e-6f, "remapped coordinate " + i + " is " + remapped[i]);
+		}
+		try {
+			atlas.remapUVs(new float[2], "missing.png");
+		} catch (IllegalArgumentException e) {
+			Check.passed("atlas UV remap");
+			return;
+		}
+		throw new IllegalStateException("Check failed: remapped into a texture that is not in the atlas");
+	}
+
+	private static void tableRoundTrip() throws IOException {
+		Map<String, int[]> sizes = randomSizes(new Random(7), 9);
+		sizes.put("name with spaces 4.png", new int[] { 12, 20 });
+		TextureAtlas atlas = AtlasPacker.pack(sizes, PADDING);
+		File table = File.createTempFile("atlas-check", ".txt");
+		try {
+			atlas.writeTable(table);
+			TextureAtlas read = TextureAtlas.readTable(table);
+			Check.equal(atlas.getWidth(), read.getWidth(), "table width");
+			Check.equal(atlas.getHeight(), read.getHeight(), "table height");
+			Check.equal(atlas.getAllRegions().size(), read.getAllRegions().size(), "table regions");
+			for (Region region : atlas.getAllRegions()) {
+				Region other = read.getRegion(region.getName());
+				Check.that(region.getX() == other.getX() && region.getY() == other.getY()
+						&& region.getWidth() == other.getWidth() && region.getHeight() == other.getHeight()
+						&& region.getU0() == other.getU0() && region.getV1() == other.getV1(),
+						"region " + region.getName() + " read back");
+			}
+		} finally {
+			table.delete();
+		}
+		Check.passed("atlas table round trip");
+	}
+
+	private static Map<String, int[]> randomSizes(Random random, int count) {
+		Map<String, int[]> sizes = new LinkedHashMap<String, int[]>();
+		for (int i = 0; i < count; i++) {
+			sizes.put("texture" + i + ".png", new int[] { 1 + random.nextInt(64), 1 + random.nextInt(64) });
+		}
+		return sizes;
+	}
+
+	private static boolean paddedOverlap(Region a, Region b) {
+		return a.getX() - PADDING < b.getX() + b.getWidth() + PADDING
+				&& b.getX() - PADDING < a.getX() + a.getWidth() + PADDING
+				&& a.getY() - PADDING < b.getY() + b.getHeight() + PADDING
+				&& b.getY() - PADDING < a.getY() + a.getHeight() + PADDING;
+	}
+}
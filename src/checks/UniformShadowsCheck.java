@@ -0,0 +1,95 @@
+package checks;
+
+import java.util.Arrays;
+
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import Shaders.FrameUniforms;
+import Shaders.ShaderProgram;
+import Shaders.UniformShadows;
+import renderEngine.CountingGLBackend;
+import renderEngine.CountingGLBackend.Call;
+
+/**
+ * Checks that uniform shadow copies skip uploads of unchanged values and count
+ * them: matrices copied in column-major order, per-program shadows behind the
+ * {@link ShaderProgram} counters, and the {@link FrameUniforms} block on a
+ * headless {@link CountingGLBackend}.
+ */
+public class UniformShadowsCheck {
+
+	public static void main(String[] args) {
+		matrixShadow();
+		programCounters();
+		frameUniforms();
+	}
+
+	private static void matrixShadow() {
+		float[] shadow = new float[16];
+		Arrays.fill(shadow, Float.NaN);
+		Matrix4f matrix = new Matrix4f();
+		Check.that(UniformShadows.updateShadow(shadow, matrix), "a fresh shadow takes the first matrix");
+		Check.that(!UniformShadows.updateShadow(shadow, matrix), "an identical matrix is skipped");
+		Check.that(!UniformShadows.updateShadow(shadow, new Matrix4f()), "an equal copy is skipped");
+
+		// Translation lives in the fourth column
+		matrix.m31 = 2;
+		Check.that(UniformShadows.updateShadow(shadow, matrix), "a changed element is uploaded");
+		Check.that(shadow[13] == 2, "shadow is column-major");
+		Check.that(!UniformShadows.updateShadow(shadow, matrix), "the changed matrix is skipped next time");
+		Check.passed("matrix shadow");
+	}
+
+	private static void programCounters() {
+		ShaderProgram.resetUniformCounters();
+		UniformShadows first = new UniformShadows(), second = new UniformShadows();
+		Matrix4f matrix = new Matrix4f();
+		Check.that(first.update(3, matrix), "first program uploads the matrix");
+		Check.that(second.update(3, matrix), "a second program has its own shadow");
+		Check.that(!first.update(3, matrix), "first program skips the same matrix");
+		Check.that(!first.update(-1, matrix), "a missing uniform is never uploaded");
+
+		Check.that(first.update(40, 1f), "a location past the initial table grows it");
+		Check.that(!first.update(40, 1f), "same float skipped");
+		Check.that(first.update(5, 1f, 2f), "vec2 uploaded");
+		Check.that(first.update(5, 1f, 3f), "changed vec2 uploaded");
+		Check.that(first.update(6, 1f, 2f, 3f), "vec3 uploaded");
+		Check.that(!first.update(6, 1f, 2f, 3f), "same vec3 skipped");
+
+		Check.equal(6, ShaderProgram.getUniformUploadsIssued(), "uploads issued");
+		Check.equal(4, ShaderProgram.getUniformUploadsSkipped(), "uploads skipped");
+		ShaderProgram.resetUniformCounters();
+		Check.equal(0, ShaderProgram.getUniformUploadsIssued() + ShaderProgram.getUniformUploadsSkipped(),
+				"counters reset");
+		Check.passed("program uniform counters");
+	}
+
+	private static void frameUniforms() {
+		CountingGLBackend gl = new CountingGLBackend(null);
+		FrameUniforms uniforms = new FrameUniforms(gl);
+		Check.equal(1, gl.getCount(Call.BIND_BUFFER_BASE), "block bound to its binding point");
+		gl.resetCounts();
+
+		Matrix4f projection = new Matrix4f();
+		projection.m00 = 1.5f;
+		uniforms.loadProjectionMatrix(projection);
+		uniforms.loadProjectionMatrix(projection);
+		Camera camera = new Camera(new Vector3f(1, 2, 3), 10, 20, 0);
+		uniforms.loadViewMatrix(camera);
+		uniforms.loadViewMatrix(camera);
+		Check.equal(2, uniforms.getUploadsIssued(), "frame uploads issued");
+		Check.equal(2, uniforms.getUploadsSkipped(), "frame uploads skipped");
+		Check.equal(2, gl.getCount(Call.BUFFER_SUB_DATA), "one sub-data upload per changed matrix");
+
+		camera.getPosition().x += 0.5f;
+		uniforms.loadViewMatrix(camera);
+		Check.equal(3, uniforms.getUploadsIssued(), "a moved camera uploads its view");
+		uniforms.resetCounters();
+		Check.equal(0, uniforms.getUploadsIssued() + uniforms.getUploadsSkipped(), "frame counters reset");
+		uniforms.cleanUp();
+		Check.equal(1, gl.getCount(Call.DELETE_BUFFER), "block buffer deleted");
+		Check.passed("frame uniform counters");
+	}
+}
@@ -0,0 +1,165 @@
+package checks;
+
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import ToolBox.Frustum;
+import renderEngine.FrustumCuller;
+import world.Blocks;
+import world.Chunk;
+import world.ChunkConnectivity;
+import world.ChunkPos;
+import world.VisibilityGraph;
+import world.World;
+
+/**
+ * Checks {@link ChunkConnectivity} masks on hand-built chunks (sealed,
+ * tunnelled, bent tunnels, enclosed pockets, leaves) and the
+ * {@link VisibilityGraph} search through them: sealed chunks hide what is
+ * behind them, tunnels only let the search through along their own axis, and
+ * the radius and frustum limit the search.
+ */
+public class VisibilityGraphCheck {
+
+	private static final int MINUS_X = 0, PLUS_X = 1, MINUS_Y = 2, PLUS_Y = 3, MINUS_Z = 4, PLUS_Z = 5;
+
+	public static void main(String[] args) {
+		masks();
+		search();
+	}
+
+	private static void masks() {
+		Check.equal(ChunkConnectivity.ALL, new Chunk(0, 0, 0).getConnectivity(), "an empty chunk connects everything");
+		Check.equal(ChunkConnectivity.NONE, solid(0, 0, 0).getConnectivity(), "a solid chunk connects nothing");
+
+		Chunk tunnel = tunnelX(solid(0, 0, 0));
+		Check.equal(1, Integer.bitCount(tunnel.getConnectivity()), "a straight tunnel connects one pair");
+		Check.that(ChunkConnectivity.connects(tunnel.getConnectivity(), MINUS_X, PLUS_X), "-X to +X");
+		Check.that(ChunkConnectivity.connects(tunnel.getConnectivity(), PLUS_X, MINUS_X), "pairs are unordered");
+
+		// From the -X face to the middle, then up to the +Y face
+		Chunk bent = solid(0, 0, 0);
+		for (int x = 0; x <= 8; x++) {
+			bent.setBlock(x, 8, 8, Blocks.AIR);
+		}
+		for (int y = 8; y < Chunk.SIZE; y++) {
+			bent.setBlock(8, y, 8, Blocks.AIR);
+		}
+		Check.equal(1, Integer.bitCount(bent.getConnectivity()), "a bent tunnel connects one pair");
+		Check.that(ChunkConnectivity.connects(bent.getConnectivity(), MINUS_X, PLUS_Y), "-X to +Y");
+
+		Chunk pocket = solid(0, 0, 0);
+		for (int i = 4; i < 12; i++) {
+			pocket.setBlock(i, 8, 8, Blocks.AIR);
+		}
+		Check.equal(ChunkConnectivity.NONE, pocket.getConnectivity(), "an enclosed pocket connects nothing");
+
+		Chunk leaves = new Chunk(0, 0, 0);
+		fill(leaves, Blocks.LEAF);
+		Check.equal(ChunkConnectivity.ALL, leaves.getConnectivity(), "leaves can be seen through");
+
+		// Editing a cached chunk invalidates its mask
+		Chunk edited = solid(0, 0, 0);
+		Check.equal(ChunkConnectivity.NONE, edited.getConnectivity(), "sealed before the edit");
+		tunnelZ(edited);
+		Check.that(ChunkConnectivity.connects(edited.getConnectivity(), MINUS_Z, PLUS_Z), "open after the edit");
+		Check.that(!ChunkConnectivity.connects(edited.getConnectivity(), MINUS_Y, PLUS_Y), "only along the tunnel");
+		Check.passed("chunk connectivity masks");
+	}
+
+	private static void search() {
+		// The camera is in empty chunk (0, 0, 0); a wall chunk at x = 1 stands before a target at x = 2
+		World world = new World();
+		long wall = ChunkPos.pack(1, 0, 0), target = ChunkPos.pack(2, 0, 0);
+		world.getChunks().put(wall, solid(1, 0, 0));
+		Chunk behind = new Chunk(2, 0, 0);
+		behind.setBlock(0, 0, 0, Blocks.DIRT);
+		world.getChunks().put(target, behind);
+		VisibilityGraph graph = new VisibilityGraph(world);
+		graph.setRadius(4);
+
+		int count = graph.collectVisibleChunks(8, 8, 8, null);
+		Check.that(contains(graph, count, wall), "the wall is visible");
+		Check.that(!contains(graph, count, target), "a sealed chunk hides the chunk behind it");
+
+		tunnelZ(world.getChunks().get(wall));
+		count = graph.collectVisibleChunks(8, 8, 8, null);
+		Check.that(!contains(graph, count, target), "a tunnel across the line of sight does not help");
+
+		tunnelX(world.getChunks().get(wall));
+		count = graph.collectVisibleChunks(8, 8, 8, null);
+		Check.that(contains(graph, count, target), "a tunnel through the wall shows the chunk behind it");
+		Check.equal(2, count, "only non-empty chunks are collected");
+		Check.equal(count, graph.getVisibleChunks(), "visible count");
+
+		// The radius bounds the search on every axis
+		long far = ChunkPos.pack(0, 0, -5), near = ChunkPos.pack(0, 0, -4);
+		world.getChunks().put(far, solid(0, 0, -5));
+		world.getChunks().put(near, tunnelZ(solid(0, 0, -4)));
+		count = graph.collectVisibleChunks(8, 8, 8, null);
+		Check.that(contains(graph, count, near) && !contains(graph, count, far), "chunks past the radius are skipped");
+		Check.equal(9 * 9 * 9, graph.getVisitedChunks(), "every chunk in the radius is visited in open air");
+
+		// Looking down -Z: the wall at +X is outside a 70 degree frustum, the chunk ahead is inside
+		count = graph.collectVisibleChunks(8, 8, 8, frustumLookingDownMinusZ(8, 8, 8));
+		Check.that(contains(graph, count, near), "the chunk ahead is inside the frustum");
+		Check.that(!contains(graph, count, wall) && !contains(graph, count, target), "chunks to the side are culled");
+		Check.that(graph.getVisitedChunks() < 9 * 9 * 9, "the frustum limits the search");
+		Check.passed("visibility graph search");
+	}
+
+	private static Frustum frustumLookingDownMinusZ(float x, float y, float z) {
+		Matrix4f projection = new Matrix4f();
+		float scale = (float) (1f / Math.tan(Math.toRadians(35)));
+		projection.m00 = scale;
+		projection.m11 = scale;
+		projection.m22 = -1000.2f / 999.8f;
+		projection.m23 = -1;
+		projection.m32 = -(2 * 1000f * 0.1f) / 999.8f;
+		projection.m33 = 0;
+		FrustumCuller culler = new FrustumCuller();
+		culler.update(projection, new Camera(new Vector3f(x, y, z), 0, 0, 0));
+		return culler.getFrustum();
+	}
+
+	private static boolean contains(VisibilityGraph graph, int count, long key) {
+		long[] keys = graph.getVisibleKeys();
+		for (int i = 0; i < count; i++) {
+			if (keys[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Chunk solid(int cx, int cy, int cz) {
+		Chunk chunk = new Chunk(cx, cy, cz);
+		fill(chunk, Blocks.DIRT);
+		return chunk;
+	}
+
+	private static void fill(Chunk chunk, int block) {
+		for (int y = 0; y < Chunk.SIZE; y++) {
+			for (int z = 0; z < Chunk.SIZE; z++) {
+				for (int x = 0; x < Chunk.SIZE; x++) {
+					chunk.setBlock(x, y, z, block);
+				}
+			}
+		}
+	}
+
+	private static Chunk tunnelX(Chunk chunk) {
+		for (int x = 0; x < Chunk.SIZE; x++) {
+			chunk.setBlock(x, 8, 8, Blocks.AIR);
+		}
+		return chunk;
+	}
+
+	private static Chunk tunnelZ(Chunk chunk) {
+		for (int z = 0; z < Chunk.SIZE; z++) {
+			chunk.setBlock(8, 4, z, Blocks.AIR);
+		}
+		return chunk;
+	}
+}
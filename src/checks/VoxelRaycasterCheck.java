@@ -0,0 +1,120 @@
+package checks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import world.Blocks;
+import world.RaycastHit;
+import world.TerrainGenerator;
+import world.VoxelRaycaster;
+import world.World;
+
+/**
+ * Compares {@link VoxelRaycaster} with a brute-force march in tiny steps on
+ * generated terrain, checks that camera casts follow
+ * {@link Camera#getDirection}, and that lines of sight ignore the blocks at
+ * both ends but not the ones in between.
+ */
+public class VoxelRaycasterCheck {
+
+	private static final float MAX_DISTANCE = 64;
+	private static final double STEP = 0.0005;
+
+	public static void main(String[] args) {
+		World world = new World();
+		new TerrainGenerator(9).generate(world, -4, 0, -4, 4, 5, 4, ForkJoinPool.commonPool());
+		VoxelRaycaster raycaster = new VoxelRaycaster(world);
+		matchesMarch(world, raycaster);
+		cameraDirection(raycaster);
+		lineOfSight();
+	}
+
+	private static void matchesMarch(World world, VoxelRaycaster raycaster) {
+		Random random = new Random(2);
+		RaycastHit hit = new RaycastHit();
+		int hits = 0;
+		for (int i = 0; i < 3000; i++) {
+			float ox = random.nextFloat() * 100 - 50, oy = 40 + random.nextFloat() * 40, oz = random.nextFloat() * 100 - 50;
+			float dx = random.nextFloat() * 2 - 1, dy = random.nextFloat() * 2 - 1.3f, dz = random.nextFloat() * 2 - 1;
+			if (i % 50 == 0) {
+				// Straight down, along the grid lines
+				dx = 0;
+				dy = -1;
+				dz = 0;
+			}
+			boolean found = raycaster.cast(ox, oy, oz, dx, dy, dz, MAX_DISTANCE, hit);
+
+			double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+			double nx = dx / length, ny = dy / length, nz = dz / length;
+			boolean expected = false;
+			int bx = 0, by = 0, bz = 0;
+			for (double t = 0; t <= MAX_DISTANCE; t += STEP) {
+				bx = (int) Math.floor(ox + nx * t);
+				by = (int) Math.floor(oy + ny * t);
+				bz = (int) Math.floor(oz + nz * t);
+				if (world.getBlock(bx, by, bz) != Blocks.AIR) {
+					expected = true;
+					break;
+				}
+			}
+			Check.that(found == expected, "ray " + i + " hit " + found + ", expected " + expected);
+			if (found) {
+				hits++;
+				Check.that(hit.getBlockX() == bx && hit.getBlockY() == by && hit.getBlockZ() == bz,
+						"ray " + i + " hit the first block along it");
+				if (hit.getFace() >= 0) {
+					int distance = Math.abs(hit.getAdjacent(0) - bx) + Math.abs(hit.getAdjacent(1) - by)
+							+ Math.abs(hit.getAdjacent(2) - bz);
+					Check.equal(1, distance, "ray " + i + " adjacent block touches the hit face");
+				}
+			}
+		}
+		Check.that(hits > 1000, "most rays reach the terrain");
+		Check.passed("raycasts match a brute-force march");
+	}
+
+	private static void cameraDirection(VoxelRaycaster raycaster) {
+		Random random = new Random(4);
+		RaycastHit fromCamera = new RaycastHit(), fromRay = new RaycastHit();
+		Vector3f direction = new Vector3f();
+		for (int i = 0; i < 500; i++) {
+			Vector3f position = new Vector3f(random.nextFloat() * 100 - 50, 40 + random.nextFloat() * 40,
+					random.nextFloat() * 100 - 50);
+			Camera camera = new Camera(position, random.nextFloat() * 180 - 90, random.nextFloat() * 360, 0);
+			camera.getDirection(direction);
+			boolean a = raycaster.cast(camera, MAX_DISTANCE, fromCamera);
+			boolean b = raycaster.cast(position.x, position.y, position.z, direction.x, direction.y, direction.z,
+					MAX_DISTANCE, fromRay);
+			Check.that(a == b && fromCamera.getBlockX() == fromRay.getBlockX()
+					&& fromCamera.getBlockY() == fromRay.getBlockY() && fromCamera.getBlockZ() == fromRay.getBlockZ()
+					&& fromCamera.getFace() == fromRay.getFace(), "camera " + i + " casts along getDirection");
+		}
+		Check.passed("camera casts follow the camera direction");
+	}
+
+	private static void lineOfSight() {
+		World world = new World();
+		world.setBlock(0, 0, 0, Blocks.DIRT);
+		world.setBlock(10, 0, 0, Blocks.DIRT);
+		VoxelRaycaster raycaster = new VoxelRaycaster(world);
+		RaycastHit scratch = new RaycastHit();
+
+		Check.that(raycaster.hasLineOfSight(0.5f, 0.5f, 0.5f, 10.5f, 0.5f, 0.5f, scratch),
+				"solid blocks at both ends do not block the line");
+		Check.that(raycaster.hasLineOfSight(10.5f, 0.5f, 0.5f, 0.5f, 0.5f, 0.5f, scratch),
+				"the line is clear in the other direction too");
+
+		world.setBlock(5, 0, 0, Blocks.LEAF);
+		Check.that(raycaster.hasLineOfSight(0.5f, 0.5f, 0.5f, 10.5f, 0.5f, 0.5f, scratch),
+				"leaves in between do not block the line");
+		world.setBlock(5, 0, 0, Blocks.DIRT);
+		Check.that(!raycaster.hasLineOfSight(0.5f, 0.5f, 0.5f, 10.5f, 0.5f, 0.5f, scratch),
+				"a solid block in between blocks the line");
+		Check.that(!raycaster.hasLineOfSight(10.5f, 0.5f, 0.5f, 0.5f, 0.5f, 0.5f, scratch),
+				"and blocks it in the other direction");
+		Check.passed("line of sight ignores its endpoints");
+	}
+}
@@ -0,0 +1,22 @@
+package models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * CPU-side mesh arrays, indexed and ready for {@link renderEngine.Loader#loadToVAO}.
+ * Positions and normals have 3 floats per vertex, texture coordinates 2.
+ */
+@Getter
+@AllArgsConstructor
+public class MeshData {
+
+    private final float[] positions;
+    private final float[] uvs;
+    private final float[] normals;
+    private final int[] indices;
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+}
@@ -11,4 +11,8 @@ public class RawModel {
 
     private int vaoID;
     private int vertexCount;
+
+    // Distance from the model origin to its furthest vertex, used for culling; the
+    // Loader computes it from the vertex positions whenever it creates a model
+    private float boundingRadius;
 }
@@ -1,20 +1,47 @@
 package pixelPuff;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.util.vector.Vector3f;
 
 import Entities.Camera;
 import Entities.Entity;
+import Entities.Simulation;
+import Entities.SimulationSnapshot;
+import Shaders.ChunkShader;
 import Shaders.StaticShader;
 import Textures.ModelTexture;
+import ToolBox.Clock;
 import models.RawModel;
 import models.TexturedModel;
+import renderEngine.ChunkModelUploader;
+import renderEngine.ChunkRenderer;
 import renderEngine.DisplayManager;
 import renderEngine.Loader;
 import renderEngine.MasterRenderer;
+import world.Blocks;
+import world.Chunk;
+import world.ChunkEditTracker;
+import world.ChunkMeshScheduler;
+import world.ChunkStreamer;
+import world.LightEngine;
+import world.LodSelector;
+import world.TerrainGenerator;
+import world.VisibilityGraph;
+import world.World;
 
 public class MainGameLoop {
 
+	// Start above the highest terrain and trees
+	private static final float SPAWN_HEIGHT = TerrainGenerator.BASE_HEIGHT + TerrainGenerator.HEIGHT_AMPLITUDE + 16;
+	// Time the chunk mesh uploads may take per frame
+	private static final long UPLOAD_BUDGET_NANOS = 2000000;
+
 	public static Loader loader1 = null;
 
 	public static StaticShader staticShader1 = null;
@@ -53,31 +80,85 @@ public class MainGameLoop {
 		RawModel model = loader.loadToVAO(vertices, indices, uv);
 		ModelTexture texture = new ModelTexture(loader.loadTexture("dirtTex"));
 		TexturedModel textureModel = new TexturedModel(model, texture);
-		Entity entity = new Entity(textureModel, new Vector3f(0, 0, -1), 0, 0, 0, 1);
+		Entity entity = new Entity(textureModel, new Vector3f(0, SPAWN_HEIGHT, -1), 0, 0, 0, 1);
 
-		Camera camera = new Camera(new Vector3f(0, 0, 0), 0, 0, 0);
+		Camera camera = new Camera(new Vector3f(0, SPAWN_HEIGHT, 0), 0, 0, 0);
+
+		// The simulation moves its own copies of the camera and entity at a fixed 60 ticks per second
+		Simulation simulation = new Simulation(Clock.SYSTEM, 1 / 60f,
+				new Camera(new Vector3f(0, SPAWN_HEIGHT, 0), 0, 0, 0));
+		Entity simulatedEntity = new Entity(textureModel, new Vector3f(0, SPAWN_HEIGHT, -1), 0, 0, 0, 1);
+		simulation.addEntity(simulatedEntity);
+		simulation.addTickListener((tick, delta) -> simulatedEntity.increaseRotation(0, 60 * delta, 0));
+		simulation.start();
+		List<Entity> renderedEntities = Collections.singletonList(entity);
 
 		// Create an instance of MasterRenderer to handle rendering tasks
 		MasterRenderer renderer = new MasterRenderer(staticShader);
+		loader.setStateTracker(renderer.getGLState());
+		renderer.getCuller().addEntity(entity);
+
+		// The world streams in around the camera: chunks are generated and lit on the common pool,
+		// meshed on the scheduler's pool and uploaded on this thread within a per-frame budget
+		World world = new World();
+		ChunkModelUploader chunkModels = new ChunkModelUploader(loader);
+		ChunkStreamer streamer = new ChunkStreamer(world, null, new TerrainGenerator(42), ForkJoinPool.commonPool(),
+				Clock.SYSTEM);
+		ChunkMeshScheduler meshScheduler = new ChunkMeshScheduler(world, streamer.trackUploads(chunkModels));
+		// Coarser meshes for the outer half of the load radius
+		LodSelector lodSelector = new LodSelector(new float[] { 4 * Chunk.SIZE, 6 * Chunk.SIZE }, Chunk.SIZE / 2f);
+		ChunkEditTracker editTracker = new ChunkEditTracker(world, meshScheduler, lodSelector, Clock.SYSTEM);
+		LightEngine lightEngine = new LightEngine(world, editTracker);
+		editTracker.setLightEngine(lightEngine);
+		streamer.setMeshScheduler(meshScheduler);
+		streamer.setEditTracker(editTracker);
+		streamer.setLodSelector(lodSelector);
+		streamer.setLightEngine(lightEngine);
+		streamer.setLightPool(ForkJoinPool.commonPool());
+		streamer.setChunkListener(renderer.getCuller());
+		VisibilityGraph visibility = new VisibilityGraph(world);
+		visibility.setRadius(streamer.getLoadRadius());
+
+		ChunkShader chunkShader = new ChunkShader();
+		ChunkRenderer chunkRenderer = new ChunkRenderer(chunkShader, loader.loadTextureArray(Blocks.getTextureNames()));
+		int visibleChunks = -1;
 
 		while (!Display.isCloseRequested()) {
-			camera.move();
+			// Reset the per-frame counters before the snapshot moves anything
+			renderer.beginFrame();
+
+			simulation.setInput(Keyboard.isKeyDown(Keyboard.KEY_W), Keyboard.isKeyDown(Keyboard.KEY_S), Mouse.getDX(),
+					Mouse.getDY());
+
+			// Draw the camera and entity between the last two simulation ticks
+			SimulationSnapshot snapshot = simulation.getSnapshot();
+			if (snapshot != null) {
+				snapshot.apply(snapshot.getAlpha(Clock.SYSTEM.nanoTime()), camera, renderedEntities);
+			}
+
+			// Load chunks around the camera, re-mesh edited ones and upload the meshes that are ready
+			streamer.update(camera);
+			editTracker.flush();
+			meshScheduler.drainUploads(UPLOAD_BUDGET_NANOS);
 
 			// Prepare the renderer (clear the screen and set the background color)
 			renderer.prepare();
 
-			// Update the entity's position
-			entity.increasePosition(0f, 0, 0f);
-			entity.increaseScale(0);
-			entity.increaseRotation(0, 1, 0f);
+			// Upload the camera once for every shader program
+			renderer.loadCamera(camera);
+
+			// Draw the chunks reachable from the camera and show how many there were
+			int visible = renderer.renderChunks(camera, chunkRenderer, chunkModels.getModels(), visibility);
+			if (visible != visibleChunks) {
+				visibleChunks = visible;
+				Display.setTitle("PixelPuff - " + visible + " chunks visible");
+			}
 
 			// Start the shader program
 			staticShader.start();
 
-			staticShader.loadViewMatrix(camera);
-
-			// Render the loaded model using the MasterRenderer
-			renderer.render(entity, staticShader);
+			// Render the entities inside the view frustum using the MasterRenderer
+			renderer.renderVisible(camera, staticShader);
 			staticShader.stop();
 
 			// Update the display with the new frame and process any input events
@@ -85,6 +166,10 @@ public class MainGameLoop {
 		}
 
 		// Close the display and clean up resources when the loop exits
+		simulation.stop();
+		meshScheduler.shutdown();
+		chunkShader.cleanup();
+		renderer.cleanUp();
 		DisplayManager.closeDisplay();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package renderEngine;
+
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL15;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import renderEngine.GpuMemoryTracker.Category;
+
+/**
+ * Recycles GL buffer objects between meshes instead of deleting and creating
+ * new ones.
+ * 
+ * Buffers are allocated with a power-of-two capacity and kept in one bucket per
+ * capacity when released, so a later request of a similar size reuses the
+ * storage with glBufferSubData and the driver never has to reallocate it. The
+ * rounding can waste up to half of a buffer; in exchange streaming chunks in
+ * and out settles on a fixed set of buffers. Buffers larger than the biggest
+ * bucket are never pooled, and released buffers are deleted once the pool
+ * holds its maximum number of bytes.
+ */
+public class BufferPool {
+
+	private static final int MIN_BUCKET_SHIFT = 10; // 1 KiB
+	private static final int MAX_BUCKET_SHIFT = 24; // 16 MiB
+
+	private final GLBackend gl;
+	private final GpuMemoryTracker memory;
+	private final long maxPooledBytes;
+
+	// Free buffer IDs per bucket, used as stacks
+	private final int[][] buckets = new int[MAX_BUCKET_SHIFT - MIN_BUCKET_SHIFT + 1][];
+	private final int[] bucketSizes = new int[buckets.length];
+	private long pooledBytes;
+
+	@Getter
+	private long hits;
+	@Getter
+	private long misses;
+
+	public BufferPool(GLBackend gl, GpuMemoryTracker memory, long maxPooledBytes) {
+		this.gl = gl;
+		this.memory = memory;
+		this.maxPooledBytes = maxPooledBytes;
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new int[4];
+		}
+	}
+
+	/**
+	 * Returns a buffer with room for at least the given number of bytes, bound
+	 * to the target. The buffer's contents are undefined; upload with
+	 * glBufferSubData.
+	 */
+	public PooledBuffer acquire(int target, int sizeBytes, Category category) {
+		int bucket = bucketOf(sizeBytes);
+		if (bucket < 0) {
+			// Too large to pool, allocate the exact size
+			misses++;
+			return allocate(target, sizeBytes, category);
+		}
+		int capacity = 1 << (bucket + MIN_BUCKET_SHIFT);
+		if (bucketSizes[bucket] == 0) {
+			misses++;
+			return allocate(target, capacity, category);
+		}
+		hits++;
+		int bufferID = buckets[bucket][--bucketSizes[bucket]];
+		pooledBytes -= capacity;
+		memory.moved(Category.POOLED_BUFFERS, category, capacity);
+		gl.bindBuffer(target, bufferID);
+		return new PooledBuffer(bufferID, capacity, category);
+	}
+
+	/**
+	 * Returns a buffer to the pool, or deletes it if it cannot be pooled.
+	 */
+	public void release(PooledBuffer buffer) {
+		int capacity = buffer.getCapacity();
+		int bucket = bucketOf(capacity);
+		boolean pooled = bucket >= 0 && capacity == 1 << (bucket + MIN_BUCKET_SHIFT);
+		if (!pooled || pooledBytes + capacity > maxPooledBytes) {
+			gl.deleteBuffer(buffer.getBufferID());
+			memory.freed(buffer.getCategory(), capacity);
+			return;
+		}
+		if (bucketSizes[bucket] == buckets[bucket].length) {
+			buckets[bucket] = Arrays.copyOf(buckets[bucket], bucketSizes[bucket] * 2);
+		}
+		buckets[bucket][bucketSizes[bucket]++] = buffer.getBufferID();
+		pooledBytes += capacity;
+		memory.moved(buffer.getCategory(), Category.POOLED_BUFFERS, capacity);
+	}
+
+	/**
+	 * Deletes every buffer held by the pool.
+	 */
+	public void clear() {
+		for (int bucket = 0; bucket < buckets.length; bucket++) {
+			int capacity = 1 << (bucket + MIN_BUCKET_SHIFT);
+			for (int i = 0; i < bucketSizes[bucket]; i++) {
+				gl.deleteBuffer(buckets[bucket][i]);
+				memory.freed(Category.POOLED_BUFFERS, capacity);
+			}
+			bucketSizes[bucket] = 0;
+		}
+		pooledBytes = 0;
+	}
+
+	public long getPooledBytes() {
+		return pooledBytes;
+	}
+
+	private PooledBuffer allocate(int target, int capacity, Category category) {
+		int bufferID = gl.genBuffer();
+		gl.bindBuffer(target, bufferID);
+		gl.bufferData(target, capacity, GL15.GL_STATIC_DRAW);
+		memory.allocated(category, capacity);
+		return new PooledBuffer(bufferID, capacity, category);
+	}
+
+	// Index of the smallest bucket that fits the size, or -1 if none does
+	private static int bucketOf(int sizeBytes) {
+		int shift = sizeBytes <= 1 << MIN_BUCKET_SHIFT ? MIN_BUCKET_SHIFT
+				: 32 - Integer.numberOfLeadingZeros(sizeBytes - 1);
+		return shift > MAX_BUCKET_SHIFT ? -1 : shift - MIN_BUCKET_SHIFT;
+	}
+
+	/**
+	 * A buffer handed out by the pool. The capacity may be larger than the size
+	 * that was requested.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class PooledBuffer {
+		private final int bufferID;
+		private final int capacity;
+		private final Category category;
+	}
+}
@@ -0,0 +1,97 @@
+package renderEngine;
+
+import java.util.HashMap;
+
+import lombok.Getter;
+import models.RawModel;
+import world.ChunkMesh;
+import world.MeshUploader;
+
+/**
+ * Uploads finished chunk meshes through the {@link Loader} and keeps the
+ * resulting model for each chunk, keyed by packed chunk coordinates.
+ * 
+ * Meshes {@link ChunkMesh#stage() staged} by the mesh workers are uploaded
+ * straight from their pooled direct buffer into one interleaved or packed
+ * VBO; other meshes are uploaded from their arrays.
+ * 
+ * A new mesh for a chunk that already has a model is written into the
+ * model's existing buffers when it fits, which it usually does after a small
+ * edit because pooled buffers are rounded up to a power of two. Otherwise a
+ * new model is loaded and the old one released.
+ */
+public class ChunkModelUploader implements MeshUploader {
+
+	// Attribute sizes of a staged float vertex, see ChunkMesh.STAGED_FLOATS
+	private static final int[] STAGED_COMPONENTS = { 3, 2, 1, 1 };
+
+	private final Loader loader;
+
+	@Getter
+	private final HashMap<Long, RawModel> models = new HashMap<Long, RawModel>();
+
+	// Upload statistics since creation
+	@Getter
+	private long patchedUploads;
+	@Getter
+	private long newUploads;
+	@Getter
+	private long bytesUploaded;
+
+	public ChunkModelUploader(Loader loader) {
+		this.loader = loader;
+	}
+
+	@Override
+	public void upload(long chunkKey, ChunkMesh mesh) {
+		if (mesh.isEmpty()) {
+			remove(chunkKey);
+			return;
+		}
+		bytesUploaded += mesh.getUploadBytes();
+		RawModel existing = models.get(chunkKey);
+		if (existing != null && patch(existing, mesh)) {
+			patchedUploads++;
+			return;
+		}
+
+		RawModel model;
+		if (mesh.isStaged()) {
+			model = mesh.isPacked() ? loader.loadPackedToVAO(mesh.getStagedVertices(), mesh.getStagedIndices())
+					: loader.loadInterleavedToVAO(mesh.getStagedVertices(), mesh.getStagedIndices(), STAGED_COMPONENTS);
+		} else {
+			model = mesh.isPacked() ? loader.loadPackedToVAO(mesh.getPackedVertices(), mesh.getIndices())
+					: loader.loadToVAO(mesh.getPositions(), mesh.getIndices(), mesh.getUvs(), mesh.getLayers(),
+							mesh.getLights());
+		}
+		newUploads++;
+		RawModel previous = models.put(chunkKey, model);
+		// Release the previous mesh so its buffers are reused
+		if (previous != null) {
+			loader.release(previous);
+		}
+	}
+
+	private boolean patch(RawModel model, ChunkMesh mesh) {
+		if (mesh.isStaged()) {
+			return mesh.isPacked() ? loader.updatePackedVAO(model, mesh.getStagedVertices(), mesh.getStagedIndices())
+					: loader.updateInterleavedVAO(model, mesh.getStagedVertices(), mesh.getStagedIndices(),
+							STAGED_COMPONENTS);
+		}
+		if (mesh.isPacked()) {
+			return loader.updatePackedVAO(model, mesh.getPackedVertices(), mesh.getIndices());
+		}
+		return loader.updateVAO(model, mesh.getPositions(), mesh.getIndices(), mesh.getUvs(), mesh.getLayers(),
+				mesh.getLights());
+	}
+
+	/**
+	 * Releases the model of a chunk that is no longer needed.
+	 */
+	public void remove(long chunkKey) {
+		RawModel model = models.remove(chunkKey);
+		if (model != null) {
+			loader.release(model);
+		}
+	}
+}
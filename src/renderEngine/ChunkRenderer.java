@@ -0,0 +1,110 @@
+package renderEngine;
+
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.util.vector.Matrix4f;
+
+import Shaders.ChunkShader;
+import models.RawModel;
+import world.Chunk;
+import world.ChunkPos;
+
+/**
+ * Draws uploaded chunk meshes with the block texture array bound once for all
+ * of them.
+ */
+public class ChunkRenderer {
+
+	private final ChunkShader shader;
+	private final int textureArrayID;
+	private final Matrix4f transformationMatrix = new Matrix4f();
+
+	public ChunkRenderer(ChunkShader shader, int textureArrayID) {
+		this.shader = shader;
+		this.textureArrayID = textureArrayID;
+	}
+
+	/**
+	 * Renders every chunk model, keyed by packed chunk coordinates. The camera
+	 * must already be loaded into the frame uniforms.
+	 */
+	public void render(Map<Long, RawModel> chunkModels) {
+		begin();
+		for (Map.Entry<Long, RawModel> entry : chunkModels.entrySet()) {
+			draw(entry.getKey(), entry.getValue());
+		}
+		end();
+	}
+
+	/**
+	 * Renders only the listed chunks, e.g. the ones the frustum culler found.
+	 * Chunks without a model are skipped.
+	 */
+	public void render(Map<Long, RawModel> chunkModels, List<Long> chunkKeys) {
+		begin();
+		for (int i = 0; i < chunkKeys.size(); i++) {
+			long key = chunkKeys.get(i);
+			RawModel model = chunkModels.get(key);
+			if (model != null) {
+				draw(key, model);
+			}
+		}
+		end();
+	}
+
+	/**
+	 * Renders the first count chunks of the array, e.g. the keys a
+	 * {@link world.VisibilityGraph} found. Chunks without a model are skipped.
+	 */
+	public void render(Map<Long, RawModel> chunkModels, long[] chunkKeys, int count) {
+		begin();
+		for (int i = 0; i < count; i++) {
+			long key = chunkKeys[i];
+			RawModel model = chunkModels.get(key);
+			if (model != null) {
+				draw(key, model);
+			}
+		}
+		end();
+	}
+
+	private void begin() {
+		shader.start();
+
+		// One texture bind covers every block type in every chunk
+		GL13.glActiveTexture(GL13.GL_TEXTURE0);
+		GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, textureArrayID);
+
+		transformationMatrix.setIdentity();
+	}
+
+	private void draw(long key, RawModel model) {
+		// Chunk meshes are in chunk-local space, so only a translation is needed
+		transformationMatrix.m30 = ChunkPos.unpackX(key) * Chunk.SIZE;
+		transformationMatrix.m31 = ChunkPos.unpackY(key) * Chunk.SIZE;
+		transformationMatrix.m32 = ChunkPos.unpackZ(key) * Chunk.SIZE;
+		shader.loadTransformationMatrix(transformationMatrix);
+
+		GL30.glBindVertexArray(model.getVaoID());
+		int attributeCount = shader.getAttributeCount();
+		for (int attribute = 0; attribute < attributeCount; attribute++) {
+			GL20.glEnableVertexAttribArray(attribute);
+		}
+		GL11.glDrawElements(GL11.GL_TRIANGLES, model.getVertexCount(), GL11.GL_UNSIGNED_INT, 0);
+	}
+
+	private void end() {
+		int attributeCount = shader.getAttributeCount();
+		for (int attribute = 0; attribute < attributeCount; attribute++) {
+			GL20.glDisableVertexAttribArray(attribute);
+		}
+		GL30.glBindVertexArray(0);
+		GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, 0);
+		shader.stop();
+	}
+}
@@ -0,0 +1,275 @@
+package renderEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * A {@link GLBackend} decorator that counts every call by kind before
+ * forwarding it, giving per-frame GL call figures. Without a delegate it acts
+ * as a recording backend for driving the renderers headless: buffers are
+ * numbered, mapped storage is plain direct memory and fences are signalled as
+ * soon as they are created, unless {@link #setHoldFences(boolean) held} to
+ * simulate a GPU that falls behind.
+ */
+public class CountingGLBackend implements GLBackend {
+
+	public enum Call {
+		GEN_BUFFER, DELETE_BUFFER, BIND_BUFFER, BIND_BUFFER_BASE, BUFFER_DATA, BUFFER_SUB_DATA, BIND_VERTEX_ARRAY,
+		ENABLE_VERTEX_ATTRIB_ARRAY, DISABLE_VERTEX_ATTRIB_ARRAY, VERTEX_ATTRIB_POINTER, VERTEX_ATTRIB_DIVISOR,
+		ACTIVE_TEXTURE, BIND_TEXTURE, DRAW_ELEMENTS, DRAW_ELEMENTS_INSTANCED, USE_PROGRAM, ENABLE, DISABLE,
+		MAP_BUFFER_STORAGE, UNMAP_BUFFER, FENCE_SYNC, CLIENT_WAIT_SYNC, DELETE_SYNC
+	}
+
+	private static final Call[] CALLS = Call.values();
+
+	// May be null, in which case calls are only counted
+	private final GLBackend gl;
+	private final long[] counts = new long[CALLS.length];
+	private int nextBuffer = 1;
+	private long nextFence = 1;
+	// Without a delegate, fences up to this handle are signalled
+	private long signalledFence = Long.MAX_VALUE;
+
+	public CountingGLBackend(GLBackend gl) {
+		this.gl = gl;
+	}
+
+	public long getCount(Call call) {
+		return counts[call.ordinal()];
+	}
+
+	public long getTotalCalls() {
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Without a delegate, keeps the fences created from now on unsignalled
+	 * until {@link #signalFences()} is called, or signals them all again.
+	 */
+	public void setHoldFences(boolean hold) {
+		signalledFence = hold ? nextFence - 1 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Without a delegate, signals every fence created so far.
+	 */
+	public void signalFences() {
+		if (signalledFence != Long.MAX_VALUE) {
+			signalledFence = nextFence - 1;
+		}
+	}
+
+	public void resetCounts() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("GL calls: ").append(getTotalCalls());
+		for (Call call : CALLS) {
+			long count = counts[call.ordinal()];
+			if (count != 0) {
+				builder.append(", ").append(call.name().toLowerCase()).append('=').append(count);
+			}
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public int genBuffer() {
+		counts[Call.GEN_BUFFER.ordinal()]++;
+		return gl != null ? gl.genBuffer() : nextBuffer++;
+	}
+
+	@Override
+	public void deleteBuffer(int buffer) {
+		counts[Call.DELETE_BUFFER.ordinal()]++;
+		if (gl != null) {
+			gl.deleteBuffer(buffer);
+		}
+	}
+
+	@Override
+	public void bindBuffer(int target, int buffer) {
+		counts[Call.BIND_BUFFER.ordinal()]++;
+		if (gl != null) {
+			gl.bindBuffer(target, buffer);
+		}
+	}
+
+	@Override
+	public void bindBufferBase(int target, int index, int buffer) {
+		counts[Call.BIND_BUFFER_BASE.ordinal()]++;
+		if (gl != null) {
+			gl.bindBufferBase(target, index, buffer);
+		}
+	}
+
+	@Override
+	public void bufferData(int target, long sizeBytes, int usage) {
+		counts[Call.BUFFER_DATA.ordinal()]++;
+		if (gl != null) {
+			gl.bufferData(target, sizeBytes, usage);
+		}
+	}
+
+	@Override
+	public void bufferSubData(int target, long offsetBytes, FloatBuffer data) {
+		counts[Call.BUFFER_SUB_DATA.ordinal()]++;
+		if (gl != null) {
+			gl.bufferSubData(target, offsetBytes, data);
+		}
+	}
+
+	@Override
+	public void bindVertexArray(int vao) {
+		counts[Call.BIND_VERTEX_ARRAY.ordinal()]++;
+		if (gl != null) {
+			gl.bindVertexArray(vao);
+		}
+	}
+
+	@Override
+	public void enableVertexAttribArray(int index) {
+		counts[Call.ENABLE_VERTEX_ATTRIB_ARRAY.ordinal()]++;
+		if (gl != null) {
+			gl.enableVertexAttribArray(index);
+		}
+	}
+
+	@Override
+	public void disableVertexAttribArray(int index) {
+		counts[Call.DISABLE_VERTEX_ATTRIB_ARRAY.ordinal()]++;
+		if (gl != null) {
+			gl.disableVertexAttribArray(index);
+		}
+	}
+
+	@Override
+	public void vertexAttribPointer(int index, int size, int type, boolean normalized, int strideBytes,
+			long offsetBytes) {
+		counts[Call.VERTEX_ATTRIB_POINTER.ordinal()]++;
+		if (gl != null) {
+			gl.vertexAttribPointer(index, size, type, normalized, strideBytes, offsetBytes);
+		}
+	}
+
+	@Override
+	public void vertexAttribDivisor(int index, int divisor) {
+		counts[Call.VERTEX_ATTRIB_DIVISOR.ordinal()]++;
+		if (gl != null) {
+			gl.vertexAttribDivisor(index, divisor);
+		}
+	}
+
+	@Override
+	public void activeTexture(int unit) {
+		counts[Call.ACTIVE_TEXTURE.ordinal()]++;
+		if (gl != null) {
+			gl.activeTexture(unit);
+		}
+	}
+
+	@Override
+	public void bindTexture(int target, int texture) {
+		counts[Call.BIND_TEXTURE.ordinal()]++;
+		if (gl != null) {
+			gl.bindTexture(target, texture);
+		}
+	}
+
+	@Override
+	public void drawElements(int mode, int count, int type, long offsetBytes) {
+		counts[Call.DRAW_ELEMENTS.ordinal()]++;
+		if (gl != null) {
+			gl.drawElements(mode, count, type, offsetBytes);
+		}
+	}
+
+	@Override
+	public void drawElementsInstanced(int mode, int count, int type, long offsetBytes, int instanceCount) {
+		counts[Call.DRAW_ELEMENTS_INSTANCED.ordinal()]++;
+		if (gl != null) {
+			gl.drawElementsInstanced(mode, count, type, offsetBytes, instanceCount);
+		}
+	}
+
+	@Override
+	public void useProgram(int program) {
+		counts[Call.USE_PROGRAM.ordinal()]++;
+		if (gl != null) {
+			gl.useProgram(program);
+		}
+	}
+
+	@Override
+	public void enable(int capability) {
+		counts[Call.ENABLE.ordinal()]++;
+		if (gl != null) {
+			gl.enable(capability);
+		}
+	}
+
+	@Override
+	public void disable(int capability) {
+		counts[Call.DISABLE.ordinal()]++;
+		if (gl != null) {
+			gl.disable(capability);
+		}
+	}
+
+	@Override
+	public void bufferSubData(int target, long offsetBytes, ByteBuffer data) {
+		counts[Call.BUFFER_SUB_DATA.ordinal()]++;
+		if (gl != null) {
+			gl.bufferSubData(target, offsetBytes, data);
+		}
+	}
+
+	@Override
+	public boolean supportsBufferStorage() {
+		return gl == null || gl.supportsBufferStorage();
+	}
+
+	@Override
+	public ByteBuffer mapBufferStorage(int target, long sizeBytes) {
+		counts[Call.MAP_BUFFER_STORAGE.ordinal()]++;
+		return gl != null ? gl.mapBufferStorage(target, sizeBytes) : BufferUtils.createByteBuffer((int) sizeBytes);
+	}
+
+	@Override
+	public void unmapBuffer(int target) {
+		counts[Call.UNMAP_BUFFER.ordinal()]++;
+		if (gl != null) {
+			gl.unmapBuffer(target);
+		}
+	}
+
+	@Override
+	public long fenceSync() {
+		counts[Call.FENCE_SYNC.ordinal()]++;
+		return gl != null ? gl.fenceSync() : nextFence++;
+	}
+
+	@Override
+	public boolean clientWaitSync(long fence, long timeoutNanos) {
+		counts[Call.CLIENT_WAIT_SYNC.ordinal()]++;
+		return gl != null ? gl.clientWaitSync(fence, timeoutNanos) : fence <= signalledFence;
+	}
+
+	@Override
+	public void deleteSync(long fence) {
+		counts[Call.DELETE_SYNC.ordinal()]++;
+		if (gl != null) {
+			gl.deleteSync(fence);
+		}
+	}
+}
@@ -4,11 +4,9 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
-import org.lwjgl.util.vector.Matrix4f;
 
 import Entities.Entity;
 import Shaders.StaticShader;
-import ToolBox.Maths;
 
 public class EntityRenderer {
 
@@ -19,8 +17,8 @@ public class EntityRenderer {
         GL20.glEnableVertexAttribArray(0);
         GL20.glEnableVertexAttribArray(1);
         
-        Matrix4f transformationMatrix = Maths.createTransformationMatrix(entity.getPosition(), entity.getRotX(), entity.getRotY(), entity.getRotZ(), entity.getScale());
-        shader.loadTransformationMatrix(transformationMatrix);
+        // Cached on the entity and only rebuilt when it has moved
+        shader.loadTransformationMatrix(entity.getTransformationMatrix());
         
         GL13.glActiveTexture(GL13.GL_TEXTURE0);
         GL11.glBindTexture(GL11.GL_TEXTURE_2D,entity.getModel().getTexture().getTextureID());
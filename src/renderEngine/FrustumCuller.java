@@ -0,0 +1,167 @@
+package renderEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import Entities.Entity;
+import ToolBox.DynamicAABBTree;
+import ToolBox.Frustum;
+import ToolBox.Maths;
+import lombok.Getter;
+import world.Chunk;
+import world.ChunkListener;
+import world.ChunkPos;
+
+/**
+ * Decides which entities and chunks can be seen from the camera.
+ * 
+ * Entities and chunks are kept in two {@link DynamicAABBTree}s. Entities
+ * register themselves as a move listener, so the culler hears whenever
+ * {@link Entity#increasePosition}, a setter or a moving parent changes one's
+ * transform. The moved entities are only collected then, and their leaves are
+ * refitted at the start of the next cull pass, so an entity that changes
+ * several times in a frame has its matrix rebuilt once. Each frame the frustum
+ * is rebuilt from the projection and view matrices and the trees are walked,
+ * skipping whole subtrees that lie outside it.
+ *
+ * Chunks follow the loaded world by registering the culler as the
+ * {@link world.ChunkStreamer}'s {@link ChunkListener}. The chunk tree is the
+ * frustum-only fallback that {@link MasterRenderer#renderChunks} uses when no
+ * {@link world.VisibilityGraph} is given.
+ */
+public class FrustumCuller implements Entity.MoveListener, ChunkListener {
+
+	// Entities move every frame, so their leaves get some slack before re-insertion
+	private static final float ENTITY_MARGIN = 1.0f;
+
+	@Getter
+	private final Frustum frustum = new Frustum();
+
+	private final DynamicAABBTree<Entity> entityTree = new DynamicAABBTree<Entity>(ENTITY_MARGIN);
+	private final DynamicAABBTree<Long> chunkTree = new DynamicAABBTree<Long>(0);
+	private final HashMap<Long, Integer> chunkProxies = new HashMap<Long, Integer>();
+	// Entities whose leaves need refitting before the next query
+	private final List<Entity> movedEntities = new ArrayList<Entity>();
+	private final Matrix4f viewMatrix = new Matrix4f();
+	private final Vector3f worldPosition = new Vector3f();
+
+	// Results of the last culling pass
+	@Getter
+	private int visibleEntities, culledEntities;
+	@Getter
+	private int visibleChunks, culledChunks;
+
+	public void addEntity(Entity entity) {
+		float r = entity.getBoundingRadius();
+		Vector3f p = entity.getWorldPosition(worldPosition);
+		entity.setCullingProxy(entityTree.insert(entity, p.x - r, p.y - r, p.z - r, p.x + r, p.y + r, p.z + r));
+		entity.setCullingProxyDirty(false);
+		entity.setMoveListener(this);
+	}
+
+	public void removeEntity(Entity entity) {
+		if (entity.getCullingProxy() >= 0) {
+			entityTree.remove(entity.getCullingProxy());
+			entity.setCullingProxy(-1);
+			entity.setMoveListener(null);
+		}
+	}
+
+	@Override
+	public void entityMoved(Entity entity) {
+		movedEntities.add(entity);
+	}
+
+	// Refits the leaves of the entities that moved since the last pass
+	private void refitMovedEntities() {
+		for (int i = 0; i < movedEntities.size(); i++) {
+			Entity entity = movedEntities.get(i);
+			entity.setCullingProxyDirty(false);
+			if (entity.getCullingProxy() < 0 || entity.getPosition() == null) {
+				continue;
+			}
+			float r = entity.getBoundingRadius();
+			Vector3f p = entity.getWorldPosition(worldPosition);
+			entityTree.move(entity.getCullingProxy(), p.x - r, p.y - r, p.z - r, p.x + r, p.y + r, p.z + r);
+		}
+		movedEntities.clear();
+	}
+
+	public void addChunk(long chunkKey) {
+		if (chunkProxies.containsKey(chunkKey)) {
+			return;
+		}
+		float x = ChunkPos.unpackX(chunkKey) * Chunk.SIZE;
+		float y = ChunkPos.unpackY(chunkKey) * Chunk.SIZE;
+		float z = ChunkPos.unpackZ(chunkKey) * Chunk.SIZE;
+		chunkProxies.put(chunkKey, chunkTree.insert(chunkKey, x, y, z, x + Chunk.SIZE, y + Chunk.SIZE, z + Chunk.SIZE));
+	}
+
+	public void removeChunk(long chunkKey) {
+		Integer proxy = chunkProxies.remove(chunkKey);
+		if (proxy != null) {
+			chunkTree.remove(proxy);
+		}
+	}
+
+	@Override
+	public void chunkLoaded(long chunkKey) {
+		addChunk(chunkKey);
+	}
+
+	@Override
+	public void chunkUnloaded(long chunkKey) {
+		removeChunk(chunkKey);
+	}
+
+	/**
+	 * Rebuilds the frustum for this frame from the projection matrix and the
+	 * camera's view matrix.
+	 */
+	public void update(Matrix4f projectionMatrix, Camera camera) {
+		frustum.update(projectionMatrix, Maths.createViewMatrix(camera, viewMatrix));
+	}
+
+	/**
+	 * Adds every entity inside the frustum to the given list, which is cleared
+	 * first.
+	 */
+	public void collectVisibleEntities(final List<Entity> visible) {
+		refitMovedEntities();
+		visible.clear();
+		entityTree.query(frustum, new Consumer<Entity>() {
+			@Override
+			public void accept(Entity entity) {
+				// The leaf box is padded, so finish with the exact bounding sphere
+				Vector3f p = entity.getWorldPosition(worldPosition);
+				if (frustum.intersectsSphere(p.x, p.y, p.z, entity.getBoundingRadius())) {
+					visible.add(entity);
+				}
+			}
+		});
+		visibleEntities = visible.size();
+		culledEntities = entityTree.size() - visibleEntities;
+	}
+
+	/**
+	 * Adds the packed coordinates of every chunk inside the frustum to the given
+	 * list, which is cleared first.
+	 */
+	public void collectVisibleChunks(final List<Long> visible) {
+		visible.clear();
+		chunkTree.query(frustum, new Consumer<Long>() {
+			@Override
+			public void accept(Long chunkKey) {
+				visible.add(chunkKey);
+			}
+		});
+		visibleChunks = visible.size();
+		culledChunks = chunkTree.size() - visibleChunks;
+	}
+}
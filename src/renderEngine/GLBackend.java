@@ -0,0 +1,89 @@
+package renderEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * The subset of OpenGL calls used by the batched renderers and the render queue.
+ * 
+ * Renderers issue their GL calls through this interface instead of calling the
+ * LWJGL classes directly, so that the batching logic can be driven by a
+ * recording implementation without a display. {@link LwjglGLBackend} forwards
+ * every call to LWJGL.
+ */
+public interface GLBackend {
+
+	int genBuffer();
+
+	void deleteBuffer(int buffer);
+
+	void bindBuffer(int target, int buffer);
+
+	/**
+	 * Binds the buffer to an indexed binding point such as a uniform block binding.
+	 */
+	void bindBufferBase(int target, int index, int buffer);
+
+	/**
+	 * Allocates (or orphans) storage for the bound buffer without uploading data.
+	 */
+	void bufferData(int target, long sizeBytes, int usage);
+
+	void bufferSubData(int target, long offsetBytes, FloatBuffer data);
+
+	void bufferSubData(int target, long offsetBytes, ByteBuffer data);
+
+	/**
+	 * @return True if immutable buffer storage with persistent mapping is available.
+	 */
+	boolean supportsBufferStorage();
+
+	/**
+	 * Allocates immutable storage for the bound buffer and maps all of it
+	 * persistently and coherently for writing.
+	 */
+	ByteBuffer mapBufferStorage(int target, long sizeBytes);
+
+	void unmapBuffer(int target);
+
+	void bindVertexArray(int vao);
+
+	void enableVertexAttribArray(int index);
+
+	void disableVertexAttribArray(int index);
+
+	void vertexAttribPointer(int index, int size, int type, boolean normalized, int strideBytes, long offsetBytes);
+
+	void vertexAttribDivisor(int index, int divisor);
+
+	void activeTexture(int unit);
+
+	void bindTexture(int target, int texture);
+
+	void drawElements(int mode, int count, int type, long offsetBytes);
+
+	void drawElementsInstanced(int mode, int count, int type, long offsetBytes, int instanceCount);
+
+	void useProgram(int program);
+
+	void enable(int capability);
+
+	void disable(int capability);
+
+	/**
+	 * Inserts a fence that is signalled once the GPU has finished all commands
+	 * issued before it.
+	 *
+	 * @return A handle for the fence, never 0.
+	 */
+	long fenceSync();
+
+	/**
+	 * Waits up to the timeout for a fence, flushing pending commands first.
+	 *
+	 * @return True if the fence is signalled.
+	 */
+	boolean clientWaitSync(long fence, long timeoutNanos);
+
+	void deleteSync(long fence);
+}
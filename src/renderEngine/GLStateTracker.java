@@ -0,0 +1,377 @@
+package renderEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+
+import lombok.Getter;
+
+/**
+ * A {@link GLBackend} decorator that remembers the bound program, VAO, array
+ * buffer, textures and enabled capabilities, and drops calls that would set
+ * state to the value it already has.
+ * 
+ * The tracker only knows about calls that go through it. Code that still talks
+ * to LWJGL directly (e.g. {@link EntityRenderer} or {@link Shaders.ShaderProgram#start()})
+ * can change state behind its back, so call {@link #invalidateBindings()}
+ * whenever that may have happened; the next call of each kind is then always
+ * issued. Capabilities are only toggled through the tracker and stay known.
+ * Deleted VAOs and textures must be reported with {@link #forgetVertexArray}
+ * and {@link #forgetTexture}, as GL hands their IDs out again.
+ */
+public class GLStateTracker implements GLBackend {
+
+	private static final int UNKNOWN = -1;
+	private static final int MAX_TEXTURE_UNITS = 16;
+
+	private final GLBackend gl;
+
+	private int program;
+	private int vao;
+	private int arrayBuffer;
+	private int activeUnit;
+
+	// Bound texture per unit for GL_TEXTURE_2D and GL_TEXTURE_2D_ARRAY
+	private final int[] textures2D = new int[MAX_TEXTURE_UNITS];
+	private final int[] texturesArray = new int[MAX_TEXTURE_UNITS];
+
+	// Enabled vertex attributes are part of the VAO state, so they are tracked per VAO
+	private int[] attributeMasks = new int[64];
+
+	// Capabilities seen so far and their state (1 = enabled, 0 = disabled, -1 = unknown)
+	private int[] capabilities = new int[8];
+	private int[] capabilityStates = new int[8];
+	private int capabilityCount;
+
+	@Getter
+	private long issuedCalls;
+	@Getter
+	private long skippedCalls;
+
+	public GLStateTracker(GLBackend gl) {
+		this.gl = gl;
+		invalidate();
+	}
+
+	/**
+	 * Forgets everything the tracker knows about the current GL state.
+	 */
+	public void invalidate() {
+		invalidateBindings();
+		Arrays.fill(capabilityStates, UNKNOWN);
+	}
+
+	/**
+	 * Forgets the bound program, VAO, array buffer and textures and the
+	 * enabled vertex attributes, which is what shaders and the immediate
+	 * renderers change directly. Enabled capabilities stay known.
+	 */
+	public void invalidateBindings() {
+		program = UNKNOWN;
+		vao = UNKNOWN;
+		arrayBuffer = UNKNOWN;
+		activeUnit = UNKNOWN;
+		Arrays.fill(textures2D, UNKNOWN);
+		Arrays.fill(texturesArray, UNKNOWN);
+		Arrays.fill(attributeMasks, UNKNOWN);
+	}
+
+	/**
+	 * Drops what is known about a VAO that was deleted, so a new VAO given the
+	 * same ID does not inherit its enabled attributes.
+	 */
+	public void forgetVertexArray(int vao) {
+		if (vao < attributeMasks.length) {
+			attributeMasks[vao] = UNKNOWN;
+		}
+		// GL unbinds a deleted VAO
+		if (this.vao == vao) {
+			this.vao = 0;
+		}
+	}
+
+	/**
+	 * Drops a deleted texture from the bindings, as GL reverts its units to 0.
+	 */
+	public void forgetTexture(int texture) {
+		for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+			if (textures2D[unit] == texture) {
+				textures2D[unit] = 0;
+			}
+			if (texturesArray[unit] == texture) {
+				texturesArray[unit] = 0;
+			}
+		}
+	}
+
+	public void resetCounters() {
+		issuedCalls = 0;
+		skippedCalls = 0;
+	}
+
+	@Override
+	public void useProgram(int program) {
+		if (this.program == program) {
+			skippedCalls++;
+			return;
+		}
+		this.program = program;
+		issue();
+		gl.useProgram(program);
+	}
+
+	@Override
+	public void bindVertexArray(int vao) {
+		if (this.vao == vao) {
+			skippedCalls++;
+			return;
+		}
+		this.vao = vao;
+		issue();
+		gl.bindVertexArray(vao);
+	}
+
+	@Override
+	public void enableVertexAttribArray(int index) {
+		int mask = currentAttributeMask();
+		if (mask != UNKNOWN && (mask & (1 << index)) != 0) {
+			skippedCalls++;
+			return;
+		}
+		setAttributeMask(mask == UNKNOWN ? 1 << index : mask | (1 << index));
+		issue();
+		gl.enableVertexAttribArray(index);
+	}
+
+	@Override
+	public void disableVertexAttribArray(int index) {
+		int mask = currentAttributeMask();
+		if (mask != UNKNOWN && (mask & (1 << index)) == 0) {
+			skippedCalls++;
+			return;
+		}
+		// An unknown mask stays unknown, as other attributes may still be enabled
+		if (mask != UNKNOWN) {
+			setAttributeMask(mask & ~(1 << index));
+		}
+		issue();
+		gl.disableVertexAttribArray(index);
+	}
+
+	@Override
+	public void activeTexture(int unit) {
+		if (activeUnit == unit) {
+			skippedCalls++;
+			return;
+		}
+		activeUnit = unit;
+		issue();
+		gl.activeTexture(unit);
+	}
+
+	@Override
+	public void bindTexture(int target, int texture) {
+		int[] bound = boundTextures(target);
+		int unit = activeUnit - GL13.GL_TEXTURE0;
+		if (bound == null || activeUnit == UNKNOWN || unit >= MAX_TEXTURE_UNITS) {
+			issue();
+			gl.bindTexture(target, texture);
+			return;
+		}
+		if (bound[unit] == texture) {
+			skippedCalls++;
+			return;
+		}
+		bound[unit] = texture;
+		issue();
+		gl.bindTexture(target, texture);
+	}
+
+	@Override
+	public void bindBuffer(int target, int buffer) {
+		// The element array binding belongs to the VAO, so only GL_ARRAY_BUFFER is tracked
+		if (target == GL15.GL_ARRAY_BUFFER) {
+			if (arrayBuffer == buffer) {
+				skippedCalls++;
+				return;
+			}
+			arrayBuffer = buffer;
+		}
+		issue();
+		gl.bindBuffer(target, buffer);
+	}
+
+	@Override
+	public void bindBufferBase(int target, int index, int buffer) {
+		// Only uniform and transform feedback buffers have indexed bindings, and neither is tracked
+		issue();
+		gl.bindBufferBase(target, index, buffer);
+	}
+
+	@Override
+	public void enable(int capability) {
+		setCapability(capability, 1);
+	}
+
+	@Override
+	public void disable(int capability) {
+		setCapability(capability, 0);
+	}
+
+	@Override
+	public int genBuffer() {
+		issue();
+		return gl.genBuffer();
+	}
+
+	@Override
+	public void deleteBuffer(int buffer) {
+		// GL unbinds a deleted buffer
+		if (arrayBuffer == buffer) {
+			arrayBuffer = 0;
+		}
+		issue();
+		gl.deleteBuffer(buffer);
+	}
+
+	@Override
+	public void bufferData(int target, long sizeBytes, int usage) {
+		issue();
+		gl.bufferData(target, sizeBytes, usage);
+	}
+
+	@Override
+	public void bufferSubData(int target, long offsetBytes, FloatBuffer data) {
+		issue();
+		gl.bufferSubData(target, offsetBytes, data);
+	}
+
+	@Override
+	public void vertexAttribPointer(int index, int size, int type, boolean normalized, int strideBytes,
+			long offsetBytes) {
+		issue();
+		gl.vertexAttribPointer(index, size, type, normalized, strideBytes, offsetBytes);
+	}
+
+	@Override
+	public void vertexAttribDivisor(int index, int divisor) {
+		issue();
+		gl.vertexAttribDivisor(index, divisor);
+	}
+
+	@Override
+	public void drawElements(int mode, int count, int type, long offsetBytes) {
+		issue();
+		gl.drawElements(mode, count, type, offsetBytes);
+	}
+
+	@Override
+	public void drawElementsInstanced(int mode, int count, int type, long offsetBytes, int instanceCount) {
+		issue();
+		gl.drawElementsInstanced(mode, count, type, offsetBytes, instanceCount);
+	}
+
+	@Override
+	public void bufferSubData(int target, long offsetBytes, ByteBuffer data) {
+		issue();
+		gl.bufferSubData(target, offsetBytes, data);
+	}
+
+	@Override
+	public boolean supportsBufferStorage() {
+		return gl.supportsBufferStorage();
+	}
+
+	@Override
+	public ByteBuffer mapBufferStorage(int target, long sizeBytes) {
+		issue();
+		return gl.mapBufferStorage(target, sizeBytes);
+	}
+
+	@Override
+	public void unmapBuffer(int target) {
+		issue();
+		gl.unmapBuffer(target);
+	}
+
+	@Override
+	public long fenceSync() {
+		issue();
+		return gl.fenceSync();
+	}
+
+	@Override
+	public boolean clientWaitSync(long fence, long timeoutNanos) {
+		issue();
+		return gl.clientWaitSync(fence, timeoutNanos);
+	}
+
+	@Override
+	public void deleteSync(long fence) {
+		issue();
+		gl.deleteSync(fence);
+	}
+
+	private void issue() {
+		issuedCalls++;
+	}
+
+	private int currentAttributeMask() {
+		if (vao == UNKNOWN || vao >= attributeMasks.length) {
+			return UNKNOWN;
+		}
+		return attributeMasks[vao];
+	}
+
+	private void setAttributeMask(int mask) {
+		if (vao == UNKNOWN) {
+			return;
+		}
+		if (vao >= attributeMasks.length) {
+			int oldLength = attributeMasks.length;
+			attributeMasks = Arrays.copyOf(attributeMasks, Math.max(vao + 1, oldLength * 2));
+			Arrays.fill(attributeMasks, oldLength, attributeMasks.length, UNKNOWN);
+		}
+		attributeMasks[vao] = mask;
+	}
+
+	private int[] boundTextures(int target) {
+		if (target == GL11.GL_TEXTURE_2D) {
+			return textures2D;
+		}
+		if (target == GL30.GL_TEXTURE_2D_ARRAY) {
+			return texturesArray;
+		}
+		return null;
+	}
+
+	private void setCapability(int capability, int state) {
+		int slot = 0;
+		while (slot < capabilityCount && capabilities[slot] != capability) {
+			slot++;
+		}
+		if (slot == capabilityCount) {
+			if (capabilityCount == capabilities.length) {
+				capabilities = Arrays.copyOf(capabilities, capabilityCount * 2);
+				capabilityStates = Arrays.copyOf(capabilityStates, capabilityCount * 2);
+			}
+			capabilities[slot] = capability;
+			capabilityCount++;
+		} else if (capabilityStates[slot] == state) {
+			skippedCalls++;
+			return;
+		}
+		capabilityStates[slot] = state;
+		issue();
+		if (state == 1) {
+			gl.enable(capability);
+		} else {
+			gl.disable(capability);
+		}
+	}
+}
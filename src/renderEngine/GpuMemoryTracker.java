@@ -0,0 +1,69 @@
+package renderEngine;
+
+/**
+ * Running totals of the GPU memory allocated through the {@link Loader}, split
+ * by what the memory is used for.
+ * 
+ * The figures are the sizes requested from GL, so driver padding and mipmap
+ * rounding are not included.
+ */
+public class GpuMemoryTracker {
+
+	public enum Category {
+		VERTEX_BUFFERS, INDEX_BUFFERS, TEXTURES, POOLED_BUFFERS
+	}
+
+	private static final Category[] CATEGORIES = Category.values();
+
+	private final long[] bytes = new long[CATEGORIES.length];
+	private final int[] counts = new int[CATEGORIES.length];
+	private long peakBytes;
+
+	public void allocated(Category category, long size) {
+		bytes[category.ordinal()] += size;
+		counts[category.ordinal()]++;
+		peakBytes = Math.max(peakBytes, getTotalBytes());
+	}
+
+	public void freed(Category category, long size) {
+		bytes[category.ordinal()] -= size;
+		counts[category.ordinal()]--;
+	}
+
+	// Moves an allocation between categories without changing the total
+	public void moved(Category from, Category to, long size) {
+		freed(from, size);
+		allocated(to, size);
+	}
+
+	public long getBytes(Category category) {
+		return bytes[category.ordinal()];
+	}
+
+	public int getCount(Category category) {
+		return counts[category.ordinal()];
+	}
+
+	public long getTotalBytes() {
+		long total = 0;
+		for (long b : bytes) {
+			total += b;
+		}
+		return total;
+	}
+
+	public long getPeakBytes() {
+		return peakBytes;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("GPU memory: ").append(getTotalBytes() / 1024).append(" KiB");
+		for (Category category : CATEGORIES) {
+			builder.append(", ").append(category.name().toLowerCase()).append('=')
+					.append(bytes[category.ordinal()] / 1024).append(" KiB (").append(counts[category.ordinal()])
+					.append(')');
+		}
+		return builder.append(", peak=").append(peakBytes / 1024).append(" KiB").toString();
+	}
+}
@@ -0,0 +1,295 @@
+package renderEngine;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+
+import Entities.Entity;
+import Entities.EntityStore;
+import lombok.Getter;
+import models.TexturedModel;
+
+/**
+ * Draws entities that share a {@link TexturedModel} with one instanced draw
+ * call per model.
+ * 
+ * Every frame the entities are grouped by model, and the transformation
+ * matrices of all groups are packed back to back and written once into a
+ * {@link StreamingBuffer}. Each group then points the per-instance matrix
+ * attribute at its slice of that buffer and issues one
+ * glDrawElementsInstanced call. When the streaming region is too small or
+ * still in use by the GPU, the matrices go to a buffer of the renderer's own
+ * that is orphaned instead. If the region is too small for several frames in
+ * a row, the streaming buffer is replaced by one whose regions fit the frame.
+ * Use with {@link Shaders.InstancedShader}.
+ */
+public class InstancedRenderer {
+
+	// The per-instance mat4 occupies four consecutive vec4 attributes starting here
+	public static final int INSTANCE_ATTRIBUTE = 2;
+	public static final int FLOATS_PER_INSTANCE = 16;
+	private static final int BYTES_PER_INSTANCE = FLOATS_PER_INSTANCE * 4;
+	// Frames in a row the matrices may overflow a streaming region before it is grown
+	private static final int GROW_AFTER_FRAMES = 3;
+
+	private final GLBackend gl;
+	@Getter
+	private StreamingBuffer stream;
+	private int oversizedFrames;
+	// Fallback for frames the streaming buffer can't take
+	private final int instanceVBO;
+	// Where this frame's matrices start in the bound instance buffer
+	private long instanceOffset;
+
+	private FloatBuffer instanceData;
+	private final IdentityHashMap<TexturedModel, Batch> batches = new IdentityHashMap<TexturedModel, Batch>();
+	private final List<Batch> batchOrder = new ArrayList<Batch>();
+
+	// Scratch space for rendering an EntityStore
+	private int[] modelFirst = new int[0];
+	private int[] modelFill = new int[0];
+	private float[] packed = new float[0];
+
+	// Statistics for the last rendered frame
+	@Getter
+	private int drawCalls;
+	@Getter
+	private int instancesDrawn;
+	@Getter
+	private int streamGrowths;
+
+	public InstancedRenderer(GLBackend gl) {
+		this(gl, 1024);
+	}
+
+	public InstancedRenderer(GLBackend gl, int initialCapacity) {
+		this.gl = gl;
+		this.stream = new StreamingBuffer(gl, GL15.GL_ARRAY_BUFFER, initialCapacity * BYTES_PER_INSTANCE);
+		this.instanceVBO = gl.genBuffer();
+		this.instanceData = BufferUtils.createFloatBuffer(initialCapacity * FLOATS_PER_INSTANCE);
+	}
+
+	/**
+	 * Renders all given entities. The instanced shader must already be started
+	 * and have its view and projection matrices loaded.
+	 */
+	public void render(Collection<Entity> entities) {
+		groupByModel(entities);
+		int total = packInstances();
+
+		drawCalls = 0;
+		instancesDrawn = 0;
+		if (total == 0) {
+			return;
+		}
+
+		uploadInstances();
+
+		for (Batch batch : batchOrder) {
+			if (!batch.entities.isEmpty()) {
+				drawBatch(batch.model, batch.firstInstance, batch.entities.size());
+			}
+		}
+		gl.bindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		stream.endFrame();
+	}
+
+	/**
+	 * Renders every entity of a structure-of-arrays store. The store's matrices
+	 * must be up to date (see {@link Entities.TransformSystem}); they are copied
+	 * into the instance buffer grouped by model ID without touching any entity
+	 * objects.
+	 */
+	public void render(EntityStore store) {
+		int modelCount = store.getModelCount();
+		int total = store.getCount();
+		if (modelFirst.length < modelCount + 1) {
+			modelFirst = new int[modelCount + 1];
+			modelFill = new int[modelCount];
+		}
+
+		// Counting sort of the entities by model
+		Arrays.fill(modelFirst, 0, modelCount + 1, 0);
+		int[] modelIDs = store.getModelIDs();
+		for (int i = 0; i < total; i++) {
+			modelFirst[modelIDs[i] + 1]++;
+		}
+		for (int m = 0; m < modelCount; m++) {
+			modelFirst[m + 1] += modelFirst[m];
+		}
+		System.arraycopy(modelFirst, 0, modelFill, 0, modelCount);
+
+		ensureCapacity(total);
+		if (packed.length < total * FLOATS_PER_INSTANCE) {
+			packed = new float[instanceData.capacity()];
+		}
+		float[] matrices = store.getMatrices();
+		for (int i = 0; i < total; i++) {
+			int slot = modelFill[modelIDs[i]]++;
+			System.arraycopy(matrices, i * FLOATS_PER_INSTANCE, packed, slot * FLOATS_PER_INSTANCE, FLOATS_PER_INSTANCE);
+		}
+		instanceData.clear();
+		instanceData.put(packed, 0, total * FLOATS_PER_INSTANCE);
+		instanceData.flip();
+
+		drawCalls = 0;
+		instancesDrawn = 0;
+		if (total == 0) {
+			return;
+		}
+		uploadInstances();
+		for (int m = 0; m < modelCount; m++) {
+			int instances = modelFirst[m + 1] - modelFirst[m];
+			if (instances > 0) {
+				drawBatch(store.getModel(m), modelFirst[m], instances);
+			}
+		}
+		gl.bindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		stream.endFrame();
+	}
+
+	/**
+	 * Releases the streaming and fallback instance buffers.
+	 */
+	public void cleanUp() {
+		stream.cleanUp();
+		gl.deleteBuffer(instanceVBO);
+	}
+
+	public FloatBuffer getInstanceData() {
+		return instanceData;
+	}
+
+	private void groupByModel(Collection<Entity> entities) {
+		// Forget models that were not drawn last frame, reuse the lists of the others
+		Iterator<Batch> it = batchOrder.iterator();
+		while (it.hasNext()) {
+			Batch batch = it.next();
+			if (batch.entities.isEmpty()) {
+				batches.remove(batch.model);
+				it.remove();
+			} else {
+				batch.entities.clear();
+			}
+		}
+
+		for (Entity entity : entities) {
+			Batch batch = batches.get(entity.getModel());
+			if (batch == null) {
+				batch = new Batch(entity.getModel());
+				batches.put(entity.getModel(), batch);
+				batchOrder.add(batch);
+			}
+			batch.entities.add(entity);
+		}
+	}
+
+	// Writes the matrices of every batch into the instance buffer, returning the instance count
+	private int packInstances() {
+		int total = 0;
+		for (Batch batch : batchOrder) {
+			batch.firstInstance = total;
+			total += batch.entities.size();
+		}
+		ensureCapacity(total);
+
+		instanceData.clear();
+		for (Batch batch : batchOrder) {
+			for (Entity entity : batch.entities) {
+				entity.getTransformationMatrix().store(instanceData);
+			}
+		}
+		instanceData.flip();
+		return total;
+	}
+
+	private void ensureCapacity(int instances) {
+		if (instances * FLOATS_PER_INSTANCE > instanceData.capacity()) {
+			int capacity = instanceData.capacity();
+			while (capacity < instances * FLOATS_PER_INSTANCE) {
+				capacity *= 2;
+			}
+			instanceData = BufferUtils.createFloatBuffer(capacity);
+		}
+	}
+
+	// Writes the packed matrices into the streaming buffer, or into the fallback buffer if they don't fit
+	private void uploadInstances() {
+		int bytes = instanceData.remaining() * 4;
+		if (bytes <= stream.getRegionSize()) {
+			oversizedFrames = 0;
+		} else if (++oversizedFrames >= GROW_AFTER_FRAMES) {
+			growStream(bytes);
+		}
+
+		long offset = stream.beginFrame() ? stream.write(instanceData) : -1;
+		if (offset >= 0) {
+			instanceOffset = offset;
+			gl.bindBuffer(GL15.GL_ARRAY_BUFFER, stream.getBufferID());
+			return;
+		}
+		// Orphan the previous frame's storage so the driver never waits on the GPU
+		instanceOffset = 0;
+		gl.bindBuffer(GL15.GL_ARRAY_BUFFER, instanceVBO);
+		gl.bufferData(GL15.GL_ARRAY_BUFFER, (long) instanceData.capacity() * 4, GL15.GL_STREAM_DRAW);
+		gl.bufferSubData(GL15.GL_ARRAY_BUFFER, 0, instanceData);
+	}
+
+	// Replaces the streaming buffer by one whose regions hold at least the given bytes
+	private void growStream(int bytes) {
+		int regionSize = stream.getRegionSize();
+		while (regionSize < bytes) {
+			regionSize *= 2;
+		}
+		stream.cleanUp();
+		stream = new StreamingBuffer(gl, GL15.GL_ARRAY_BUFFER, regionSize);
+		oversizedFrames = 0;
+		streamGrowths++;
+	}
+
+	private void drawBatch(TexturedModel model, int firstInstance, int instanceCount) {
+		gl.bindVertexArray(model.getModel().getVaoID());
+		gl.enableVertexAttribArray(0);
+		gl.enableVertexAttribArray(1);
+
+		// Point the matrix columns at this batch's slice of the instance buffer
+		long offset = instanceOffset + (long) firstInstance * BYTES_PER_INSTANCE;
+		for (int column = 0; column < 4; column++) {
+			int attribute = INSTANCE_ATTRIBUTE + column;
+			gl.enableVertexAttribArray(attribute);
+			gl.vertexAttribPointer(attribute, 4, GL11.GL_FLOAT, false, BYTES_PER_INSTANCE, offset + column * 16);
+			gl.vertexAttribDivisor(attribute, 1);
+		}
+
+		gl.activeTexture(GL13.GL_TEXTURE0);
+		gl.bindTexture(GL11.GL_TEXTURE_2D, model.getTexture().getTextureID());
+		gl.drawElementsInstanced(GL11.GL_TRIANGLES, model.getModel().getVertexCount(), GL11.GL_UNSIGNED_INT, 0,
+				instanceCount);
+		drawCalls++;
+		instancesDrawn += instanceCount;
+
+		for (int attribute = 0; attribute < INSTANCE_ATTRIBUTE + 4; attribute++) {
+			gl.disableVertexAttribArray(attribute);
+		}
+		gl.bindVertexArray(0);
+	}
+
+	private static class Batch {
+		final TexturedModel model;
+		final List<Entity> entities = new ArrayList<Entity>();
+		int firstInstance;
+
+		Batch(TexturedModel model) {
+			this.model = model;
+		}
+	}
+}
@@ -1,61 +1,491 @@
 package renderEngine;
 
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 import org.newdawn.slick.opengl.Texture;
 import org.newdawn.slick.opengl.TextureLoader;
 
+import Textures.AtlasPacker;
+import Textures.TextureAtlas;
+import ToolBox.DirectBufferPool;
+import lombok.Getter;
+import lombok.Setter;
 import models.RawModel;
+import renderEngine.BufferPool.PooledBuffer;
+import renderEngine.GpuMemoryTracker.Category;
+import world.PackedVertex;
 
 
 public class Loader {
 
-	static ArrayList<Integer> vaos = new ArrayList<Integer>();
+	private static final String RES_PATH = "D:/Coding/Projects/PixelPuffEngine/resources/res/";
+	private static final String CACHE_PATH = "D:/Coding/Projects/PixelPuffEngine/resources/cache/";
+
+	// Border kept around each atlas texture so filtering does not bleed between them
+	private static final int ATLAS_PADDING = 2;
+
+	// Released buffers kept for reuse beyond this size are deleted instead
+	private static final long MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+	@Getter
+	private final GpuMemoryTracker memory = new GpuMemoryTracker();
+	@Getter
+	private final BufferPool bufferPool = new BufferPool(new LwjglGLBackend(), memory, MAX_POOLED_BYTES);
 
-	static ArrayList<Integer> vbos = new ArrayList<Integer>();
+	// Told about deleted VAOs and textures, whose IDs GL reuses, if set
+	@Setter
+	private GLStateTracker stateTracker;
 
-	static ArrayList<Integer> textures = new ArrayList<Integer>();
+	// How a model's vertices are laid out in its buffers, so updates only accept data of the same kind
+	private enum VertexLayout {
+		// One VBO per attribute
+		SEPARATE,
+		// All float attributes in one VBO
+		INTERLEAVED,
+		// PackedVertex words in one VBO
+		PACKED
+	}
+
+	// Buffers and vertex layout of each live model, keyed by VAO ID, and the size of each live texture
+	private final Map<Integer, PooledBuffer[]> modelBuffers = new HashMap<Integer, PooledBuffer[]>();
+	private final Map<Integer, VertexLayout> modelLayouts = new HashMap<Integer, VertexLayout>();
+	private final Map<Integer, Long> textureBytes = new HashMap<Integer, Long>();
+
+	// Owners of each live model and texture beyond the first; a release by the last owner deletes it
+	private final Map<Integer, Integer> modelReferences = new HashMap<Integer, Integer>();
+	private final Map<Integer, Integer> textureReferences = new HashMap<Integer, Integer>();
+	// Textures loaded from a file, which later loads of the same file share
+	private final Map<String, Integer> texturesByName = new HashMap<String, Integer>();
+	private final Map<Integer, String> textureNames = new HashMap<Integer, String>();
 	
 	public RawModel loadToVAO(float[] positions, int[] indices, float[] uv) {
 		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[3];
 
-		storeDataInAttributeList(positions, 0, 3);
+		buffers[0] = storeDataInAttributeList(positions, 0, 3);
 
-		storeDataInAttributeList(uv, 1, 2);
+		buffers[1] = storeDataInAttributeList(uv, 1, 2);
 
 		
-		bindIndicesBuffer(indices);
+		buffers[2] = bindIndicesBuffer(indices);
 		
 		GL30.glBindVertexArray(0);
 
-		return new RawModel(vaoID, indices.length );
+		trackModel(vaoID, buffers, VertexLayout.SEPARATE);
+		return new RawModel(vaoID, indices.length, computeBoundingRadius(positions));
+	}
+
+	// Radius of the sphere around the model origin that contains every vertex
+	private float computeBoundingRadius(float[] positions) {
+		float maxDistanceSquared = 0;
+		for (int i = 0; i + 2 < positions.length; i += 3) {
+			float x = positions[i], y = positions[i + 1], z = positions[i + 2];
+			maxDistanceSquared = Math.max(maxDistanceSquared, x * x + y * y + z * z);
+		}
+		return (float) Math.sqrt(maxDistanceSquared);
+	}
+
+	/**
+	 * Same as {@link #loadToVAO(float[], int[], float[])} with an extra
+	 * per-vertex texture array layer stored in attribute 2, as produced by the
+	 * chunk mesher.
+	 */
+	public RawModel loadToVAO(float[] positions, int[] indices, float[] uv, float[] layers) {
+		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[4];
+
+		buffers[0] = storeDataInAttributeList(positions, 0, 3);
+
+		buffers[1] = storeDataInAttributeList(uv, 1, 2);
+
+		buffers[2] = storeDataInAttributeList(layers, 2, 1);
+
+		buffers[3] = bindIndicesBuffer(indices);
+
+		GL30.glBindVertexArray(0);
+
+		trackModel(vaoID, buffers, VertexLayout.SEPARATE);
+		return new RawModel(vaoID, indices.length, computeBoundingRadius(positions));
+	}
+
+	/**
+	 * Same as {@link #loadToVAO(float[], int[], float[], float[])} with an
+	 * extra per-vertex light stored in attribute 3, as produced by the chunk
+	 * mesher.
+	 */
+	public RawModel loadToVAO(float[] positions, int[] indices, float[] uv, float[] layers, float[] lights) {
+		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[5];
+
+		buffers[0] = storeDataInAttributeList(positions, 0, 3);
+
+		buffers[1] = storeDataInAttributeList(uv, 1, 2);
+
+		buffers[2] = storeDataInAttributeList(layers, 2, 1);
+
+		buffers[3] = storeDataInAttributeList(lights, 3, 1);
+
+		buffers[4] = bindIndicesBuffer(indices);
+
+		GL30.glBindVertexArray(0);
+
+		trackModel(vaoID, buffers, VertexLayout.SEPARATE);
+		return new RawModel(vaoID, indices.length, computeBoundingRadius(positions));
+	}
+
+	/**
+	 * Same as {@link #loadToVAO(float[], int[], float[])} for data that is
+	 * already in direct buffers, e.g. written there by a mesher. The remaining
+	 * elements of each buffer are uploaded without copying, and the buffers'
+	 * positions are left unchanged.
+	 */
+	public RawModel loadToVAO(FloatBuffer positions, IntBuffer indices, FloatBuffer uv) {
+		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[3];
+
+		buffers[0] = storeDataInAttributeList(positions, 0, 3);
+
+		buffers[1] = storeDataInAttributeList(uv, 1, 2);
+
+		buffers[2] = bindIndicesBuffer(indices);
+
+		GL30.glBindVertexArray(0);
+
+		trackModel(vaoID, buffers, VertexLayout.SEPARATE);
+		return new RawModel(vaoID, indices.remaining(), computeBoundingRadius(positions));
+	}
+
+	/**
+	 * Direct buffer variant of {@link #loadToVAO(float[], int[], float[], float[])}.
+	 */
+	public RawModel loadToVAO(FloatBuffer positions, IntBuffer indices, FloatBuffer uv, FloatBuffer layers) {
+		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[4];
+
+		buffers[0] = storeDataInAttributeList(positions, 0, 3);
+
+		buffers[1] = storeDataInAttributeList(uv, 1, 2);
+
+		buffers[2] = storeDataInAttributeList(layers, 2, 1);
+
+		buffers[3] = bindIndicesBuffer(indices);
+
+		GL30.glBindVertexArray(0);
+
+		trackModel(vaoID, buffers, VertexLayout.SEPARATE);
+		return new RawModel(vaoID, indices.remaining(), computeBoundingRadius(positions));
+	}
+
+	/**
+	 * Loads float vertex attributes stored interleaved in one buffer, so a
+	 * whole mesh takes a single VBO. Attribute i has components[i] floats and is
+	 * bound to attribute number i; the first attribute must be the position.
+	 * 
+	 * @param vertices   The interleaved vertices, from position to limit.
+	 * @param indices    The indices, from position to limit.
+	 * @param components The number of floats of each attribute.
+	 */
+	public RawModel loadInterleavedToVAO(ByteBuffer vertices, IntBuffer indices, int... components) {
+		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[2];
+
+		int strideBytes = 0;
+		for (int count : components) {
+			strideBytes += count * 4;
+		}
+
+		buffers[0] = bufferPool.acquire(GL15.GL_ARRAY_BUFFER, vertices.remaining(), Category.VERTEX_BUFFERS);
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, vertices);
+		int offset = 0;
+		for (int i = 0; i < components.length; i++) {
+			GL20.glVertexAttribPointer(i, components[i], GL11.GL_FLOAT, false, strideBytes, offset);
+			offset += components[i] * 4;
+		}
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+		buffers[1] = bindIndicesBuffer(indices);
+
+		GL30.glBindVertexArray(0);
+
+		trackModel(vaoID, buffers, VertexLayout.INTERLEAVED);
+		return new RawModel(vaoID, indices.remaining(), computeBoundingRadius(vertices, strideBytes));
+	}
+
+	/**
+	 * Loads a chunk mesh in the {@link world.PackedVertex} format into a single
+	 * VBO bound to attribute 0 as two unsigned integers per vertex. Draw it with
+	 * {@link Shaders.PackedChunkShader}.
+	 */
+	public RawModel loadPackedToVAO(int[] packedVertices, int[] indices) {
+		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[2];
+
+		buffers[0] = bufferPool.acquire(GL15.GL_ARRAY_BUFFER, packedVertices.length * 4, Category.VERTEX_BUFFERS);
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, storeDataInIntBuffer(packedVertices));
+		// Integer attribute, so the words reach the shader unconverted
+		GL30.glVertexAttribIPointer(0, PackedVertex.INTS_PER_VERTEX, GL11.GL_UNSIGNED_INT, PackedVertex.BYTES_PER_VERTEX,
+				0);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+		buffers[1] = bindIndicesBuffer(indices);
+
+		GL30.glBindVertexArray(0);
+
+		trackModel(vaoID, buffers, VertexLayout.PACKED);
+		return new RawModel(vaoID, indices.length, computePackedBoundingRadius(packedVertices));
+	}
+
+	/**
+	 * Direct buffer variant of {@link #loadPackedToVAO(int[], int[])}, e.g. for
+	 * a {@link world.ChunkMesh#stage() staged} mesh. The buffers' positions are
+	 * left unchanged.
+	 */
+	public RawModel loadPackedToVAO(ByteBuffer packedVertices, IntBuffer indices) {
+		int vaoID = createVAO();
+		PooledBuffer[] buffers = new PooledBuffer[2];
+
+		buffers[0] = bufferPool.acquire(GL15.GL_ARRAY_BUFFER, packedVertices.remaining(), Category.VERTEX_BUFFERS);
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, packedVertices);
+		GL30.glVertexAttribIPointer(0, PackedVertex.INTS_PER_VERTEX, GL11.GL_UNSIGNED_INT, PackedVertex.BYTES_PER_VERTEX,
+				0);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+		buffers[1] = bindIndicesBuffer(indices);
+
+		GL30.glBindVertexArray(0);
+
+		trackModel(vaoID, buffers, VertexLayout.PACKED);
+		return new RawModel(vaoID, indices.remaining(), computePackedBoundingRadius(packedVertices));
+	}
+
+	/**
+	 * Replaces the data of a model loaded with
+	 * {@link #loadToVAO(float[], int[], float[], float[])} in place if every new
+	 * array fits into the buffers the model already has. The VAO is kept, so
+	 * no buffers are allocated and only the new data is uploaded.
+	 *
+	 * @return False if the data does not fit; the model is then unchanged.
+	 */
+	public boolean updateVAO(RawModel model, float[] positions, int[] indices, float[] uv, float[] layers) {
+		PooledBuffer[] buffers = buffersOf(model, VertexLayout.SEPARATE);
+		if (buffers == null || buffers.length != 4 || !fits(buffers[0], positions.length)
+				|| !fits(buffers[1], uv.length) || !fits(buffers[2], layers.length) || !fits(buffers[3], indices.length)) {
+			return false;
+		}
+		GL30.glBindVertexArray(model.getVaoID());
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[0], storeDataInFloatBuffer(positions));
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[1], storeDataInFloatBuffer(uv));
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[2], storeDataInFloatBuffer(layers));
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		updateBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffers[3], storeDataInIntBuffer(indices));
+		GL30.glBindVertexArray(0);
+
+		model.setVertexCount(indices.length);
+		model.setBoundingRadius(computeBoundingRadius(positions));
+		return true;
+	}
+
+	/**
+	 * In-place update of a model loaded with
+	 * {@link #loadToVAO(float[], int[], float[], float[], float[])}, see
+	 * {@link #updateVAO(RawModel, float[], int[], float[], float[])}.
+	 */
+	public boolean updateVAO(RawModel model, float[] positions, int[] indices, float[] uv, float[] layers,
+			float[] lights) {
+		PooledBuffer[] buffers = buffersOf(model, VertexLayout.SEPARATE);
+		if (buffers == null || buffers.length != 5 || !fits(buffers[0], positions.length)
+				|| !fits(buffers[1], uv.length) || !fits(buffers[2], layers.length) || !fits(buffers[3], lights.length)
+				|| !fits(buffers[4], indices.length)) {
+			return false;
+		}
+		GL30.glBindVertexArray(model.getVaoID());
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[0], storeDataInFloatBuffer(positions));
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[1], storeDataInFloatBuffer(uv));
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[2], storeDataInFloatBuffer(layers));
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[3], storeDataInFloatBuffer(lights));
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		updateBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffers[4], storeDataInIntBuffer(indices));
+		GL30.glBindVertexArray(0);
+
+		model.setVertexCount(indices.length);
+		model.setBoundingRadius(computeBoundingRadius(positions));
+		return true;
+	}
+
+	/**
+	 * In-place update of a model loaded with
+	 * {@link #loadPackedToVAO(int[], int[])}, see
+	 * {@link #updateVAO(RawModel, float[], int[], float[], float[])}.
+	 */
+	public boolean updatePackedVAO(RawModel model, int[] packedVertices, int[] indices) {
+		PooledBuffer[] buffers = buffersOf(model, VertexLayout.PACKED);
+		if (buffers == null || !fits(buffers[0], packedVertices.length)
+				|| !fits(buffers[1], indices.length)) {
+			return false;
+		}
+		GL30.glBindVertexArray(model.getVaoID());
+		updateBuffer(GL15.GL_ARRAY_BUFFER, buffers[0], storeDataInIntBuffer(packedVertices));
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		updateBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffers[1], storeDataInIntBuffer(indices));
+		GL30.glBindVertexArray(0);
+
+		model.setVertexCount(indices.length);
+		model.setBoundingRadius(computePackedBoundingRadius(packedVertices));
+		return true;
+	}
+
+	private void trackModel(int vaoID, PooledBuffer[] buffers, VertexLayout layout) {
+		modelBuffers.put(vaoID, buffers);
+		modelLayouts.put(vaoID, layout);
+	}
+
+	// The buffers of a live model, or null if it has none or a different layout
+	private PooledBuffer[] buffersOf(RawModel model, VertexLayout layout) {
+		return modelLayouts.get(model.getVaoID()) == layout ? modelBuffers.get(model.getVaoID()) : null;
+	}
+
+	/**
+	 * In-place update of a model loaded with
+	 * {@link #loadInterleavedToVAO(ByteBuffer, IntBuffer, int...)} with the same
+	 * attribute components, see
+	 * {@link #updateVAO(RawModel, float[], int[], float[], float[])}.
+	 */
+	public boolean updateInterleavedVAO(RawModel model, ByteBuffer vertices, IntBuffer indices, int... components) {
+		PooledBuffer[] buffers = buffersOf(model, VertexLayout.INTERLEAVED);
+		if (buffers == null || vertices.remaining() > buffers[0].getCapacity() || !fits(buffers[1], indices.remaining())) {
+			return false;
+		}
+		int strideBytes = 0;
+		for (int count : components) {
+			strideBytes += count * 4;
+		}
+		GL30.glBindVertexArray(model.getVaoID());
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffers[0].getBufferID());
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, vertices);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		updateBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffers[1], indices);
+		GL30.glBindVertexArray(0);
+
+		model.setVertexCount(indices.remaining());
+		model.setBoundingRadius(computeBoundingRadius(vertices, strideBytes));
+		return true;
+	}
+
+	/**
+	 * Direct buffer variant of {@link #updatePackedVAO(RawModel, int[], int[])}.
+	 */
+	public boolean updatePackedVAO(RawModel model, ByteBuffer packedVertices, IntBuffer indices) {
+		PooledBuffer[] buffers = buffersOf(model, VertexLayout.PACKED);
+		if (buffers == null || packedVertices.remaining() > buffers[0].getCapacity()
+				|| !fits(buffers[1], indices.remaining())) {
+			return false;
+		}
+		GL30.glBindVertexArray(model.getVaoID());
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffers[0].getBufferID());
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, packedVertices);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		updateBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffers[1], indices);
+		GL30.glBindVertexArray(0);
+
+		model.setVertexCount(indices.remaining());
+		model.setBoundingRadius(computePackedBoundingRadius(packedVertices));
+		return true;
+	}
+
+	// Whether a buffer can hold the given number of 4 byte values
+	private static boolean fits(PooledBuffer buffer, int values) {
+		return values * 4L <= buffer.getCapacity();
+	}
+
+	private void updateBuffer(int target, PooledBuffer buffer, FloatBuffer data) {
+		GL15.glBindBuffer(target, buffer.getBufferID());
+		GL15.glBufferSubData(target, 0, data);
+	}
+
+	private void updateBuffer(int target, PooledBuffer buffer, IntBuffer data) {
+		GL15.glBindBuffer(target, buffer.getBufferID());
+		GL15.glBufferSubData(target, 0, data);
+	}
+
+	private float computePackedBoundingRadius(int[] packedVertices) {
+		float maxDistanceSquared = 0;
+		for (int i = 0; i < packedVertices.length; i += PackedVertex.INTS_PER_VERTEX) {
+			int word = packedVertices[i];
+			float x = PackedVertex.unpackX(word), y = PackedVertex.unpackY(word), z = PackedVertex.unpackZ(word);
+			maxDistanceSquared = Math.max(maxDistanceSquared, x * x + y * y + z * z);
+		}
+		return (float) Math.sqrt(maxDistanceSquared);
+	}
+
+	private float computePackedBoundingRadius(ByteBuffer packedVertices) {
+		float maxDistanceSquared = 0;
+		for (int i = packedVertices.position(); i + 4 <= packedVertices.limit(); i += PackedVertex.BYTES_PER_VERTEX) {
+			int word = packedVertices.getInt(i);
+			float x = PackedVertex.unpackX(word), y = PackedVertex.unpackY(word), z = PackedVertex.unpackZ(word);
+			maxDistanceSquared = Math.max(maxDistanceSquared, x * x + y * y + z * z);
+		}
+		return (float) Math.sqrt(maxDistanceSquared);
+	}
+
+	private float computeBoundingRadius(FloatBuffer positions) {
+		float maxDistanceSquared = 0;
+		for (int i = positions.position(); i + 2 < positions.limit(); i += 3) {
+			float x = positions.get(i), y = positions.get(i + 1), z = positions.get(i + 2);
+			maxDistanceSquared = Math.max(maxDistanceSquared, x * x + y * y + z * z);
+		}
+		return (float) Math.sqrt(maxDistanceSquared);
+	}
+
+	private float computeBoundingRadius(ByteBuffer vertices, int strideBytes) {
+		float maxDistanceSquared = 0;
+		for (int i = vertices.position(); i + 12 <= vertices.limit(); i += strideBytes) {
+			float x = vertices.getFloat(i), y = vertices.getFloat(i + 4), z = vertices.getFloat(i + 8);
+			maxDistanceSquared = Math.max(maxDistanceSquared, x * x + y * y + z * z);
+		}
+		return (float) Math.sqrt(maxDistanceSquared);
 	}
 
 	private int createVAO() {
 		int vaoID = GL30.glGenVertexArrays();
 
-		vaos.add(vaoID);
-
 		GL30.glBindVertexArray(vaoID);
 
 		return vaoID;
 	}
 	
 		
+	/**
+	 * Loads a texture from resources/res, or shares the one already loaded from
+	 * the same file, which then needs one more {@link #releaseTexture} call.
+	 */
 	public int loadTexture(String fileName) {
+	    Integer shared = texturesByName.get(fileName);
+	    if (shared != null) {
+	        return retainTexture(shared);
+	    }
 	    Texture texture = null;
 	    try {
 	        // Correct the path if needed
-	        String filePath = "D:/Coding/Projects/PixelPuffEngine/resources/res/" + fileName + ".PNG";
+	        String filePath = RES_PATH + fileName + ".PNG";
 	        texture = TextureLoader.getTexture("PNG", new FileInputStream(filePath));
 	    } catch (IOException e) {
 	        e.printStackTrace();
@@ -67,82 +497,334 @@ public class Loader {
 	    }
 
 	    int textureID = texture.getTextureID();
-	    textures.add(textureID);
+	    trackTexture(textureID, (long) texture.getTextureWidth() * texture.getTextureHeight() * 4);
+	    texturesByName.put(fileName, textureID);
+	    textureNames.put(textureID, fileName);
 	    return textureID;
 	}
 
-	
-	
+	/**
+	 * Adds an owner to a loaded model, e.g. a second TexturedModel sharing its
+	 * mesh. Every owner calls {@link #release(RawModel)} once.
+	 */
+	public RawModel retain(RawModel model) {
+		if (modelBuffers.containsKey(model.getVaoID())) {
+			modelReferences.merge(model.getVaoID(), 1, Integer::sum);
+		}
+		return model;
+	}
+
+	/**
+	 * Drops one owner of a model. Once the last owner has released it, the VAO
+	 * is deleted and its buffers go back to the buffer pool; the model must not
+	 * be drawn afterwards.
+	 */
+	public void release(RawModel model) {
+		if (!modelBuffers.containsKey(model.getVaoID()) || dropReference(modelReferences, model.getVaoID())) {
+			return;
+		}
+		deleteModel(model.getVaoID());
+	}
+
+	/**
+	 * Adds an owner to a loaded texture. Every owner calls
+	 * {@link #releaseTexture} once.
+	 */
+	public int retainTexture(int textureID) {
+		if (textureBytes.containsKey(textureID)) {
+			textureReferences.merge(textureID, 1, Integer::sum);
+		}
+		return textureID;
+	}
+
+	/**
+	 * Drops one owner of a texture and deletes it once the last owner has
+	 * released it.
+	 */
+	public void releaseTexture(int textureID) {
+		if (!textureBytes.containsKey(textureID) || dropReference(textureReferences, textureID)) {
+			return;
+		}
+		deleteTexture(textureID);
+	}
+
+	// Removes an owner beyond the first, returning false if only the first one was left
+	private static boolean dropReference(Map<Integer, Integer> references, int id) {
+		Integer extra = references.get(id);
+		if (extra == null) {
+			return false;
+		}
+		if (extra == 1) {
+			references.remove(id);
+		} else {
+			references.put(id, extra - 1);
+		}
+		return true;
+	}
+
+	private void deleteModel(int vaoID) {
+		PooledBuffer[] buffers = modelBuffers.remove(vaoID);
+		modelLayouts.remove(vaoID);
+		modelReferences.remove(vaoID);
+		deleteVAO(vaoID);
+		for (PooledBuffer buffer : buffers) {
+			bufferPool.release(buffer);
+		}
+	}
+
+	private void deleteTexture(int textureID) {
+		Long bytes = textureBytes.remove(textureID);
+		textureReferences.remove(textureID);
+		String name = textureNames.remove(textureID);
+		if (name != null) {
+			texturesByName.remove(name);
+		}
+		GL11.glDeleteTextures(textureID);
+		if (stateTracker != null) {
+			stateTracker.forgetTexture(textureID);
+		}
+		memory.freed(Category.TEXTURES, bytes);
+	}
+
+	private void deleteVAO(int vaoID) {
+		GL30.glDeleteVertexArrays(vaoID);
+		if (stateTracker != null) {
+			stateTracker.forgetVertexArray(vaoID);
+		}
+	}
+
+	private void trackTexture(int textureID, long bytes) {
+		textureBytes.put(textureID, bytes);
+		memory.allocated(Category.TEXTURES, bytes);
+	}
+
+
+	/**
+	 * Packs several textures from resources/res into one atlas texture so that
+	 * models using any of them can be drawn without switching textures. Remap
+	 * each model's texture coordinates with {@link TextureAtlas#remapUVs}.
+	 * 
+	 * The packed image and its region table are cached in resources/cache and
+	 * reused while they are newer than every source texture.
+	 */
+	public TextureAtlas loadTextureAtlas(String cacheName, String... fileNames) {
+		File imageCache = new File(CACHE_PATH + cacheName + ".png");
+		File tableCache = new File(CACHE_PATH + cacheName + ".txt");
+
+		TextureAtlas atlas = readCachedAtlas(imageCache, tableCache, fileNames);
+		BufferedImage image;
+		try {
+			if (atlas != null) {
+				image = ImageIO.read(imageCache);
+			} else {
+				Map<String, BufferedImage> images = new LinkedHashMap<String, BufferedImage>();
+				Map<String, int[]> sizes = new LinkedHashMap<String, int[]>();
+				for (String fileName : fileNames) {
+					BufferedImage source = readImage(fileName);
+					images.put(fileName, source);
+					sizes.put(fileName, new int[] { source.getWidth(), source.getHeight() });
+				}
+				atlas = AtlasPacker.pack(sizes, ATLAS_PADDING);
+				image = AtlasPacker.compose(atlas, images, ATLAS_PADDING);
+				writeCachedAtlas(atlas, image, imageCache, tableCache);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("Texture atlas could not be built: " + cacheName, e);
+		}
+
+		int textureID = GL11.glGenTextures();
+		trackTexture(textureID, (long) image.getWidth() * image.getHeight() * 4);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, image.getWidth(), image.getHeight(), 0, GL11.GL_RGBA,
+				GL11.GL_UNSIGNED_BYTE, toRGBABuffer(image));
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+		atlas.setTextureID(textureID);
+		return atlas;
+	}
+
+	/**
+	 * Loads several textures from resources/res into the layers of one array
+	 * texture, in the given order. Textures of a different size than the first
+	 * one are scaled to match. Texture coordinates repeat within each layer, so
+	 * greedily merged chunk faces can tile a block texture.
+	 * 
+	 * @return The ID of the GL_TEXTURE_2D_ARRAY texture.
+	 */
+	public int loadTextureArray(String... fileNames) {
+		BufferedImage[] layers = new BufferedImage[fileNames.length];
+		try {
+			for (int i = 0; i < fileNames.length; i++) {
+				layers[i] = readImage(fileNames[i]);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("Texture array could not be loaded", e);
+		}
+
+		int width = layers[0].getWidth(), height = layers[0].getHeight();
+		ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * 4 * layers.length);
+		for (BufferedImage layer : layers) {
+			if (layer.getWidth() != width || layer.getHeight() != height) {
+				BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D graphics = scaled.createGraphics();
+				graphics.drawImage(layer, 0, 0, width, height, null);
+				graphics.dispose();
+				layer = scaled;
+			}
+			putRGBA(layer, pixels);
+		}
+		pixels.flip();
+
+		int textureID = GL11.glGenTextures();
+		// The mipmap chain adds about a third to the base level
+		trackTexture(textureID, (long) width * height * 4 * layers.length * 4 / 3);
+		GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, textureID);
+		GL12.glTexImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, GL11.GL_RGBA8, width, height, layers.length, 0, GL11.GL_RGBA,
+				GL11.GL_UNSIGNED_BYTE, pixels);
+		GL30.glGenerateMipmap(GL30.GL_TEXTURE_2D_ARRAY);
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST_MIPMAP_LINEAR);
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_S, GL11.GL_REPEAT);
+		GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_T, GL11.GL_REPEAT);
+		GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, 0);
+		return textureID;
+	}
+
+	private BufferedImage readImage(String fileName) throws IOException {
+		BufferedImage image = ImageIO.read(new File(RES_PATH + fileName + ".PNG"));
+		if (image == null) {
+			throw new IOException("Unsupported image format: " + fileName);
+		}
+		return image;
+	}
+
+	// Returns the cached atlas if it was built from the same textures and is newer than all of them
+	private TextureAtlas readCachedAtlas(File imageCache, File tableCache, String[] fileNames) {
+		if (!imageCache.isFile() || !tableCache.isFile()) {
+			return null;
+		}
+		long builtAt = Math.min(imageCache.lastModified(), tableCache.lastModified());
+		for (String fileName : fileNames) {
+			if (new File(RES_PATH + fileName + ".PNG").lastModified() > builtAt) {
+				return null;
+			}
+		}
+		try {
+			TextureAtlas atlas = TextureAtlas.readTable(tableCache);
+			if (atlas.getRegions().size() != fileNames.length) {
+				return null;
+			}
+			for (String fileName : fileNames) {
+				if (!atlas.getRegions().containsKey(fileName)) {
+					return null;
+				}
+			}
+			return atlas;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Ignoring unreadable atlas cache: " + tableCache);
+			return null;
+		}
+	}
+
+	private void writeCachedAtlas(TextureAtlas atlas, BufferedImage image, File imageCache, File tableCache) {
+		try {
+			imageCache.getParentFile().mkdirs();
+			ImageIO.write(image, "png", imageCache);
+			atlas.writeTable(tableCache);
+		} catch (IOException e) {
+			// The cache only speeds up the next start, so carry on without it
+			System.err.println("Failed to write atlas cache: " + tableCache);
+		}
+	}
+
+	private ByteBuffer toRGBABuffer(BufferedImage image) {
+		ByteBuffer buffer = BufferUtils.createByteBuffer(image.getWidth() * image.getHeight() * 4);
+		putRGBA(image, buffer);
+		buffer.flip();
+		return buffer;
+	}
+
+	private void putRGBA(BufferedImage image, ByteBuffer buffer) {
+		int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+		for (int pixel : pixels) {
+			buffer.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel).put((byte) (pixel >> 24));
+		}
+	}
 
 	/**
 	 * Stores vertex data in a Vertex Buffer Object (VBO) and binds it to the
 	 * specified attribute in the VAO.
 	 * 
-	 * This method generates a VBO, stores the provided data in it, and specifies
-	 * how the data should be interpreted by the vertex shader. The data is stored
-	 * in a FloatBuffer before being uploaded to the GPU.
+	 * This method takes a VBO from the buffer pool, stores the provided data in
+	 * it, and specifies how the data should be interpreted by the vertex shader.
+	 * The data is stored in a FloatBuffer before being uploaded to the GPU.
 	 * 
 	 * @param data            The vertex data to be stored in the VBO.
 	 * @param attributeNumber The attribute index in the VAO to which the data is
 	 *                        bound.
 	 * @param dimensions      The number of components per vertex attribute (e.g., 3
 	 *                        for x, y, z).
+	 * @return The pooled buffer holding the data.
 	 */
-	private void storeDataInAttributeList(float[] data, int attributeNumber, int dimensions) {
-		// Generate a new VBO and get its ID
-		int vboID = GL15.glGenBuffers();
-
-		// Add the VBO ID to the list for tracking
-		vbos.add(vboID);
-
-		// Bind the new VBO so that subsequent buffer operations affect it
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboID);
-
+	private PooledBuffer storeDataInAttributeList(float[] data, int attributeNumber, int dimensions) {
 		// Convert vertex data to a FloatBuffer
-		FloatBuffer buffer = storeDataInFloatBuffer(data);
+		return storeDataInAttributeList(storeDataInFloatBuffer(data), attributeNumber, dimensions);
+	}
+
+	private PooledBuffer storeDataInAttributeList(FloatBuffer buffer, int attributeNumber, int dimensions) {
+		// Take a VBO with enough room from the pool; it comes back bound
+		PooledBuffer vbo = bufferPool.acquire(GL15.GL_ARRAY_BUFFER, buffer.remaining() * 4, Category.VERTEX_BUFFERS);
 
-		// Upload the FloatBuffer data to the GPU
-		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW);
+		// Upload the FloatBuffer data into the existing storage
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, buffer);
 
 		// Define the layout of the vertex data (e.g., position attributes)
 		GL20.glVertexAttribPointer(attributeNumber, dimensions, GL11.GL_FLOAT, false, 0, 0);
 
 		// Unbind the VBO to avoid affecting other VBOs
 		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		return vbo;
 	}
 
+	// Reuses the calling thread's staging memory; only valid until the next conversion
 	IntBuffer storeDataInIntBuffer(int data[]) {
-		IntBuffer intBuffer = BufferUtils.createIntBuffer(data.length);
+		IntBuffer intBuffer = DirectBufferPool.scratchInts(data.length);
 		intBuffer.put(data);
 		intBuffer.flip();
 		return intBuffer;
 	}
 
-	private void bindIndicesBuffer(int indices[]) {
-		int vboID = GL15.glGenBuffers();
-		
-		vbos.add(vboID);
-		
-		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, vboID);
+	private PooledBuffer bindIndicesBuffer(int indices[]) {
+		return bindIndicesBuffer(storeDataInIntBuffer(indices));
+	}
 
-		IntBuffer intBuffer = storeDataInIntBuffer(indices);
-	
-		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, intBuffer, GL15.GL_STATIC_DRAW);
+	private PooledBuffer bindIndicesBuffer(IntBuffer intBuffer) {
+		// Binding it while the VAO is bound attaches it to the VAO
+		PooledBuffer vbo = bufferPool.acquire(GL15.GL_ELEMENT_ARRAY_BUFFER, intBuffer.remaining() * 4,
+				Category.INDEX_BUFFERS);
 	
+		GL15.glBufferSubData(GL15.GL_ELEMENT_ARRAY_BUFFER, 0, intBuffer);
+		return vbo;
 	}
 
 	/**
 	 * Converts an array of float data into a FloatBuffer.
 	 * 
-	 * This method allocates a FloatBuffer, puts the provided data into it, and then
-	 * flips the buffer to prepare it for reading by OpenGL.
+	 * This method takes the calling thread's reusable staging buffer instead of
+	 * allocating new direct memory, puts the provided data into it, and then
+	 * flips the buffer to prepare it for reading by OpenGL. The buffer is only
+	 * valid until the next conversion on the same thread.
 	 * 
 	 * @param data The array of float data to be stored in the FloatBuffer.
 	 * @return The FloatBuffer containing the provided data.
 	 */
 	private FloatBuffer storeDataInFloatBuffer(float[] data) {
-		// Create a FloatBuffer with a capacity equal to the length of the data array
-		FloatBuffer buffer = BufferUtils.createFloatBuffer(data.length);
+		// Take the thread's staging buffer, limited to the length of the data array
+		FloatBuffer buffer = DirectBufferPool.scratchFloats(data.length);
 
 		// Put the float data into the buffer
 		buffer.put(data);
@@ -155,26 +837,24 @@ public class Loader {
 	}
 
 	/**
-	 * Cleans up all generated VAOs and VBOs.
+	 * Cleans up all VAOs, VBOs and textures that are still loaded.
 	 * 
-	 * This method deletes all VAOs and VBOs that have been created during the
-	 * application's lifecycle. It ensures that all resources are properly released
-	 * when they are no longer needed.
+	 * This method deletes every model and texture that was not released
+	 * explicitly, followed by the buffers kept in the pool. It ensures that all
+	 * resources are properly released when they are no longer needed.
 	 */
 	public void cleanUp() {
-		// Delete all generated VAOs
-		for (int vao : vaos) {
-			GL30.glDeleteVertexArrays(vao);
+		// Delete all live VAOs, whoever still owns them, and return their VBOs to the pool
+		for (int vaoID : new ArrayList<Integer>(modelBuffers.keySet())) {
+			deleteModel(vaoID);
 		}
 
-		// Delete all generated VBOs
-		for (int vbo : vbos) {
-			GL15.glDeleteBuffers(vbo);
-		}
+		// Delete all pooled VBOs
+		bufferPool.clear();
 		
-		// Delete all generated Textures
-		for(int texture : textures) {
-			GL11.glDeleteTextures(texture);
+		// Delete all live Textures
+		for (int texture : new ArrayList<Integer>(textureBytes.keySet())) {
+			deleteTexture(texture);
 		}
 	}
 }
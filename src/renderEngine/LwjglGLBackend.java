@@ -0,0 +1,168 @@
+package renderEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.opengl.GLContext;
+import org.lwjgl.opengl.GLSync;
+
+/**
+ * {@link GLBackend} that forwards every call to the current LWJGL context.
+ */
+public class LwjglGLBackend implements GLBackend {
+
+	// Live fences by handle; GLSync objects cannot be rebuilt from their pointer
+	private final Map<Long, GLSync> fences = new HashMap<Long, GLSync>();
+
+	@Override
+	public int genBuffer() {
+		return GL15.glGenBuffers();
+	}
+
+	@Override
+	public void deleteBuffer(int buffer) {
+		GL15.glDeleteBuffers(buffer);
+	}
+
+	@Override
+	public void bindBuffer(int target, int buffer) {
+		GL15.glBindBuffer(target, buffer);
+	}
+
+	@Override
+	public void bindBufferBase(int target, int index, int buffer) {
+		GL30.glBindBufferBase(target, index, buffer);
+	}
+
+	@Override
+	public void bufferData(int target, long sizeBytes, int usage) {
+		GL15.glBufferData(target, sizeBytes, usage);
+	}
+
+	@Override
+	public void bufferSubData(int target, long offsetBytes, FloatBuffer data) {
+		GL15.glBufferSubData(target, offsetBytes, data);
+	}
+
+	@Override
+	public void bufferSubData(int target, long offsetBytes, ByteBuffer data) {
+		GL15.glBufferSubData(target, offsetBytes, data);
+	}
+
+	@Override
+	public boolean supportsBufferStorage() {
+		return GLContext.getCapabilities().OpenGL44;
+	}
+
+	@Override
+	public ByteBuffer mapBufferStorage(int target, long sizeBytes) {
+		int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+		GL44.glBufferStorage(target, sizeBytes, flags);
+		ByteBuffer mapped = GL30.glMapBufferRange(target, 0, sizeBytes, flags, null);
+		if (mapped == null) {
+			throw new RuntimeException("Mapping buffer storage failed");
+		}
+		return mapped.order(ByteOrder.nativeOrder());
+	}
+
+	@Override
+	public void unmapBuffer(int target) {
+		GL15.glUnmapBuffer(target);
+	}
+
+	@Override
+	public void bindVertexArray(int vao) {
+		GL30.glBindVertexArray(vao);
+	}
+
+	@Override
+	public void enableVertexAttribArray(int index) {
+		GL20.glEnableVertexAttribArray(index);
+	}
+
+	@Override
+	public void disableVertexAttribArray(int index) {
+		GL20.glDisableVertexAttribArray(index);
+	}
+
+	@Override
+	public void vertexAttribPointer(int index, int size, int type, boolean normalized, int strideBytes, long offsetBytes) {
+		GL20.glVertexAttribPointer(index, size, type, normalized, strideBytes, offsetBytes);
+	}
+
+	@Override
+	public void vertexAttribDivisor(int index, int divisor) {
+		GL33.glVertexAttribDivisor(index, divisor);
+	}
+
+	@Override
+	public void activeTexture(int unit) {
+		GL13.glActiveTexture(unit);
+	}
+
+	@Override
+	public void bindTexture(int target, int texture) {
+		GL11.glBindTexture(target, texture);
+	}
+
+	@Override
+	public void drawElements(int mode, int count, int type, long offsetBytes) {
+		GL11.glDrawElements(mode, count, type, offsetBytes);
+	}
+
+	@Override
+	public void drawElementsInstanced(int mode, int count, int type, long offsetBytes, int instanceCount) {
+		GL31.glDrawElementsInstanced(mode, count, type, offsetBytes, instanceCount);
+	}
+
+	@Override
+	public void useProgram(int program) {
+		GL20.glUseProgram(program);
+	}
+
+	@Override
+	public void enable(int capability) {
+		GL11.glEnable(capability);
+	}
+
+	@Override
+	public void disable(int capability) {
+		GL11.glDisable(capability);
+	}
+
+	@Override
+	public long fenceSync() {
+		GLSync sync = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		fences.put(sync.getPointer(), sync);
+		return sync.getPointer();
+	}
+
+	@Override
+	public boolean clientWaitSync(long fence, long timeoutNanos) {
+		int result = GL32.glClientWaitSync(fences.get(fence), GL32.GL_SYNC_FLUSH_COMMANDS_BIT, timeoutNanos);
+		if (result == GL32.GL_WAIT_FAILED) {
+			throw new RuntimeException("Waiting on fence failed");
+		}
+		return result == GL32.GL_ALREADY_SIGNALED || result == GL32.GL_CONDITION_SATISFIED;
+	}
+
+	@Override
+	public void deleteSync(long fence) {
+		GLSync sync = fences.remove(fence);
+		if (sync != null) {
+			GL32.glDeleteSync(sync);
+		}
+	}
+}
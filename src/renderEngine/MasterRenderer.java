@@ -1,11 +1,23 @@
 package renderEngine;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
 
+import Entities.Camera;
 import Entities.Entity;
+import Shaders.FrameUniforms;
+import Shaders.InstancedShader;
+import Shaders.ShaderProgram;
 import Shaders.StaticShader;
+import models.RawModel;
+import world.VisibilityGraph;
 
 public class MasterRenderer {
 
@@ -14,26 +26,145 @@ public class MasterRenderer {
     private static final float NEAR_PLANE = 0.001f;  // A small positive value
     private static final float FAR_PLANE = 10000; // Far enough to encompass your scene
 
+    // Draws many copies of a model in one call; the shader is only set by the two-argument constructor
+    private final InstancedRenderer instancedRenderer;
+    private InstancedShader instancedShader;
+
+    // Projection and view matrices shared by every shader program through one uniform buffer
+    private final FrameUniforms frameUniforms;
+
+    private final FrustumCuller culler = new FrustumCuller();
+    private final List<Entity> visibleEntities = new ArrayList<Entity>();
+    private final Vector3f entityPosition = new Vector3f();
+    private final List<Long> visibleChunks = new ArrayList<Long>();
+
+    // Draws go through a state tracker so binds that sorting made redundant are dropped,
+    // and through a counting backend so the GL calls per frame can be inspected
+    private final CountingGLBackend glCalls = new CountingGLBackend(new LwjglGLBackend());
+    private final GLStateTracker glState = new GLStateTracker(glCalls);
+    private final RenderQueue renderQueue = new RenderQueue(glState);
+
     public MasterRenderer(StaticShader shader) {
-        GL11.glEnable(GL11.GL_DEPTH_TEST); // Enable depth testing to handle object occlusion
+        glState.enable(GL11.GL_DEPTH_TEST); // Enable depth testing to handle object occlusion; nothing else toggles it
         createProjectionMatrix();
-        shader.start();
-        shader.loadProjectionMatrix(projectionMatrix); // Pass projection matrix to shader
-        shader.stop();
+        frameUniforms = new FrameUniforms(glState);
+        frameUniforms.loadProjectionMatrix(projectionMatrix); // Every shader reads it from the frame uniform block
+        instancedRenderer = new InstancedRenderer(glState); // Its binds go through the tracker and are counted
+    }
+
+    // Also keep the shader renderInstanced(entities) draws with
+    public MasterRenderer(StaticShader shader, InstancedShader instancedShader) {
+        this(shader);
+        this.instancedShader = instancedShader;
+    }
+
+    // Start a frame; call before anything moves entities so the counters cover the whole frame
+    public void beginFrame() {
+        Entity.resetTransformCounters(); // Make the matrix cache counters per-frame figures
+        ShaderProgram.resetUniformCounters();
+        frameUniforms.resetCounters();
+        glCalls.resetCounts();
+        glState.resetCounters();
     }
 
     // Prepare for rendering
     public void prepare() {
-    	GL11.glEnable(GL11.GL_DEPTH_TEST); // Enable depth testing
+        glState.invalidateBindings(); // Shaders and the immediate path rebind behind the tracker
         GL11.glClearColor(0.4f, 0.7f, 1.0f, 1.0f); // Set clear color
         GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT); // Clear color and depth buffers
     }
 
+    // Upload the camera for this frame; shared by every shader program
+    public void loadCamera(Camera camera) {
+        frameUniforms.loadViewMatrix(camera);
+    }
+
     // Render an entity
     public void render(Entity entity, StaticShader shader) {
         EntityRenderer.render(entity, shader); // Render entity using the provided shader
     }
 
+    // Render every entity registered with the culler that lies inside the view frustum,
+    // sorted by shader, texture and model and front to back within each model
+    public void renderVisible(Camera camera, StaticShader shader) {
+        culler.update(projectionMatrix, camera);
+        culler.collectVisibleEntities(visibleEntities);
+        Vector3f cameraPosition = camera.getPosition();
+        for (Entity entity : visibleEntities) {
+            entity.getWorldPosition(entityPosition);
+            float distance = Vector3f.sub(entityPosition, cameraPosition, entityPosition).length();
+            renderQueue.submit(shader, entity.getModel(), entity.getTransformationMatrix(), distance / FAR_PLANE);
+        }
+        renderQueue.flush();
+    }
+
+    // Render the chunks the camera can see through open space, skipping the ones hidden
+    // behind solid rock; without a visibility graph, every chunk registered with the
+    // culler that lies inside the view frustum is drawn. Returns the number of chunks drawn
+    public int renderChunks(Camera camera, ChunkRenderer chunkRenderer, Map<Long, RawModel> chunkModels,
+            VisibilityGraph visibility) {
+        culler.update(projectionMatrix, camera);
+        if (visibility != null) {
+            Vector3f position = camera.getPosition();
+            int count = visibility.collectVisibleChunks(position.x, position.y, position.z, culler.getFrustum());
+            chunkRenderer.render(chunkModels, visibility.getVisibleKeys(), count);
+            return count;
+        }
+        culler.collectVisibleChunks(visibleChunks);
+        chunkRenderer.render(chunkModels, visibleChunks);
+        return visibleChunks.size();
+    }
+
+    public FrameUniforms getFrameUniforms() {
+        return frameUniforms;
+    }
+
+    public RenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+
+    public GLStateTracker getGLState() {
+        return glState;
+    }
+
+    public CountingGLBackend getGLCalls() {
+        return glCalls;
+    }
+
+    public FrustumCuller getCuller() {
+        return culler;
+    }
+
+    public Matrix4f getProjectionMatrix() {
+        return projectionMatrix;
+    }
+
+    // Render many entities with one instanced draw call per TexturedModel, using the constructor's shader
+    public void renderInstanced(Collection<Entity> entities) {
+        if (instancedShader == null) {
+            throw new IllegalStateException("No InstancedShader was given to the MasterRenderer; "
+                    + "pass one to the constructor or to renderInstanced(entities, shader)");
+        }
+        renderInstanced(entities, instancedShader);
+    }
+
+    // Render many entities with one instanced draw call per TexturedModel
+    public void renderInstanced(Collection<Entity> entities, InstancedShader shader) {
+        shader.start();
+        instancedRenderer.render(entities);
+        shader.stop();
+        glState.invalidateBindings(); // The shader switched programs behind the tracker
+    }
+
+    public InstancedRenderer getInstancedRenderer() {
+        return instancedRenderer;
+    }
+
+    // Release the GL buffers owned by the renderer
+    public void cleanUp() {
+        instancedRenderer.cleanUp();
+    }
+
     // Create a projection matrix based on FOV, near and far planes
     private void createProjectionMatrix() {
         float aspectRatio = (float) Display.getWidth() / (float) Display.getHeight();
@@ -0,0 +1,403 @@
+package renderEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import ToolBox.LongIntHashMap;
+import models.MeshData;
+import models.RawModel;
+
+/**
+ * Loads Wavefront OBJ models into VAOs.
+ *
+ * The file is parsed in a single pass straight from its bytes: numbers are
+ * decoded in place, so no String is created per line or token. Faces may use
+ * the v, v/vt, v//vn and v/vt/vn forms, and polygons are triangulated as fans.
+ * Each distinct position/uv/normal combination becomes one vertex, found
+ * through a primitive hash map keyed by the packed index triple.
+ *
+ * The parsed arrays are written to a binary cache next to the resources. On
+ * later runs the cache is read in one call and copied out directly as long as
+ * the OBJ file has not changed. A new cache is written to a temporary file
+ * that then replaces the old one, so a reader never sees a half-written cache.
+ */
+public class OBJLoader {
+
+	private static final String RES_PATH = "D:/Coding/Projects/PixelPuffEngine/resources/res/";
+	private static final String CACHE_PATH = "D:/Coding/Projects/PixelPuffEngine/resources/cache/";
+
+	private static final int CACHE_MAGIC = 0x50504D43; // "PPMC"
+	private static final int CACHE_VERSION = 1;
+	private static final int CACHE_HEADER_BYTES = 32;
+
+	// Each index of a face vertex gets 21 bits of the dedup key
+	private static final int INDEX_BITS = 21;
+	private static final int MAX_INDEX = (1 << INDEX_BITS) - 1;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Loads resources/res/&lt;fileName&gt;.obj into a VAO, using the binary cache
+	 * when it is up to date.
+	 */
+	public static RawModel loadObjModel(String fileName, Loader loader) {
+		MeshData data = loadMeshData(new File(RES_PATH + fileName + ".obj"), new File(CACHE_PATH + fileName + ".mesh"));
+		return loader.loadToVAO(data.getPositions(), data.getIndices(), data.getUvs());
+	}
+
+	/**
+	 * Reads the mesh from the cache file if it matches the OBJ file, otherwise
+	 * parses the OBJ file and refreshes the cache.
+	 *
+	 * @param cacheFile The binary cache to use, or null to always parse.
+	 */
+	public static MeshData loadMeshData(File objFile, File cacheFile) {
+		MeshData data = cacheFile != null ? readCache(objFile, cacheFile) : null;
+		if (data != null) {
+			return data;
+		}
+
+		try {
+			data = parse(Files.readAllBytes(objFile.toPath()));
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("OBJ file could not be loaded: " + objFile, e);
+		}
+
+		if (cacheFile != null) {
+			writeCache(objFile, cacheFile, data);
+		}
+		return data;
+	}
+
+	/**
+	 * Parses the contents of an OBJ file.
+	 */
+	public static MeshData parse(byte[] source) {
+		return new Parser(source).parse();
+	}
+
+	private static MeshData readCache(File objFile, File cacheFile) {
+		if (!cacheFile.isFile() || !objFile.isFile()) {
+			return null;
+		}
+		// Read into the heap rather than mapping, so no mapping keeps the file locked when it is replaced
+		ByteBuffer cache;
+		try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < CACHE_HEADER_BYTES || size > Integer.MAX_VALUE) {
+				return null;
+			}
+			cache = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+			while (cache.hasRemaining() && channel.read(cache) >= 0) {
+				// Keep reading until the whole file is in
+			}
+		} catch (IOException e) {
+			System.err.println("Ignoring unreadable mesh cache: " + cacheFile);
+			return null;
+		}
+
+		if (cache.getInt(0) != CACHE_MAGIC || cache.getInt(4) != CACHE_VERSION
+				|| cache.getLong(8) != objFile.length() || cache.getLong(16) != objFile.lastModified()) {
+			return null;
+		}
+		int vertexCount = cache.getInt(24);
+		int indexCount = cache.getInt(28);
+		long expectedSize = CACHE_HEADER_BYTES + (vertexCount * 8L + indexCount) * 4;
+		if (vertexCount < 0 || indexCount < 0 || cache.capacity() != expectedSize) {
+			return null;
+		}
+
+		float[] positions = new float[vertexCount * 3];
+		float[] uvs = new float[vertexCount * 2];
+		float[] normals = new float[vertexCount * 3];
+		int[] indices = new int[indexCount];
+
+		cache.position(CACHE_HEADER_BYTES);
+		cache.asFloatBuffer().get(positions).get(uvs).get(normals);
+		cache.position(CACHE_HEADER_BYTES + vertexCount * 8 * 4);
+		cache.asIntBuffer().get(indices);
+		return new MeshData(positions, uvs, normals, indices);
+	}
+
+	private static void writeCache(File objFile, File cacheFile, MeshData data) {
+		int vertexCount = data.getVertexCount();
+		int indexCount = data.getIndices().length;
+		ByteBuffer buffer = ByteBuffer.allocate(CACHE_HEADER_BYTES + (vertexCount * 8 + indexCount) * 4);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION);
+		buffer.putLong(objFile.length()).putLong(objFile.lastModified());
+		buffer.putInt(vertexCount).putInt(indexCount);
+		buffer.asFloatBuffer().put(data.getPositions()).put(data.getUvs()).put(data.getNormals());
+		buffer.position(CACHE_HEADER_BYTES + vertexCount * 8 * 4);
+		buffer.asIntBuffer().put(data.getIndices());
+		buffer.rewind();
+
+		File temp = new File(cacheFile.getPath() + ".tmp");
+		try {
+			File parent = cacheFile.getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			// The cache only speeds up the next start, so carry on without it
+			System.err.println("Failed to write mesh cache: " + cacheFile);
+			temp.delete();
+		}
+	}
+
+	private static class Parser {
+		private final byte[] src;
+		private int pos;
+
+		// Raw attribute lists as they appear in the file
+		private float[] filePositions = new float[3 * 256];
+		private float[] fileUvs = new float[2 * 256];
+		private float[] fileNormals = new float[3 * 256];
+		private int positionCount, uvCount, normalCount;
+
+		// De-duplicated output vertices
+		private float[] positions = new float[3 * 256];
+		private float[] uvs = new float[2 * 256];
+		private float[] normals = new float[3 * 256];
+		private int vertexCount;
+		private int[] indices = new int[3 * 256];
+		private int indexCount;
+
+		private final LongIntHashMap vertexLookup = new LongIntHashMap(256, -1);
+		private int[] face = new int[8];
+
+		Parser(byte[] src) {
+			this.src = src;
+		}
+
+		MeshData parse() {
+			while (pos < src.length) {
+				skipSpaces();
+				if (pos + 1 < src.length && src[pos] == 'v') {
+					byte next = src[pos + 1];
+					if (next == ' ' || next == '\t') {
+						pos += 2;
+						filePositions = ensure(filePositions, positionCount * 3 + 3);
+						for (int i = 0; i < 3; i++) {
+							filePositions[positionCount * 3 + i] = parseFloat();
+						}
+						positionCount++;
+					} else if (next == 't') {
+						pos += 2;
+						fileUvs = ensure(fileUvs, uvCount * 2 + 2);
+						fileUvs[uvCount * 2] = parseFloat();
+						fileUvs[uvCount * 2 + 1] = parseFloat();
+						uvCount++;
+					} else if (next == 'n') {
+						pos += 2;
+						fileNormals = ensure(fileNormals, normalCount * 3 + 3);
+						for (int i = 0; i < 3; i++) {
+							fileNormals[normalCount * 3 + i] = parseFloat();
+						}
+						normalCount++;
+					}
+				} else if (pos + 1 < src.length && src[pos] == 'f' && (src[pos + 1] == ' ' || src[pos + 1] == '\t')) {
+					pos += 2;
+					parseFace();
+				}
+				skipLine();
+			}
+
+			return new MeshData(Arrays.copyOf(positions, vertexCount * 3), Arrays.copyOf(uvs, vertexCount * 2),
+					Arrays.copyOf(normals, vertexCount * 3), Arrays.copyOf(indices, indexCount));
+		}
+
+		private void parseFace() {
+			int corners = 0;
+			while (true) {
+				skipSpaces();
+				if (pos >= src.length || !isNumberStart(src[pos])) {
+					break;
+				}
+				int v = resolve(parseInt(), positionCount, "vertex");
+				int vt = 0, vn = 0;
+				if (pos < src.length && src[pos] == '/') {
+					pos++;
+					if (pos < src.length && src[pos] != '/') {
+						vt = resolve(parseInt(), uvCount, "texture coordinate");
+					}
+					if (pos < src.length && src[pos] == '/') {
+						pos++;
+						vn = resolve(parseInt(), normalCount, "normal");
+					}
+				}
+				if (corners == face.length) {
+					face = Arrays.copyOf(face, face.length * 2);
+				}
+				face[corners++] = vertexFor(v, vt, vn);
+			}
+
+			// Triangulate the polygon as a fan around its first corner
+			for (int k = 1; k + 1 < corners; k++) {
+				indices = ensure(indices, indexCount + 3);
+				indices[indexCount++] = face[0];
+				indices[indexCount++] = face[k];
+				indices[indexCount++] = face[k + 1];
+			}
+		}
+
+		// Returns the output vertex for a resolved 1-based index triple (0 meaning absent), creating it if new
+		private int vertexFor(int v, int vt, int vn) {
+			long key = ((long) v << (INDEX_BITS * 2)) | ((long) vt << INDEX_BITS) | vn;
+			int index = vertexLookup.putIfAbsent(key, vertexCount);
+			if (index != vertexCount) {
+				return index;
+			}
+
+			positions = ensure(positions, vertexCount * 3 + 3);
+			uvs = ensure(uvs, vertexCount * 2 + 2);
+			normals = ensure(normals, vertexCount * 3 + 3);
+			System.arraycopy(filePositions, (v - 1) * 3, positions, vertexCount * 3, 3);
+			if (vt > 0) {
+				uvs[vertexCount * 2] = fileUvs[(vt - 1) * 2];
+				// OBJ puts v = 0 at the bottom of the image, textures are loaded top first
+				uvs[vertexCount * 2 + 1] = 1 - fileUvs[(vt - 1) * 2 + 1];
+			}
+			if (vn > 0) {
+				System.arraycopy(fileNormals, (vn - 1) * 3, normals, vertexCount * 3, 3);
+			}
+			return vertexCount++;
+		}
+
+		// Turns a face index into a 1-based one; negative OBJ indices count back from the most recent element
+		private int resolve(int index, int count, String kind) {
+			int resolved = index < 0 ? count + index + 1 : index;
+			if (resolved < 1 || resolved > count || resolved > MAX_INDEX) {
+				throw new RuntimeException("Invalid " + kind + " index " + index + " on line " + line() + " of OBJ file ("
+						+ count + " defined so far)");
+			}
+			return resolved;
+		}
+
+		// The 1-based line the parser is on, only computed for error messages
+		private int line() {
+			int line = 1;
+			for (int i = 0; i < pos && i < src.length; i++) {
+				if (src[i] == '\n') {
+					line++;
+				}
+			}
+			return line;
+		}
+
+		private int parseInt() {
+			boolean negative = false;
+			if (src[pos] == '-') {
+				negative = true;
+				pos++;
+			} else if (src[pos] == '+') {
+				pos++;
+			}
+			int value = 0;
+			while (pos < src.length && isDigit(src[pos])) {
+				value = value * 10 + (src[pos++] - '0');
+			}
+			return negative ? -value : value;
+		}
+
+		private float parseFloat() {
+			skipSpaces();
+			if (pos >= src.length) {
+				return 0;
+			}
+			boolean negative = false;
+			if (src[pos] == '-') {
+				negative = true;
+				pos++;
+			} else if (src[pos] == '+') {
+				pos++;
+			}
+
+			// Collect up to 18 significant digits into a long, tracking the decimal exponent
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			while (pos < src.length && isDigit(src[pos])) {
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (src[pos] - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+				} else {
+					exponent++;
+				}
+				pos++;
+			}
+			if (pos < src.length && src[pos] == '.') {
+				pos++;
+				while (pos < src.length && isDigit(src[pos])) {
+					if (digits < 18) {
+						mantissa = mantissa * 10 + (src[pos] - '0');
+						if (mantissa != 0) {
+							digits++;
+						}
+						exponent--;
+					}
+					pos++;
+				}
+			}
+			if (pos < src.length && (src[pos] == 'e' || src[pos] == 'E')) {
+				pos++;
+				exponent += parseInt();
+			}
+
+			double value = mantissa;
+			if (exponent < 0) {
+				value = -exponent < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[-exponent] : value * Math.pow(10, exponent);
+			} else if (exponent > 0) {
+				value = exponent < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+			}
+			return (float) (negative ? -value : value);
+		}
+
+		private void skipSpaces() {
+			while (pos < src.length && (src[pos] == ' ' || src[pos] == '\t')) {
+				pos++;
+			}
+		}
+
+		private void skipLine() {
+			while (pos < src.length && src[pos] != '\n') {
+				pos++;
+			}
+			pos++;
+		}
+
+		private static boolean isDigit(byte c) {
+			return c >= '0' && c <= '9';
+		}
+
+		private static boolean isNumberStart(byte c) {
+			return isDigit(c) || c == '-' || c == '+';
+		}
+
+		private static float[] ensure(float[] array, int length) {
+			return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+		}
+
+		private static int[] ensure(int[] array, int length) {
+			return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package renderEngine;
+
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.util.vector.Matrix4f;
+
+import Shaders.TransformShader;
+import lombok.Getter;
+import models.RawModel;
+import models.TexturedModel;
+
+/**
+ * Collects the draws of a frame and submits them sorted by render state.
+ * 
+ * Every submitted draw gets a 64-bit sort key with the shader in the highest
+ * bits below the sign bit, followed by the texture, the VAO and the quantized
+ * depth, so that sorting the keys groups draws sharing a shader, then a
+ * texture, then a mesh, and orders each group front to back. The lowest bits hold the index of the
+ * draw in this queue, which makes every key unique and lets a plain long[] be
+ * sorted without allocating.
+ * 
+ * IDs wider than their field are truncated; that only weakens the grouping,
+ * never the correctness of the draws. Submission goes through a
+ * {@link GLStateTracker}, which drops the binds that sorting made redundant.
+ * 
+ * Per-frame uniforms (view and projection matrices) must already be loaded
+ * into every shader that is submitted with.
+ */
+public class RenderQueue {
+
+	private static final int INDEX_BITS = 20;
+	private static final int DEPTH_BITS = 12;
+	private static final int VAO_BITS = 14;
+	private static final int TEXTURE_BITS = 12;
+	// Ends at bit 62, so keys stay positive and signed sorting keeps the field order
+	private static final int SHADER_BITS = 5;
+
+	private static final int DEPTH_SHIFT = INDEX_BITS;
+	private static final int VAO_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+	private static final int TEXTURE_SHIFT = VAO_SHIFT + VAO_BITS;
+	private static final int SHADER_SHIFT = TEXTURE_SHIFT + TEXTURE_BITS;
+
+	public static final int MAX_DRAWS = 1 << INDEX_BITS;
+	private static final long INDEX_MASK = MAX_DRAWS - 1;
+
+	private final GLStateTracker gl;
+
+	private long[] keys;
+	private TransformShader[] shaders;
+	private Matrix4f[] transforms;
+	private int[] textureTargets;
+	private int[] textures;
+	private int[] vaos;
+	private int[] indexCounts;
+	private int[] attributeMasks;
+	private int count;
+
+	// Statistics for the last flush
+	@Getter
+	private int drawCalls;
+	@Getter
+	private int shaderChanges;
+	@Getter
+	private int textureChanges;
+	@Getter
+	private int vaoChanges;
+
+	public RenderQueue(GLStateTracker gl) {
+		this(gl, 256);
+	}
+
+	public RenderQueue(GLStateTracker gl, int initialCapacity) {
+		this.gl = gl;
+		allocate(Math.max(1, initialCapacity));
+	}
+
+	/**
+	 * Queues a textured model with two vertex attributes (position and texture
+	 * coordinates) and a GL_TEXTURE_2D texture.
+	 *
+	 * @param depth The normalized distance from the camera, 0 being nearest.
+	 */
+	public void submit(TransformShader shader, TexturedModel model, Matrix4f transform, float depth) {
+		RawModel raw = model.getModel();
+		submit(shader, GL11.GL_TEXTURE_2D, model.getTexture().getTextureID(), raw.getVaoID(), raw.getVertexCount(),
+				0b11, transform, depth);
+	}
+
+	/**
+	 * Queues a draw. The transform is read when the queue is flushed, so it must
+	 * not change before then.
+	 *
+	 * @param attributeMask The vertex attributes the VAO uses, one bit each.
+	 */
+	public void submit(TransformShader shader, int textureTarget, int textureID, int vaoID, int indexCount,
+			int attributeMask, Matrix4f transform, float depth) {
+		if (count == MAX_DRAWS) {
+			throw new IllegalStateException("Render queue is limited to " + MAX_DRAWS + " draws per flush");
+		}
+		if (count == keys.length) {
+			allocate(Math.min(MAX_DRAWS, count * 2));
+		}
+		int i = count++;
+		shaders[i] = shader;
+		transforms[i] = transform;
+		textureTargets[i] = textureTarget;
+		textures[i] = textureID;
+		vaos[i] = vaoID;
+		indexCounts[i] = indexCount;
+		attributeMasks[i] = attributeMask;
+		keys[i] = sortKey(shader.getProgramID(), textureID, vaoID, depth) | i;
+	}
+
+	/**
+	 * Sorts the queued draws, submits them and empties the queue.
+	 */
+	public void flush() {
+		drawCalls = 0;
+		shaderChanges = 0;
+		textureChanges = 0;
+		vaoChanges = 0;
+		if (count == 0) {
+			return;
+		}
+		Arrays.sort(keys, 0, count);
+
+		TransformShader currentShader = null;
+		int currentTexture = -1;
+		int currentVAO = -1;
+		gl.activeTexture(GL13.GL_TEXTURE0);
+		for (int k = 0; k < count; k++) {
+			int i = (int) (keys[k] & INDEX_MASK);
+			TransformShader shader = shaders[i];
+			if (shader != currentShader) {
+				gl.useProgram(shader.getProgramID());
+				currentShader = shader;
+				shaderChanges++;
+			}
+			if (textures[i] != currentTexture) {
+				gl.bindTexture(textureTargets[i], textures[i]);
+				currentTexture = textures[i];
+				textureChanges++;
+			}
+			if (vaos[i] != currentVAO) {
+				gl.bindVertexArray(vaos[i]);
+				for (int mask = attributeMasks[i], a = 0; mask != 0; mask >>>= 1, a++) {
+					if ((mask & 1) != 0) {
+						gl.enableVertexAttribArray(a);
+					}
+				}
+				currentVAO = vaos[i];
+				vaoChanges++;
+			}
+			shader.loadTransformationMatrix(transforms[i]);
+			gl.drawElements(GL11.GL_TRIANGLES, indexCounts[i], GL11.GL_UNSIGNED_INT, 0);
+			drawCalls++;
+		}
+		gl.bindVertexArray(0);
+
+		// Drop the references so the queue does not keep models or shaders alive
+		Arrays.fill(shaders, 0, count, null);
+		Arrays.fill(transforms, 0, count, null);
+		count = 0;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	static long sortKey(int shader, int texture, int vao, float depth) {
+		long quantized = (long) (Math.min(1f, Math.max(0f, depth)) * ((1 << DEPTH_BITS) - 1));
+		return ((long) (shader & ((1 << SHADER_BITS) - 1)) << SHADER_SHIFT)
+				| ((long) (texture & ((1 << TEXTURE_BITS) - 1)) << TEXTURE_SHIFT)
+				| ((long) (vao & ((1 << VAO_BITS) - 1)) << VAO_SHIFT)
+				| (quantized << DEPTH_SHIFT);
+	}
+
+	private void allocate(int capacity) {
+		keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+		shaders = shaders == null ? new TransformShader[capacity] : Arrays.copyOf(shaders, capacity);
+		transforms = transforms == null ? new Matrix4f[capacity] : Arrays.copyOf(transforms, capacity);
+		textureTargets = textureTargets == null ? new int[capacity] : Arrays.copyOf(textureTargets, capacity);
+		textures = textures == null ? new int[capacity] : Arrays.copyOf(textures, capacity);
+		vaos = vaos == null ? new int[capacity] : Arrays.copyOf(vaos, capacity);
+		indexCounts = indexCounts == null ? new int[capacity] : Arrays.copyOf(indexCounts, capacity);
+		attributeMasks = attributeMasks == null ? new int[capacity] : Arrays.copyOf(attributeMasks, capacity);
+	}
+}
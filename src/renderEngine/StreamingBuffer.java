@@ -0,0 +1,227 @@
+package renderEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.opengl.GL15;
+
+import lombok.Getter;
+
+/**
+ * A large buffer object for geometry that changes every frame, sub-allocated
+ * as a ring so streaming data never creates or reallocates buffers.
+ * 
+ * The buffer is split into one region per frame in flight. Each frame writes
+ * linearly into its own region.
+ * 
+ * When persistent mapping is available the buffer is mapped once and written
+ * directly. Each frame ends with a fence, and a region is only reused once the
+ * fence placed after its last use has been signalled, so the CPU never
+ * overwrites data the GPU may still be reading. With enough regions the fence
+ * is always signalled by then and no frame waits. If it is still unsignalled
+ * after a bounded wait the frame gives up on the region: every write fails and
+ * the caller falls back to its own upload path.
+ * 
+ * Otherwise the buffer is orphaned at the start of every frame and written
+ * with glBufferSubData. The driver hands out fresh storage instead of
+ * synchronizing, so no fences are needed.
+ */
+public class StreamingBuffer {
+
+	// Offsets are aligned so any vertex attribute or instance layout can start at them
+	public static final int ALIGNMENT = 16;
+
+	// How long a frame waits for its region before giving up on it
+	private static final long FENCE_TIMEOUT_NANOS = 100000000L;
+
+	private final GLBackend gl;
+	private final int target;
+	private final int bufferID;
+	@Getter
+	private final int regionSize;
+	@Getter
+	private final boolean persistent;
+
+	private final ByteBuffer mapped;
+	private final FloatBuffer mappedFloats;
+	private final long[] fences;
+
+	private int region = -1;
+	private int head;
+
+	// Statistics
+	@Getter
+	private long frames;
+	@Getter
+	private long stalls;
+	@Getter
+	private long timeouts;
+	@Getter
+	private long bytesWritten;
+	@Getter
+	private long failedWrites;
+
+	/**
+	 * @param target          The buffer target, e.g. GL_ARRAY_BUFFER.
+	 * @param regionSize      The bytes available to each frame.
+	 * @param framesInFlight  The number of regions; 3 covers a typical driver queue.
+	 * @param allowPersistent Whether to use persistent mapping when the context supports it.
+	 */
+	public StreamingBuffer(GLBackend gl, int target, int regionSize, int framesInFlight, boolean allowPersistent) {
+		this.gl = gl;
+		this.target = target;
+		this.regionSize = regionSize / ALIGNMENT * ALIGNMENT;
+		this.fences = new long[framesInFlight];
+		this.persistent = allowPersistent && gl.supportsBufferStorage();
+
+		bufferID = gl.genBuffer();
+		gl.bindBuffer(target, bufferID);
+		long totalBytes = (long) this.regionSize * framesInFlight;
+		if (persistent) {
+			mapped = gl.mapBufferStorage(target, totalBytes);
+			mappedFloats = mapped.asFloatBuffer();
+		} else {
+			gl.bufferData(target, totalBytes, GL15.GL_STREAM_DRAW);
+			mapped = null;
+			mappedFloats = null;
+		}
+		gl.bindBuffer(target, 0);
+	}
+
+	public StreamingBuffer(GLBackend gl, int target, int regionSize) {
+		this(gl, target, regionSize, 3, true);
+	}
+
+	/**
+	 * Moves on to the next region, waiting a bounded time for the GPU to
+	 * release it if needed.
+	 *
+	 * @return False if the region is still in use after the wait; writes fail
+	 *         until the next frame.
+	 */
+	public boolean beginFrame() {
+		region = (region + 1) % fences.length;
+		head = 0;
+		frames++;
+
+		if (!persistent) {
+			// Orphan the old storage so the driver does not wait for pending draws
+			gl.bindBuffer(target, bufferID);
+			gl.bufferData(target, (long) regionSize * fences.length, GL15.GL_STREAM_DRAW);
+			return true;
+		}
+
+		long fence = fences[region];
+		if (fence != 0) {
+			if (!gl.clientWaitSync(fence, 0)) {
+				stalls++;
+				if (!gl.clientWaitSync(fence, FENCE_TIMEOUT_NANOS)) {
+					// The GPU is still reading this region; keep its fence and skip it this frame
+					timeouts++;
+					head = regionSize;
+					return false;
+				}
+			}
+			gl.deleteSync(fence);
+			fences[region] = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Fences the current region after the draws that read from it.
+	 */
+	public void endFrame() {
+		if (persistent && region >= 0 && fences[region] == 0) {
+			fences[region] = gl.fenceSync();
+		}
+	}
+
+	/**
+	 * Copies the remaining floats of the data into the current region. The
+	 * position of the data buffer is left unchanged.
+	 *
+	 * @return The byte offset of the data in the buffer object, or -1 if the
+	 *         region does not have enough space left this frame.
+	 */
+	public long write(FloatBuffer data) {
+		int bytes = data.remaining() * 4;
+		long offset = allocate(bytes);
+		if (offset < 0) {
+			return -1;
+		}
+		if (persistent) {
+			int position = data.position();
+			mappedFloats.position((int) (offset / 4));
+			mappedFloats.put(data);
+			data.position(position);
+		} else {
+			gl.bindBuffer(target, bufferID);
+			gl.bufferSubData(target, offset, data);
+		}
+		return offset;
+	}
+
+	/**
+	 * Byte variant of {@link #write(FloatBuffer)}.
+	 */
+	public long write(ByteBuffer data) {
+		int bytes = data.remaining();
+		long offset = allocate(bytes);
+		if (offset < 0) {
+			return -1;
+		}
+		if (persistent) {
+			int position = data.position();
+			mapped.position((int) offset);
+			mapped.put(data);
+			data.position(position);
+		} else {
+			gl.bindBuffer(target, bufferID);
+			gl.bufferSubData(target, offset, data);
+		}
+		return offset;
+	}
+
+	/**
+	 * @return The bytes still free in the current region.
+	 */
+	public int getRemaining() {
+		return regionSize - head;
+	}
+
+	public int getBufferID() {
+		return bufferID;
+	}
+
+	public void cleanUp() {
+		for (int i = 0; i < fences.length; i++) {
+			if (fences[i] != 0) {
+				gl.deleteSync(fences[i]);
+				fences[i] = 0;
+			}
+		}
+		if (persistent) {
+			gl.bindBuffer(target, bufferID);
+			gl.unmapBuffer(target);
+			gl.bindBuffer(target, 0);
+		}
+		gl.deleteBuffer(bufferID);
+	}
+
+	// Reserves bytes in the current region, returning the absolute byte offset
+	private long allocate(int bytes) {
+		if (region < 0) {
+			throw new IllegalStateException("beginFrame() must be called before writing");
+		}
+		int aligned = (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+		if (aligned > regionSize - head) {
+			failedWrites++;
+			return -1;
+		}
+		long offset = (long) region * regionSize + head;
+		head += aligned;
+		bytesWritten += bytes;
+		return offset;
+	}
+}
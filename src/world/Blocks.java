@@ -0,0 +1,71 @@
+package world;
+
+/**
+ * Block ID constants used by the world store.
+ * 
+ * IDs are small non-negative ints so that chunks can store them in a palette.
+ * AIR (0) is the default contents of every freshly created chunk.
+ */
+public final class Blocks {
+
+	public static final int AIR = 0;
+	public static final int DIRT = 1;
+	public static final int GRASS = 2;
+	public static final int TREE_BARK = 3;
+	public static final int LEAF = 4;
+	// Leaves that give off light, drawn with the leaf texture
+	public static final int GLOW_LEAF = 5;
+
+	// Texture files in block texture array layer order
+	private static final String[] TEXTURES = { "dirtTex", "grassTex", "TreeBark", "Leaf" };
+
+	// Block texture array layer of each block ID
+	private static final int[] TEXTURE_LAYERS = { -1, 0, 1, 2, 3, 3 };
+
+	// Block light level given off by each block ID
+	private static final int[] LIGHT_EMISSION = { 0, 0, 0, 0, 0, 12 };
+
+	private Blocks() {
+	}
+
+	/**
+	 * Returns the texture file names in texture array layer order.
+	 */
+	public static String[] getTextureNames() {
+		return TEXTURES.clone();
+	}
+
+	/**
+	 * Returns the layer of the block texture array that holds the block's
+	 * texture. IDs without a texture of their own, e.g. from a newer save, are
+	 * drawn with the first layer.
+	 */
+	public static int getTextureLayer(int blockID) {
+		return blockID >= 0 && blockID < TEXTURE_LAYERS.length ? TEXTURE_LAYERS[blockID] : 0;
+	}
+
+	/**
+	 * Returns whether the block completely hides the faces of its neighbours.
+	 */
+	public static boolean isOpaque(int blockID) {
+		return blockID != AIR && blockID != LEAF && blockID != GLOW_LEAF;
+	}
+
+	/**
+	 * Returns the block light level (0 to 15) the block gives off.
+	 */
+	public static int getLightEmission(int blockID) {
+		return blockID < LIGHT_EMISSION.length ? LIGHT_EMISSION[blockID] : 0;
+	}
+
+	/**
+	 * Returns how many light levels the block absorbs on top of the one level
+	 * light loses per block it travels. Opaque blocks absorb everything.
+	 */
+	public static int getLightOpacity(int blockID) {
+		if (blockID == AIR) {
+			return 0;
+		}
+		return blockID == LEAF || blockID == GLOW_LEAF ? 1 : LightEngine.MAX_LIGHT;
+	}
+}
@@ -0,0 +1,113 @@
+package world;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A fixed-size cube of blocks backed by a {@link PaletteStorage}.
+ * 
+ * Blocks are indexed x-fastest, then z, then y, so that walking along a row in
+ * the mesher touches consecutive entries of the packed storage.
+ */
+@Getter
+public class Chunk {
+
+	public static final int SHIFT = 4;
+	public static final int SIZE = 1 << SHIFT; // 16 blocks along each axis
+	public static final int MASK = SIZE - 1;
+	public static final int VOLUME = SIZE * SIZE * SIZE;
+
+	private final int chunkX, chunkY, chunkZ;
+	private final PaletteStorage blocks;
+
+	// Block light and sky light of each block, 0 to 15, filled in by a LightEngine
+	private final NibbleArray blockLight = new NibbleArray(VOLUME, 0);
+	private final NibbleArray skyLight = new NibbleArray(VOLUME, 0);
+	// Whether the light arrays are valid; meshes of unlit chunks are drawn fully lit
+	@Setter
+	private volatile boolean lit;
+
+	// Number of non-air blocks, used to skip empty chunks cheaply
+	private int solidCount;
+
+	// Which faces see each other through the chunk, computed on first use after an edit
+	private int connectivity = ChunkConnectivity.UNKNOWN;
+
+	public Chunk(int chunkX, int chunkY, int chunkZ) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.chunkZ = chunkZ;
+		this.blocks = new PaletteStorage(VOLUME, Blocks.AIR);
+	}
+
+	/**
+	 * Creates a chunk around existing block storage, e.g. one read from disk.
+	 */
+	public Chunk(int chunkX, int chunkY, int chunkZ, PaletteStorage blocks) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.chunkZ = chunkZ;
+		this.blocks = blocks;
+		for (int i = 0; i < VOLUME; i++) {
+			if (blocks.get(i) != Blocks.AIR) {
+				solidCount++;
+			}
+		}
+	}
+
+	public static int index(int x, int y, int z) {
+		return (y << (SHIFT * 2)) | (z << SHIFT) | x;
+	}
+
+	/**
+	 * Returns the block at the given local coordinates (0 to SIZE - 1 on each axis).
+	 */
+	public int getBlock(int x, int y, int z) {
+		return blocks.get(index(x, y, z));
+	}
+
+	/**
+	 * Sets the block at the given local coordinates (0 to SIZE - 1 on each axis).
+	 * 
+	 * @return The block ID that was replaced.
+	 */
+	public int setBlock(int x, int y, int z, int blockID) {
+		int previous = blocks.set(index(x, y, z), blockID);
+		if (previous == Blocks.AIR && blockID != Blocks.AIR) {
+			solidCount++;
+		} else if (previous != Blocks.AIR && blockID == Blocks.AIR) {
+			solidCount--;
+		}
+		if (Blocks.isOpaque(previous) != Blocks.isOpaque(blockID)) {
+			connectivity = ChunkConnectivity.UNKNOWN;
+		}
+		return previous;
+	}
+
+	/**
+	 * Returns the 15-bit mask of faces connected through the chunk, see
+	 * {@link ChunkConnectivity}, rebuilding it if an edit invalidated it.
+	 */
+	public int getConnectivity() {
+		if (connectivity == ChunkConnectivity.UNKNOWN) {
+			connectivity = ChunkConnectivity.compute(this);
+		}
+		return connectivity;
+	}
+
+	public boolean isEmpty() {
+		return solidCount == 0;
+	}
+
+	/**
+	 * Returns the approximate heap footprint of the chunk in bytes, blocks and
+	 * light included.
+	 */
+	public long estimateBytes() {
+		return 40 + blocks.estimateBytes() + blockLight.estimateBytes() + skyLight.estimateBytes();
+	}
+
+	public long getKey() {
+		return ChunkPos.pack(chunkX, chunkY, chunkZ);
+	}
+}
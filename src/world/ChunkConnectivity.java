@@ -0,0 +1,148 @@
+package world;
+
+/**
+ * Which faces of a chunk can see each other through it.
+ *
+ * Two faces are connected when a path of blocks that are not
+ * {@link Blocks#isOpaque(int) opaque} runs from one to the other inside the
+ * chunk. There are 15 unordered pairs of the six faces, so the connectivity of
+ * a chunk fits in the low 15 bits of an int. Faces use the mesher's direction
+ * numbering (0 = -X, 1 = +X, 2 = -Y, 3 = +Y, 4 = -Z, 5 = +Z).
+ *
+ * Chunks cache their mask and drop it when an edit changes whether a block is
+ * opaque, see {@link Chunk#getConnectivity()}.
+ */
+public final class ChunkConnectivity {
+
+	public static final int UNKNOWN = -1;
+	public static final int NONE = 0;
+	public static final int ALL = (1 << 15) - 1;
+
+	// Bit of each pair of faces; a face paired with itself has none
+	private static final int[][] PAIR_BITS = new int[6][6];
+	// Mask connecting every pair within each set of faces
+	private static final int[] FACE_SET_MASKS = new int[64];
+
+	static {
+		int bit = 0;
+		for (int a = 0; a < 6; a++) {
+			for (int b = a + 1; b < 6; b++) {
+				PAIR_BITS[a][b] = PAIR_BITS[b][a] = 1 << bit++;
+			}
+		}
+		for (int faces = 0; faces < 64; faces++) {
+			int mask = 0;
+			for (int a = 0; a < 6; a++) {
+				for (int b = a + 1; b < 6; b++) {
+					if ((faces & (1 << a)) != 0 && (faces & (1 << b)) != 0) {
+						mask |= PAIR_BITS[a][b];
+					}
+				}
+			}
+			FACE_SET_MASKS[faces] = mask;
+		}
+	}
+
+	// Flood fill scratch, reused by each thread
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	private ChunkConnectivity() {
+	}
+
+	public static boolean connects(int mask, int from, int to) {
+		return (mask & PAIR_BITS[from][to]) != 0;
+	}
+
+	/**
+	 * Flood fills the open blocks of the chunk from its borders and connects
+	 * every pair of faces the same open region touches.
+	 */
+	public static int compute(Chunk chunk) {
+		if (chunk.isEmpty()) {
+			return ALL;
+		}
+		Scratch scratch = SCRATCH.get();
+		boolean[] visited = scratch.visited;
+		int[] stack = scratch.stack;
+		PaletteStorage blocks = chunk.getBlocks();
+		for (int i = 0; i < Chunk.VOLUME; i++) {
+			visited[i] = Blocks.isOpaque(blocks.get(i));
+		}
+
+		int mask = NONE;
+		for (int start = 0; start < Chunk.VOLUME && mask != ALL; start++) {
+			// Regions that touch no face connect nothing, so only fill from the borders
+			if (visited[start] || faces(start) == 0) {
+				continue;
+			}
+			int faces = 0;
+			int size = 0;
+			stack[size++] = start;
+			visited[start] = true;
+			while (size > 0) {
+				int index = stack[--size];
+				int touched = faces(index);
+				faces |= touched;
+				int x = index & Chunk.MASK, y = index >> (Chunk.SHIFT * 2), z = (index >> Chunk.SHIFT) & Chunk.MASK;
+				if (x > 0 && !visited[index - 1]) {
+					visited[index - 1] = true;
+					stack[size++] = index - 1;
+				}
+				if (x < Chunk.MASK && !visited[index + 1]) {
+					visited[index + 1] = true;
+					stack[size++] = index + 1;
+				}
+				if (y > 0 && !visited[index - Chunk.SIZE * Chunk.SIZE]) {
+					visited[index - Chunk.SIZE * Chunk.SIZE] = true;
+					stack[size++] = index - Chunk.SIZE * Chunk.SIZE;
+				}
+				if (y < Chunk.MASK && !visited[index + Chunk.SIZE * Chunk.SIZE]) {
+					visited[index + Chunk.SIZE * Chunk.SIZE] = true;
+					stack[size++] = index + Chunk.SIZE * Chunk.SIZE;
+				}
+				if (z > 0 && !visited[index - Chunk.SIZE]) {
+					visited[index - Chunk.SIZE] = true;
+					stack[size++] = index - Chunk.SIZE;
+				}
+				if (z < Chunk.MASK && !visited[index + Chunk.SIZE]) {
+					visited[index + Chunk.SIZE] = true;
+					stack[size++] = index + Chunk.SIZE;
+				}
+			}
+			mask |= FACE_SET_MASKS[faces];
+		}
+		return mask;
+	}
+
+	// Faces of the chunk a block touches, one bit per direction
+	private static int faces(int index) {
+		int x = index & Chunk.MASK, y = index >> (Chunk.SHIFT * 2), z = (index >> Chunk.SHIFT) & Chunk.MASK;
+		int faces = 0;
+		if (x == 0) {
+			faces |= 1;
+		} else if (x == Chunk.MASK) {
+			faces |= 2;
+		}
+		if (y == 0) {
+			faces |= 4;
+		} else if (y == Chunk.MASK) {
+			faces |= 8;
+		}
+		if (z == 0) {
+			faces |= 16;
+		} else if (z == Chunk.MASK) {
+			faces |= 32;
+		}
+		return faces;
+	}
+
+	private static final class Scratch {
+		private final boolean[] visited = new boolean[Chunk.VOLUME];
+		private final int[] stack = new int[Chunk.VOLUME];
+	}
+}
@@ -0,0 +1,238 @@
+package world;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import ToolBox.Clock;
+import ToolBox.LongIntHashMap;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Collects block edits during a frame and re-meshes each affected chunk once.
+ *
+ * An edit marks the chunk it is in as dirty, and also every neighbouring
+ * chunk whose padding holds the block: the chunk across a face for a block on
+ * a face, up to three more across the edges and the corner for a block on an
+ * edge or corner of its chunk. {@link #flush()}
+ * then schedules every dirty chunk once, however many edits it received, so
+ * a burst of edits such as an explosion costs one mesh per chunk instead of
+ * one per block.
+ *
+ * Chunks are the smallest meshing unit, so a dirty chunk is re-meshed whole;
+ * it is the upload that only patches the existing GPU buffers, see
+ * {@link renderEngine.ChunkModelUploader}. Edit-to-visible latency is measured
+ * from the first edit of a chunk to the upload of its new mesh, for uploads
+ * passing through {@link #trackUploads(MeshUploader)}.
+ *
+ * With a {@link LightEngine} set, edits made through {@link #setBlock} are
+ * passed on to it, and {@link #flush()} applies the light changes first so the
+ * chunks whose light changed are re-meshed in the same flush.
+ *
+ * Must be used from the thread that edits the world.
+ */
+public class ChunkEditTracker {
+
+	private static final int CLEAN = -1;
+
+	private final World world;
+	private final ChunkMeshScheduler scheduler;
+	private final LodSelector lodSelector;
+	private final Clock clock;
+
+	@Setter
+	private LightEngine lightEngine;
+
+	// Chunks to re-mesh at the next flush, mapped to the index of their first edit time
+	private final LongIntHashMap dirty = new LongIntHashMap(64, CLEAN);
+	private long[] dirtyKeys = new long[64];
+	private long[] editTimes = new long[64];
+	private int dirtyCount;
+
+	// Time of the first unflushed edit of each chunk whose mesh has not been uploaded yet
+	private final HashMap<Long, Long> awaitingUpload = new HashMap<Long, Long>();
+
+	// Statistics since creation
+	@Getter
+	private long edits;
+	@Getter
+	private long coalescedEdits;
+	@Getter
+	private long neighbourMarks;
+	@Getter
+	private long chunksScheduled;
+	@Getter
+	private long latencySamples;
+	@Getter
+	private long totalLatencyNanos;
+	@Getter
+	private long maxLatencyNanos;
+
+	/**
+	 * @param lodSelector Picks the level of detail dirty chunks are meshed at,
+	 *                    or null to always mesh at full detail.
+	 */
+	public ChunkEditTracker(World world, ChunkMeshScheduler scheduler, LodSelector lodSelector, Clock clock) {
+		this.world = world;
+		this.scheduler = scheduler;
+		this.lodSelector = lodSelector;
+		this.clock = clock;
+	}
+
+	/**
+	 * Sets a block in the world and marks the chunks that need new meshes.
+	 *
+	 * @return The block ID that was replaced.
+	 */
+	public int setBlock(int x, int y, int z, int blockID) {
+		int previous = world.setBlock(x, y, z, blockID);
+		if (previous != blockID) {
+			markDirty(x, y, z);
+			if (lightEngine != null) {
+				lightEngine.blockChanged(x, y, z, previous, blockID);
+			}
+		}
+		return previous;
+	}
+
+	/**
+	 * Marks the chunks affected by a change of the block at the given world
+	 * coordinates, for edits made directly on the world.
+	 */
+	public void markDirty(int x, int y, int z) {
+		edits++;
+		int cx = x >> Chunk.SHIFT, cy = y >> Chunk.SHIFT, cz = z >> Chunk.SHIFT;
+		int lx = x & Chunk.MASK, ly = y & Chunk.MASK, lz = z & Chunk.MASK;
+		if (!mark(cx, cy, cz)) {
+			coalescedEdits++;
+		}
+
+		// Blocks on a border are also the padding of the neighbouring chunks, diagonal ones included
+		int sx = border(lx), sy = border(ly), sz = border(lz);
+		if ((sx | sy | sz) == 0) {
+			return;
+		}
+		for (int dy = Math.min(sy, 0); dy <= Math.max(sy, 0); dy++) {
+			for (int dz = Math.min(sz, 0); dz <= Math.max(sz, 0); dz++) {
+				for (int dx = Math.min(sx, 0); dx <= Math.max(sx, 0); dx++) {
+					if ((dx | dy | dz) != 0) {
+						markNeighbour(cx + dx, cy + dy, cz + dz);
+					}
+				}
+			}
+		}
+	}
+
+	// -1 or 1 for a coordinate on the low or high border of a chunk, 0 inside
+	private static int border(int local) {
+		return local == 0 ? -1 : local == Chunk.MASK ? 1 : 0;
+	}
+
+	/**
+	 * Schedules every dirty chunk for re-meshing. Call once per frame, after
+	 * the frame's edits.
+	 *
+	 * @return The number of chunks scheduled.
+	 */
+	public int flush() {
+		if (lightEngine != null) {
+			lightEngine.update();
+		}
+		int scheduled = 0;
+		for (int i = 0; i < dirtyCount; i++) {
+			long key = dirtyKeys[i];
+			Chunk chunk = world.getChunks().get(key);
+			if (chunk == null) {
+				continue;
+			}
+			scheduler.schedule(chunk, lodSelector != null ? lodSelector.getLevel(key) : 0);
+			if (!awaitingUpload.containsKey(key)) {
+				awaitingUpload.put(key, editTimes[i]);
+			}
+			scheduled++;
+		}
+		dirty.clear();
+		dirtyCount = 0;
+		chunksScheduled += scheduled;
+		return scheduled;
+	}
+
+	public int getDirtyCount() {
+		return dirtyCount;
+	}
+
+	public float getAverageLatencyMillis() {
+		return latencySamples == 0 ? 0 : totalLatencyNanos / 1e6f / latencySamples;
+	}
+
+	/**
+	 * Wraps the uploader the mesh scheduler hands its meshes to, so the time
+	 * from an edit until its mesh is uploaded can be measured. Pass the result
+	 * to the {@link ChunkMeshScheduler}.
+	 */
+	public MeshUploader trackUploads(final MeshUploader delegate) {
+		return new MeshUploader() {
+			@Override
+			public void upload(long chunkKey, ChunkMesh mesh) {
+				delegate.upload(chunkKey, mesh);
+				Long editTime = awaitingUpload.remove(chunkKey);
+				if (editTime != null) {
+					long latency = clock.nanoTime() - editTime;
+					latencySamples++;
+					totalLatencyNanos += latency;
+					maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Forgets a chunk's pending edits, e.g. when it unloads.
+	 */
+	public void forget(long chunkKey) {
+		awaitingUpload.remove(chunkKey);
+		int index = dirty.remove(chunkKey);
+		if (index != CLEAN) {
+			// Move the last entry into the hole
+			dirtyCount--;
+			if (index != dirtyCount) {
+				dirtyKeys[index] = dirtyKeys[dirtyCount];
+				editTimes[index] = editTimes[dirtyCount];
+				dirty.put(dirtyKeys[index], index);
+			}
+		}
+	}
+
+	/**
+	 * Marks a chunk whose light changed, if it is loaded.
+	 */
+	void markLightChanged(long chunkKey) {
+		if (world.getChunks().get(chunkKey) != null) {
+			mark(ChunkPos.unpackX(chunkKey), ChunkPos.unpackY(chunkKey), ChunkPos.unpackZ(chunkKey));
+		}
+	}
+
+	private void markNeighbour(int cx, int cy, int cz) {
+		// A neighbour that is not loaded has no mesh to fix
+		if (world.getChunk(cx, cy, cz) != null && mark(cx, cy, cz)) {
+			neighbourMarks++;
+		}
+	}
+
+	// Returns whether the chunk was clean before
+	private boolean mark(int cx, int cy, int cz) {
+		long key = ChunkPos.pack(cx, cy, cz);
+		if (dirty.get(key) != CLEAN) {
+			return false;
+		}
+		if (dirtyCount == dirtyKeys.length) {
+			dirtyKeys = Arrays.copyOf(dirtyKeys, dirtyCount * 2);
+			editTimes = Arrays.copyOf(editTimes, dirtyCount * 2);
+		}
+		dirty.put(key, dirtyCount);
+		dirtyKeys[dirtyCount] = key;
+		editTimes[dirtyCount] = clock.nanoTime();
+		dirtyCount++;
+		return true;
+	}
+}
@@ -0,0 +1,12 @@
+package world;
+
+/**
+ * Told when a chunk enters or leaves the loaded world, e.g. by the
+ * {@link ChunkStreamer}, so per-chunk state kept elsewhere can follow.
+ */
+public interface ChunkListener {
+
+	void chunkLoaded(long chunkKey);
+
+	void chunkUnloaded(long chunkKey);
+}
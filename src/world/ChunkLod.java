@@ -0,0 +1,102 @@
+package world;
+
+import java.util.Arrays;
+
+/**
+ * Downsampling of chunk blocks for level-of-detail meshes.
+ * 
+ * Level n merges cubes of 2^n blocks per side (2x, 4x and 8x for levels 1 to 3)
+ * into one cell filled with the most common solid block among them. The
+ * downsampled cells are written back at full resolution, so the regular
+ * {@link ChunkMesher} turns each cell into a few large greedy quads and the
+ * mesh keeps the same chunk-local coordinates and vertex formats.
+ * 
+ * Seams between chunks of different levels are closed in two ways. A cell is
+ * solid if any block in it is, so a coarse mesh always covers every block of
+ * the full detail mesh and never opens a gap where a finer neighbour culled
+ * its border faces. And coarse meshes never cull their own border faces
+ * against neighbours, whose blocks may not be drawn at the same detail.
+ */
+public final class ChunkLod {
+
+	public static final int MAX_LEVEL = 3;
+
+	private ChunkLod() {
+	}
+
+	public static int getFactor(int level) {
+		return 1 << level;
+	}
+
+	/**
+	 * Downsamples a padded block array captured by the mesher.
+	 * 
+	 * @param padded The captured blocks, including the border.
+	 * @param level  The level of detail, 1 to {@link #MAX_LEVEL}.
+	 * @param dest   The padded array to fill, or null to allocate one. Its border
+	 *               is set to air.
+	 * @return The filled array.
+	 */
+	public static int[] downsample(int[] padded, int level, int[] dest) {
+		int size = ChunkMesher.PADDED;
+		if (dest == null) {
+			dest = new int[size * size * size];
+		}
+		Arrays.fill(dest, Blocks.AIR);
+
+		int factor = getFactor(level);
+		int[] candidates = new int[8];
+		int[] counts = new int[8];
+		for (int y = 0; y < Chunk.SIZE; y += factor) {
+			for (int z = 0; z < Chunk.SIZE; z += factor) {
+				for (int x = 0; x < Chunk.SIZE; x += factor) {
+					// Count the solid blocks of the cell by ID; cells rarely hold more than a few types
+					int distinct = 0;
+					for (int dy = 0; dy < factor; dy++) {
+						for (int dz = 0; dz < factor; dz++) {
+							int row = ChunkMesher.paddedIndex(x, y + dy, z + dz);
+							for (int dx = 0; dx < factor; dx++) {
+								int block = padded[row + dx];
+								if (block == Blocks.AIR) {
+									continue;
+								}
+								int c = 0;
+								while (c < distinct && candidates[c] != block) {
+									c++;
+								}
+								if (c == distinct) {
+									if (distinct == candidates.length) {
+										candidates = Arrays.copyOf(candidates, distinct * 2);
+										counts = Arrays.copyOf(counts, distinct * 2);
+									}
+									candidates[c] = block;
+									counts[c] = 0;
+									distinct++;
+								}
+								counts[c]++;
+							}
+						}
+					}
+					if (distinct == 0) {
+						continue;
+					}
+
+					int best = 0;
+					for (int c = 1; c < distinct; c++) {
+						if (counts[c] > counts[best]) {
+							best = c;
+						}
+					}
+					int block = candidates[best];
+					for (int dy = 0; dy < factor; dy++) {
+						for (int dz = 0; dz < factor; dz++) {
+							int row = ChunkMesher.paddedIndex(x, y + dy, z + dz);
+							Arrays.fill(dest, row, row + factor, block);
+						}
+					}
+				}
+			}
+		}
+		return dest;
+	}
+}
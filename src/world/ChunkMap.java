@@ -0,0 +1,141 @@
+package world;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash map from packed chunk coordinates (see {@link ChunkPos})
+ * to chunks.
+ * 
+ * Keys are primitive longs, so lookups do not box a key object the way a
+ * HashMap&lt;Long, Chunk&gt; would. Collisions are resolved by linear probing,
+ * and removal shifts later entries back so no tombstones are left behind.
+ */
+public class ChunkMap {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private Chunk[] values;
+	private int size;
+	private int mask;
+
+	public ChunkMap() {
+		this(64);
+	}
+
+	public ChunkMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR) - 1)) << 1;
+		keys = new long[capacity];
+		values = new Chunk[capacity];
+		mask = capacity - 1;
+	}
+
+	public Chunk get(long key) {
+		for (int i = slot(key);; i = (i + 1) & mask) {
+			Chunk value = values[i];
+			if (value == null || keys[i] == key) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Inserts or replaces the chunk stored under the given key.
+	 * 
+	 * @return The chunk previously stored under the key, or null.
+	 */
+	public Chunk put(long key, Chunk chunk) {
+		if (chunk == null) {
+			throw new IllegalArgumentException("Chunk must not be null");
+		}
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				Chunk previous = values[i];
+				values[i] = chunk;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = chunk;
+		if (++size > keys.length * LOAD_FACTOR) {
+			rehash(keys.length * 2);
+		}
+		return null;
+	}
+
+	public Chunk remove(long key) {
+		int i = slot(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				Chunk previous = values[i];
+				shiftBack(i);
+				size--;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void forEach(Consumer<Chunk> action) {
+		for (Chunk chunk : values) {
+			if (chunk != null) {
+				action.accept(chunk);
+			}
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	// Close the gap left at 'gap' by moving back entries whose probe chain passes through it
+	private void shiftBack(int gap) {
+		int i = gap;
+		while (true) {
+			i = (i + 1) & mask;
+			if (values[i] == null) {
+				break;
+			}
+			int home = slot(keys[i]);
+			// Move the entry if its home slot is not cyclically within (gap, i]
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		values[gap] = null;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Chunk[] oldValues = values;
+		keys = new long[capacity];
+		values = new Chunk[capacity];
+		mask = capacity - 1;
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] != null) {
+				int i = slot(oldKeys[j]);
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
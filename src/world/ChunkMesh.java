@@ -0,0 +1,155 @@
+package world;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import ToolBox.DirectBufferPool;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * CPU-side geometry for one chunk, laid out the way
+ * {@link renderEngine.Loader#loadToVAO(float[], int[], float[], float[], float[])}
+ * expects it.
+ * 
+ * Positions are in chunk-local space (0 to {@link Chunk#SIZE}), so the mesh is
+ * placed in the world by the chunk's transformation. Each vertex also carries
+ * the texture array layer of its block, so the whole chunk can be drawn with
+ * the block texture array bound once. Quads are ordered by block ID, and each
+ * run of indices sharing a block ID is described by a {@link Part} for
+ * renderers that bind one texture per block instead. The light of each
+ * vertex is a byte stored as a float, sky light in the high four bits and
+ * block light in the low four.
+ * 
+ * A mesher set to the packed format fills {@link #getPackedVertices()} with
+ * {@link PackedVertex} words instead, and leaves the float arrays empty.
+ * 
+ * A worker thread can {@link #stage()} the mesh into a direct buffer taken from
+ * the {@link DirectBufferPool}, so the render thread uploads it without
+ * copying. Whoever stages a mesh releases it again once it has been uploaded.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ChunkMesh {
+
+	// Floats of each staged vertex: position (3), texture coordinates (2), layer and light
+	public static final int STAGED_FLOATS = 7;
+
+	public static final ChunkMesh EMPTY = new ChunkMesh(new float[0], new float[0], new float[0], new float[0], null, new int[0], new Part[0], 0);
+
+	private final float[] positions;
+	private final float[] uvs;
+	// Block texture array layer of each vertex
+	private final float[] layers;
+	// Sky and block light of each vertex, see ChunkMesher
+	private final float[] lights;
+	// Two words per vertex in the packed format, or null
+	private final int[] packedVertices;
+	private final int[] indices;
+	private final Part[] parts;
+	private final long meshTimeNanos;
+
+	// Interleaved vertices followed by the indices, from stage() until releaseStaged()
+	private ByteBuffer staged;
+	private int stagedVertexBytes;
+
+	public boolean isEmpty() {
+		return indices.length == 0;
+	}
+
+	public int getTriangleCount() {
+		return indices.length / 3;
+	}
+
+	public int getVertexCount() {
+		return packedVertices != null ? packedVertices.length / PackedVertex.INTS_PER_VERTEX : positions.length / 3;
+	}
+
+	public boolean isPacked() {
+		return packedVertices != null;
+	}
+
+	/**
+	 * Returns the number of bytes the mesh occupies once uploaded, vertices
+	 * plus indices.
+	 */
+	public long getUploadBytes() {
+		long vertexBytes = packedVertices != null ? packedVertices.length * 4L
+				: (positions.length + uvs.length + layers.length + lights.length) * 4L;
+		return vertexBytes + indices.length * 4L;
+	}
+
+	/**
+	 * Copies the vertices, interleaved or packed, and then the indices into
+	 * one pooled direct buffer. Does nothing for an empty or staged mesh.
+	 */
+	public void stage() {
+		if (staged != null || isEmpty()) {
+			return;
+		}
+		int vertexCount = getVertexCount();
+		int vertexBytes = packedVertices != null ? packedVertices.length * 4 : vertexCount * STAGED_FLOATS * 4;
+		ByteBuffer buffer = DirectBufferPool.acquire(vertexBytes + indices.length * 4);
+		if (packedVertices != null) {
+			buffer.asIntBuffer().put(packedVertices);
+		} else {
+			FloatBuffer floats = buffer.asFloatBuffer();
+			for (int i = 0; i < vertexCount; i++) {
+				floats.put(positions[i * 3]).put(positions[i * 3 + 1]).put(positions[i * 3 + 2]);
+				floats.put(uvs[i * 2]).put(uvs[i * 2 + 1]);
+				floats.put(layers[i]).put(lights[i]);
+			}
+		}
+		buffer.position(vertexBytes);
+		buffer.asIntBuffer().put(indices);
+		buffer.position(0);
+		stagedVertexBytes = vertexBytes;
+		staged = buffer;
+	}
+
+	public boolean isStaged() {
+		return staged != null;
+	}
+
+	/**
+	 * Returns a view of the staged vertices.
+	 */
+	public ByteBuffer getStagedVertices() {
+		ByteBuffer vertices = staged.duplicate();
+		vertices.limit(stagedVertexBytes);
+		return vertices.slice().order(staged.order());
+	}
+
+	/**
+	 * Returns a view of the staged indices.
+	 */
+	public IntBuffer getStagedIndices() {
+		ByteBuffer indexBytes = staged.duplicate();
+		indexBytes.position(stagedVertexBytes);
+		return indexBytes.slice().order(staged.order()).asIntBuffer();
+	}
+
+	/**
+	 * Hands the staged buffer back to the pool. Views of it must not be used
+	 * afterwards.
+	 */
+	public void releaseStaged() {
+		if (staged != null) {
+			DirectBufferPool.release(staged);
+			staged = null;
+		}
+	}
+
+	/**
+	 * A contiguous range of the index array whose quads all use the same block.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class Part {
+		private final int blockID;
+		private final int firstIndex;
+		private final int indexCount;
+	}
+}
@@ -0,0 +1,209 @@
+package world;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import ToolBox.HandoffQueue;
+import lombok.Getter;
+
+/**
+ * Builds chunk meshes on worker threads and hands them to the render thread.
+ * 
+ * {@link #schedule(Chunk)} snapshots the chunk (with its border blocks and
+ * light) on the calling thread and queues the meshing work on the executor.
+ * Each worker {@link ChunkMesh#stage() stages} its mesh into a pooled direct
+ * buffer, so the render thread uploads it without another copy. Finished
+ * meshes are published to a bounded lock-free {@link HandoffQueue}, which the
+ * render thread empties through {@link #drainUploads(long)} within a
+ * per-frame time budget. The staged buffer goes back to the pool once the
+ * uploader returns, or when the mesh is dropped as stale.
+ * 
+ * Every scheduled job gets a unique revision. Scheduling the same chunk again
+ * or calling {@link #cancel(long)} makes older revisions stale, and stale work
+ * is dropped before meshing, before publishing and before uploading.
+ */
+public class ChunkMeshScheduler {
+
+	private static final int QUEUE_CAPACITY = 256;
+	private static final long QUEUE_FULL_BACKOFF_NANOS = 100_000;
+
+	private final World world;
+	private final MeshUploader uploader;
+	private final Executor executor;
+	private final ForkJoinPool ownedPool;
+
+	private final HandoffQueue<Result> finished = new HandoffQueue<Result>(QUEUE_CAPACITY);
+	private final ConcurrentHashMap<Long, Long> currentRevisions = new ConcurrentHashMap<Long, Long>();
+	private final AtomicLong nextRevision = new AtomicLong();
+
+	// Set before the first job is scheduled; each worker creates its mesher on first use
+	private volatile boolean packedVertices;
+	private final ThreadLocal<ChunkMesher> meshers = ThreadLocal.withInitial(() -> new ChunkMesher(packedVertices));
+
+	// Counters, for monitoring the pipeline
+	@Getter
+	private final AtomicLong scheduledCount = new AtomicLong();
+	@Getter
+	private final AtomicLong meshedCount = new AtomicLong();
+	@Getter
+	private final AtomicLong staleCount = new AtomicLong();
+	@Getter
+	private long uploadedCount;
+
+	/**
+	 * Creates a scheduler running on its own fork-join pool, leaving one core
+	 * free for the render thread.
+	 */
+	public ChunkMeshScheduler(World world, MeshUploader uploader) {
+		this(world, uploader, null, new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)));
+	}
+
+	/**
+	 * Creates a scheduler running its meshing jobs on the given executor.
+	 */
+	public ChunkMeshScheduler(World world, MeshUploader uploader, Executor executor) {
+		this(world, uploader, executor, null);
+	}
+
+	private ChunkMeshScheduler(World world, MeshUploader uploader, Executor executor, ForkJoinPool ownedPool) {
+		this.world = world;
+		this.uploader = uploader;
+		this.executor = executor != null ? executor : ownedPool;
+		this.ownedPool = ownedPool;
+	}
+
+	/**
+	 * Makes the workers produce meshes in the {@link PackedVertex} format. Must
+	 * be called before the first chunk is scheduled.
+	 */
+	public void setPackedVertices(boolean packedVertices) {
+		this.packedVertices = packedVertices;
+	}
+
+	/**
+	 * Queues the chunk for (re)meshing, superseding any job still pending for it.
+	 * Must be called from the thread that edits the world.
+	 */
+	public void schedule(Chunk chunk) {
+		schedule(chunk, 0);
+	}
+
+	/**
+	 * Queues the chunk for (re)meshing at the given level of detail, see
+	 * {@link ChunkLod}.
+	 */
+	public void schedule(Chunk chunk, final int lodLevel) {
+		final long key = chunk.getKey();
+		final long revision = nextRevision.incrementAndGet();
+		currentRevisions.put(key, revision);
+		scheduledCount.incrementAndGet();
+
+		final int[] blocks = chunk.isEmpty() ? null : ChunkMesher.capture(chunk, world, null);
+		final byte[] light = blocks == null ? null : ChunkMesher.captureLight(chunk, world, null);
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!isCurrent(key, revision)) {
+					staleCount.incrementAndGet();
+					return;
+				}
+				ChunkMesh mesh = blocks == null ? ChunkMesh.EMPTY : meshers.get().mesh(blocks, light, lodLevel);
+				mesh.stage();
+				meshedCount.incrementAndGet();
+				publish(new Result(key, revision, mesh));
+			}
+		});
+	}
+
+	/**
+	 * Cancels any pending work for the chunk, e.g. when it leaves view range.
+	 */
+	public void cancel(long chunkKey) {
+		currentRevisions.remove(chunkKey);
+	}
+
+	/**
+	 * Uploads finished meshes until the queue is empty or the time budget is
+	 * used up. At least one mesh is uploaded per call so the queue always makes
+	 * progress. Must be called from the render thread.
+	 * 
+	 * @param budgetNanos The time this frame may spend uploading.
+	 * @return The number of meshes uploaded.
+	 */
+	public int drainUploads(long budgetNanos) {
+		long deadline = System.nanoTime() + budgetNanos;
+		int uploaded = 0;
+		Result result;
+		while ((result = finished.poll()) != null) {
+			if (!currentRevisions.remove(result.chunkKey, result.revision)) {
+				// Superseded or cancelled while it was waiting in the queue
+				staleCount.incrementAndGet();
+				result.mesh.releaseStaged();
+				continue;
+			}
+			try {
+				uploader.upload(result.chunkKey, result.mesh);
+			} finally {
+				result.mesh.releaseStaged();
+			}
+			uploaded++;
+			uploadedCount++;
+			if (System.nanoTime() >= deadline) {
+				break;
+			}
+		}
+		return uploaded;
+	}
+
+	/**
+	 * Returns the number of chunks scheduled but not yet uploaded or cancelled.
+	 */
+	public int getPendingCount() {
+		return currentRevisions.size();
+	}
+
+	public int getQueuedCount() {
+		return finished.size();
+	}
+
+	/**
+	 * Stops the worker pool if the scheduler created it.
+	 */
+	public void shutdown() {
+		if (ownedPool != null) {
+			ownedPool.shutdownNow();
+		}
+	}
+
+	private boolean isCurrent(long key, long revision) {
+		Long current = currentRevisions.get(key);
+		return current != null && current == revision;
+	}
+
+	private void publish(Result result) {
+		// Back off while the render thread catches up, giving up if the job went stale meanwhile
+		while (!finished.offer(result)) {
+			if (!isCurrent(result.chunkKey, result.revision)) {
+				staleCount.incrementAndGet();
+				result.mesh.releaseStaged();
+				return;
+			}
+			LockSupport.parkNanos(QUEUE_FULL_BACKOFF_NANOS);
+		}
+	}
+
+	private static class Result {
+		final long chunkKey;
+		final long revision;
+		final ChunkMesh mesh;
+
+		Result(long chunkKey, long revision, ChunkMesh mesh) {
+			this.chunkKey = chunkKey;
+			this.revision = revision;
+			this.mesh = mesh;
+		}
+	}
+}
@@ -0,0 +1,410 @@
+package world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns the blocks of a chunk into a single merged mesh.
+ * 
+ * Faces touching an opaque neighbour (or a neighbour of the same block) are
+ * culled, and the remaining faces are merged greedily: within each slice of the
+ * chunk, runs of identical visible faces are grown first along one axis and
+ * then along the other into the largest rectangles possible.
+ * 
+ * The mesher keeps its scratch buffers between calls and is therefore not
+ * thread-safe; use one instance per thread.
+ * 
+ * Vertices are written either as separate float arrays or, for a mesher
+ * created with packed vertices, in the 8-byte {@link PackedVertex} format.
+ * 
+ * Each face is lit by the block and sky light of the block in front of it,
+ * captured with {@link #captureLight(Chunk, World, byte[])}. Only faces with
+ * the same light are merged, and every vertex of a quad carries its light as
+ * one byte, sky light in the high four bits and block light in the low four.
+ */
+public class ChunkMesher {
+
+	static final int PADDED = Chunk.SIZE + 2;
+
+	// Strides of the padded block array along x, y and z
+	private static final int[] STRIDES = { 1, PADDED * PADDED, PADDED };
+
+	// Triangle orders for faces pointing along the positive and negative axis
+	private static final int[] POSITIVE_WINDING = { 0, 1, 2, 0, 2, 3 };
+	private static final int[] NEGATIVE_WINDING = { 0, 2, 1, 0, 3, 2 };
+
+	// Light of faces when none was captured: full sky light, no block light
+	static final int FULL_LIGHT = LightEngine.MAX_LIGHT << 4;
+	// Position of the face light above the block ID in the mask
+	private static final int LIGHT_SHIFT = 20;
+	private static final int QUAD_INTS = 8;
+
+	// Scratch copy of the chunk with a one block border taken from its neighbours
+	private final int[] padded = new int[PADDED * PADDED * PADDED];
+	private final byte[] paddedLight = new byte[PADDED * PADDED * PADDED];
+	private final int[] mask = new int[Chunk.SIZE * Chunk.SIZE];
+	private int[] lodBlocks;
+
+	// Quads found by the greedy pass: blockID, direction, plane, u, v, width, height, light
+	private int[] quads = new int[QUAD_INTS * 256];
+	private int quadCount;
+
+	private final boolean packedVertices;
+
+	public ChunkMesher() {
+		this(false);
+	}
+
+	public ChunkMesher(boolean packedVertices) {
+		this.packedVertices = packedVertices;
+	}
+
+	/**
+	 * Builds the mesh for the given chunk.
+	 * 
+	 * @param chunk The chunk to mesh.
+	 * @param world The world used to look up blocks across the chunk borders, or
+	 *              null to treat everything outside the chunk as air.
+	 * @return The merged mesh, or {@link ChunkMesh#EMPTY} if no face is visible.
+	 */
+	public ChunkMesh mesh(Chunk chunk, World world) {
+		if (chunk.isEmpty()) {
+			return ChunkMesh.EMPTY;
+		}
+		return mesh(capture(chunk, world, padded), captureLight(chunk, world, paddedLight));
+	}
+
+	/**
+	 * Builds a fully lit mesh from blocks previously copied with
+	 * {@link #capture(Chunk, World, int[])}. Because the copy is private to the
+	 * caller, this can run on a worker thread while the chunk is being edited.
+	 */
+	public ChunkMesh mesh(int[] blocks) {
+		return mesh(blocks, (byte[]) null);
+	}
+
+	/**
+	 * Builds a mesh from blocks and light previously copied with
+	 * {@link #capture(Chunk, World, int[])} and
+	 * {@link #captureLight(Chunk, World, byte[])}.
+	 * 
+	 * @param light The captured light, or null to light every face fully.
+	 */
+	public ChunkMesh mesh(int[] blocks, byte[] light) {
+		long start = System.nanoTime();
+
+		quadCount = 0;
+		for (int direction = 0; direction < 6; direction++) {
+			findQuads(blocks, light, direction);
+		}
+		if (quadCount == 0) {
+			return ChunkMesh.EMPTY;
+		}
+
+		return buildMesh(start);
+	}
+
+	/**
+	 * Builds a coarser mesh for distant chunks from blocks captured with
+	 * {@link #capture(Chunk, World, int[])}, see {@link ChunkLod}.
+	 * 
+	 * @param lodLevel 0 for full detail, up to {@link ChunkLod#MAX_LEVEL}.
+	 */
+	public ChunkMesh mesh(int[] blocks, int lodLevel) {
+		return mesh(blocks, null, lodLevel);
+	}
+
+	/**
+	 * Same as {@link #mesh(int[], int)} with captured light. The light is only
+	 * used at full detail; coarser levels are drawn fully lit, as the light of
+	 * the downsampled blocks would not match the original ones.
+	 */
+	public ChunkMesh mesh(int[] blocks, byte[] light, int lodLevel) {
+		if (lodLevel == 0) {
+			return mesh(blocks, light);
+		}
+		lodBlocks = ChunkLod.downsample(blocks, lodLevel, lodBlocks);
+		return mesh(lodBlocks);
+	}
+
+	/**
+	 * Copies the blocks of a chunk, plus a one block border taken from its six
+	 * neighbours, into a padded array suitable for {@link #mesh(int[])}.
+	 * 
+	 * @param dest The array to fill, or null to allocate a new one.
+	 * @return The filled array.
+	 */
+	public static int[] capture(Chunk chunk, World world, int[] dest) {
+		int[] padded = dest != null ? dest : new int[PADDED * PADDED * PADDED];
+		Arrays.fill(padded, Blocks.AIR);
+		for (int y = 0; y < Chunk.SIZE; y++) {
+			for (int z = 0; z < Chunk.SIZE; z++) {
+				int row = paddedIndex(0, y, z);
+				for (int x = 0; x < Chunk.SIZE; x++) {
+					padded[row + x] = chunk.getBlock(x, y, z);
+				}
+			}
+		}
+		if (world == null) {
+			return padded;
+		}
+
+		// Only the six face neighbours matter for face culling
+		int cx = chunk.getChunkX(), cy = chunk.getChunkY(), cz = chunk.getChunkZ();
+		copyBorder(padded, world.getChunk(cx - 1, cy, cz), 0, -1, Chunk.SIZE - 1);
+		copyBorder(padded, world.getChunk(cx + 1, cy, cz), 0, Chunk.SIZE, 0);
+		copyBorder(padded, world.getChunk(cx, cy - 1, cz), 1, -1, Chunk.SIZE - 1);
+		copyBorder(padded, world.getChunk(cx, cy + 1, cz), 1, Chunk.SIZE, 0);
+		copyBorder(padded, world.getChunk(cx, cy, cz - 1), 2, -1, Chunk.SIZE - 1);
+		copyBorder(padded, world.getChunk(cx, cy, cz + 1), 2, Chunk.SIZE, 0);
+		return padded;
+	}
+
+	/**
+	 * Copies the light of a chunk, plus the light of the blocks of its six
+	 * neighbours touching it, into a padded array suitable for
+	 * {@link #mesh(int[], byte[])}. Blocks in missing or unlit neighbours count
+	 * as fully sky lit.
+	 * 
+	 * @param dest The array to fill, or null to allocate a new one.
+	 * @return The filled array, or null if the chunk has not been lit.
+	 */
+	public static byte[] captureLight(Chunk chunk, World world, byte[] dest) {
+		if (!chunk.isLit()) {
+			return null;
+		}
+		byte[] padded = dest != null ? dest : new byte[PADDED * PADDED * PADDED];
+		Arrays.fill(padded, (byte) FULL_LIGHT);
+		NibbleArray blockLight = chunk.getBlockLight(), skyLight = chunk.getSkyLight();
+		for (int y = 0; y < Chunk.SIZE; y++) {
+			for (int z = 0; z < Chunk.SIZE; z++) {
+				int row = paddedIndex(0, y, z);
+				int index = Chunk.index(0, y, z);
+				for (int x = 0; x < Chunk.SIZE; x++) {
+					padded[row + x] = (byte) ((skyLight.get(index + x) << 4) | blockLight.get(index + x));
+				}
+			}
+		}
+		if (world == null) {
+			return padded;
+		}
+
+		int cx = chunk.getChunkX(), cy = chunk.getChunkY(), cz = chunk.getChunkZ();
+		copyLightBorder(padded, world.getChunk(cx - 1, cy, cz), 0, -1, Chunk.SIZE - 1);
+		copyLightBorder(padded, world.getChunk(cx + 1, cy, cz), 0, Chunk.SIZE, 0);
+		copyLightBorder(padded, world.getChunk(cx, cy - 1, cz), 1, -1, Chunk.SIZE - 1);
+		copyLightBorder(padded, world.getChunk(cx, cy + 1, cz), 1, Chunk.SIZE, 0);
+		copyLightBorder(padded, world.getChunk(cx, cy, cz - 1), 2, -1, Chunk.SIZE - 1);
+		copyLightBorder(padded, world.getChunk(cx, cy, cz + 1), 2, Chunk.SIZE, 0);
+		return padded;
+	}
+
+	private static void copyLightBorder(byte[] padded, Chunk neighbour, int axis, int target, int source) {
+		if (neighbour == null || !neighbour.isLit()) {
+			return;
+		}
+		NibbleArray blockLight = neighbour.getBlockLight(), skyLight = neighbour.getSkyLight();
+		int[] pos = new int[3];
+		int[] src = new int[3];
+		int u = (axis + 1) % 3, v = (axis + 2) % 3;
+		for (int j = 0; j < Chunk.SIZE; j++) {
+			for (int i = 0; i < Chunk.SIZE; i++) {
+				pos[axis] = target;
+				pos[u] = i;
+				pos[v] = j;
+				src[axis] = source;
+				src[u] = i;
+				src[v] = j;
+				int index = Chunk.index(src[0], src[1], src[2]);
+				padded[paddedIndex(pos[0], pos[1], pos[2])] = (byte) ((skyLight.get(index) << 4) | blockLight.get(index));
+			}
+		}
+	}
+
+	private static void copyBorder(int[] padded, Chunk neighbour, int axis, int target, int source) {
+		if (neighbour == null || neighbour.isEmpty()) {
+			return;
+		}
+		int[] pos = new int[3];
+		int[] src = new int[3];
+		int u = (axis + 1) % 3, v = (axis + 2) % 3;
+		for (int j = 0; j < Chunk.SIZE; j++) {
+			for (int i = 0; i < Chunk.SIZE; i++) {
+				pos[axis] = target;
+				pos[u] = i;
+				pos[v] = j;
+				src[axis] = source;
+				src[u] = i;
+				src[v] = j;
+				padded[paddedIndex(pos[0], pos[1], pos[2])] = neighbour.getBlock(src[0], src[1], src[2]);
+			}
+		}
+	}
+
+	// Direction: 0 = -X, 1 = +X, 2 = -Y, 3 = +Y, 4 = -Z, 5 = +Z
+	private void findQuads(int[] padded, byte[] light, int direction) {
+		int axis = direction >> 1;
+		boolean positive = (direction & 1) == 1;
+		int u = (axis + 1) % 3, v = (axis + 2) % 3;
+		int axisStride = STRIDES[axis], uStride = STRIDES[u], vStride = STRIDES[v];
+		int neighbourOffset = positive ? axisStride : -axisStride;
+		int origin = paddedIndex(0, 0, 0);
+
+		for (int slice = 0; slice < Chunk.SIZE; slice++) {
+			// Build the mask of visible faces in this slice
+			boolean any = false;
+			for (int j = 0; j < Chunk.SIZE; j++) {
+				int index = origin + slice * axisStride + j * vStride;
+				for (int i = 0; i < Chunk.SIZE; i++, index += uStride) {
+					int block = padded[index];
+					int neighbour = padded[index + neighbourOffset];
+					boolean visible = block != Blocks.AIR && neighbour != block && !Blocks.isOpaque(neighbour);
+					// Faces are lit by the block they face, and only merge with faces of the same light
+					int faceLight = light != null ? light[index + neighbourOffset] & 0xFF : FULL_LIGHT;
+					mask[j * Chunk.SIZE + i] = visible ? block | (faceLight << LIGHT_SHIFT) : Blocks.AIR;
+					any |= visible;
+				}
+			}
+			if (!any) {
+				continue;
+			}
+
+			// Greedily merge the mask into rectangles
+			int plane = positive ? slice + 1 : slice;
+			for (int j = 0; j < Chunk.SIZE; j++) {
+				for (int i = 0; i < Chunk.SIZE;) {
+					int face = mask[j * Chunk.SIZE + i];
+					if (face == Blocks.AIR) {
+						i++;
+						continue;
+					}
+
+					int width = 1;
+					while (i + width < Chunk.SIZE && mask[j * Chunk.SIZE + i + width] == face) {
+						width++;
+					}
+
+					int height = 1;
+					grow: while (j + height < Chunk.SIZE) {
+						int row = (j + height) * Chunk.SIZE + i;
+						for (int k = 0; k < width; k++) {
+							if (mask[row + k] != face) {
+								break grow;
+							}
+						}
+						height++;
+					}
+
+					for (int h = 0; h < height; h++) {
+						Arrays.fill(mask, (j + h) * Chunk.SIZE + i, (j + h) * Chunk.SIZE + i + width, Blocks.AIR);
+					}
+					addQuad(face & ((1 << LIGHT_SHIFT) - 1), direction, plane, i, j, width, height, face >>> LIGHT_SHIFT);
+					i += width;
+				}
+			}
+		}
+	}
+
+	private void addQuad(int block, int direction, int plane, int i, int j, int width, int height, int light) {
+		if ((quadCount + 1) * QUAD_INTS > quads.length) {
+			quads = Arrays.copyOf(quads, quads.length * 2);
+		}
+		int q = quadCount++ * QUAD_INTS;
+		quads[q] = block;
+		quads[q + 1] = direction;
+		quads[q + 2] = plane;
+		quads[q + 3] = i;
+		quads[q + 4] = j;
+		quads[q + 5] = width;
+		quads[q + 6] = height;
+		quads[q + 7] = light;
+	}
+
+	private ChunkMesh buildMesh(long startNanos) {
+		// Order quads by block ID so each block type occupies one index range
+		long[] order = new long[quadCount];
+		for (int q = 0; q < quadCount; q++) {
+			order[q] = ((long) quads[q * QUAD_INTS] << 32) | q;
+		}
+		Arrays.sort(order);
+
+		int floatVertices = packedVertices ? 0 : quadCount * 4;
+		float[] positions = new float[floatVertices * 3];
+		float[] uvs = new float[floatVertices * 2];
+		float[] layers = new float[floatVertices];
+		float[] lights = new float[floatVertices];
+		int[] packed = packedVertices ? new int[quadCount * 4 * PackedVertex.INTS_PER_VERTEX] : null;
+		int[] indices = new int[quadCount * 6];
+		List<ChunkMesh.Part> parts = new ArrayList<ChunkMesh.Part>();
+
+		int[] corner = new int[3];
+		int partStart = 0;
+		for (int n = 0; n < quadCount; n++) {
+			int q = (int) order[n] * QUAD_INTS;
+			int block = quads[q], direction = quads[q + 1], plane = quads[q + 2];
+			int i = quads[q + 3], j = quads[q + 4], width = quads[q + 5], height = quads[q + 6];
+			int light = quads[q + 7];
+			int axis = direction >> 1;
+			int u = (axis + 1) % 3, v = (axis + 2) % 3;
+			int layer = Blocks.getTextureLayer(block);
+
+			// Corners are counter-clockwise when seen from the positive side of the axis
+			for (int c = 0; c < 4; c++) {
+				corner[axis] = plane;
+				corner[u] = (c == 1 || c == 2) ? i + width : i;
+				corner[v] = (c >= 2) ? j + height : j;
+
+				// Texture coordinates are in block units so the texture repeats once per block
+				int texU, texV;
+				switch (axis) {
+				case 0:
+					texU = corner[2];
+					texV = Chunk.SIZE - corner[1];
+					break;
+				case 1:
+					texU = corner[0];
+					texV = corner[2];
+					break;
+				default:
+					texU = corner[0];
+					texV = Chunk.SIZE - corner[1];
+					break;
+				}
+
+				int vertex = n * 4 + c;
+				if (packed != null) {
+					packed[vertex * 2] = PackedVertex.packPosition(corner[0], corner[1], corner[2], direction, layer);
+					packed[vertex * 2 + 1] = PackedVertex.packTexture(texU, texV, light);
+					continue;
+				}
+				positions[vertex * 3] = corner[0];
+				positions[vertex * 3 + 1] = corner[1];
+				positions[vertex * 3 + 2] = corner[2];
+				uvs[vertex * 2] = texU;
+				uvs[vertex * 2 + 1] = texV;
+				layers[vertex] = layer;
+				lights[vertex] = light;
+			}
+
+			int base = n * 4;
+			int[] winding = (direction & 1) == 1 ? POSITIVE_WINDING : NEGATIVE_WINDING;
+			for (int k = 0; k < 6; k++) {
+				indices[n * 6 + k] = base + winding[k];
+			}
+
+			boolean lastOfPart = n == quadCount - 1 || (int) (order[n + 1] >>> 32) != block;
+			if (lastOfPart) {
+				parts.add(new ChunkMesh.Part(block, partStart * 6, (n + 1 - partStart) * 6));
+				partStart = n + 1;
+			}
+		}
+
+		return new ChunkMesh(positions, uvs, layers, lights, packed, indices, parts.toArray(new ChunkMesh.Part[0]),
+				System.nanoTime() - startNanos);
+	}
+
+	static int paddedIndex(int x, int y, int z) {
+		return ((y + 1) * PADDED + (z + 1)) * PADDED + (x + 1);
+	}
+}
@@ -0,0 +1,32 @@
+package world;
+
+/**
+ * Packs chunk coordinates into a single long so they can be used as map keys
+ * without allocating a key object per lookup.
+ * 
+ * Each axis gets 21 signed bits, which covers +/- one million chunks.
+ */
+public final class ChunkPos {
+
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1;
+
+	private ChunkPos() {
+	}
+
+	public static long pack(int cx, int cy, int cz) {
+		return ((cx & MASK) << (BITS * 2)) | ((cy & MASK) << BITS) | (cz & MASK);
+	}
+
+	public static int unpackX(long key) {
+		return (int) (key << (64 - BITS * 3) >> (64 - BITS));
+	}
+
+	public static int unpackY(long key) {
+		return (int) (key << (64 - BITS * 2) >> (64 - BITS));
+	}
+
+	public static int unpackZ(long key) {
+		return (int) (key << (64 - BITS) >> (64 - BITS));
+	}
+}
@@ -0,0 +1,622 @@
+package world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+import ToolBox.Clock;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Keeps the chunks around the camera loaded and unloads the rest.
+ *
+ * Every chunk within the load radius of the camera is wanted. Missing chunks
+ * are read from the {@link WorldStorage} or, if they were never saved,
+ * generated, on the executor; chunks closer to the camera and in front of it
+ * go first. Finished chunks are added to the world and queued for meshing on
+ * the next {@link #update}, after being lit if a {@link LightEngine} is set.
+ * Chunks do not keep their light in storage, so every loaded chunk is lit
+ * again; large batches, such as the first frames after a teleport, are split
+ * across the light pool if one is set. With a {@link LodSelector} set, new
+ * chunks are meshed at the level of detail it picks for their distance, and
+ * loaded chunks whose level changes are re-meshed whenever the camera enters
+ * another chunk.
+ *
+ * Loaded chunks are kept in least-recently-used order, where a chunk is used
+ * whenever a scan finds it inside the load radius; within one scan, nearer
+ * chunks count as used later. Chunks further away than the load
+ * radius plus the unload margin are always evicted, so a camera moving back
+ * and forth across the boundary does not reload the same chunks. While the
+ * estimated heap or GPU usage is over budget, chunks outside the load radius
+ * are evicted oldest first, and if that is not enough no further loads are
+ * started until memory is freed. Evicted chunks are saved before they leave,
+ * and the LOD selector, edit tracker and chunk listener are told to forget
+ * them. A load that fails is counted and retried after a delay that doubles
+ * with every failure, for as long as the chunk stays within the load radius.
+ *
+ * Lighting and edits grow chunks after they load, so the heap estimate of
+ * every loaded chunk is refreshed once per update, before the budget is
+ * checked. A chunk that an edit created in the world while its load was in
+ * flight keeps the edited blocks; the loaded blocks only fill in its air.
+ *
+ * Everything except the load jobs runs on the thread calling {@link #update},
+ * which must be the thread that owns the world. Time comes from a
+ * {@link Clock}, so a scripted camera path can be replayed headless with a
+ * {@link ToolBox.ManualClock} and a direct executor.
+ */
+public class ChunkStreamer {
+
+	// Rescan the wanted set once the view has turned by more than about 30 degrees
+	private static final float RESCAN_VIEW_DOT = 0.866f;
+	// Chunks straight behind the camera are treated as this many times further away
+	private static final float BEHIND_PENALTY = 2;
+	// Smaller batches are lit on the calling thread, where splitting them into regions costs more than it saves
+	private static final int PARALLEL_LIGHT_CHUNKS = 16;
+	// Delay before the first retry of a failed load, doubled for each further failure up to the maximum
+	private static final long RETRY_DELAY_NANOS = 250000000L;
+	private static final long MAX_RETRY_DELAY_NANOS = 8000000000L;
+
+	private final World world;
+	private final WorldStorage storage;
+	private final TerrainGenerator generator;
+	private final Executor executor;
+	private final Clock clock;
+
+	@Setter
+	private ChunkMeshScheduler meshScheduler;
+	// Lights the chunks that arrive in a frame before they are meshed
+	@Setter
+	private LightEngine lightEngine;
+	// Splits the lighting of large batches into regions, or null to light everything on the calling thread
+	@Setter
+	private ForkJoinPool lightPool;
+	// Picks the level of detail chunks are meshed at, or null to mesh everything at full detail
+	@Setter
+	private LodSelector lodSelector;
+	// Per-chunk state elsewhere that has to follow loads and evictions
+	@Setter
+	private ChunkEditTracker editTracker;
+	@Setter
+	private ChunkListener chunkListener;
+	private MeshUploader meshUploader;
+
+	// Load radius and hysteresis margin in chunks
+	@Getter
+	@Setter
+	private int loadRadius = 8;
+	@Getter
+	@Setter
+	private int unloadMargin = 2;
+	@Getter
+	@Setter
+	private long maxHeapBytes = 256L << 20;
+	@Getter
+	@Setter
+	private long maxGpuBytes = 256L << 20;
+	@Getter
+	@Setter
+	private int maxInFlight = 64;
+
+	// Loaded chunks in least-recently-used order; insertion ordered, so only touch() reorders
+	private final LinkedHashMap<Long, Entry> loaded = new LinkedHashMap<Long, Entry>(1024);
+	private final Set<Long> inFlight = new HashSet<Long>();
+	private final ConcurrentLinkedQueue<LoadResult> finished = new ConcurrentLinkedQueue<LoadResult>();
+	// Chunks whose last load failed, in order of failure
+	private final LinkedHashMap<Long, Retry> retries = new LinkedHashMap<Long, Retry>();
+
+	// Wanted chunks that are not loaded, sorted by priority, and the next one to start
+	private long[] wanted = new long[0];
+	private int wantedCount;
+	private int nextWanted;
+
+	private boolean scanned;
+	private int scanChunkX, scanChunkY, scanChunkZ;
+	private float scanDirX, scanDirY, scanDirZ;
+	private float cameraChunkX, cameraChunkY, cameraChunkZ;
+	private float cameraX, cameraY, cameraZ;
+	private final Vector3f cameraDirection = new Vector3f();
+
+	// Metrics
+	@Getter
+	private long heapBytes;
+	@Getter
+	private long gpuBytes;
+	@Getter
+	private long chunksRead;
+	@Getter
+	private long chunksGenerated;
+	@Getter
+	private long chunksEvicted;
+	@Getter
+	private long budgetEvictions;
+	@Getter
+	private long discardedLoads;
+	@Getter
+	private long failedLoads;
+	@Getter
+	private long budgetStalls;
+	@Getter
+	private long totalLoadNanos;
+	@Getter
+	private long maxLoadNanos;
+
+	/**
+	 * @param storage   Where chunks are loaded from and saved to, or null to
+	 *                  always generate and never save.
+	 * @param generator Fills chunks that were never saved.
+	 * @param executor  Runs the load and generate jobs.
+	 */
+	public ChunkStreamer(World world, WorldStorage storage, TerrainGenerator generator, Executor executor,
+			Clock clock) {
+		this.world = world;
+		this.storage = storage;
+		this.generator = generator;
+		this.executor = executor;
+		this.clock = clock;
+	}
+
+	/**
+	 * Wraps the uploader the mesh scheduler hands its meshes to, so the
+	 * streamer can account for GPU memory and release the meshes of evicted
+	 * chunks. Pass the result to the {@link ChunkMeshScheduler}, whose uploads
+	 * must be drained on the thread calling {@link #update}.
+	 */
+	public MeshUploader trackUploads(final MeshUploader delegate) {
+		meshUploader = delegate;
+		return new MeshUploader() {
+			@Override
+			public void upload(long chunkKey, ChunkMesh mesh) {
+				Entry entry = loaded.get(chunkKey);
+				if (entry == null) {
+					// Evicted while the mesh was on its way
+					delegate.upload(chunkKey, ChunkMesh.EMPTY);
+					return;
+				}
+				gpuBytes += mesh.getUploadBytes() - entry.gpuBytes;
+				entry.gpuBytes = mesh.getUploadBytes();
+				delegate.upload(chunkKey, mesh);
+			}
+		};
+	}
+
+	public void update(Camera camera) {
+		Vector3f position = camera.getPosition();
+		Vector3f direction = camera.getDirection(cameraDirection);
+		update(position.x, position.y, position.z, direction.x, direction.y, direction.z);
+	}
+
+	/**
+	 * Adds the chunks that finished loading, evicts chunks that are out of
+	 * range or over budget and starts loading the most important missing
+	 * chunks.
+	 *
+	 * @param x    The camera position in blocks.
+	 * @param dirX The direction the camera looks in, normalised.
+	 */
+	public void update(float x, float y, float z, float dirX, float dirY, float dirZ) {
+		cameraX = x;
+		cameraY = y;
+		cameraZ = z;
+		cameraChunkX = x / Chunk.SIZE - 0.5f;
+		cameraChunkY = y / Chunk.SIZE - 0.5f;
+		cameraChunkZ = z / Chunk.SIZE - 0.5f;
+		int cx = (int) Math.floor(x) >> Chunk.SHIFT;
+		int cy = (int) Math.floor(y) >> Chunk.SHIFT;
+		int cz = (int) Math.floor(z) >> Chunk.SHIFT;
+
+		boolean moved = !scanned || cx != scanChunkX || cy != scanChunkY || cz != scanChunkZ;
+		boolean turned = dirX * scanDirX + dirY * scanDirY + dirZ * scanDirZ < RESCAN_VIEW_DOT;
+		if (moved || turned) {
+			scanned = true;
+			scanChunkX = cx;
+			scanChunkY = cy;
+			scanChunkZ = cz;
+			scanDirX = dirX;
+			scanDirY = dirY;
+			scanDirZ = dirZ;
+		}
+
+		integrateFinished();
+		remeasureHeap();
+		if (moved || turned) {
+			scan();
+			evict(true);
+		} else if (overBudget()) {
+			evict(false);
+		}
+		if (moved && lodSelector != null && meshScheduler != null) {
+			lodSelector.update(world, x, y, z, meshScheduler);
+		}
+
+		startLoads();
+	}
+
+	public int getLoadedCount() {
+		return loaded.size();
+	}
+
+	/**
+	 * Returns the number of wanted chunks whose load has not started yet.
+	 */
+	public int getQueueDepth() {
+		return wantedCount - nextWanted;
+	}
+
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	public boolean isLoaded(long chunkKey) {
+		return loaded.containsKey(chunkKey);
+	}
+
+	public float getAverageLoadMillis() {
+		long loads = chunksRead + chunksGenerated;
+		return loads == 0 ? 0 : totalLoadNanos / 1e6f / loads;
+	}
+
+	/**
+	 * Saves every loaded chunk and forgets them all, e.g. when leaving the world.
+	 */
+	public void unloadAll() {
+		Iterator<Entry> it = loaded.values().iterator();
+		while (it.hasNext()) {
+			unload(it.next());
+			it.remove();
+		}
+		retries.clear();
+		wantedCount = 0;
+		nextWanted = 0;
+		scanned = false;
+	}
+
+	private void integrateFinished() {
+		List<Chunk> added = new ArrayList<Chunk>();
+		LoadResult result;
+		while ((result = finished.poll()) != null) {
+			long key = result.key;
+			inFlight.remove(key);
+			Chunk chunk = result.chunk;
+			if (chunk == null) {
+				failedLoads++;
+				scheduleRetry(key);
+				continue;
+			}
+			retries.remove(key);
+			long latency = clock.nanoTime() - result.requestTime;
+			totalLoadNanos += latency;
+			maxLoadNanos = Math.max(maxLoadNanos, latency);
+			if (result.generated) {
+				chunksGenerated++;
+			} else {
+				chunksRead++;
+			}
+
+			// The camera may have moved on while the chunk was loading
+			if (!isWithin(chunk.getChunkX(), chunk.getChunkY(), chunk.getChunkZ(), loadRadius + unloadMargin)) {
+				discardedLoads++;
+				continue;
+			}
+
+			Chunk edited = world.getChunks().get(key);
+			if (edited != null) {
+				// An edit created the chunk while it was loading; keep its blocks rather than losing them
+				fillAir(edited, chunk);
+				chunk = edited;
+			}
+			Entry entry = new Entry(chunk, chunk.estimateBytes());
+			loaded.put(key, entry);
+			heapBytes += entry.heapBytes;
+			// Empty chunks are remembered as loaded but kept out of the world
+			if (!chunk.isEmpty()) {
+				if (edited == null) {
+					world.getChunks().put(key, chunk);
+				}
+				added.add(chunk);
+				if (chunkListener != null) {
+					chunkListener.chunkLoaded(key);
+				}
+			}
+		}
+
+		if (lightEngine != null) {
+			lightEngine.lightChunks(added, added.size() >= PARALLEL_LIGHT_CHUNKS ? lightPool : null);
+		}
+		if (meshScheduler != null) {
+			for (Chunk chunk : added) {
+				int level = 0;
+				if (lodSelector != null) {
+					lodSelector.update(chunk, cameraX, cameraY, cameraZ);
+					level = lodSelector.getLevel(chunk.getKey());
+				}
+				meshScheduler.schedule(chunk, level);
+			}
+		}
+	}
+
+	// Collects the wanted chunks that are not loaded yet, ordered by priority, and marks the loaded ones as used
+	private void scan() {
+		int radius = loadRadius;
+		int side = radius * 2 + 1;
+		if (wanted.length < side * side * side) {
+			wanted = new long[side * side * side];
+		}
+		long[] candidates = new long[side * side * side];
+		float[] priorities = new float[candidates.length];
+		int count = 0;
+		// Loaded chunks in range, to be marked as used
+		long[] usedKeys = new long[candidates.length];
+		long[] usedOrder = new long[candidates.length];
+		int usedCount = 0;
+
+		for (int y = -radius; y <= radius; y++) {
+			for (int z = -radius; z <= radius; z++) {
+				for (int x = -radius; x <= radius; x++) {
+					int cx = scanChunkX + x, cy = scanChunkY + y, cz = scanChunkZ + z;
+					if (!isWithin(cx, cy, cz, radius)) {
+						continue;
+					}
+					long key = ChunkPos.pack(cx, cy, cz);
+					if (loaded.containsKey(key)) {
+						usedOrder[usedCount] = ((long) Float.floatToIntBits(priority(cx, cy, cz)) << 32) | usedCount;
+						usedKeys[usedCount++] = key;
+						continue;
+					}
+					// Failed loads are restarted by startRetries once their delay has passed
+					if (inFlight.contains(key) || retries.containsKey(key)) {
+						continue;
+					}
+					candidates[count] = key;
+					priorities[count] = priority(cx, cy, cz);
+					count++;
+				}
+			}
+		}
+
+		// Sort by priority, which is never negative, so its float bits order like ints
+		for (int i = 0; i < count; i++) {
+			wanted[i] = ((long) Float.floatToIntBits(priorities[i]) << 32) | i;
+		}
+		Arrays.sort(wanted, 0, count);
+		for (int i = 0; i < count; i++) {
+			wanted[i] = candidates[(int) wanted[i]];
+		}
+		wantedCount = count;
+		nextWanted = 0;
+
+		// Touch the furthest first, so the nearest end up most recently used
+		Arrays.sort(usedOrder, 0, usedCount);
+		for (int i = usedCount - 1; i >= 0; i--) {
+			touch(usedKeys[(int) usedOrder[i]]);
+		}
+	}
+
+	private void touch(long key) {
+		loaded.put(key, loaded.remove(key));
+	}
+
+	// Distance in chunks, stretched for chunks that are to the side of or behind the camera
+	private float priority(int cx, int cy, int cz) {
+		float dx = cx - cameraChunkX, dy = cy - cameraChunkY, dz = cz - cameraChunkZ;
+		float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (distance < 1) {
+			return distance;
+		}
+		float facing = (dx * scanDirX + dy * scanDirY + dz * scanDirZ) / distance;
+		return distance * (1 + (BEHIND_PENALTY - 1) * (1 - facing) / 2);
+	}
+
+	/**
+	 * Evicts chunks in least-recently-used order.
+	 *
+	 * @param outOfRange Whether to look for chunks past the unload radius, which
+	 *                   only changes when the camera moves to another chunk.
+	 */
+	private void evict(boolean outOfRange) {
+		int unloadRadius = loadRadius + unloadMargin;
+		Iterator<Entry> it = loaded.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			Chunk chunk = entry.chunk;
+			int cx = chunk.getChunkX(), cy = chunk.getChunkY(), cz = chunk.getChunkZ();
+			if (isWithin(cx, cy, cz, unloadRadius)) {
+				if (!overBudget()) {
+					// Everything further on was used more recently and is in range
+					if (!outOfRange) {
+						break;
+					}
+					continue;
+				}
+				if (isWithin(cx, cy, cz, loadRadius)) {
+					continue;
+				}
+				budgetEvictions++;
+			}
+			unload(entry);
+			it.remove();
+		}
+	}
+
+	private void unload(Entry entry) {
+		long key = entry.chunk.getKey();
+		heapBytes -= entry.heapBytes;
+		gpuBytes -= entry.gpuBytes;
+		chunksEvicted++;
+		// Save whatever the world holds, which may be a chunk created by an edit to an empty one
+		Chunk current = world.getChunks().remove(key);
+		if (current != null && storage != null) {
+			storage.saveChunk(current);
+		}
+		if (meshScheduler != null) {
+			meshScheduler.cancel(key);
+		}
+		if (meshUploader != null && entry.gpuBytes > 0) {
+			meshUploader.upload(key, ChunkMesh.EMPTY);
+		}
+		if (lodSelector != null) {
+			lodSelector.forget(key);
+		}
+		if (editTracker != null) {
+			editTracker.forget(key);
+		}
+		if (chunkListener != null) {
+			chunkListener.chunkUnloaded(key);
+		}
+	}
+
+	// Copies the loaded blocks into the air of a chunk an edit created
+	private static void fillAir(Chunk edited, Chunk loaded) {
+		for (int y = 0; y < Chunk.SIZE; y++) {
+			for (int z = 0; z < Chunk.SIZE; z++) {
+				for (int x = 0; x < Chunk.SIZE; x++) {
+					int block = loaded.getBlock(x, y, z);
+					if (block != Blocks.AIR && edited.getBlock(x, y, z) == Blocks.AIR) {
+						edited.setBlock(x, y, z, block);
+					}
+				}
+			}
+		}
+	}
+
+	// Estimates the heap of every loaded chunk again, reading the world's copy, which edits may have replaced
+	private void remeasureHeap() {
+		heapBytes = 0;
+		for (Entry entry : loaded.values()) {
+			Chunk current = world.getChunks().get(entry.chunk.getKey());
+			entry.heapBytes = (current != null ? current : entry.chunk).estimateBytes();
+			heapBytes += entry.heapBytes;
+		}
+	}
+
+	private void scheduleRetry(long key) {
+		Retry retry = retries.get(key);
+		if (retry == null) {
+			retry = new Retry();
+			retries.put(key, retry);
+		}
+		long delay = RETRY_DELAY_NANOS << Math.min(retry.failures, 5);
+		retry.failures++;
+		retry.dueNanos = clock.nanoTime() + Math.min(delay, MAX_RETRY_DELAY_NANOS);
+	}
+
+	private void startLoads() {
+		if (!retries.isEmpty() && !startRetries()) {
+			return;
+		}
+		while (inFlight.size() < maxInFlight && nextWanted < wantedCount) {
+			if (overBudget()) {
+				budgetStalls++;
+				return;
+			}
+			long key = wanted[nextWanted++];
+			if (loaded.containsKey(key) || retries.containsKey(key) || inFlight.contains(key)) {
+				continue;
+			}
+			startLoad(key);
+		}
+	}
+
+	/**
+	 * Restarts the failed loads whose delay has passed and drops the ones the
+	 * camera has left behind.
+	 *
+	 * @return False if the memory budget stopped it.
+	 */
+	private boolean startRetries() {
+		long now = clock.nanoTime();
+		Iterator<Map.Entry<Long, Retry>> it = retries.entrySet().iterator();
+		while (it.hasNext() && inFlight.size() < maxInFlight) {
+			Map.Entry<Long, Retry> entry = it.next();
+			long key = entry.getKey();
+			if (loaded.containsKey(key)
+					|| !isWithin(ChunkPos.unpackX(key), ChunkPos.unpackY(key), ChunkPos.unpackZ(key), loadRadius)) {
+				it.remove();
+				continue;
+			}
+			if (entry.getValue().dueNanos - now > 0 || inFlight.contains(key)) {
+				continue;
+			}
+			if (overBudget()) {
+				budgetStalls++;
+				return false;
+			}
+			startLoad(key);
+		}
+		return true;
+	}
+
+	private void startLoad(final long key) {
+		inFlight.add(key);
+		final int cx = ChunkPos.unpackX(key), cy = ChunkPos.unpackY(key), cz = ChunkPos.unpackZ(key);
+		final long requestTime = clock.nanoTime();
+		executor.execute(() -> {
+			LoadResult result = null;
+			try {
+				Chunk chunk = storage != null ? storage.loadChunk(cx, cy, cz) : null;
+				boolean generated = chunk == null;
+				if (generated) {
+					chunk = new Chunk(cx, cy, cz);
+					generator.generate(chunk);
+				}
+				result = new LoadResult(key, chunk, generated, requestTime);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			} finally {
+				// Always report back, or the key would hold its in-flight slot forever
+				finished.add(result != null ? result : new LoadResult(key, null, false, requestTime));
+			}
+		});
+	}
+
+	private boolean overBudget() {
+		return heapBytes > maxHeapBytes || gpuBytes > maxGpuBytes;
+	}
+
+	private boolean isWithin(int cx, int cy, int cz, int radius) {
+		int dx = cx - scanChunkX, dy = cy - scanChunkY, dz = cz - scanChunkZ;
+		return dx * dx + dy * dy + dz * dz <= radius * radius;
+	}
+
+	private static class Entry {
+		final Chunk chunk;
+		long heapBytes;
+		long gpuBytes;
+
+		Entry(Chunk chunk, long heapBytes) {
+			this.chunk = chunk;
+			this.heapBytes = heapBytes;
+		}
+	}
+
+	private static class Retry {
+		int failures;
+		long dueNanos;
+	}
+
+	private static class LoadResult {
+		final long key;
+		// Null if the load failed
+		final Chunk chunk;
+		final boolean generated;
+		final long requestTime;
+
+		LoadResult(long key, Chunk chunk, boolean generated, long requestTime) {
+			this.key = key;
+			this.chunk = chunk;
+			this.generated = generated;
+			this.requestTime = requestTime;
+		}
+	}
+}
@@ -0,0 +1,643 @@
+package world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ToolBox.LongIntHashMap;
+import lombok.Getter;
+
+/**
+ * Flood-fill block light and sky light, stored per block in the chunks'
+ * {@link NibbleArray}s.
+ *
+ * Light spreads breadth first from its sources and loses one level per block
+ * travelled, plus the {@link Blocks#getLightOpacity(int) opacity} of the block
+ * it enters; opaque blocks stop it. Block light starts at blocks with a
+ * {@link Blocks#getLightEmission(int) light emission}. Sky light is full
+ * strength in every chunk that is not loaded, so it pours in from above, and
+ * travels straight down at full strength until something absorbs it.
+ *
+ * Newly loaded chunks are lit with {@link #lightChunks}, which pulls the light
+ * of their loaded neighbours across the borders and takes back the full sky
+ * light the neighbours received while the chunk was missing. Edits are
+ * reported with {@link #blockChanged} and applied incrementally by
+ * {@link #update()}: a block that lets through less light removes the light
+ * that depended on it, flooding outward until it meets light from another
+ * source, which then refills the cleared area; a block that lets through more
+ * light pulls the light of its neighbours in. Chunks whose light changed are
+ * marked in the {@link ChunkEditTracker}, including the neighbours whose faces
+ * sample a changed border block.
+ *
+ * Lighting a large batch of chunks can be split across a {@link ForkJoinPool}:
+ * the chunks are grouped into regions of 4 by 4 chunk columns, each region is
+ * flooded by its own task without writing outside its bounds, and the light
+ * that would have crossed a region border is finished on the calling thread
+ * afterwards. Because light only ever grows while flooding, the result is the
+ * same as lighting the chunks one by one.
+ *
+ * Light is not saved by {@link WorldStorage}; a chunk read back from disk is
+ * lit like a freshly generated one.
+ *
+ * Must be used from the thread that edits the world; the pool tasks only run
+ * inside {@link #lightChunks}.
+ */
+public class LightEngine {
+
+	public static final int MAX_LIGHT = 15;
+
+	// Light channels
+	static final int BLOCK = 0;
+	static final int SKY = 1;
+
+	// Regions of the parallel mode are (1 << REGION_SHIFT) chunk columns wide
+	private static final int REGION_SHIFT = 2;
+
+	// Face neighbours in the mesher's direction order: -X, +X, -Y, +Y, -Z, +Z
+	private static final int[] DX = { -1, 1, 0, 0, 0, 0 };
+	private static final int[] DY = { 0, 0, -1, 1, 0, 0 };
+	private static final int[] DZ = { 0, 0, 0, 0, -1, 1 };
+	private static final int DOWN = 2;
+
+	private static final long NO_CHUNK = -1;
+
+	private final World world;
+	private final ChunkEditTracker editTracker;
+	private final Propagator propagator;
+
+	// Statistics since creation
+	@Getter
+	private final AtomicLong lightUpdates = new AtomicLong();
+	@Getter
+	private final AtomicLong blockChanges = new AtomicLong();
+	@Getter
+	private final AtomicLong chunksLit = new AtomicLong();
+	@Getter
+	private final AtomicLong propagationNanos = new AtomicLong();
+
+	/**
+	 * @param editTracker Receives the chunks whose light changed, or null if
+	 *                    nothing needs re-meshing.
+	 */
+	public LightEngine(World world, ChunkEditTracker editTracker) {
+		this.world = world;
+		this.editTracker = editTracker;
+		this.propagator = new Propagator(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	public int getBlockLight(int x, int y, int z) {
+		return getLight(BLOCK, x, y, z);
+	}
+
+	public int getSkyLight(int x, int y, int z) {
+		return getLight(SKY, x, y, z);
+	}
+
+	private int getLight(int channel, int x, int y, int z) {
+		Chunk chunk = world.getChunk(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT);
+		if (chunk == null) {
+			return channel == SKY ? MAX_LIGHT : 0;
+		}
+		return light(chunk, channel).get(Chunk.index(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK));
+	}
+
+	/**
+	 * Light updates per second of propagation time since creation.
+	 */
+	public double getUpdatesPerSecond() {
+		long nanos = propagationNanos.get();
+		return nanos == 0 ? 0 : lightUpdates.get() * 1e9 / nanos;
+	}
+
+	/**
+	 * Lights a single chunk, see {@link #lightChunks(Collection, ForkJoinPool)}.
+	 */
+	public void lightChunk(Chunk chunk) {
+		List<Chunk> chunks = new ArrayList<Chunk>(1);
+		chunks.add(chunk);
+		lightChunks(chunks, null);
+	}
+
+	/**
+	 * Computes the light of chunks that were just added to the world, replacing
+	 * whatever light they held. The chunks must be in the world, and no chunk
+	 * may be added or removed while this runs.
+	 *
+	 * @param pool Splits the work into regions, or null to do everything on the
+	 *             calling thread.
+	 */
+	public void lightChunks(Collection<Chunk> chunks, ForkJoinPool pool) {
+		if (chunks.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		LongIntHashMap batch = new LongIntHashMap(chunks.size(), -1);
+		for (Chunk chunk : chunks) {
+			batch.put(chunk.getKey(), 0);
+			chunk.getBlockLight().clear();
+			chunk.getSkyLight().clear();
+			chunk.setLit(true);
+		}
+
+		// Take back the full sky light neighbours got while these chunks were missing
+		propagator.invalidate();
+		for (Chunk chunk : chunks) {
+			for (int direction = 0; direction < 6; direction++) {
+				Chunk neighbour = neighbour(chunk, direction);
+				if (neighbour != null && neighbour.isLit() && batch.get(neighbour.getKey()) == -1) {
+					propagator.pushBorder(propagator.removals[SKY], chunk, direction, 0, MAX_LIGHT);
+				}
+			}
+		}
+		propagator.removeAll();
+
+		if (pool == null) {
+			propagator.seed(chunks, batch);
+			propagator.addAll();
+		} else {
+			// Flood each region on its own, keeping the light that leaves it for later
+			HashMap<Long, Region> regionMap = new HashMap<Long, Region>();
+			for (Chunk chunk : chunks) {
+				int regionX = chunk.getChunkX() >> REGION_SHIFT, regionZ = chunk.getChunkZ() >> REGION_SHIFT;
+				long key = ChunkPos.pack(regionX, 0, regionZ);
+				Region region = regionMap.get(key);
+				if (region == null) {
+					region = new Region(regionX, regionZ, batch);
+					regionMap.put(key, region);
+				}
+				region.chunks.add(chunk);
+			}
+			Region[] regions = regionMap.values().toArray(new Region[0]);
+			pool.invoke(new RegionTask(regions, 0, regions.length));
+
+			// Finish the light crossing region borders here, where nothing else is writing
+			propagator.invalidate();
+			for (Region region : regions) {
+				Propagator local = region.propagator;
+				for (int channel = BLOCK; channel <= SKY; channel++) {
+					propagator.additions[channel].pushAll(local.deferred[channel]);
+				}
+				for (int i = 0; i < local.changedCount; i++) {
+					propagator.addChanged(local.changedKeys[i]);
+				}
+				lightUpdates.addAndGet(local.updates);
+				for (Chunk chunk : region.chunks) {
+					for (int direction = 0; direction < 6; direction++) {
+						Chunk neighbour = neighbour(chunk, direction);
+						if (neighbour != null && neighbour.isLit() && batch.get(neighbour.getKey()) == -1
+								&& !local.contains(neighbour)) {
+							propagator.pullBorder(chunk, direction);
+						}
+					}
+				}
+			}
+			propagator.addAll();
+		}
+
+		chunksLit.addAndGet(chunks.size());
+		finish(start);
+	}
+
+	/**
+	 * Queues the light changes caused by replacing a block. Call after the
+	 * world has been edited, then {@link #update()} once for all edits of the
+	 * frame. Blocks in chunks that are not lit yet are ignored.
+	 */
+	public void blockChanged(int x, int y, int z, int previous, int current) {
+		Chunk chunk = world.getChunk(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT);
+		if (chunk == null || !chunk.isLit() || previous == current) {
+			return;
+		}
+		blockChanges.incrementAndGet();
+		propagator.invalidate();
+
+		int index = Chunk.index(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+		int oldOpacity = Blocks.getLightOpacity(previous), newOpacity = Blocks.getLightOpacity(current);
+		int oldEmission = Blocks.getLightEmission(previous), newEmission = Blocks.getLightEmission(current);
+		for (int channel = BLOCK; channel <= SKY; channel++) {
+			NibbleArray light = light(chunk, channel);
+			int level = light.get(index);
+			boolean darker = newOpacity > oldOpacity || (channel == BLOCK && newEmission < oldEmission);
+			if (darker && level > 0) {
+				propagator.setLight(light, index, 0, x, y, z);
+				propagator.removals[channel].push(x, y, z, level);
+			}
+			if (channel == BLOCK && newEmission > light.get(index)) {
+				propagator.setLight(light, index, newEmission, x, y, z);
+				propagator.additions[BLOCK].push(x, y, z, newEmission);
+			}
+			if (newOpacity < oldOpacity) {
+				// Let the light around the block back in
+				for (int direction = 0; direction < 6; direction++) {
+					propagator.additions[channel].push(x + DX[direction], y + DY[direction], z + DZ[direction], 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the queued block changes.
+	 *
+	 * @return The number of blocks whose light changed.
+	 */
+	public long update() {
+		if (propagator.isIdle()) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		long before = propagator.updates;
+		propagator.invalidate();
+		propagator.removeAll();
+		propagator.addAll();
+		long updated = propagator.updates - before;
+		finish(start);
+		return updated;
+	}
+
+	private void finish(long startNanos) {
+		lightUpdates.addAndGet(propagator.updates);
+		propagator.updates = 0;
+		if (editTracker != null) {
+			for (int i = 0; i < propagator.changedCount; i++) {
+				editTracker.markLightChanged(propagator.changedKeys[i]);
+			}
+		}
+		propagator.clearChanged();
+		propagationNanos.addAndGet(System.nanoTime() - startNanos);
+	}
+
+	private Chunk neighbour(Chunk chunk, int direction) {
+		return world.getChunk(chunk.getChunkX() + DX[direction], chunk.getChunkY() + DY[direction],
+				chunk.getChunkZ() + DZ[direction]);
+	}
+
+	private static NibbleArray light(Chunk chunk, int channel) {
+		return channel == SKY ? chunk.getSkyLight() : chunk.getBlockLight();
+	}
+
+	/**
+	 * Flood-fill state for one thread. A propagator only writes blocks whose x
+	 * and z lie within its bounds; light that would leave them is kept in the
+	 * deferred queues.
+	 */
+	private final class Propagator {
+
+		private final int minX, maxX, minZ, maxZ;
+
+		private final LightQueue[] additions = { new LightQueue(), new LightQueue() };
+		private final LightQueue[] removals = { new LightQueue(), new LightQueue() };
+		private final LightQueue[] deferred = { new LightQueue(), new LightQueue() };
+
+		// Chunks whose light changed, plus neighbours sharing a changed border block
+		private final LongIntHashMap changed = new LongIntHashMap(64, -1);
+		private long[] changedKeys = new long[64];
+		private int changedCount;
+		private long lastChangedKey = NO_CHUNK;
+
+		// Chunk of the last lookup
+		private long cachedKey = NO_CHUNK;
+		private Chunk cached;
+
+		private long updates;
+
+		Propagator(int min, int max) {
+			this(min, max, min, max);
+		}
+
+		Propagator(int minX, int maxX, int minZ, int maxZ) {
+			this.minX = minX;
+			this.maxX = maxX;
+			this.minZ = minZ;
+			this.maxZ = maxZ;
+		}
+
+		boolean isIdle() {
+			return additions[BLOCK].isEmpty() && additions[SKY].isEmpty() && removals[BLOCK].isEmpty()
+					&& removals[SKY].isEmpty();
+		}
+
+		boolean contains(Chunk chunk) {
+			int x = chunk.getChunkX() << Chunk.SHIFT, z = chunk.getChunkZ() << Chunk.SHIFT;
+			return x >= minX && x < maxX && z >= minZ && z < maxZ;
+		}
+
+		// Chunks may have been added or removed since the last run
+		void invalidate() {
+			cachedKey = NO_CHUNK;
+			cached = null;
+			lastChangedKey = NO_CHUNK;
+		}
+
+		Chunk chunkAt(int x, int y, int z) {
+			long key = ChunkPos.pack(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT);
+			if (key != cachedKey) {
+				cachedKey = key;
+				cached = world.getChunks().get(key);
+			}
+			return cached;
+		}
+
+		/**
+		 * Queues the light sources of freshly cleared chunks: their emitting
+		 * blocks, and the border blocks of neighbours outside the batch, where
+		 * a missing neighbour counts as full sky light.
+		 */
+		void seed(Collection<Chunk> chunks, LongIntHashMap batch) {
+			for (Chunk chunk : chunks) {
+				int baseX = chunk.getChunkX() << Chunk.SHIFT;
+				int baseY = chunk.getChunkY() << Chunk.SHIFT;
+				int baseZ = chunk.getChunkZ() << Chunk.SHIFT;
+				PaletteStorage blocks = chunk.getBlocks();
+				NibbleArray blockLight = chunk.getBlockLight();
+				for (int index = 0; index < Chunk.VOLUME; index++) {
+					int emission = Blocks.getLightEmission(blocks.get(index));
+					if (emission > 0) {
+						int x = baseX + (index & Chunk.MASK);
+						int y = baseY + (index >> (Chunk.SHIFT * 2));
+						int z = baseZ + ((index >> Chunk.SHIFT) & Chunk.MASK);
+						setLight(blockLight, index, emission, x, y, z);
+						additions[BLOCK].push(x, y, z, emission);
+					}
+				}
+
+				for (int direction = 0; direction < 6; direction++) {
+					Chunk neighbour = neighbour(chunk, direction);
+					if (neighbour == null) {
+						pushBorder(additions[SKY], chunk, direction, 1, MAX_LIGHT);
+					} else if (neighbour.isLit() && batch.get(neighbour.getKey()) == -1 && contains(neighbour)) {
+						pullBorder(chunk, direction);
+					}
+				}
+			}
+		}
+
+		// Queues the neighbour's border blocks facing the chunk for both channels
+		void pullBorder(Chunk chunk, int direction) {
+			pushBorder(additions[BLOCK], chunk, direction, 1, 0);
+			pushBorder(additions[SKY], chunk, direction, 1, 0);
+		}
+
+		/**
+		 * Queues the layer of blocks on one side of the chunk: its own border
+		 * (distance 0) or the neighbour's blocks touching it (distance 1).
+		 */
+		void pushBorder(LightQueue queue, Chunk chunk, int direction, int distance, int level) {
+			int axis = direction >> 1;
+			int u = (axis + 1) % 3, v = (axis + 2) % 3;
+			int[] base = { chunk.getChunkX() << Chunk.SHIFT, chunk.getChunkY() << Chunk.SHIFT,
+					chunk.getChunkZ() << Chunk.SHIFT };
+			int[] pos = new int[3];
+			pos[axis] = base[axis] + ((direction & 1) == 1 ? Chunk.SIZE - 1 + distance : -distance);
+			for (int j = 0; j < Chunk.SIZE; j++) {
+				for (int i = 0; i < Chunk.SIZE; i++) {
+					pos[u] = base[u] + i;
+					pos[v] = base[v] + j;
+					queue.push(pos[0], pos[1], pos[2], level);
+				}
+			}
+		}
+
+		void addAll() {
+			propagateAdditions(BLOCK);
+			propagateAdditions(SKY);
+		}
+
+		void removeAll() {
+			propagateRemovals(BLOCK);
+			propagateRemovals(SKY);
+		}
+
+		private void propagateAdditions(int channel) {
+			LightQueue queue = additions[channel];
+			while (!queue.isEmpty()) {
+				int entry = queue.poll();
+				int[] data = queue.data;
+				int x = data[entry], y = data[entry + 1], z = data[entry + 2];
+
+				// Blocks in missing chunks are fully sky lit
+				Chunk chunk = chunkAt(x, y, z);
+				int level;
+				if (chunk == null) {
+					level = channel == SKY ? MAX_LIGHT : 0;
+				} else {
+					level = light(chunk, channel).get(Chunk.index(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK));
+				}
+				if (level <= 1) {
+					continue;
+				}
+
+				boolean wasDeferred = false;
+				for (int direction = 0; direction < 6; direction++) {
+					int nx = x + DX[direction], ny = y + DY[direction], nz = z + DZ[direction];
+					if (nx < minX || nx >= maxX || nz < minZ || nz >= maxZ) {
+						if (!wasDeferred) {
+							deferred[channel].push(x, y, z, level);
+							wasDeferred = true;
+						}
+						continue;
+					}
+					Chunk target = chunkAt(nx, ny, nz);
+					if (target == null) {
+						continue;
+					}
+					int index = Chunk.index(nx & Chunk.MASK, ny & Chunk.MASK, nz & Chunk.MASK);
+					int opacity = Blocks.getLightOpacity(target.getBlocks().get(index));
+					if (opacity >= MAX_LIGHT) {
+						continue;
+					}
+					int next = channel == SKY && direction == DOWN && level == MAX_LIGHT && opacity == 0 ? MAX_LIGHT
+							: level - 1 - opacity;
+					NibbleArray light = light(target, channel);
+					if (next > light.get(index)) {
+						setLight(light, index, next, nx, ny, nz);
+						queue.push(nx, ny, nz, next);
+					}
+				}
+			}
+			queue.clear();
+		}
+
+		private void propagateRemovals(int channel) {
+			LightQueue queue = removals[channel];
+			while (!queue.isEmpty()) {
+				int entry = queue.poll();
+				int[] data = queue.data;
+				int x = data[entry], y = data[entry + 1], z = data[entry + 2], level = data[entry + 3];
+
+				for (int direction = 0; direction < 6; direction++) {
+					int nx = x + DX[direction], ny = y + DY[direction], nz = z + DZ[direction];
+					Chunk target = chunkAt(nx, ny, nz);
+					if (target == null) {
+						// A missing chunk is a full strength sky light source that never goes away
+						if (channel == SKY) {
+							additions[SKY].push(nx, ny, nz, MAX_LIGHT);
+						}
+						continue;
+					}
+					int index = Chunk.index(nx & Chunk.MASK, ny & Chunk.MASK, nz & Chunk.MASK);
+					NibbleArray light = light(target, channel);
+					int current = light.get(index);
+					if (current == 0) {
+						continue;
+					}
+					boolean dependent = current < level
+							|| (channel == SKY && direction == DOWN && level == MAX_LIGHT && current == MAX_LIGHT);
+					if (dependent) {
+						setLight(light, index, 0, nx, ny, nz);
+						queue.push(nx, ny, nz, current);
+						int emission = channel == BLOCK ? Blocks.getLightEmission(target.getBlocks().get(index)) : 0;
+						if (emission > 0) {
+							setLight(light, index, emission, nx, ny, nz);
+							additions[BLOCK].push(nx, ny, nz, emission);
+						}
+					} else {
+						// Lit from elsewhere, so it refills the cleared blocks
+						additions[channel].push(nx, ny, nz, current);
+					}
+				}
+			}
+			queue.clear();
+		}
+
+		void setLight(NibbleArray light, int index, int level, int x, int y, int z) {
+			light.set(index, level);
+			updates++;
+
+			int cx = x >> Chunk.SHIFT, cy = y >> Chunk.SHIFT, cz = z >> Chunk.SHIFT;
+			long key = ChunkPos.pack(cx, cy, cz);
+			if (key != lastChangedKey) {
+				addChanged(key);
+				lastChangedKey = key;
+			}
+			// Border blocks are sampled by the faces of the neighbouring chunk
+			int lx = x & Chunk.MASK, ly = y & Chunk.MASK, lz = z & Chunk.MASK;
+			if (lx == 0) {
+				addChanged(ChunkPos.pack(cx - 1, cy, cz));
+			} else if (lx == Chunk.MASK) {
+				addChanged(ChunkPos.pack(cx + 1, cy, cz));
+			}
+			if (ly == 0) {
+				addChanged(ChunkPos.pack(cx, cy - 1, cz));
+			} else if (ly == Chunk.MASK) {
+				addChanged(ChunkPos.pack(cx, cy + 1, cz));
+			}
+			if (lz == 0) {
+				addChanged(ChunkPos.pack(cx, cy, cz - 1));
+			} else if (lz == Chunk.MASK) {
+				addChanged(ChunkPos.pack(cx, cy, cz + 1));
+			}
+		}
+
+		void addChanged(long key) {
+			if (changed.get(key) != -1) {
+				return;
+			}
+			if (changedCount == changedKeys.length) {
+				changedKeys = Arrays.copyOf(changedKeys, changedCount * 2);
+			}
+			changed.put(key, changedCount);
+			changedKeys[changedCount++] = key;
+		}
+
+		void clearChanged() {
+			changed.clear();
+			changedCount = 0;
+			lastChangedKey = NO_CHUNK;
+		}
+	}
+
+	/**
+	 * FIFO of light entries, four ints each: x, y, z and level.
+	 */
+	private static final class LightQueue {
+
+		private int[] data = new int[4 * 256];
+		private int head;
+		private int tail;
+
+		boolean isEmpty() {
+			return head == tail;
+		}
+
+		void push(int x, int y, int z, int level) {
+			if (tail + 4 > data.length) {
+				if (head > 0) {
+					// Reuse the space of entries already taken
+					System.arraycopy(data, head, data, 0, tail - head);
+					tail -= head;
+					head = 0;
+				}
+				if (tail + 4 > data.length) {
+					data = Arrays.copyOf(data, data.length * 2);
+				}
+			}
+			data[tail] = x;
+			data[tail + 1] = y;
+			data[tail + 2] = z;
+			data[tail + 3] = level;
+			tail += 4;
+		}
+
+		// Returns the offset of the next entry in data, valid until the next push
+		int poll() {
+			int entry = head;
+			head += 4;
+			return entry;
+		}
+
+		void pushAll(LightQueue other) {
+			for (int i = other.head; i < other.tail; i += 4) {
+				push(other.data[i], other.data[i + 1], other.data[i + 2], other.data[i + 3]);
+			}
+			other.clear();
+		}
+
+		void clear() {
+			head = 0;
+			tail = 0;
+		}
+	}
+
+	private final class Region {
+		private final List<Chunk> chunks = new ArrayList<Chunk>();
+		private final LongIntHashMap batch;
+		private final Propagator propagator;
+
+		Region(int regionX, int regionZ, LongIntHashMap batch) {
+			this.batch = batch;
+			int shift = REGION_SHIFT + Chunk.SHIFT;
+			this.propagator = new Propagator(regionX << shift, (regionX + 1) << shift, regionZ << shift,
+					(regionZ + 1) << shift);
+		}
+	}
+
+	private class RegionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Region[] regions;
+		private final int start, end;
+
+		RegionTask(Region[] regions, int start, int end) {
+			this.regions = regions;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start == 1) {
+				Region region = regions[start];
+				region.propagator.seed(region.chunks, region.batch);
+				region.propagator.addAll();
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new RegionTask(regions, start, middle), new RegionTask(regions, middle, end));
+		}
+	}
+}
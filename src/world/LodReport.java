@@ -0,0 +1,56 @@
+package world;
+
+import lombok.Getter;
+
+/**
+ * Chunk and triangle counts per level of detail ring, as produced by
+ * {@link LodSelector#report}.
+ */
+@Getter
+public class LodReport {
+
+	private final int[] chunks;
+	private final long[] triangles;
+	// What the same chunks cost at full detail, for comparison
+	private final long[] fullDetailTriangles;
+
+	public LodReport(int levels) {
+		chunks = new int[levels];
+		triangles = new long[levels];
+		fullDetailTriangles = new long[levels];
+	}
+
+	public void add(int level, int meshTriangles, int fullDetail) {
+		chunks[level]++;
+		triangles[level] += meshTriangles;
+		fullDetailTriangles[level] += fullDetail;
+	}
+
+	public long getTotalTriangles() {
+		long total = 0;
+		for (long t : triangles) {
+			total += t;
+		}
+		return total;
+	}
+
+	public long getTotalFullDetailTriangles() {
+		long total = 0;
+		for (long t : fullDetailTriangles) {
+			total += t;
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int level = 0; level < chunks.length; level++) {
+			builder.append("LOD ").append(level).append(": ").append(chunks[level]).append(" chunks, ")
+					.append(triangles[level]).append(" triangles (").append(fullDetailTriangles[level])
+					.append(" at full detail)\n");
+		}
+		return builder.append("Total: ").append(getTotalTriangles()).append(" triangles (")
+				.append(getTotalFullDetailTriangles()).append(" at full detail)").toString();
+	}
+}
@@ -0,0 +1,137 @@
+package world;
+
+import ToolBox.LongIntHashMap;
+
+/**
+ * Chooses the level of detail of each chunk from its distance to the camera.
+ * 
+ * Level n is used beyond distance thresholds[n - 1]. To keep chunks near a
+ * threshold from switching back and forth as the camera moves, a chunk only
+ * changes level once it is more than the hysteresis distance past the
+ * threshold in question. Levels are remembered per chunk, so the selector has
+ * to see every chunk each update to stay current; forget chunks that unload.
+ */
+public class LodSelector {
+
+	private static final int UNKNOWN = -1;
+
+	private final float[] thresholds;
+	private final float hysteresis;
+	private final LongIntHashMap levels = new LongIntHashMap(1024, UNKNOWN);
+
+	/**
+	 * @param thresholds Increasing distances, in blocks, at which levels 1, 2, ...
+	 *                   start. At most {@link ChunkLod#MAX_LEVEL} entries.
+	 * @param hysteresis The distance past a threshold needed to switch level.
+	 */
+	public LodSelector(float[] thresholds, float hysteresis) {
+		if (thresholds.length > ChunkLod.MAX_LEVEL) {
+			throw new IllegalArgumentException("At most " + ChunkLod.MAX_LEVEL + " LOD thresholds are supported");
+		}
+		this.thresholds = thresholds.clone();
+		this.hysteresis = hysteresis;
+	}
+
+	/**
+	 * Full detail within 8 chunks, then one level coarser at 16 and 32 chunks.
+	 */
+	public LodSelector() {
+		this(new float[] { 8 * Chunk.SIZE, 16 * Chunk.SIZE, 32 * Chunk.SIZE }, Chunk.SIZE / 2f);
+	}
+
+	/**
+	 * Returns the level a chunk at the given distance should use, given the
+	 * level it currently has (or -1 if it has none yet).
+	 */
+	public int select(int currentLevel, float distance) {
+		if (currentLevel < 0) {
+			int level = 0;
+			while (level < thresholds.length && distance > thresholds[level]) {
+				level++;
+			}
+			return level;
+		}
+		int level = currentLevel;
+		while (level < thresholds.length && distance > thresholds[level] + hysteresis) {
+			level++;
+		}
+		while (level > 0 && distance < thresholds[level - 1] - hysteresis) {
+			level--;
+		}
+		return level;
+	}
+
+	/**
+	 * Updates the level of a chunk for the camera position.
+	 * 
+	 * @return The new level if it changed, or -1 if it stayed the same.
+	 */
+	public int update(Chunk chunk, float cameraX, float cameraY, float cameraZ) {
+		long key = chunk.getKey();
+		int current = levels.get(key);
+		int level = select(current, distance(chunk, cameraX, cameraY, cameraZ));
+		if (level == current) {
+			return UNKNOWN;
+		}
+		levels.put(key, level);
+		return level;
+	}
+
+	/**
+	 * Updates every loaded chunk and reschedules the meshes of those whose level
+	 * changed.
+	 * 
+	 * @return The number of chunks that changed level.
+	 */
+	public int update(World world, final float cameraX, final float cameraY, final float cameraZ,
+			final ChunkMeshScheduler scheduler) {
+		final int[] changed = new int[1];
+		world.getChunks().forEach(chunk -> {
+			int level = update(chunk, cameraX, cameraY, cameraZ);
+			if (level >= 0) {
+				scheduler.schedule(chunk, level);
+				changed[0]++;
+			}
+		});
+		return changed[0];
+	}
+
+	/**
+	 * @return The level last chosen for the chunk, or 0 if it has none yet.
+	 */
+	public int getLevel(long chunkKey) {
+		return Math.max(0, levels.get(chunkKey));
+	}
+
+	public void forget(long chunkKey) {
+		levels.remove(chunkKey);
+	}
+
+	/**
+	 * Meshes every loaded chunk at the level this selector picks for the camera
+	 * position and at full detail, and counts the triangles per level. Runs
+	 * without a GL context; the selector's remembered levels are not changed.
+	 */
+	public LodReport report(final World world, final float cameraX, final float cameraY, final float cameraZ) {
+		final LodReport report = new LodReport(thresholds.length + 1);
+		final ChunkMesher mesher = new ChunkMesher();
+		final int[] blocks = new int[ChunkMesher.PADDED * ChunkMesher.PADDED * ChunkMesher.PADDED];
+		world.getChunks().forEach(chunk -> {
+			int level = select(UNKNOWN, distance(chunk, cameraX, cameraY, cameraZ));
+			ChunkMesher.capture(chunk, world, blocks);
+			int fullDetail = mesher.mesh(blocks).getTriangleCount();
+			int triangles = level == 0 ? fullDetail : mesher.mesh(blocks, level).getTriangleCount();
+			report.add(level, triangles, fullDetail);
+		});
+		return report;
+	}
+
+	// Distance from the camera to the chunk's center
+	private static float distance(Chunk chunk, float cameraX, float cameraY, float cameraZ) {
+		float half = Chunk.SIZE / 2f;
+		float dx = chunk.getChunkX() * Chunk.SIZE + half - cameraX;
+		float dy = chunk.getChunkY() * Chunk.SIZE + half - cameraY;
+		float dz = chunk.getChunkZ() * Chunk.SIZE + half - cameraZ;
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+}
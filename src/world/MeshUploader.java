@@ -0,0 +1,15 @@
+package world;
+
+/**
+ * Receives finished chunk meshes on the render thread, where GL calls are
+ * allowed. The production implementation uploads through
+ * {@link renderEngine.Loader}; a fake can record calls for headless use.
+ */
+public interface MeshUploader {
+
+	/**
+	 * Uploads the mesh for the chunk with the given packed coordinates,
+	 * replacing any mesh previously uploaded for it.
+	 */
+	void upload(long chunkKey, ChunkMesh mesh);
+}
@@ -0,0 +1,66 @@
+package world;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size array of 4-bit values, two per byte.
+ *
+ * The backing array is only allocated once a value other than the default is
+ * written, so chunks whose light is uniform (all dark underground, or all
+ * fully lit) cost nothing beyond the object itself.
+ */
+public final class NibbleArray {
+
+	private final int size;
+	private final int defaultValue;
+	private byte[] data;
+
+	public NibbleArray(int size, int defaultValue) {
+		if ((defaultValue & ~15) != 0) {
+			throw new IllegalArgumentException("Nibble value out of range: " + defaultValue);
+		}
+		this.size = size;
+		this.defaultValue = defaultValue;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int get(int index) {
+		if (data == null) {
+			return defaultValue;
+		}
+		return (data[index >> 1] >> ((index & 1) << 2)) & 15;
+	}
+
+	/**
+	 * Sets the value at the given index; only the low 4 bits are kept.
+	 */
+	public void set(int index, int value) {
+		if (data == null) {
+			if (value == defaultValue) {
+				return;
+			}
+			data = new byte[(size + 1) >> 1];
+			Arrays.fill(data, (byte) (defaultValue | (defaultValue << 4)));
+		}
+		int shift = (index & 1) << 2;
+		int i = index >> 1;
+		data[i] = (byte) ((data[i] & ~(15 << shift)) | ((value & 15) << shift));
+	}
+
+	/**
+	 * Resets every value to the default and drops the backing array.
+	 */
+	public void clear() {
+		data = null;
+	}
+
+	/**
+	 * Returns the approximate heap footprint in bytes.
+	 */
+	public long estimateBytes() {
+		return 24 + (data != null ? 16 + data.length : 0);
+	}
+}
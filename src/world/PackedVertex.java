@@ -0,0 +1,71 @@
+package world;
+
+/**
+ * Compact vertex format for chunk meshes: two 32-bit words per vertex instead
+ * of the 24 bytes of separate float positions, texture coordinates and layers.
+ * 
+ * <pre>
+ * word 0: x (5 bits) | y (5) | z (5) | face direction (3) | texture layer (14)
+ * word 1: u (5 bits) | v (5) | light (8) | unused (14)
+ * </pre>
+ * 
+ * Positions are chunk-local block corners (0 to {@link Chunk#SIZE}), texture
+ * coordinates are in block units, and the direction uses the mesher's
+ * numbering (0 = -X, 1 = +X, 2 = -Y, 3 = +Y, 4 = -Z, 5 = +Z). The light holds
+ * sky light in its high four bits and block light in the low four. The vertex
+ * shader decodes the words with integer shifts, see packedChunkVertexShader.txt.
+ */
+public final class PackedVertex {
+
+	public static final int INTS_PER_VERTEX = 2;
+	public static final int BYTES_PER_VERTEX = INTS_PER_VERTEX * 4;
+
+	public static final int MAX_LAYER = (1 << 14) - 1;
+
+	private PackedVertex() {
+	}
+
+	public static int packPosition(int x, int y, int z, int direction, int layer) {
+		return x | (y << 5) | (z << 10) | (direction << 15) | (layer << 18);
+	}
+
+	public static int packTexture(int u, int v) {
+		return u | (v << 5);
+	}
+
+	public static int packTexture(int u, int v, int light) {
+		return u | (v << 5) | (light << 10);
+	}
+
+	public static int unpackX(int word) {
+		return word & 31;
+	}
+
+	public static int unpackY(int word) {
+		return (word >>> 5) & 31;
+	}
+
+	public static int unpackZ(int word) {
+		return (word >>> 10) & 31;
+	}
+
+	public static int unpackDirection(int word) {
+		return (word >>> 15) & 7;
+	}
+
+	public static int unpackLayer(int word) {
+		return word >>> 18;
+	}
+
+	public static int unpackU(int word) {
+		return word & 31;
+	}
+
+	public static int unpackV(int word) {
+		return (word >>> 5) & 31;
+	}
+
+	public static int unpackLight(int word) {
+		return (word >>> 10) & 255;
+	}
+}
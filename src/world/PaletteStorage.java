@@ -0,0 +1,314 @@
+package world;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-size array of block IDs stored as a palette plus bit-packed indices.
+ *
+ * Each distinct block ID in the storage gets a slot in the palette, and every
+ * entry only stores the index of its palette slot using as few bits as the
+ * palette size requires. A storage holding a single block type (e.g. a chunk of
+ * pure air or pure stone) needs no index data at all.
+ *
+ * Index widths are powers of two (1, 2, 4, 8, 16 bits) so an entry never
+ * straddles two longs, keeping get and set to a shift and a mask.
+ */
+public class PaletteStorage {
+
+	private final int size;
+
+	// Palette slot -> block ID
+	private int[] palette;
+	private int paletteSize;
+
+	// Open-addressing block ID -> palette slot lookup, stored as (slot + 1) so 0 means empty
+	private int[] reverseKeys;
+	private int[] reverseSlots;
+
+	private int bits;
+	private int entriesPerLongShift;
+	private long valueMask;
+	private long[] data;
+
+	/**
+	 * Creates a storage of the given number of entries, all set to the
+	 * specified block ID.
+	 *
+	 * @param size    The number of entries.
+	 * @param initial The block ID every entry starts with.
+	 */
+	public PaletteStorage(int size, int initial) {
+		this.size = size;
+		this.palette = new int[1];
+		this.palette[0] = initial;
+		this.paletteSize = 1;
+		this.bits = 0;
+		this.data = null;
+		rebuildReverseLookup(4);
+	}
+
+	// Restores a storage written by write(ByteBuffer)
+	private PaletteStorage(int size, int[] palette, int bits, long[] data) {
+		this.size = size;
+		this.palette = palette;
+		this.paletteSize = palette.length;
+		this.bits = bits;
+		this.data = data;
+		if (bits != 0) {
+			entriesPerLongShift = Integer.numberOfTrailingZeros(64 / bits);
+			valueMask = (1L << bits) - 1;
+		}
+		rebuildReverseLookup(paletteSize * 2);
+	}
+
+	public int get(int index) {
+		if (bits == 0) {
+			return palette[0];
+		}
+		int shift = (index & ((1 << entriesPerLongShift) - 1)) * bits;
+		return palette[(int) ((data[index >>> entriesPerLongShift] >>> shift) & valueMask)];
+	}
+
+	/**
+	 * Sets an entry, growing the palette and the index width if the block ID has
+	 * not been seen before.
+	 *
+	 * @return The block ID previously stored at the index.
+	 */
+	public int set(int index, int blockID) {
+		int slot = slotOf(blockID);
+		if (slot < 0) {
+			slot = addToPalette(blockID);
+		}
+		if (bits == 0) {
+			// Only reachable when setting the single existing palette value
+			return palette[0];
+		}
+		int longIndex = index >>> entriesPerLongShift;
+		int shift = (index & ((1 << entriesPerLongShift) - 1)) * bits;
+		long word = data[longIndex];
+		int previous = palette[(int) ((word >>> shift) & valueMask)];
+		data[longIndex] = (word & ~(valueMask << shift)) | ((long) slot << shift);
+		return previous;
+	}
+
+	/**
+	 * Rebuilds the palette so that it only contains block IDs that are still in
+	 * use, shrinking the index width where possible. Call this before saving or
+	 * after large edits that removed whole block types.
+	 */
+	public void compact() {
+		if (bits == 0) {
+			return;
+		}
+		boolean[] used = new boolean[paletteSize];
+		for (int i = 0; i < size; i++) {
+			used[rawSlot(i)] = true;
+		}
+
+		int[] remap = new int[paletteSize];
+		int[] newPalette = new int[paletteSize];
+		int newSize = 0;
+		for (int slot = 0; slot < paletteSize; slot++) {
+			if (used[slot]) {
+				remap[slot] = newSize;
+				newPalette[newSize++] = palette[slot];
+			}
+		}
+		if (newSize == paletteSize) {
+			return;
+		}
+
+		int[] slots = new int[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = remap[rawSlot(i)];
+		}
+
+		palette = Arrays.copyOf(newPalette, Math.max(1, newSize));
+		paletteSize = newSize;
+		rebuildReverseLookup(newSize * 2);
+		resize(bitsFor(newSize), slots);
+	}
+
+	/**
+	 * Returns the approximate heap footprint of this storage in bytes, counting
+	 * the array payloads and their headers.
+	 */
+	public long estimateBytes() {
+		long bytes = 16 + 16 + palette.length * 4L + 16 + reverseKeys.length * 8L;
+		if (data != null) {
+			bytes += 16 + data.length * 8L;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of bytes {@link #write(ByteBuffer)} produces.
+	 */
+	public int getSerializedSize() {
+		return 4 + paletteSize * 4 + 1 + (data != null ? data.length * 8 : 0);
+	}
+
+	/**
+	 * Writes the palette and the packed indices as they are, without
+	 * compacting. Call {@link #compact()} first to drop unused palette entries.
+	 */
+	public void write(ByteBuffer out) {
+		out.putInt(paletteSize);
+		for (int slot = 0; slot < paletteSize; slot++) {
+			out.putInt(palette[slot]);
+		}
+		out.put((byte) bits);
+		if (data != null) {
+			for (long word : data) {
+				out.putLong(word);
+			}
+		}
+	}
+
+	/**
+	 * Reads a storage of the given number of entries written by
+	 * {@link #write(ByteBuffer)}.
+	 *
+	 * @throws IllegalArgumentException If the data is malformed.
+	 */
+	public static PaletteStorage read(ByteBuffer in, int size) {
+		int paletteSize = in.getInt();
+		if (paletteSize < 1 || paletteSize > size) {
+			throw new IllegalArgumentException("Invalid palette size " + paletteSize);
+		}
+		int[] palette = new int[paletteSize];
+		for (int slot = 0; slot < paletteSize; slot++) {
+			palette[slot] = in.getInt();
+		}
+		int bits = in.get();
+		if (bits != bitsFor(paletteSize)) {
+			throw new IllegalArgumentException("Invalid index width " + bits + " for " + paletteSize + " palette entries");
+		}
+		long[] data = null;
+		if (bits != 0) {
+			int entriesPerLong = 64 / bits;
+			data = new long[(size + entriesPerLong - 1) / entriesPerLong];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = in.getLong();
+			}
+		}
+		PaletteStorage storage = new PaletteStorage(size, palette, bits, data);
+		for (int i = 0; i < size && bits != 0; i++) {
+			if (storage.rawSlot(i) >= paletteSize) {
+				throw new IllegalArgumentException("Index " + i + " points past the palette");
+			}
+		}
+		return storage;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getPaletteSize() {
+		return paletteSize;
+	}
+
+	public int getPaletteEntry(int slot) {
+		return palette[slot];
+	}
+
+	public int getBitsPerEntry() {
+		return bits;
+	}
+
+	private int rawSlot(int index) {
+		int shift = (index & ((1 << entriesPerLongShift) - 1)) * bits;
+		return (int) ((data[index >>> entriesPerLongShift] >>> shift) & valueMask);
+	}
+
+	private int addToPalette(int blockID) {
+		if (paletteSize == palette.length) {
+			palette = Arrays.copyOf(palette, palette.length * 2);
+		}
+		int slot = paletteSize++;
+		palette[slot] = blockID;
+		if (paletteSize * 2 > reverseKeys.length) {
+			rebuildReverseLookup(reverseKeys.length * 2);
+		} else {
+			insertReverse(blockID, slot);
+		}
+
+		int required = bitsFor(paletteSize);
+		if (required != bits) {
+			int[] slots = new int[size];
+			if (bits != 0) {
+				for (int i = 0; i < size; i++) {
+					slots[i] = rawSlot(i);
+				}
+			}
+			resize(required, slots);
+		}
+		return slot;
+	}
+
+	private void resize(int newBits, int[] slots) {
+		bits = newBits;
+		if (bits == 0) {
+			data = null;
+			entriesPerLongShift = 0;
+			valueMask = 0;
+			return;
+		}
+		entriesPerLongShift = Integer.numberOfTrailingZeros(64 / bits);
+		valueMask = (1L << bits) - 1;
+		data = new long[(size + (1 << entriesPerLongShift) - 1) >>> entriesPerLongShift];
+		for (int i = 0; i < size; i++) {
+			int shift = (i & ((1 << entriesPerLongShift) - 1)) * bits;
+			data[i >>> entriesPerLongShift] |= (long) slots[i] << shift;
+		}
+	}
+
+	private int slotOf(int blockID) {
+		int mask = reverseKeys.length - 1;
+		for (int i = mix(blockID) & mask;; i = (i + 1) & mask) {
+			int stored = reverseSlots[i];
+			if (stored == 0) {
+				return -1;
+			}
+			if (reverseKeys[i] == blockID) {
+				return stored - 1;
+			}
+		}
+	}
+
+	private void insertReverse(int blockID, int slot) {
+		int mask = reverseKeys.length - 1;
+		int i = mix(blockID) & mask;
+		while (reverseSlots[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		reverseKeys[i] = blockID;
+		reverseSlots[i] = slot + 1;
+	}
+
+	private void rebuildReverseLookup(int capacity) {
+		int tableSize = Integer.highestOneBit(Math.max(4, capacity - 1)) << 1;
+		reverseKeys = new int[tableSize];
+		reverseSlots = new int[tableSize];
+		for (int slot = 0; slot < paletteSize; slot++) {
+			insertReverse(palette[slot], slot);
+		}
+	}
+
+	private static int bitsFor(int paletteSize) {
+		if (paletteSize <= 1) {
+			return 0;
+		}
+		int needed = 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+		// Round up to a power of two so entries never straddle two longs
+		return needed <= 1 ? 1 : Integer.highestOneBit(needed - 1) << 1;
+	}
+
+	private static int mix(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
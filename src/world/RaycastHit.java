@@ -0,0 +1,50 @@
+package world;
+
+import lombok.Getter;
+
+/**
+ * Result of a {@link VoxelRaycaster} query. Allocate one per caller and pass
+ * it to every query, so ray casts do not allocate.
+ */
+@Getter
+public class RaycastHit {
+
+	private boolean hit;
+	private int blockX, blockY, blockZ;
+	private int blockID;
+	// Face of the block the ray entered through, as in ChunkMesher: 0 = -X, 1 = +X, 2 = -Y, 3 = +Y, 4 = -Z, 5 = +Z.
+	// -1 if the ray started inside the block
+	private int face;
+	// Distance along the ray to the point where it entered the block
+	private float distance;
+
+	void set(int blockX, int blockY, int blockZ, int blockID, int face, float distance) {
+		this.hit = true;
+		this.blockX = blockX;
+		this.blockY = blockY;
+		this.blockZ = blockZ;
+		this.blockID = blockID;
+		this.face = face;
+		this.distance = distance;
+	}
+
+	void miss(float distance) {
+		this.hit = false;
+		this.blockID = Blocks.AIR;
+		this.face = -1;
+		this.distance = distance;
+	}
+
+	/**
+	 * Returns the coordinate of the empty block in front of the hit face, e.g.
+	 * where a block placed against it would go, along the given axis (0 = x,
+	 * 1 = y, 2 = z).
+	 */
+	public int getAdjacent(int axis) {
+		int base = axis == 0 ? blockX : axis == 1 ? blockY : blockZ;
+		if (face >> 1 != axis) {
+			return base;
+		}
+		return (face & 1) == 1 ? base + 1 : base - 1;
+	}
+}
@@ -0,0 +1,222 @@
+package world;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * One file holding the chunks of an 8x8x8 chunk region, laid out in 4 KiB
+ * sectors like the classic anvil format.
+ * 
+ * The first sector is the header: for each of the 512 chunks a location word
+ * (first sector &lt;&lt; 8 | sector count, 0 if the chunk is absent) followed by a
+ * table of save timestamps. Each stored chunk starts on a sector boundary with
+ * its payload length and is followed by padding up to the next sector. Every
+ * save writes the chunk to the first free run large enough, never over its
+ * current sectors. The old run stays reserved until the header points at the
+ * new one, so a crash during the save leaves the previous version readable.
+ * The sectors it left are reused by later saves.
+ * 
+ * Reads go through a read-only memory mapping of the whole file, remapped
+ * when the file has grown. Writes go through the channel. All methods are
+ * synchronized, so a reader and the save thread can share a region file.
+ */
+public class RegionFile implements Closeable {
+
+	public static final int SHIFT = 3;
+	public static final int SIZE = 1 << SHIFT; // 8 chunks along each axis
+	public static final int MASK = SIZE - 1;
+	public static final int CHUNKS = SIZE * SIZE * SIZE;
+
+	public static final int SECTOR_BYTES = 4096;
+	private static final int HEADER_SECTORS = 1;
+	private static final int MAX_SECTORS_PER_CHUNK = 255;
+	private static final int TIMESTAMPS_OFFSET = CHUNKS * 4;
+
+	private final FileChannel channel;
+	private final int[] locations = new int[CHUNKS];
+	private final int[] timestamps = new int[CHUNKS];
+	private final BitSet usedSectors = new BitSet();
+	private int sectorCount;
+
+	private MappedByteBuffer mapped;
+	private final ByteBuffer headerEntry = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer lengthPrefix = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+	public RegionFile(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		if (channel.size() < header.capacity()) {
+			channel.write(header, 0);
+			header.clear();
+		} else {
+			while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+				// Keep reading until the header is complete
+			}
+			header.flip();
+		}
+		sectorCount = (int) ((channel.size() + SECTOR_BYTES - 1) / SECTOR_BYTES);
+		usedSectors.set(0, HEADER_SECTORS);
+
+		for (int i = 0; i < CHUNKS; i++) {
+			int location = header.getInt(i * 4);
+			int first = location >>> 8, count = location & 0xFF;
+			// Ignore entries pointing outside the file, e.g. after a crash during a save
+			if (location != 0 && first >= HEADER_SECTORS && first + count <= sectorCount) {
+				locations[i] = location;
+				usedSectors.set(first, first + count);
+			}
+			timestamps[i] = header.getInt(TIMESTAMPS_OFFSET + i * 4);
+		}
+	}
+
+	/**
+	 * Returns the index of a chunk within its region file.
+	 */
+	public static int localIndex(int chunkX, int chunkY, int chunkZ) {
+		return ((chunkY & MASK) << (SHIFT * 2)) | ((chunkZ & MASK) << SHIFT) | (chunkX & MASK);
+	}
+
+	public synchronized boolean contains(int index) {
+		return locations[index] != 0;
+	}
+
+	public synchronized int getTimestamp(int index) {
+		return timestamps[index];
+	}
+
+	/**
+	 * Returns the stored payload of a chunk as a view of the file mapping, or
+	 * null if the chunk is absent. The view is only valid until the next write,
+	 * so hold the region file's lock while reading it.
+	 */
+	public synchronized ByteBuffer read(int index) throws IOException {
+		int location = locations[index];
+		if (location == 0) {
+			return null;
+		}
+		long offset = (long) (location >>> 8) * SECTOR_BYTES;
+		int capacity = (location & 0xFF) * SECTOR_BYTES;
+		ensureMapped(offset + capacity);
+
+		ByteBuffer view = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		view.position((int) offset);
+		int length = view.getInt();
+		if (length < 0 || length > capacity - 4) {
+			throw new IOException("Corrupt chunk length " + length + " at index " + index);
+		}
+		view.limit(view.position() + length);
+		return view.slice();
+	}
+
+	/**
+	 * Stores the payload of a chunk, replacing any previous version.
+	 */
+	public synchronized void write(int index, byte[] payload, int length) throws IOException {
+		int needed = (length + 4 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+		if (needed > MAX_SECTORS_PER_CHUNK) {
+			throw new IOException("Chunk payload of " + length + " bytes exceeds the region sector limit");
+		}
+
+		int location = locations[index];
+		// The old run is still marked used, so the new payload can't overwrite it
+		int first = findFreeRun(needed);
+		usedSectors.set(first, first + needed);
+
+		long offset = (long) first * SECTOR_BYTES;
+		lengthPrefix.clear();
+		lengthPrefix.putInt(0, length);
+		writeFully(lengthPrefix, offset);
+		writeFully(ByteBuffer.wrap(payload, 0, length), offset + 4);
+		if (first + needed > sectorCount) {
+			// Pad the file to whole sectors so the mapping covers the last chunk
+			sectorCount = first + needed;
+			long end = (long) sectorCount * SECTOR_BYTES;
+			if (channel.size() < end) {
+				writeFully(ByteBuffer.allocate(1), end - 1);
+			}
+		}
+
+		// Only point the header at the new data once it has been written
+		locations[index] = (first << 8) | needed;
+		timestamps[index] = (int) (System.currentTimeMillis() / 1000);
+		writeHeaderEntry(index * 4, locations[index]);
+		writeHeaderEntry(TIMESTAMPS_OFFSET + index * 4, timestamps[index]);
+
+		// Only now can the sectors the chunk left be reused
+		if (location != 0) {
+			usedSectors.clear(location >>> 8, (location >>> 8) + (location & 0xFF));
+		}
+	}
+
+	/**
+	 * Removes a chunk from the file, freeing its sectors.
+	 */
+	public synchronized void delete(int index) throws IOException {
+		int location = locations[index];
+		if (location == 0) {
+			return;
+		}
+		usedSectors.clear(location >>> 8, (location >>> 8) + (location & 0xFF));
+		locations[index] = 0;
+		writeHeaderEntry(index * 4, 0);
+	}
+
+	/**
+	 * Forces written data to the storage device.
+	 */
+	public synchronized void force() throws IOException {
+		channel.force(false);
+	}
+
+	public synchronized int getSectorCount() {
+		return sectorCount;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		mapped = null;
+		channel.close();
+	}
+
+	private int findFreeRun(int needed) {
+		int start = usedSectors.nextClearBit(HEADER_SECTORS);
+		while (true) {
+			int end = usedSectors.nextSetBit(start);
+			if (end < 0 || end - start >= needed) {
+				return start;
+			}
+			start = usedSectors.nextClearBit(end);
+		}
+	}
+
+	private void ensureMapped(long end) throws IOException {
+		if (mapped == null || mapped.capacity() < end) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	private void writeHeaderEntry(int offset, int value) throws IOException {
+		headerEntry.clear();
+		headerEntry.putInt(0, value);
+		writeFully(headerEntry, offset);
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ToolBox.SimplexNoise;
+import lombok.Getter;
+
+/**
+ * Fills chunks with seeded terrain: rolling dirt hills topped with grass from a
+ * fractal simplex heightmap, tunnel-shaped caves carved where two 3D noise
+ * fields are both near zero, and trees of bark and leaves. Some trees carry a
+ * glowing leaf at the tip of their crown, the world's block light sources.
+ *
+ * The contents of a chunk depend only on the seed and the chunk's position.
+ * Trees are placed at one hashed spot per {@link #TREE_CELL}-block cell, and
+ * every chunk re-derives the trees of the neighbouring cells whose leaves
+ * reach into it instead of reading its neighbours. Chunks can therefore be
+ * generated in any order on any number of threads with bit-identical results.
+ *
+ * The noise for a chunk is evaluated in batches (see {@link SimplexNoise}),
+ * with the scratch arrays kept per thread.
+ */
+public class TerrainGenerator {
+
+	// Nothing is generated below this height
+	public static final int FLOOR = 0;
+	public static final int BASE_HEIGHT = 32;
+	public static final int HEIGHT_AMPLITUDE = 24;
+	private static final float HEIGHT_SCALE = 1f / 128f;
+	private static final int HEIGHT_OCTAVES = 4;
+
+	private static final float CAVE_SCALE = 1f / 32f;
+	private static final float CAVE_THRESHOLD = 0.012f;
+	// Caves stay this many blocks below the surface so trees always stand on grass
+	private static final int CAVE_ROOF = 4;
+
+	public static final int TREE_CELL = 6;
+	private static final int TREE_CHANCE_PERCENT = 40;
+	private static final int MIN_TRUNK = 4;
+	private static final int MAX_TRUNK = 6;
+	private static final int LEAF_RADIUS = 2;
+	private static final int MAX_TREE_HEIGHT = MAX_TRUNK + LEAF_RADIUS;
+	private static final int GLOW_TREE_PERCENT = 15;
+
+	@Getter
+	private final long seed;
+	private final SimplexNoise noise;
+
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	// Counters, for measuring chunks per second
+	@Getter
+	private final AtomicLong chunksGenerated = new AtomicLong();
+	@Getter
+	private final AtomicLong generateNanos = new AtomicLong();
+
+	public TerrainGenerator(long seed) {
+		this.seed = seed;
+		this.noise = new SimplexNoise(seed);
+	}
+
+	/**
+	 * Returns the y coordinate of the grass block on top of the given column.
+	 */
+	public int getHeight(int x, int z) {
+		float sum = 0, amplitude = 1, frequency = HEIGHT_SCALE;
+		for (int octave = 0; octave < HEIGHT_OCTAVES; octave++) {
+			sum += amplitude * noise.noise(x * frequency + octave * 31.7f, z * frequency);
+			amplitude *= 0.5f;
+			frequency *= 2;
+		}
+		return toHeight(sum);
+	}
+
+	/**
+	 * Fills an empty chunk with terrain. Safe to call from several threads at
+	 * once for different chunks.
+	 */
+	public void generate(Chunk chunk) {
+		long start = System.nanoTime();
+		int x0 = chunk.getChunkX() << Chunk.SHIFT;
+		int y0 = chunk.getChunkY() << Chunk.SHIFT;
+		int z0 = chunk.getChunkZ() << Chunk.SHIFT;
+
+		if (y0 + Chunk.SIZE > FLOOR && y0 <= BASE_HEIGHT + HEIGHT_AMPLITUDE + MAX_TREE_HEIGHT) {
+			Scratch s = scratch.get();
+			int[] blocks = s.blocks;
+			Arrays.fill(blocks, Blocks.AIR);
+			computeHeights(s, x0, z0);
+			fillColumns(s, y0);
+			carveCaves(s, x0, y0, z0);
+			placeTrees(s, x0, y0, z0);
+
+			for (int i = 0; i < Chunk.VOLUME; i++) {
+				if (blocks[i] != Blocks.AIR) {
+					chunk.setBlock(i & Chunk.MASK, i >> (Chunk.SHIFT * 2), (i >> Chunk.SHIFT) & Chunk.MASK, blocks[i]);
+				}
+			}
+		}
+
+		chunksGenerated.incrementAndGet();
+		generateNanos.addAndGet(System.nanoTime() - start);
+	}
+
+	/**
+	 * Generates every chunk in the given range (inclusive) on the executor and
+	 * adds the non-empty ones to the world. Blocks until all chunks are done;
+	 * the world is only touched from the calling thread.
+	 *
+	 * @return The number of non-empty chunks added.
+	 */
+	public int generate(World world, int minChunkX, int minChunkY, int minChunkZ, int maxChunkX, int maxChunkY,
+			int maxChunkZ, ExecutorService executor) {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		List<Callable<Void>> jobs = new ArrayList<Callable<Void>>();
+		for (int cy = minChunkY; cy <= maxChunkY; cy++) {
+			for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+				for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+					if (world.getChunk(cx, cy, cz) != null) {
+						continue;
+					}
+					final Chunk chunk = new Chunk(cx, cy, cz);
+					chunks.add(chunk);
+					jobs.add(() -> {
+						generate(chunk);
+						return null;
+					});
+				}
+			}
+		}
+
+		try {
+			for (Future<Void> job : executor.invokeAll(jobs)) {
+				job.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while generating terrain", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Terrain generation failed", e.getCause());
+		}
+
+		int added = 0;
+		for (Chunk chunk : chunks) {
+			if (!chunk.isEmpty()) {
+				world.getChunks().put(chunk.getKey(), chunk);
+				added++;
+			}
+		}
+		return added;
+	}
+
+	// Heights of the chunk's 16x16 columns, evaluated one octave at a time for the whole chunk
+	private void computeHeights(Scratch s, int x0, int z0) {
+		int columns = Chunk.SIZE * Chunk.SIZE;
+		float[] sums = s.sums;
+		Arrays.fill(sums, 0, columns, 0);
+		float amplitude = 1, frequency = HEIGHT_SCALE;
+		for (int octave = 0; octave < HEIGHT_OCTAVES; octave++) {
+			for (int n = 0; n < columns; n++) {
+				s.xs[n] = (x0 + (n & Chunk.MASK)) * frequency + octave * 31.7f;
+				s.ys[n] = (z0 + (n >> Chunk.SHIFT)) * frequency;
+			}
+			noise.noise(s.xs, s.ys, s.values, columns);
+			for (int n = 0; n < columns; n++) {
+				sums[n] += amplitude * s.values[n];
+			}
+			amplitude *= 0.5f;
+			frequency *= 2;
+		}
+		for (int n = 0; n < columns; n++) {
+			s.heights[n] = toHeight(sums[n]);
+		}
+	}
+
+	private static int toHeight(float noiseSum) {
+		// The octave amplitudes add up to 1.875
+		return BASE_HEIGHT + (int) Math.floor(noiseSum / 1.875f * HEIGHT_AMPLITUDE);
+	}
+
+	private static void fillColumns(Scratch s, int y0) {
+		for (int z = 0; z < Chunk.SIZE; z++) {
+			for (int x = 0; x < Chunk.SIZE; x++) {
+				int height = s.heights[(z << Chunk.SHIFT) | x];
+				int top = Math.min(height, y0 + Chunk.MASK);
+				for (int y = Math.max(y0, FLOOR); y <= top; y++) {
+					s.blocks[Chunk.index(x, y - y0, z)] = y == height ? Blocks.GRASS : Blocks.DIRT;
+				}
+			}
+		}
+	}
+
+	private void carveCaves(Scratch s, int x0, int y0, int z0) {
+		// Gather the blocks deep enough to be carved and evaluate both fields for all of them at once
+		int count = 0;
+		for (int i = 0; i < Chunk.VOLUME; i++) {
+			int x = i & Chunk.MASK, y = i >> (Chunk.SHIFT * 2), z = (i >> Chunk.SHIFT) & Chunk.MASK;
+			int worldY = y0 + y;
+			if (worldY > FLOOR && worldY < s.heights[(z << Chunk.SHIFT) | x] - CAVE_ROOF) {
+				s.indices[count] = i;
+				s.xs[count] = (x0 + x) * CAVE_SCALE;
+				s.ys[count] = worldY * CAVE_SCALE * 1.5f;
+				s.zs[count] = (z0 + z) * CAVE_SCALE;
+				count++;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+
+		noise.noise(s.xs, s.ys, s.zs, s.values, count);
+		for (int n = 0; n < count; n++) {
+			s.zs[n] += 57.3f;
+		}
+		noise.noise(s.xs, s.ys, s.zs, s.sums, count);
+		for (int n = 0; n < count; n++) {
+			float a = s.values[n], b = s.sums[n];
+			if (a * a + b * b < CAVE_THRESHOLD) {
+				s.blocks[s.indices[n]] = Blocks.AIR;
+			}
+		}
+	}
+
+	private void placeTrees(Scratch s, int x0, int y0, int z0) {
+		// Visit every cell whose tree could reach into this chunk
+		int minCell = Math.floorDiv(x0 - LEAF_RADIUS, TREE_CELL);
+		int maxCell = Math.floorDiv(x0 + Chunk.MASK + LEAF_RADIUS, TREE_CELL);
+		int minCellZ = Math.floorDiv(z0 - LEAF_RADIUS, TREE_CELL);
+		int maxCellZ = Math.floorDiv(z0 + Chunk.MASK + LEAF_RADIUS, TREE_CELL);
+		for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+			for (int cellX = minCell; cellX <= maxCell; cellX++) {
+				long hash = hash(cellX, cellZ);
+				if ((int) ((hash >>> 1) % 100) >= TREE_CHANCE_PERCENT) {
+					continue;
+				}
+				// Keep trunks off the cell border, so trunks of neighbouring cells stand at least
+				// three blocks apart; their leaf blobs can still meet, but leaves never replace bark
+				int span = TREE_CELL - 2;
+				int treeX = cellX * TREE_CELL + 1 + (int) ((hash >>> 8) & 0xFF) % span;
+				int treeZ = cellZ * TREE_CELL + 1 + (int) ((hash >>> 16) & 0xFF) % span;
+				int trunk = MIN_TRUNK + (int) ((hash >>> 24) & 0xFF) % (MAX_TRUNK - MIN_TRUNK + 1);
+				boolean glowing = (int) ((hash >>> 32) & 0xFF) % 100 < GLOW_TREE_PERCENT;
+
+				int ground = treeX >= x0 && treeX < x0 + Chunk.SIZE && treeZ >= z0 && treeZ < z0 + Chunk.SIZE
+						? s.heights[((treeZ - z0) << Chunk.SHIFT) | (treeX - x0)] : getHeight(treeX, treeZ);
+				if (ground + trunk + LEAF_RADIUS < y0 || ground >= y0 + Chunk.SIZE) {
+					continue;
+				}
+				placeTree(s.blocks, treeX - x0, ground + 1 - y0, treeZ - z0, trunk, glowing);
+			}
+		}
+	}
+
+	// Places a tree whose trunk starts at the given chunk-relative position, clipped to the chunk
+	private static void placeTree(int[] blocks, int x, int y, int z, int trunk, boolean glowing) {
+		int top = y + trunk - 1;
+		for (int dy = -LEAF_RADIUS; dy <= LEAF_RADIUS; dy++) {
+			for (int dz = -LEAF_RADIUS; dz <= LEAF_RADIUS; dz++) {
+				for (int dx = -LEAF_RADIUS; dx <= LEAF_RADIUS; dx++) {
+					// Round the blob off by dropping its corners
+					if (dx * dx + dy * dy + dz * dz > LEAF_RADIUS * LEAF_RADIUS + 1) {
+						continue;
+					}
+					boolean tip = glowing && dy == LEAF_RADIUS && dx == 0 && dz == 0;
+					setIfInside(blocks, x + dx, top + dy, z + dz, tip ? Blocks.GLOW_LEAF : Blocks.LEAF, false);
+				}
+			}
+		}
+		for (int dy = 0; dy < trunk; dy++) {
+			setIfInside(blocks, x, y + dy, z, Blocks.TREE_BARK, true);
+		}
+	}
+
+	private static void setIfInside(int[] blocks, int x, int y, int z, int blockID, boolean replaceSolid) {
+		if (x < 0 || y < 0 || z < 0 || x >= Chunk.SIZE || y >= Chunk.SIZE || z >= Chunk.SIZE) {
+			return;
+		}
+		int index = Chunk.index(x, y, z);
+		if (replaceSolid || blocks[index] == Blocks.AIR) {
+			blocks[index] = blockID;
+		}
+	}
+
+	private long hash(int cellX, int cellZ) {
+		// SplitMix64 finaliser over the seed and cell position
+		long h = seed ^ (cellX * 0x9E3779B97F4A7C15L) ^ (cellZ * 0xC2B2AE3D27D4EB4FL);
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+	private static class Scratch {
+		final int[] blocks = new int[Chunk.VOLUME];
+		final int[] heights = new int[Chunk.SIZE * Chunk.SIZE];
+		final int[] indices = new int[Chunk.VOLUME];
+		final float[] xs = new float[Chunk.VOLUME];
+		final float[] ys = new float[Chunk.VOLUME];
+		final float[] zs = new float[Chunk.VOLUME];
+		final float[] values = new float[Chunk.VOLUME];
+		final float[] sums = new float[Chunk.VOLUME];
+	}
+}
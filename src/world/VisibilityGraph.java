@@ -0,0 +1,161 @@
+package world;
+
+import java.util.Arrays;
+
+import ToolBox.Frustum;
+import ToolBox.LongIntHashMap;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Finds the chunks that can be seen from the camera by walking the graph of
+ * chunks connected through open space.
+ *
+ * The walk is a breadth-first search starting at the camera's chunk. A chunk
+ * entered through one face is only left through the faces its
+ * {@link Chunk#getConnectivity() connectivity} joins to that face, and never in
+ * a direction opposite to one the path has already taken, so the search only
+ * moves away from the camera. Chunks outside the frustum or the radius are not
+ * entered. Chunks that are not loaded count as open air. Chunks behind solid
+ * rock, such as caves seen from the surface, are never reached and so never
+ * drawn.
+ *
+ * The search runs on the CPU only and needs no GL context. It is conservative
+ * per chunk: a reached chunk is drawn whole, even if only a corner of it is
+ * actually visible.
+ */
+public class VisibilityGraph {
+
+	private static final int[] DX = { -1, 1, 0, 0, 0, 0 };
+	private static final int[] DY = { 0, 0, -1, 1, 0, 0 };
+	private static final int[] DZ = { 0, 0, 0, 0, -1, 1 };
+
+	private final World world;
+
+	// Maximum distance from the camera's chunk along any axis, in chunks
+	@Getter
+	@Setter
+	private int radius = 8;
+
+	private final LongIntHashMap visited = new LongIntHashMap(1024, -1);
+	// Search queue: chunk key, face it was entered through, directions taken so far
+	private long[] queueKeys = new long[1024];
+	private byte[] queueFaces = new byte[1024];
+	private byte[] queueDirections = new byte[1024];
+	// Packed coordinates of the chunks found by the last search, valid up to visibleChunks
+	private long[] visibleKeys = new long[256];
+
+	// Results of the last search
+	@Getter
+	private int visitedChunks;
+	@Getter
+	private int visibleChunks;
+	@Getter
+	private long searchNanos;
+
+	public VisibilityGraph(World world) {
+		this.world = world;
+	}
+
+	/**
+	 * Collects the packed coordinates of the non-empty chunks reachable from
+	 * the camera, to be read with {@link #getVisibleKeys()} until the next
+	 * search.
+	 *
+	 * @param frustum Limits the search to the view, or null to search in every
+	 *                direction.
+	 * @return The number of chunks collected.
+	 */
+	public int collectVisibleChunks(float cameraX, float cameraY, float cameraZ, Frustum frustum) {
+		long start = System.nanoTime();
+		int visible = 0;
+		visited.clear();
+
+		int startX = (int) Math.floor(cameraX) >> Chunk.SHIFT;
+		int startY = (int) Math.floor(cameraY) >> Chunk.SHIFT;
+		int startZ = (int) Math.floor(cameraZ) >> Chunk.SHIFT;
+		long startKey = ChunkPos.pack(startX, startY, startZ);
+		visited.put(startKey, 0);
+		int head = 0, tail = 0;
+		tail = enqueue(tail, startKey, -1, 0);
+
+		while (head < tail) {
+			long key = queueKeys[head];
+			int entryFace = queueFaces[head];
+			int directions = queueDirections[head];
+			head++;
+
+			int cx = ChunkPos.unpackX(key), cy = ChunkPos.unpackY(key), cz = ChunkPos.unpackZ(key);
+			Chunk chunk = world.getChunks().get(key);
+			int connectivity = ChunkConnectivity.ALL;
+			if (chunk != null && !chunk.isEmpty()) {
+				if (visible == visibleKeys.length) {
+					visibleKeys = Arrays.copyOf(visibleKeys, visible * 2);
+				}
+				visibleKeys[visible++] = key;
+				connectivity = chunk.getConnectivity();
+			}
+
+			for (int direction = 0; direction < 6; direction++) {
+				// Never turn back towards the camera
+				if ((directions & (1 << (direction ^ 1))) != 0) {
+					continue;
+				}
+				if (entryFace >= 0 && !ChunkConnectivity.connects(connectivity, entryFace, direction)) {
+					continue;
+				}
+				int nx = cx + DX[direction], ny = cy + DY[direction], nz = cz + DZ[direction];
+				if (Math.abs(nx - startX) > radius || Math.abs(ny - startY) > radius || Math.abs(nz - startZ) > radius) {
+					continue;
+				}
+				long neighbourKey = ChunkPos.pack(nx, ny, nz);
+				if (visited.get(neighbourKey) != -1) {
+					continue;
+				}
+				if (frustum != null) {
+					float minX = nx * Chunk.SIZE, minY = ny * Chunk.SIZE, minZ = nz * Chunk.SIZE;
+					if (!frustum.intersectsAABB(minX, minY, minZ, minX + Chunk.SIZE, minY + Chunk.SIZE,
+							minZ + Chunk.SIZE)) {
+						continue;
+					}
+				}
+				visited.put(neighbourKey, 0);
+				// Compact the queue instead of growing it when the front is free
+				if (tail == queueKeys.length && head > 0) {
+					System.arraycopy(queueKeys, head, queueKeys, 0, tail - head);
+					System.arraycopy(queueFaces, head, queueFaces, 0, tail - head);
+					System.arraycopy(queueDirections, head, queueDirections, 0, tail - head);
+					tail -= head;
+					head = 0;
+				}
+				tail = enqueue(tail, neighbourKey, direction ^ 1, directions | (1 << direction));
+			}
+		}
+
+		visitedChunks = visited.size();
+		visibleChunks = visible;
+		searchNanos = System.nanoTime() - start;
+		return visibleChunks;
+	}
+
+	/**
+	 * Returns the chunks found by the last search in the first
+	 * {@link #getVisibleChunks()} entries. The array is reused by the next
+	 * search.
+	 */
+	public long[] getVisibleKeys() {
+		return visibleKeys;
+	}
+
+	private int enqueue(int tail, long key, int entryFace, int directions) {
+		if (tail == queueKeys.length) {
+			queueKeys = Arrays.copyOf(queueKeys, tail * 2);
+			queueFaces = Arrays.copyOf(queueFaces, tail * 2);
+			queueDirections = Arrays.copyOf(queueDirections, tail * 2);
+		}
+		queueKeys[tail] = key;
+		queueFaces[tail] = (byte) entryFace;
+		queueDirections[tail] = (byte) directions;
+		return tail + 1;
+	}
+}
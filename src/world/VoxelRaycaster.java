@@ -0,0 +1,206 @@
+package world;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import Entities.Camera;
+
+/**
+ * Casts rays through the blocks of a {@link World} with the Amanatides-Woo
+ * grid traversal, which visits exactly the blocks a ray passes through, in
+ * order, at the cost of a comparison and an addition per block.
+ *
+ * Queries keep all of their state in locals, caching the chunk the ray is
+ * currently in, and write their result into a caller-owned
+ * {@link RaycastHit}, so they do not allocate and may run on several threads
+ * at once as long as the world is not edited meanwhile.
+ */
+public class VoxelRaycaster {
+
+	private static final int PARALLEL_THRESHOLD = 256;
+
+	// Camera direction of each thread's last cast(Camera, ...) call
+	private static final ThreadLocal<Vector3f> DIRECTION = ThreadLocal.withInitial(Vector3f::new);
+
+	private final World world;
+
+	public VoxelRaycaster(World world) {
+		this.world = world;
+	}
+
+	/**
+	 * Finds the first non-air block along a ray.
+	 *
+	 * @param dirX        The ray direction; does not need to be normalised.
+	 * @param maxDistance How far along the ray to search, in blocks.
+	 * @return Whether a block was hit.
+	 */
+	public boolean cast(float originX, float originY, float originZ, float dirX, float dirY, float dirZ,
+			float maxDistance, RaycastHit result) {
+		return traverse(originX, originY, originZ, dirX, dirY, dirZ, maxDistance, false, 0, 0, 0, result);
+	}
+
+	/**
+	 * Finds the block the camera is looking at.
+	 */
+	public boolean cast(Camera camera, float maxDistance, RaycastHit result) {
+		Vector3f position = camera.getPosition();
+		Vector3f direction = camera.getDirection(DIRECTION.get());
+		return cast(position.x, position.y, position.z, direction.x, direction.y, direction.z, maxDistance, result);
+	}
+
+	/**
+	 * Returns whether no opaque block lies between two points. Leaves and other
+	 * transparent blocks do not block the line, and neither do the blocks the
+	 * two points are in, so e.g. a point on a wall can see out.
+	 */
+	public boolean hasLineOfSight(float fromX, float fromY, float fromZ, float toX, float toY, float toZ,
+			RaycastHit scratch) {
+		float dx = toX - fromX, dy = toY - fromY, dz = toZ - fromZ;
+		float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		return !traverse(fromX, fromY, fromZ, dx, dy, dz, length, true, (int) Math.floor(toX), (int) Math.floor(toY),
+				(int) Math.floor(toZ), scratch);
+	}
+
+	/**
+	 * Casts many rays, splitting them across the common fork-join pool when
+	 * there are enough of them.
+	 *
+	 * @param rays    Origin and direction of each ray, six floats per ray.
+	 * @param results One result per ray, filled in.
+	 */
+	public void castAll(float[] rays, int count, float maxDistance, RaycastHit[] results) {
+		castAll(rays, count, maxDistance, results, ForkJoinPool.commonPool());
+	}
+
+	public void castAll(float[] rays, int count, float maxDistance, RaycastHit[] results, ForkJoinPool pool) {
+		if (count < PARALLEL_THRESHOLD) {
+			castRange(rays, 0, count, maxDistance, results);
+		} else {
+			pool.invoke(new CastTask(rays, 0, count, maxDistance, results));
+		}
+	}
+
+	private void castRange(float[] rays, int start, int end, float maxDistance, RaycastHit[] results) {
+		for (int i = start; i < end; i++) {
+			int r = i * 6;
+			traverse(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5], maxDistance, false, 0, 0,
+					0, results[i]);
+		}
+	}
+
+	/**
+	 * Walks the ray block by block. For a line of sight only opaque blocks
+	 * count, and the origin block and the end block are skipped.
+	 */
+	private boolean traverse(float originX, float originY, float originZ, float dirX, float dirY, float dirZ,
+			float maxDistance, boolean lineOfSight, int endX, int endY, int endZ, RaycastHit result) {
+		float length = (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+		if (length == 0) {
+			result.miss(0);
+			return false;
+		}
+		dirX /= length;
+		dirY /= length;
+		dirZ /= length;
+
+		int x = (int) Math.floor(originX), y = (int) Math.floor(originY), z = (int) Math.floor(originZ);
+		int stepX = dirX > 0 ? 1 : -1, stepY = dirY > 0 ? 1 : -1, stepZ = dirZ > 0 ? 1 : -1;
+
+		// Distance along the ray to the next block boundary on each axis, and between boundaries
+		float deltaX = Math.abs(1 / dirX), deltaY = Math.abs(1 / dirY), deltaZ = Math.abs(1 / dirZ);
+		float nextX = (stepX > 0 ? x + 1 - originX : originX - x) * deltaX;
+		float nextY = (stepY > 0 ? y + 1 - originY : originY - y) * deltaY;
+		float nextZ = (stepZ > 0 ? z + 1 - originZ : originZ - z) * deltaZ;
+		// Axis-parallel rays never cross the other boundaries; 0 * infinity gives NaN
+		if (dirX == 0) {
+			nextX = Float.POSITIVE_INFINITY;
+		}
+		if (dirY == 0) {
+			nextY = Float.POSITIVE_INFINITY;
+		}
+		if (dirZ == 0) {
+			nextZ = Float.POSITIVE_INFINITY;
+		}
+
+		// The chunk the ray is in, looked up again only when the ray leaves it
+		int chunkX = x >> Chunk.SHIFT, chunkY = y >> Chunk.SHIFT, chunkZ = z >> Chunk.SHIFT;
+		Chunk chunk = world.getChunk(chunkX, chunkY, chunkZ);
+
+		int face = -1;
+		float distance = 0;
+		while (true) {
+			if (lineOfSight && x == endX && y == endY && z == endZ) {
+				result.miss(distance);
+				return false;
+			}
+			if (chunk != null && !(lineOfSight && face == -1)) {
+				int block = chunk.getBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+				if (block != Blocks.AIR && (!lineOfSight || Blocks.isOpaque(block))) {
+					result.set(x, y, z, block, face, distance);
+					return true;
+				}
+			}
+
+			// Step into the neighbouring block whose boundary is closest
+			if (nextX < nextY && nextX < nextZ) {
+				distance = nextX;
+				nextX += deltaX;
+				x += stepX;
+				face = stepX > 0 ? 0 : 1;
+			} else if (nextY < nextZ) {
+				distance = nextY;
+				nextY += deltaY;
+				y += stepY;
+				face = stepY > 0 ? 2 : 3;
+			} else {
+				distance = nextZ;
+				nextZ += deltaZ;
+				z += stepZ;
+				face = stepZ > 0 ? 4 : 5;
+			}
+			if (distance > maxDistance) {
+				result.miss(maxDistance);
+				return false;
+			}
+
+			if (x >> Chunk.SHIFT != chunkX || y >> Chunk.SHIFT != chunkY || z >> Chunk.SHIFT != chunkZ) {
+				chunkX = x >> Chunk.SHIFT;
+				chunkY = y >> Chunk.SHIFT;
+				chunkZ = z >> Chunk.SHIFT;
+				chunk = world.getChunk(chunkX, chunkY, chunkZ);
+			}
+		}
+	}
+
+	// Splits the ray range in halves until it is small enough to run directly
+	private class CastTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final float[] rays;
+		private final int start, end;
+		private final float maxDistance;
+		private final RaycastHit[] results;
+
+		CastTask(float[] rays, int start, int end, float maxDistance, RaycastHit[] results) {
+			this.rays = rays;
+			this.start = start;
+			this.end = end;
+			this.maxDistance = maxDistance;
+			this.results = results;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= PARALLEL_THRESHOLD) {
+				castRange(rays, start, end, maxDistance, results);
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new CastTask(rays, start, middle, maxDistance, results),
+					new CastTask(rays, middle, end, maxDistance, results));
+		}
+	}
+}
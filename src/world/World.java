@@ -0,0 +1,74 @@
+package world;
+
+import lombok.Getter;
+
+/**
+ * The voxel world: a sparse collection of chunks addressed by world block
+ * coordinates.
+ * 
+ * Chunks are created on demand when a non-air block is written into them.
+ * Reading from a missing chunk returns AIR.
+ */
+@Getter
+public class World {
+
+	private final ChunkMap chunks = new ChunkMap();
+
+	public Chunk getChunk(int chunkX, int chunkY, int chunkZ) {
+		return chunks.get(ChunkPos.pack(chunkX, chunkY, chunkZ));
+	}
+
+	/**
+	 * Returns the chunk at the given chunk coordinates, creating an empty one if
+	 * it does not exist yet.
+	 */
+	public Chunk getOrCreateChunk(int chunkX, int chunkY, int chunkZ) {
+		long key = ChunkPos.pack(chunkX, chunkY, chunkZ);
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = new Chunk(chunkX, chunkY, chunkZ);
+			chunks.put(key, chunk);
+		}
+		return chunk;
+	}
+
+	public Chunk removeChunk(int chunkX, int chunkY, int chunkZ) {
+		return chunks.remove(ChunkPos.pack(chunkX, chunkY, chunkZ));
+	}
+
+	public int getBlock(int x, int y, int z) {
+		Chunk chunk = chunks.get(ChunkPos.pack(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT));
+		if (chunk == null) {
+			return Blocks.AIR;
+		}
+		return chunk.getBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+	}
+
+	/**
+	 * Sets the block at the given world coordinates.
+	 * 
+	 * @return The block ID that was replaced.
+	 */
+	public int setBlock(int x, int y, int z, int blockID) {
+		int cx = x >> Chunk.SHIFT, cy = y >> Chunk.SHIFT, cz = z >> Chunk.SHIFT;
+		Chunk chunk = blockID == Blocks.AIR ? getChunk(cx, cy, cz) : getOrCreateChunk(cx, cy, cz);
+		if (chunk == null) {
+			return Blocks.AIR;
+		}
+		return chunk.setBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK, blockID);
+	}
+
+	/**
+	 * Returns the approximate heap footprint of all loaded chunk storage in bytes.
+	 * Divide by the number of loaded blocks to get the bytes-per-block figure.
+	 */
+	public long estimateMemoryBytes() {
+		long[] total = new long[1];
+		chunks.forEach(chunk -> total[0] += chunk.estimateBytes());
+		return total[0] + 16 + chunks.size() * 12L;
+	}
+
+	public long getLoadedBlockCount() {
+		return (long) chunks.size() * Chunk.VOLUME;
+	}
+}
@@ -0,0 +1,368 @@
+package world;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import lombok.Getter;
+
+/**
+ * Saves and loads chunks in {@link RegionFile}s under a world directory.
+ * 
+ * Each chunk is stored as a version byte followed by its
+ * {@link PaletteStorage}, compressed with Deflater on its own so it can be
+ * read back without touching its neighbours. Light is not stored: it is
+ * derived from the blocks, so loaded chunks come back unlit and the
+ * {@link LightEngine} lights them again.
+ * 
+ * Saving is asynchronous: {@link #saveChunk(Chunk)} only copies the chunk into
+ * a byte array on the calling thread, and a writer thread compresses and
+ * writes the copies in batches sorted by region. Saving a chunk again before
+ * its previous copy was written replaces that copy, so only the latest
+ * version reaches the disk. Loads see chunks that are still waiting to be
+ * written. A chunk whose write fails stays pending and is retried with a later
+ * batch, so the edit is not lost while the game keeps running.
+ */
+public class WorldStorage implements Closeable {
+
+	public static final String REGION_EXTENSION = ".ppr";
+
+	private static final byte FORMAT_VERSION = 1;
+	private static final byte COMPRESSION_DEFLATE = 1;
+	private static final int MAX_BATCH = 256;
+	// Pause after a batch with failed writes, so a full disk isn't retried in a tight loop
+	private static final long RETRY_DELAY_MILLIS = 100;
+
+	private final File directory;
+	private final Map<Long, RegionFile> regions = new HashMap<Long, RegionFile>();
+
+	// Latest uncompressed copy of every chunk waiting to be written
+	private final ConcurrentHashMap<Long, byte[]> pending = new ConcurrentHashMap<Long, byte[]>();
+	private final BlockingQueue<Long> writeQueue = new LinkedBlockingQueue<Long>();
+	// Pending chunks whose last write failed
+	private final Set<Long> failing = ConcurrentHashMap.newKeySet();
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private byte[] compressed = new byte[16 * 1024];
+	private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+	private final ThreadLocal<byte[]> readBuffers = ThreadLocal.withInitial(() -> new byte[16 * 1024]);
+
+	// Counters, for monitoring throughput
+	@Getter
+	private final AtomicLong chunksRead = new AtomicLong();
+	@Getter
+	private final AtomicLong bytesRead = new AtomicLong();
+	@Getter
+	private final AtomicLong readNanos = new AtomicLong();
+	@Getter
+	private final AtomicLong chunksWritten = new AtomicLong();
+	@Getter
+	private final AtomicLong bytesWritten = new AtomicLong();
+	@Getter
+	private final AtomicLong uncompressedBytesWritten = new AtomicLong();
+	@Getter
+	private final AtomicLong writeNanos = new AtomicLong();
+	@Getter
+	private final AtomicLong batchesWritten = new AtomicLong();
+	@Getter
+	private final AtomicLong failedWrites = new AtomicLong();
+
+	public WorldStorage(File directory) {
+		this.directory = directory;
+		directory.mkdirs();
+		writer = new Thread(this::runWriter, "Chunk Writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues the chunk to be written. Must be called from the thread that edits
+	 * the chunk; the blocks are copied before this returns.
+	 */
+	public void saveChunk(Chunk chunk) {
+		PaletteStorage blocks = chunk.getBlocks();
+		ByteBuffer snapshot = ByteBuffer.allocate(1 + blocks.getSerializedSize());
+		snapshot.put(FORMAT_VERSION);
+		blocks.write(snapshot);
+
+		Long key = chunk.getKey();
+		if (pending.put(key, snapshot.array()) == null) {
+			writeQueue.add(key);
+		}
+	}
+
+	/**
+	 * Saves every chunk of the world.
+	 */
+	public void saveAll(World world) {
+		world.getChunks().forEach(this::saveChunk);
+	}
+
+	/**
+	 * Loads a chunk, or returns null if it was never saved. Safe to call from
+	 * any thread.
+	 */
+	public Chunk loadChunk(int chunkX, int chunkY, int chunkZ) {
+		long start = System.nanoTime();
+		long key = ChunkPos.pack(chunkX, chunkY, chunkZ);
+		byte[] queued = pending.get(key);
+		if (queued != null) {
+			return decode(chunkX, chunkY, chunkZ, ByteBuffer.wrap(queued));
+		}
+
+		try {
+			RegionFile region = getRegion(chunkX, chunkY, chunkZ, false);
+			if (region == null) {
+				return null;
+			}
+			ByteBuffer data;
+			synchronized (region) {
+				ByteBuffer stored = region.read(RegionFile.localIndex(chunkX, chunkY, chunkZ));
+				if (stored == null) {
+					return null;
+				}
+				bytesRead.addAndGet(stored.remaining());
+				data = inflate(stored);
+			}
+			Chunk chunk = decode(chunkX, chunkY, chunkZ, data);
+			chunksRead.incrementAndGet();
+			readNanos.addAndGet(System.nanoTime() - start);
+			return chunk;
+		} catch (IOException | DataFormatException | IllegalArgumentException e) {
+			e.printStackTrace();
+			throw new RuntimeException("Could not load chunk " + chunkX + ", " + chunkY + ", " + chunkZ, e);
+		}
+	}
+
+	/**
+	 * Returns the number of chunks waiting to be written.
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Returns the number of pending chunks whose last write failed. They are
+	 * retried until a write succeeds.
+	 */
+	public int getFailingCount() {
+		return failing.size();
+	}
+
+	/**
+	 * Blocks until every chunk saved so far has been written and forced to
+	 * disk, or has failed to write and waits for a retry.
+	 */
+	public void flush() {
+		synchronized (pending) {
+			while (pending.size() > failing.size() && writer.isAlive()) {
+				try {
+					pending.wait(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+		synchronized (regions) {
+			for (RegionFile region : regions.values()) {
+				try {
+					region.force();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes all pending chunks, then stops the writer thread and closes the
+	 * region files. Chunks that still fail to write are lost.
+	 */
+	@Override
+	public void close() {
+		flush();
+		if (!failing.isEmpty()) {
+			System.err.println("Closing world storage with " + failing.size() + " unwritten chunks");
+		}
+		running = false;
+		writer.interrupt();
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		deflater.end();
+		synchronized (regions) {
+			for (RegionFile region : regions.values()) {
+				try {
+					region.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			regions.clear();
+		}
+	}
+
+	private void runWriter() {
+		List<Long> batch = new ArrayList<Long>();
+		while (running) {
+			try {
+				batch.add(writeQueue.take());
+			} catch (InterruptedException e) {
+				break;
+			}
+			writeQueue.drainTo(batch, MAX_BATCH - 1);
+			boolean failed = !writeBatch(batch);
+			batch.clear();
+			if (failed) {
+				try {
+					Thread.sleep(RETRY_DELAY_MILLIS);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+	}
+
+	// Returns false if any write failed
+	private boolean writeBatch(List<Long> batch) {
+		long start = System.nanoTime();
+		boolean succeeded = true;
+
+		// Sort by region, then by position inside it, so each file is written in one sweep
+		batch.sort(Comparator.comparingLong(WorldStorage::regionKey).thenComparingInt(WorldStorage::localIndex));
+
+		for (Long key : batch) {
+			byte[] data = pending.get(key);
+			if (data == null) {
+				continue;
+			}
+			int cx = ChunkPos.unpackX(key), cy = ChunkPos.unpackY(key), cz = ChunkPos.unpackZ(key);
+			try {
+				int length = deflate(data);
+				RegionFile region = getRegion(cx, cy, cz, true);
+				region.write(RegionFile.localIndex(cx, cy, cz), compressed, length);
+				chunksWritten.incrementAndGet();
+				bytesWritten.addAndGet(length);
+				uncompressedBytesWritten.addAndGet(data.length);
+			} catch (IOException e) {
+				// Keep the writer alive and the copy pending; the chunk is retried with a later batch
+				e.printStackTrace();
+				failedWrites.incrementAndGet();
+				failing.add(key);
+				writeQueue.add(key);
+				succeeded = false;
+				continue;
+			}
+			failing.remove(key);
+			// A copy saved while this one was being written is still pending and needs another pass
+			if (!pending.remove(key, data)) {
+				writeQueue.add(key);
+			}
+		}
+
+		batchesWritten.incrementAndGet();
+		writeNanos.addAndGet(System.nanoTime() - start);
+		synchronized (pending) {
+			pending.notifyAll();
+		}
+		return succeeded;
+	}
+
+	private static long regionKey(long key) {
+		return ChunkPos.pack(ChunkPos.unpackX(key) >> RegionFile.SHIFT, ChunkPos.unpackY(key) >> RegionFile.SHIFT,
+				ChunkPos.unpackZ(key) >> RegionFile.SHIFT);
+	}
+
+	private static int localIndex(long key) {
+		return RegionFile.localIndex(ChunkPos.unpackX(key), ChunkPos.unpackY(key), ChunkPos.unpackZ(key));
+	}
+
+	// Compresses the chunk into the shared output buffer, returning the number of bytes written
+	private int deflate(byte[] data) {
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		compressed[0] = COMPRESSION_DEFLATE;
+		int length = 1;
+		while (!deflater.finished()) {
+			if (length == compressed.length) {
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+		return length;
+	}
+
+	private ByteBuffer inflate(ByteBuffer stored) throws IOException, DataFormatException {
+		byte compression = stored.get();
+		if (compression != COMPRESSION_DEFLATE) {
+			throw new IOException("Unknown chunk compression " + compression);
+		}
+		// Java 8's Inflater only reads arrays, so copy the mapped bytes out first
+		byte[] input = new byte[stored.remaining()];
+		stored.get(input);
+
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput(input);
+		byte[] output = readBuffers.get();
+		int length = 0;
+		while (!inflater.finished()) {
+			if (length == output.length) {
+				output = Arrays.copyOf(output, output.length * 2);
+				readBuffers.set(output);
+			}
+			int inflated = inflater.inflate(output, length, output.length - length);
+			if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+				throw new DataFormatException("Truncated chunk data");
+			}
+			length += inflated;
+		}
+		return ByteBuffer.wrap(output, 0, length);
+	}
+
+	private static Chunk decode(int chunkX, int chunkY, int chunkZ, ByteBuffer data) {
+		byte version = data.get();
+		if (version != FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported chunk format version " + version);
+		}
+		return new Chunk(chunkX, chunkY, chunkZ, PaletteStorage.read(data, Chunk.VOLUME));
+	}
+
+	private RegionFile getRegion(int chunkX, int chunkY, int chunkZ, boolean create) throws IOException {
+		int rx = chunkX >> RegionFile.SHIFT, ry = chunkY >> RegionFile.SHIFT, rz = chunkZ >> RegionFile.SHIFT;
+		long key = ChunkPos.pack(rx, ry, rz);
+		synchronized (regions) {
+			RegionFile region = regions.get(key);
+			if (region == null) {
+				File file = new File(directory, "r." + rx + "." + ry + "." + rz + REGION_EXTENSION);
+				if (!create && !file.exists()) {
+					return null;
+				}
+				region = new RegionFile(file);
+				regions.put(key, region);
+			}
+			return region;
+		}
+	}
+}